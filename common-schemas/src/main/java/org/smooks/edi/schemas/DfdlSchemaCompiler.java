@@ -0,0 +1,135 @@
+/*-
+ * ========================LICENSE_START=================================
+ * edi-schemas
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.schemas;
+
+import org.apache.daffodil.japi.Compiler;
+import org.apache.daffodil.japi.Daffodil;
+import org.apache.daffodil.japi.DataProcessor;
+import org.apache.daffodil.japi.Diagnostic;
+import org.apache.daffodil.japi.ProcessorFactory;
+import org.smooks.api.SmooksConfigException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Compiles and saves DFDL schemas. Shared by the runtime processor store of the EDI cartridge and the build-time
+ * schema generator, so that precompiled processors are identical to the ones compiled on demand.
+ */
+public final class DfdlSchemaCompiler {
+
+    private DfdlSchemaCompiler() {
+    }
+
+    /**
+     * Compiles a schema set without generating a processor, as a check that the schemas are valid.
+     *
+     * @param schemaUri     entry schema URI
+     * @param rootName      name of the root element, or <code>null</code> for the first element of the entry schema
+     * @param rootNamespace namespace of the root element, or <code>null</code> to infer it
+     * @return the processor factory
+     * @throws IOException           if a schema cannot be read
+     * @throws SmooksConfigException if the schema set has errors
+     */
+    public static ProcessorFactory compileSource(final URI schemaUri, final String rootName, final String rootNamespace) throws IOException {
+        final Compiler compiler = Daffodil.compiler();
+        final ProcessorFactory processorFactory = rootName == null ? compiler.compileSource(schemaUri) : compiler.compileSource(schemaUri, rootName, rootNamespace);
+        if (processorFactory.isError()) {
+            throw new SmooksConfigException(toMessage(schemaUri, processorFactory.getDiagnostics()));
+        }
+
+        return processorFactory;
+    }
+
+    /**
+     * Compiles a schema set into a processor.
+     *
+     * @param schemaUri     entry schema URI
+     * @param rootName      name of the root element, or <code>null</code> for the first element of the entry schema
+     * @param rootNamespace namespace of the root element, or <code>null</code> to infer it
+     * @return the compiled processor, without external variables or a validation mode
+     * @throws IOException           if a schema cannot be read
+     * @throws SmooksConfigException if the schema set has errors
+     */
+    public static DataProcessor compile(final URI schemaUri, final String rootName, final String rootNamespace) throws IOException {
+        final DataProcessor dataProcessor = compileSource(schemaUri, rootName, rootNamespace).onPath("/");
+        if (dataProcessor.isError()) {
+            throw new SmooksConfigException(toMessage(schemaUri, dataProcessor.getDiagnostics()));
+        }
+
+        return dataProcessor;
+    }
+
+    /**
+     * Saves a compiled processor. The file is written under a temporary name and then moved into place, so that
+     * concurrent readers never see a partially written processor.
+     *
+     * @param dataProcessor      the compiled processor
+     * @param compiledSchemaFile the file to save to
+     * @throws IOException if the processor cannot be saved
+     */
+    public static void save(final DataProcessor dataProcessor, final File compiledSchemaFile) throws IOException {
+        Files.createDirectories(compiledSchemaFile.getAbsoluteFile().getParentFile().toPath());
+        final Path tempFile = Files.createTempFile(compiledSchemaFile.getAbsoluteFile().getParentFile().toPath(), compiledSchemaFile.getName(), ".tmp");
+        try {
+            try (FileChannel fileChannel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                dataProcessor.save(fileChannel);
+            }
+            Files.move(tempFile, compiledSchemaFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static String toMessage(final URI schemaUri, final List<Diagnostic> diagnostics) {
+        return "Failed to compile schema [" + schemaUri + "]: " + diagnostics.stream().filter(Diagnostic::isError).map(Diagnostic::getMessage).collect(Collectors.joining(System.lineSeparator()));
+    }
+}
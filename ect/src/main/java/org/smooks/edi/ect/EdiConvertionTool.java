@@ -55,12 +55,23 @@ import org.smooks.edi.edisax.archive.Archive;
 import org.smooks.edi.edisax.interchange.EdiDirectory;
 import org.smooks.edi.edisax.model.internal.*;
 import org.smooks.edi.edisax.util.EDIUtils;
+import org.smooks.support.FileUtils;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -76,6 +87,7 @@ import java.util.zip.ZipOutputStream;
 public class EdiConvertionTool {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(EdiConvertionTool.class);
+    private static final int MAX_PENDING_MODELS = Runtime.getRuntime().availableProcessors() * 2;
 
     /**
      * Write an EDI Mapping Model configuration set from a UN/EDIFACT
@@ -127,11 +139,17 @@ public class EdiConvertionTool {
             throw new EdiParseException("Error opening zip file containing the Un/Edifact specification '" + specification.getAbsoluteFile() + "'.", e);
         }
 
-        return createArchive(new UnEdifactDirectoryParser(definitionZipStream, true, true), urn, messages);
+        Archive archive = new Archive(Archive.StorageMode.IN_MEMORY);
+        writeModelSet(new UnEdifactDirectoryParser(definitionZipStream, true, true), urn, archive::addEntry, messages);
+
+        return archive;
     }
 
     /**
      * Write an EDI Mapping Model configuration set from the specified EDI Specification Reader.
+     * <p/>
+     * Each generated entry is written to the zip stream as soon as it is available.
+     *
      * @param directoryParser The configuration reader for the EDI interchange configuration set.
      * @param modelSetOutStream The EDI Mapping Model output Stream.
      * @param urn The URN for the EDI Mapping model configuration set.
@@ -142,10 +160,12 @@ public class EdiConvertionTool {
         AssertArgument.isNotNull(modelSetOutStream, "modelSetOutStream");
 
         try {
-            Archive archive = createArchive(directoryParser, urn);
-
-            // Now output the generated archive...
-            archive.toOutputStream(modelSetOutStream);
+            writeModelSet(directoryParser, urn, (path, data) -> {
+                modelSetOutStream.putNextEntry(new ZipEntry(path));
+                modelSetOutStream.write(data);
+                modelSetOutStream.closeEntry();
+            });
+            modelSetOutStream.flush();
         } catch (Throwable t) {
             LOGGER.error("Error while generating EDI Mapping Model archive for '" + urn + "'.", t);
         } finally {
@@ -172,6 +192,9 @@ public class EdiConvertionTool {
 
     /**
      * Write an EDI Mapping Model configuration set from the specified EDI Specification Reader.
+     * <p/>
+     * Each generated entry is written to the output folder as soon as it is available.
+     *
      * @param directoryParser The configuration reader for the EDI interchange configuration set.
      * @param modelSetOutFolder The output folder for the generated EDI Mapping Model configuration set.
      * @param urn The URN for the EDI Mapping model configuration set.
@@ -181,28 +204,39 @@ public class EdiConvertionTool {
         AssertArgument.isNotNull(directoryParser, "ediSpecificationReader");
         AssertArgument.isNotNull(modelSetOutFolder, "modelSetOutFolder");
 
-        Archive archive = createArchive(directoryParser, urn);
+        if(modelSetOutFolder.isFile()) {
+            throw new IOException("Cannot write EDI Mapping Model entries to '" + modelSetOutFolder.getAbsolutePath() + "'.  This is a normal file i.e. not a directory.");
+        }
+
+        writeModelSet(directoryParser, urn, (path, data) -> {
+            File entryFile = new File(modelSetOutFolder, path);
 
-        // Now output the generated archive...
-        archive.toFileSystem(modelSetOutFolder);
+            entryFile.getParentFile().mkdirs();
+            FileUtils.writeFile(data, entryFile);
+        });
     }
 
-    private static Archive createArchive(DirectoryParser directoryParser, String urn, String... messages) throws IOException {
-        Archive archive = new Archive();
+    private static void writeModelSet(DirectoryParser directoryParser, String urn, ModelSetWriter modelSetWriter, String... messages) throws IOException {
+        Set<String> entryPaths = new HashSet<String>();
+        ModelSetWriter writer = (path, data) -> {
+            // A zip stream rejects a repeated entry, so the first entry written to a path wins on every target...
+            if (entryPaths.add(path)) {
+                modelSetWriter.writeEntry(path, data);
+            } else {
+                LOGGER.warn("Skipping duplicate EDI Mapping Model entry '" + path + "'.");
+            }
+        };
         StringBuilder modelListBuilder = new StringBuilder();
-        StringWriter messageEntryWriter = new StringWriter();
         String pathPrefix = urn.replace(".", "_").replace(":", "/");
 
         Edimap edimap = UnEdifactDefinitionReader.parse(directoryParser);
         EdiDirectory ediDirectory = directoryParser.getEdiDirectory(edimap, messages);
 
-        // Add the common model...
-        addModel(ediDirectory.getCommonModel(), pathPrefix, modelListBuilder, messageEntryWriter, archive);
-
-        // Add each of the messages...
-        for(Edimap messageModel : ediDirectory.getMessageModels()) {
-            addModel(messageModel, pathPrefix, modelListBuilder, messageEntryWriter, archive);
-        }
+        // Add the common model, followed by each of the messages...
+        List<Edimap> models = new ArrayList<Edimap>();
+        models.add(ediDirectory.getCommonModel());
+        models.addAll(ediDirectory.getMessageModels());
+        addModels(models, pathPrefix, modelListBuilder, writer);
 
         // Now create XML Schemas
         Set<EPackage> packages = new ECoreGenerator().generatePackages(ediDirectory);
@@ -210,14 +244,13 @@ public class EdiConvertionTool {
         if (urn.lastIndexOf(':') > 0) {
         	pluginID = urn.substring(0, urn.lastIndexOf(':')).replace(':', '.').toLowerCase();
         }
-        Archive schemas = SchemaConverter.INSTANCE.createArchive(packages, pluginID, pathPrefix);
-        archive.merge(schemas);
+        SchemaConverter.INSTANCE.writeSchemas(packages, pluginID, pathPrefix, writer);
 
         // Add the generated mapping model to the archive...
-        archive.addEntry(EDIUtils.EDI_MAPPING_MODEL_ZIP_LIST_FILE, modelListBuilder.toString());
+        writer.writeEntry(EDIUtils.EDI_MAPPING_MODEL_ZIP_LIST_FILE, modelListBuilder.toString().getBytes(StandardCharsets.UTF_8));
 
         // Add the model set URN to the archive...
-        archive.addEntry(EDIUtils.EDI_MAPPING_MODEL_URN, urn);
+        writer.writeEntry(EDIUtils.EDI_MAPPING_MODEL_URN, urn.getBytes(StandardCharsets.UTF_8));
 
         // Add an entry for the interchange properties...
         Properties interchangeProperties = directoryParser.getInterchangeProperties();
@@ -225,24 +258,64 @@ public class EdiConvertionTool {
         try {
             interchangeProperties.store(propertiesOutStream, "UN/EDIFACT Interchange Properties");
             propertiesOutStream.flush();
-            archive.addEntry(EDIUtils.EDI_MAPPING_MODEL_INTERCHANGE_PROPERTIES_FILE, propertiesOutStream.toByteArray());
+            writer.writeEntry(EDIUtils.EDI_MAPPING_MODEL_INTERCHANGE_PROPERTIES_FILE, propertiesOutStream.toByteArray());
         } finally {
             propertiesOutStream.close();
         }
+    }
 
-        return archive;
+    /**
+     * Serialize the models on a worker pool and write them out in list order.  At most
+     * {@link #MAX_PENDING_MODELS} serialized models are held in memory at any one time.
+     */
+    private static void addModels(List<Edimap> models, String pathPrefix, StringBuilder modelListBuilder, ModelSetWriter writer) throws IOException {
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(MAX_PENDING_MODELS, Math.max(1, models.size())));
+        Deque<Future<byte[]>> pendingModels = new ArrayDeque<Future<byte[]>>();
+        int nextModel = 0;
+
+        try {
+            for (final Edimap model : models) {
+                pendingModels.add(executorService.submit(() -> serializeModel(model)));
+                if (pendingModels.size() >= MAX_PENDING_MODELS) {
+                    addModel(models.get(nextModel++), pathPrefix, modelListBuilder, getModel(pendingModels.remove()), writer);
+                }
+            }
+            while (!pendingModels.isEmpty()) {
+                addModel(models.get(nextModel++), pathPrefix, modelListBuilder, getModel(pendingModels.remove()), writer);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
     }
 
-    private static void addModel(Edimap model, String pathPrefix, StringBuilder modelListBuilder, StringWriter messageEntryWriter, Archive archive) throws IOException {
+    private static byte[] serializeModel(Edimap model) throws IOException {
+        ByteArrayOutputStream modelOutStream = new ByteArrayOutputStream();
+
+        model.write(new OutputStreamWriter(modelOutStream, StandardCharsets.UTF_8));
+
+        return modelOutStream.toByteArray();
+    }
+
+    private static byte[] getModel(Future<byte[]> pendingModel) throws IOException {
+        try {
+            return pendingModel.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while generating EDI Mapping Model.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error generating EDI Mapping Model.", e.getCause());
+        }
+    }
+
+    private static void addModel(Edimap model, String pathPrefix, StringBuilder modelListBuilder, byte[] modelBytes, ModelSetWriter writer) throws IOException {
         Description modelDesc = model.getDescription();
         String messageEntryPath = pathPrefix + "/" + modelDesc.getName() + ".xml";
 
-        // Generate the mapping model for this message...
-        messageEntryWriter.getBuffer().setLength(0);
-        model.write(messageEntryWriter);
-
         // Add the generated mapping model to the archive...
-        archive.addEntry(messageEntryPath, messageEntryWriter.toString());
+        writer.writeEntry(messageEntryPath, modelBytes);
 
         // Add this messages archive entry to the mapping model list file...
         modelListBuilder.append("/" + messageEntryPath);
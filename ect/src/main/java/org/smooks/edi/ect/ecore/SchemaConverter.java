@@ -51,6 +51,7 @@ import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.eclipse.emf.ecore.util.ExtendedMetaData;
 import org.eclipse.xsd.XSDSchema;
 import org.eclipse.xsd.util.XSDResourceFactoryImpl;
+import org.smooks.edi.ect.ModelSetWriter;
 import org.smooks.edi.edisax.archive.Archive;
 import org.smooks.edi.edisax.model.internal.Edimap;
 import org.slf4j.Logger;
@@ -60,8 +61,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.HashSet;
 import java.util.Set;
 
 public class SchemaConverter {
@@ -93,7 +96,20 @@ public class SchemaConverter {
 				.getTime());
 
 		Archive archive = new Archive(pluginID + "_1.0.0.v" + qualifier
-				+ ".jar");
+				+ ".jar", Archive.StorageMode.IN_MEMORY);
+		writeSchemas(packages, pluginID, pathPrefix, archive::addEntry);
+
+		return archive;
+	}
+
+	/**
+	 * Convert the packages to XML Schemas and write each schema to the supplied
+	 * {@link ModelSetWriter} as soon as it is generated, followed by the
+	 * {@link #FRAGMENT_XML_ENTRY} catalog entry.
+	 */
+	public void writeSchemas(Set<EPackage> packages, String pluginID, String pathPrefix, ModelSetWriter writer)
+			throws IOException {
+		Set<String> entryPaths = new HashSet<String>();
 		StringBuilder pluginBuilder = new StringBuilder(
 				"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
 						+ "<?eclipse version=\"3.0\"?>\n" + "<plugin>\n");
@@ -106,18 +122,14 @@ public class SchemaConverter {
 			EObject obj = resource.getContents().get(0);
 			String fileName = resource.getURI().lastSegment();
 			String ecoreEntryPath = pathPrefix + "/" + fileName;
-			xmlExtension.append(saveSchema(archive, ecoreEntryPath, resource,
+			xmlExtension.append(saveSchema(writer, entryPaths, ecoreEntryPath, resource,
 					((XSDSchema) obj).getTargetNamespace(), pluginID));
-			// Save memory
-			System.gc();
 		}
 
 		xmlExtension.append("\t</catalogContribution></extension>\n");
 		pluginBuilder.append(xmlExtension);
 		pluginBuilder.append("</plugin>");
-		archive.addEntry(FRAGMENT_XML_ENTRY, pluginBuilder.toString());
-
-		return archive;
+		writer.writeEntry(FRAGMENT_XML_ENTRY, pluginBuilder.toString().getBytes(StandardCharsets.UTF_8));
 	}
 
 	private Resource addSchemaResource(ResourceSet rs, EPackage pkg) {
@@ -145,17 +157,17 @@ public class SchemaConverter {
 		return xsd;
 	}
 
-	private String saveSchema(Archive archive, String entryPath,
+	private String saveSchema(ModelSetWriter writer, Set<String> entryPaths, String entryPath,
 			Resource resource, String ns, String pluginID) {
 		StringBuilder result = new StringBuilder();
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		LOGGER.info("Saving XML Schema " + ns);
 		try {
 			resource.save(out, null);
-			if (archive.getEntries().containsKey(entryPath)) {
+			if (!entryPaths.add(entryPath)) {
 				throw new RuntimeException("Duplicate entry " + entryPath);
 			}
-			archive.addEntry(entryPath, out.toByteArray());
+			writer.writeEntry(entryPath, out.toByteArray());
 			result.append("\t<uri name=\"");
 			result.append(ns);
 			result.append("\" uri=\"platform:/fragment/" + pluginID + "/");
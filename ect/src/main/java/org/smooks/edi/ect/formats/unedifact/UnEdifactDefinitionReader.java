@@ -72,7 +72,7 @@ public class UnEdifactDefinitionReader {
         edimap.setCompositeDataElements(Arrays.asList(composites.values().toArray(new Field[]{})));
         edimap.setDescription((Description) EDIUtils.MODEL_SET_DEFINITIONS_DESCRIPTION.clone());
         edimap.getSegments().setXmltag("DefinitionMap");
-        edimap.setDelimiters(UNEdifactInterchangeParser.defaultUNEdifactDelimiters);
+        edimap.setDelimiters((Delimiters) UNEdifactInterchangeParser.defaultUNEdifactDelimiters.clone());
 
         addMissingDefinitions(edimap);
         edimap.getDescription().setNamespace(ControlBlockHandlerFactory.NAMESPACE_ROOT + ":un:" + directoryParser.getVersion() + ":common");
@@ -49,12 +49,24 @@ import org.smooks.edi.ect.formats.unedifact.UnEdifactDefinitionReader;
 import org.smooks.edi.edisax.EDIConfigurationException;
 import org.smooks.edi.edisax.model.EDIConfigDigester;
 import org.smooks.edi.edisax.model.internal.Edimap;
+import org.smooks.edi.edisax.util.EDIUtils;
+import org.smooks.support.FileUtils;
+import org.smooks.support.StreamUtils;
 import org.xml.sax.SAXException;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 /**
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
@@ -98,4 +110,51 @@ public class UnEdifact_EdiConvertionTool_Test {
 
         EDIConfigDigester.digestConfig(new ByteArrayInputStream(serializedMap.toByteArray()));
     }
+
+	@Test
+    public void test_D93A_streamed_zip_and_folder() throws IOException, EDIConfigurationException, SAXException {
+        String urn = "org.smooks.edi.unedifact:d93a:1.0-SNAPSHOT";
+        ByteArrayOutputStream modelSetZip = new ByteArrayOutputStream();
+        File modelSetFolder = new File("./target/D93A-mapping-model");
+
+        if (modelSetFolder.exists()) {
+            FileUtils.deleteDir(modelSetFolder);
+        }
+        EdiConvertionTool.fromSpec(new D93ADirectoryParser(new ZipInputStream(getClass().getResourceAsStream("/d93a.zip")), false, true), new ZipOutputStream(modelSetZip), urn);
+        EdiConvertionTool.fromSpec(new D93ADirectoryParser(new ZipInputStream(getClass().getResourceAsStream("/d93a.zip")), false, true), modelSetFolder, urn);
+
+        // Every entry is written once, whatever the target.  The generated XML Schemas and their catalog are not byte for byte stable...
+        Map<String, byte[]> zipEntries = readZip(modelSetZip.toByteArray());
+        assertEquals(urn, new String(zipEntries.get(EDIUtils.EDI_MAPPING_MODEL_URN), StandardCharsets.UTF_8));
+        for (Map.Entry<String, byte[]> zipEntry : zipEntries.entrySet()) {
+            File entryFile = new File(modelSetFolder, zipEntry.getKey());
+            assertTrue(entryFile.isFile(), zipEntry.getKey());
+            if (zipEntry.getKey().endsWith(".xml") && !zipEntry.getKey().equals("fragment.xml")) {
+                assertArrayEquals(zipEntry.getValue(), FileUtils.readFile(entryFile), zipEntry.getKey());
+            }
+        }
+
+        // Every model in the model list is in the zip and can be read back...
+        String modelList = new String(zipEntries.get(EDIUtils.EDI_MAPPING_MODEL_ZIP_LIST_FILE), StandardCharsets.UTF_8);
+        assertTrue(modelList.contains("!INVOIC!"));
+        for (String model : modelList.split("\n")) {
+            byte[] modelBytes = zipEntries.get(model.substring(1, model.indexOf('!')));
+            assertNotNull(modelBytes, model);
+        }
+        byte[] invoic = zipEntries.get("org_smooks_edi_unedifact/d93a/1_0-SNAPSHOT/INVOIC.xml");
+        assertEquals("INVOIC", EDIConfigDigester.digestConfig(new ByteArrayInputStream(invoic)).getDescription().getName());
+    }
+
+    private Map<String, byte[]> readZip(byte[] zip) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+                assertTrue(entries.put(zipEntry.getName(), StreamUtils.readStream(zipInputStream)) == null, zipEntry.getName());
+            }
+        }
+
+        return entries;
+    }
 }
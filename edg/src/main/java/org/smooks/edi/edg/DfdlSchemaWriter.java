@@ -0,0 +1,238 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edg
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edg;
+
+import org.smooks.edi.edg.template.Template;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Comment;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Writes a {@link Template} to a file as indented XML. The template is rendered on a separate thread into a pipe that
+ * is read back as StAX events, so whitespace-only text is dropped and the document re-indented without ever holding
+ * the whole schema in memory.
+ */
+final class DfdlSchemaWriter {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final String INDENT = "    ";
+    private static final int PIPE_SIZE = 64 * 1024;
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    private DfdlSchemaWriter() {
+
+    }
+
+    static void write(final Template template, final File file) throws IOException, XMLStreamException {
+        final PipedWriter pipedWriter = new PipedWriter();
+        final PipedReader pipedReader = new PipedReader(pipedWriter, PIPE_SIZE);
+        final Throwable[] renderFailure = new Throwable[1];
+        final Thread renderThread = new Thread(() -> {
+            try (Writer writer = pipedWriter) {
+                template.materialise(writer);
+            } catch (Throwable t) {
+                renderFailure[0] = t;
+            }
+        }, "edg-render-" + file.getName());
+        renderThread.setDaemon(true);
+        renderThread.start();
+
+        try (Reader reader = pipedReader; OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(file))) {
+            final XMLEventReader xmlEventReader = XML_INPUT_FACTORY.createXMLEventReader(reader);
+            final XMLStreamWriter xmlStreamWriter = XML_OUTPUT_FACTORY.createXMLStreamWriter(outputStream, StandardCharsets.UTF_8.name());
+            try {
+                write(xmlEventReader, xmlStreamWriter);
+            } finally {
+                xmlEventReader.close();
+                xmlStreamWriter.close();
+            }
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            joinQuietly(renderThread);
+            if (renderFailure[0] != null) {
+                // the truncated document is a symptom of the rendering failure so report the latter
+                final IOException renderException = new IOException("Failed to render " + template.getName(), renderFailure[0]);
+                renderException.addSuppressed(e);
+                throw renderException;
+            }
+            throw e;
+        }
+
+        joinQuietly(renderThread);
+        if (renderFailure[0] != null) {
+            throw new IOException("Failed to render " + template.getName(), renderFailure[0]);
+        }
+    }
+
+    private static void write(final XMLEventReader xmlEventReader, final XMLStreamWriter xmlStreamWriter) throws XMLStreamException {
+        // one entry per open element: whether it has child nodes which were written on their own line
+        final Deque<Boolean> hasChildNodes = new ArrayDeque<>();
+        while (xmlEventReader.hasNext()) {
+            final XMLEvent xmlEvent = xmlEventReader.nextEvent();
+            switch (xmlEvent.getEventType()) {
+                case XMLEvent.START_DOCUMENT:
+                    xmlStreamWriter.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+                    break;
+                case XMLEvent.START_ELEMENT:
+                    skipWhitespace(xmlEventReader);
+                    final boolean isEmpty = xmlEventReader.hasNext() && xmlEventReader.peek().isEndElement();
+                    newLine(xmlStreamWriter, hasChildNodes);
+                    writeStartElement(xmlEvent.asStartElement(), isEmpty, xmlStreamWriter);
+                    if (isEmpty) {
+                        xmlEventReader.nextEvent();
+                    } else {
+                        hasChildNodes.push(false);
+                    }
+                    break;
+                case XMLEvent.END_ELEMENT:
+                    if (hasChildNodes.pop()) {
+                        newLine(xmlStreamWriter, hasChildNodes.size());
+                    }
+                    xmlStreamWriter.writeEndElement();
+                    break;
+                case XMLEvent.CHARACTERS:
+                case XMLEvent.CDATA:
+                case XMLEvent.SPACE:
+                    final Characters characters = xmlEvent.asCharacters();
+                    if (!characters.isWhiteSpace() && !hasChildNodes.isEmpty()) {
+                        xmlStreamWriter.writeCharacters(characters.getData());
+                    }
+                    break;
+                case XMLEvent.COMMENT:
+                    newLine(xmlStreamWriter, hasChildNodes);
+                    xmlStreamWriter.writeComment(((Comment) xmlEvent).getText());
+                    break;
+                case XMLEvent.PROCESSING_INSTRUCTION:
+                    final ProcessingInstruction processingInstruction = (ProcessingInstruction) xmlEvent;
+                    newLine(xmlStreamWriter, hasChildNodes);
+                    xmlStreamWriter.writeProcessingInstruction(processingInstruction.getTarget(), processingInstruction.getData());
+                    break;
+                case XMLEvent.END_DOCUMENT:
+                    xmlStreamWriter.writeCharacters("\n");
+                    xmlStreamWriter.writeEndDocument();
+                    break;
+                default:
+                    break;
+            }
+        }
+        xmlStreamWriter.flush();
+    }
+
+    private static void writeStartElement(final StartElement startElement, final boolean isEmpty, final XMLStreamWriter xmlStreamWriter) throws XMLStreamException {
+        final String prefix = startElement.getName().getPrefix();
+        final String localPart = startElement.getName().getLocalPart();
+        final String namespaceUri = startElement.getName().getNamespaceURI();
+        if (isEmpty) {
+            xmlStreamWriter.writeEmptyElement(prefix, localPart, namespaceUri);
+        } else {
+            xmlStreamWriter.writeStartElement(prefix, localPart, namespaceUri);
+        }
+
+        for (Iterator<?> namespaces = startElement.getNamespaces(); namespaces.hasNext(); ) {
+            final Namespace namespace = (Namespace) namespaces.next();
+            if (namespace.isDefaultNamespaceDeclaration()) {
+                xmlStreamWriter.writeDefaultNamespace(namespace.getNamespaceURI());
+            } else {
+                xmlStreamWriter.writeNamespace(namespace.getPrefix(), namespace.getNamespaceURI());
+            }
+        }
+        for (Iterator<?> attributes = startElement.getAttributes(); attributes.hasNext(); ) {
+            final Attribute attribute = (Attribute) attributes.next();
+            xmlStreamWriter.writeAttribute(attribute.getName().getPrefix(), attribute.getName().getNamespaceURI(), attribute.getName().getLocalPart(), attribute.getValue());
+        }
+    }
+
+    private static void skipWhitespace(final XMLEventReader xmlEventReader) throws XMLStreamException {
+        while (xmlEventReader.hasNext()) {
+            final XMLEvent nextEvent = xmlEventReader.peek();
+            if (nextEvent.isCharacters() && nextEvent.asCharacters().isWhiteSpace()) {
+                xmlEventReader.nextEvent();
+            } else {
+                break;
+            }
+        }
+    }
+
+    private static void newLine(final XMLStreamWriter xmlStreamWriter, final Deque<Boolean> hasChildNodes) throws XMLStreamException {
+        if (!hasChildNodes.isEmpty()) {
+            hasChildNodes.pop();
+            hasChildNodes.push(true);
+        }
+        newLine(xmlStreamWriter, hasChildNodes.size());
+    }
+
+    private static void newLine(final XMLStreamWriter xmlStreamWriter, final int depth) throws XMLStreamException {
+        final StringBuilder indentation = new StringBuilder(1 + depth * INDENT.length()).append('\n');
+        for (int i = 0; i < depth; i++) {
+            indentation.append(INDENT);
+        }
+        xmlStreamWriter.writeCharacters(indentation.toString());
+    }
+
+    private static void joinQuietly(final Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
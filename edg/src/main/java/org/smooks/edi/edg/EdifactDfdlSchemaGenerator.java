@@ -42,9 +42,6 @@
  */
 package org.smooks.edi.edg;
 
-import org.apache.daffodil.japi.Daffodil;
-import org.apache.daffodil.japi.Diagnostic;
-import org.apache.daffodil.japi.ProcessorFactory;
 import org.smooks.edi.ect.DirectoryParser;
 import org.smooks.edi.ect.formats.unedifact.UnEdifactDefinitionReader;
 import org.smooks.edi.edg.template.InterchangeTemplate;
@@ -53,35 +50,51 @@ import org.smooks.edi.edg.template.SegmentsTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.smooks.edi.edisax.model.internal.Edimap;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
+import org.smooks.edi.schemas.DfdlSchemaCompiler;
+import org.smooks.edi.schemas.Sha256;
+
 import java.io.*;
 import java.lang.reflect.Constructor;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipInputStream;
 
 public final class EdifactDfdlSchemaGenerator {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(EdifactDfdlSchemaGenerator.class);
-    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
-    private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+    /**
+     * System property naming a directory which, when set, has the generator also save a compiled Daffodil parser of
+     * each interchange schema there, as <code>&lt;version&gt;/EDIFACT-Interchange.dfdl.bin</code>.
+     */
+    public static final String PRECOMPILED_DIRECTORY_PROPERTY = "org.smooks.edi.edg.precompiledDirectory";
 
+    /**
+     * System property naming the directory the generator keeps its up-to-date stamps in. Defaults to the
+     * <code>.edg</code> subdirectory of the output directory.
+     */
+    public static final String STAMP_DIRECTORY_PROPERTY = "org.smooks.edi.edg.stampDirectory";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EdifactDfdlSchemaGenerator.class);
+    private static final List<String> TEMPLATES = Arrays.asList("EDIFACT-Templates/EDIFACT-Segments.dfdl.xsd.mustache",
+            "EDIFACT-Templates/EDISegmentSequenceFormat.xsd.mustache",
+            "EDIFACT-Templates/EDISegmentPartRepeatSequenceFormat.xsd.mustache",
+            "EDIFACT-Templates/EDIFACT-Messages.dfdl.xsd.mustache",
+            "EDIFACT-Templates/MessageSegment.xsd.mustache",
+            "EDIFACT-Templates/MessageSegmentGroup.xsd.mustache",
+            "EDIFACT-Common/EDIFACT-Interchange.dfdl.xsd.mustache");
+    private static final String DEFAULT_STAMP_DIRECTORY = ".edg";
+    private static final String DIGEST_STAMP_PROPERTY = "digest";
+    private static final String VERSION_STAMP_PROPERTY = "version";
 
     private EdifactDfdlSchemaGenerator() {
 
@@ -103,9 +116,31 @@ public final class EdifactDfdlSchemaGenerator {
     }
 
     private static void generateDfdlSchemas(final String directoryPath, final String directoryParserImpl, final String outputDirectory) throws Throwable {
-        final InputStream resourceAsStream = EdifactDfdlSchemaGenerator.class.getResourceAsStream(directoryPath);
+        final byte[] directory = read(directoryPath);
+        final String digest = digest(directory, directoryParserImpl);
+        final String stampDirectory = System.getProperty(STAMP_DIRECTORY_PROPERTY, outputDirectory + "/" + DEFAULT_STAMP_DIRECTORY);
+        final String precompiledDirectory = System.getProperty(PRECOMPILED_DIRECTORY_PROPERTY);
+        final File stampFile = new File(stampDirectory + "/" + new File(directoryPath).getName() + ".properties");
+        final Properties stamp = readStamp(stampFile);
+        if (digest.equals(stamp.getProperty(DIGEST_STAMP_PROPERTY))) {
+            final String versionOutputDirectory = outputDirectory + "/" + stamp.getProperty(VERSION_STAMP_PROPERTY);
+            final File segmentSchemaFile = new File(versionOutputDirectory + "/EDIFACT-Segments.dfdl.xsd");
+            final File messageSchemaFile = new File(versionOutputDirectory + "/EDIFACT-Messages.dfdl.xsd");
+            final File interchangeSchemaFile = new File(versionOutputDirectory + "/EDIFACT-Interchange.dfdl.xsd");
+            if (segmentSchemaFile.exists() && messageSchemaFile.exists() && interchangeSchemaFile.exists()) {
+                LOGGER.info("Skipping unchanged directory {}", directoryPath);
+                if (precompiledDirectory != null) {
+                    final File precompiledSchemaFile = new File(precompiledDirectory + "/" + stamp.getProperty(VERSION_STAMP_PROPERTY) + "/EDIFACT-Interchange.dfdl.bin");
+                    if (!precompiledSchemaFile.exists()) {
+                        precompile(interchangeSchemaFile, precompiledSchemaFile);
+                    }
+                }
+                return;
+            }
+        }
+
         final Constructor<?> directoryParserClassConstructor = Class.forName(directoryParserImpl).getConstructor(ZipInputStream.class, boolean.class, boolean.class);
-        final DirectoryParser directoryParser = (DirectoryParser) directoryParserClassConstructor.newInstance(new ZipInputStream(resourceAsStream), true, true);
+        final DirectoryParser directoryParser = (DirectoryParser) directoryParserClassConstructor.newInstance(new ZipInputStream(new ByteArrayInputStream(directory)), true, true);
 
         final Edimap edimap = UnEdifactDefinitionReader.parse(directoryParser);
         final String[] namespace = edimap.getDescription().getNamespace().split(":");
@@ -115,60 +150,107 @@ public final class EdifactDfdlSchemaGenerator {
         new File(versionOutputDirectory).mkdirs();
 
         final File segmentSchemaFile = new File(versionOutputDirectory + "/EDIFACT-Segments.dfdl.xsd");
-        if (segmentSchemaFile.exists()) {
-            LOGGER.info("Skipping existing schema " + segmentSchemaFile.getAbsolutePath());
-        } else {
-            final String segmentsSchema = new SegmentsTemplate(version, edimap).materialise();
-            write(segmentsSchema, segmentSchemaFile);
-        }
+        DfdlSchemaWriter.write(new SegmentsTemplate(version, edimap), segmentSchemaFile);
 
         final MessagesTemplate messagesTemplate = new MessagesTemplate(version, directoryParser, edimap);
         final File messageSchemaFile = new File(versionOutputDirectory + "/EDIFACT-Messages.dfdl.xsd");
-        if (messageSchemaFile.exists()) {
-            LOGGER.info("Skipping existing schema " + messageSchemaFile.getAbsolutePath());
-        } else {
-            final String messagesSchema = messagesTemplate.materialise();
-            write(messagesSchema, messageSchemaFile);
+        DfdlSchemaWriter.write(messagesTemplate, messageSchemaFile);
+
+        final File interchangeSchemaFile = new File(versionOutputDirectory + "/EDIFACT-Interchange.dfdl.xsd");
+        DfdlSchemaWriter.write(new InterchangeTemplate(version, messagesTemplate.getMessageTypes()), interchangeSchemaFile);
 
+        if (precompiledDirectory != null) {
+            // compiling the interchange schema compiles the imported messages schema so it doubles as validation
+            precompile(interchangeSchemaFile, new File(precompiledDirectory + "/" + version.toLowerCase() + "/EDIFACT-Interchange.dfdl.bin"));
+        } else {
             LOGGER.info("Validating schema {}...", messageSchemaFile.getPath());
-            final ProcessorFactory processorFactory = Daffodil.compiler().compileFile(messageSchemaFile);
-            for (Diagnostic diagnostic : processorFactory.getDiagnostics()) {
-                if (diagnostic.isError()) {
-                    throw diagnostic.getSomeCause();
-                }
-            }
+            DfdlSchemaCompiler.compileSource(messageSchemaFile.toURI(), null, null);
         }
 
-        final File interchangeSchemaFile = new File(versionOutputDirectory + "/EDIFACT-Interchange.dfdl.xsd");
-        if (interchangeSchemaFile.exists()) {
-            LOGGER.info("Skipping existing schema " + interchangeSchemaFile.getAbsolutePath());
-        } else {
-            String interchangeSchema = new InterchangeTemplate(version, messagesTemplate.getMessageTypes()).materialise();
-            write(interchangeSchema, interchangeSchemaFile);
+        stamp.setProperty(DIGEST_STAMP_PROPERTY, digest);
+        stamp.setProperty(VERSION_STAMP_PROPERTY, version.toLowerCase());
+        writeStamp(stamp, stampFile);
+    }
+
+    private static byte[] read(final String resource) throws IOException {
+        try (InputStream inputStream = EdifactDfdlSchemaGenerator.class.getResourceAsStream(resource)) {
+            if (inputStream == null) {
+                throw new FileNotFoundException(resource);
+            }
+            final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                byteArrayOutputStream.write(buffer, 0, length);
+            }
+            return byteArrayOutputStream.toByteArray();
         }
     }
 
-    private static void write(final String xml, final File file) throws ParserConfigurationException, IOException, SAXException, XPathExpressionException, TransformerException {
-        final DocumentBuilder documentBuilder = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
-        final Document document = documentBuilder.parse(new ByteArrayInputStream(xml.getBytes()));
-        stripWhitespaceTextNodes(document);
+    private static String digest(final byte[] directory, final String directoryParserImpl) throws IOException, ClassNotFoundException {
+        final MessageDigest messageDigest = Sha256.newMessageDigest();
+        messageDigest.update(directoryParserImpl.getBytes(StandardCharsets.UTF_8));
+        messageDigest.update(directory);
+        for (String template : TEMPLATES) {
+            messageDigest.update(template.getBytes(StandardCharsets.UTF_8));
+            messageDigest.update(read("/" + template));
+        }
+        updateWithCode(messageDigest, EdifactDfdlSchemaGenerator.class, DirectoryParser.class, Edimap.class, Class.forName(directoryParserImpl));
+
+        return Sha256.toHex(messageDigest);
+    }
 
-        final Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty("{http://xml.apache.org/xalan}indent-amount", "4");
+    /**
+     * Hashes the code the schemas are generated with: the jar, or the class files of the classes directory, each of the
+     * given classes is loaded from. A rebuilt generator or directory parser thus invalidates the stamps even when its
+     * version is unchanged.
+     */
+    private static void updateWithCode(final MessageDigest messageDigest, final Class<?>... classes) throws IOException {
+        final Set<Path> codeSources = new LinkedHashSet<>();
+        for (Class<?> clazz : classes) {
+            try {
+                codeSources.add(Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()));
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
 
-        final FileWriter fileWriter = new FileWriter(file);
-        transformer.transform(new DOMSource(document), new StreamResult(fileWriter));
+        for (Path codeSource : codeSources) {
+            if (Files.isDirectory(codeSource)) {
+                final List<Path> classFiles;
+                try (Stream<Path> paths = Files.walk(codeSource)) {
+                    classFiles = paths.filter(path -> path.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+                }
+                for (Path classFile : classFiles) {
+                    messageDigest.update(codeSource.relativize(classFile).toString().getBytes(StandardCharsets.UTF_8));
+                    messageDigest.update(Files.readAllBytes(classFile));
+                }
+            } else {
+                messageDigest.update(Files.readAllBytes(codeSource));
+            }
+        }
     }
 
-    private static void stripWhitespaceTextNodes(final Document document) throws XPathExpressionException {
-        final XPathFactory xpathFactory = XPathFactory.newInstance();
-        final XPathExpression xpathExp = xpathFactory.newXPath().compile("//text()[normalize-space(.) = '']");
-        final NodeList emptyTextNodes = (NodeList) xpathExp.evaluate(document, XPathConstants.NODESET);
+    private static Properties readStamp(final File stampFile) throws IOException {
+        final Properties stamp = new Properties();
+        if (stampFile.exists()) {
+            try (InputStream inputStream = new FileInputStream(stampFile)) {
+                stamp.load(inputStream);
+            }
+        }
 
-        for (int i = 0; i < emptyTextNodes.getLength(); i++) {
-            final Node emptyTextNode = emptyTextNodes.item(i);
-            emptyTextNode.getParentNode().removeChild(emptyTextNode);
+        return stamp;
+    }
+
+    private static void writeStamp(final Properties stamp, final File stampFile) throws IOException {
+        stampFile.getParentFile().mkdirs();
+        try (OutputStream outputStream = new FileOutputStream(stampFile)) {
+            stamp.store(outputStream, null);
         }
     }
+
+    private static void precompile(final File schemaFile, final File precompiledSchemaFile) throws IOException {
+        LOGGER.info("Precompiling schema {}...", schemaFile.getPath());
+        DfdlSchemaCompiler.save(DfdlSchemaCompiler.compile(schemaFile.toURI(), null, null), precompiledSchemaFile);
+    }
 }
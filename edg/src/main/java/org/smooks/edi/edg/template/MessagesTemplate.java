@@ -43,14 +43,15 @@
 package org.smooks.edi.edg.template;
 
 import com.github.mustachejava.TemplateFunction;
-import org.apache.commons.jxpath.JXPathContext;
 import org.smooks.edi.ect.DirectoryParser;
 import org.smooks.edi.edisax.model.internal.Edimap;
+import org.smooks.edi.edisax.model.internal.SegmentGroup;
 import org.smooks.edi.edisax.util.EDIUtils;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class MessagesTemplate extends Template {
@@ -63,80 +64,70 @@ public class MessagesTemplate extends Template {
 
     public MessagesTemplate(final String version, final DirectoryParser directoryParser, final Edimap edimap) throws IOException {
         super(version);
-        final List<Map<String, Object>> messageDefinitions = new ArrayList<>();
         messageTypes = directoryParser.getMessageNames(edimap).stream().filter(m -> !m.equals(EDIUtils.MODEL_SET_DEFINITIONS_DESCRIPTION.getName())).collect(Collectors.toList());
-        for (String messageType : messageTypes) {
-            final Edimap messageTypeEdimap = directoryParser.getMappingModel(messageType, edimap);
-            final Map<String, Object> messageDefinition = OBJECT_MAPPER.convertValue(messageTypeEdimap, OBJECT_MAPPER.getTypeFactory().constructMapType(Map.class, String.class, Object.class));
-            final List<Map<String, Object>> segments = (List<Map<String, Object>>) JXPathContext.newContext(messageDefinition).getValue("/segments/segments", List.class);
-            templatizeSegments(segments);
-
-            messageDefinitions.add(messageDefinition);
+        final List<MessageView> messageViews;
+        try {
+            messageViews = messageTypes.parallelStream().map(messageType -> {
+                try {
+                    return toMessageView(directoryParser.getMappingModel(messageType, edimap));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        scope.put("messages", messageDefinitions);
+        scope.put("messages", messageViews);
     }
 
-    private void templatizeSegments(final List<Map<String, Object>> segments) {
-        templatizeSegments(segments.get(0), tail(segments), true, 0);
+    private MessageView toMessageView(final Edimap messageTypeEdimap) {
+        final SegmentGroup rootSegmentGroup = messageTypeEdimap.getSegments();
+        return new MessageView(getXmlName(rootSegmentGroup), toSegmentViews(rootSegmentGroup.getSegments(), new AtomicInteger()));
     }
 
-    private int templatizeSegments(final Map<String, Object> headSegment, final List<Map<String, Object>> tailSegments, final boolean isFirstSegment, final int segmentGroupCounter) {
-        final int segmentGroupIndex;
-        final StringWriter stringWriter = new StringWriter();
-        final List<Map<String, Object>> nestedSegments = (List<Map<String, Object>>) headSegment.get("segments");
-        if (isEmpty(nestedSegments)) {
-            segmentGroupIndex = segmentGroupCounter;
-            writeSegment(tailSegments, stringWriter, isFirstSegment);
-        } else {
-            final int nestedSegmentGroupIndex = segmentGroupCounter + 1;
-            writeSegmentGroup(headSegment, tailSegments, stringWriter, nestedSegmentGroupIndex);
-            segmentGroupIndex = templatizeSegments(nestedSegments.get(0), tail(nestedSegments), true, nestedSegmentGroupIndex);
-        }
-
-        if (headSegment.get("segcode").equals("UNS") || headSegment.get("segcode").equals("UGH") || headSegment.get("segcode").equals("UGT")) {
-            headSegment.put("namespacePrefix", "srv");
-        } else {
-            headSegment.put("namespacePrefix", version);
+    private List<SegmentView> toSegmentViews(final List<SegmentGroup> segmentGroups, final AtomicInteger segmentGroupCounter) {
+        final List<SegmentView> segmentViews = new ArrayList<>(segmentGroups.size());
+        for (int i = 0; i < segmentGroups.size(); i++) {
+            final SegmentGroup segmentGroup = segmentGroups.get(i);
+            final SegmentGroup nextSegmentGroup = i + 1 < segmentGroups.size() ? segmentGroups.get(i + 1) : null;
+            final StringBuilder render = new StringBuilder();
+            final String xmltag;
+            final List<SegmentView> nestedSegmentViews;
+            if (segmentGroup.getSegments().isEmpty()) {
+                writeSegment(nextSegmentGroup, render, i == 0);
+                xmltag = segmentGroup.getXmltag();
+                nestedSegmentViews = Collections.emptyList();
+            } else {
+                xmltag = "SegGrp-" + segmentGroupCounter.incrementAndGet();
+                writeSegmentGroup(nextSegmentGroup, render);
+                nestedSegmentViews = toSegmentViews(segmentGroup.getSegments(), segmentGroupCounter);
+            }
+
+            final String segcode = segmentGroup.getSegcode();
+            final String namespacePrefix = segcode.equals("UNS") || segcode.equals("UGH") || segcode.equals("UGT") ? "srv" : version;
+            segmentViews.add(new SegmentView(xmltag, getXmlName(segmentGroup), segmentGroup.getMinOccurs(), segmentGroup.getMaxOccurs(), namespacePrefix, nestedSegmentViews, render.toString()));
         }
-        headSegment.put("render", (TemplateFunction) s -> stringWriter.toString());
 
-        if (!tailSegments.isEmpty()) {
-            return templatizeSegments(tailSegments.get(0), tail(tailSegments), false, segmentGroupIndex);
-        } else {
-            return segmentGroupIndex;
-        }
+        return Collections.unmodifiableList(segmentViews);
     }
 
-    private void writeSegment(final List<Map<String, Object>> tailSegments, final StringWriter stringWriter, final boolean isFirstSegment) {
+    private void writeSegment(final SegmentGroup nextSegmentGroup, final StringBuilder render, final boolean isFirstSegment) {
         if (isFirstSegment) {
-            stringWriter.write(SEQUENCE_XML_START_TAG);
-        }
-        stringWriter.write(MESSAGE_SEGMENT_MUSTACHE_PARTIAL);
-        if (tailSegments.isEmpty() || !isEmpty((Collection) tailSegments.get(0).get("segments"))) {
-            stringWriter.write(SEQUENCE_XML_END_TAG);
+            render.append(SEQUENCE_XML_START_TAG);
         }
-    }
-
-    private void writeSegmentGroup(final Map<String, Object> headSegment, final List<Map<String, Object>> tailSegments, final StringWriter stringWriter, final int segmentGroupIndex) {
-        headSegment.put("xmltag", "SegGrp-" + segmentGroupIndex);
-        stringWriter.write(MESSAGE_SEGMENT_GROUP_MUSTACHE_PARTIAL);
-        if (!tailSegments.isEmpty() && isEmpty((Collection<?>) tailSegments.get(0).get("segments"))) {
-            stringWriter.write(SEQUENCE_XML_START_TAG);
+        render.append(MESSAGE_SEGMENT_MUSTACHE_PARTIAL);
+        if (nextSegmentGroup == null || !nextSegmentGroup.getSegments().isEmpty()) {
+            render.append(SEQUENCE_XML_END_TAG);
         }
     }
 
-    private List<Map<String, Object>> tail(final List<Map<String, Object>> list) {
-        if (list.isEmpty() || list.size() < 2) {
-            return Collections.EMPTY_LIST;
-        } else {
-            return list.subList(1, list.size());
+    private void writeSegmentGroup(final SegmentGroup nextSegmentGroup, final StringBuilder render) {
+        render.append(MESSAGE_SEGMENT_GROUP_MUSTACHE_PARTIAL);
+        if (nextSegmentGroup != null && nextSegmentGroup.getSegments().isEmpty()) {
+            render.append(SEQUENCE_XML_START_TAG);
         }
     }
 
-    private boolean isEmpty(final Collection<?> collection) {
-        return (collection == null || collection.isEmpty());
-    }
-
     @Override
     public String getName() {
         return "EDIFACT-Templates/EDIFACT-Messages.dfdl.xsd.mustache";
@@ -145,4 +136,68 @@ public class MessagesTemplate extends Template {
     public List<String> getMessageTypes() {
         return messageTypes;
     }
+
+    private static final class MessageView implements TemplateView {
+        private final String xmlName;
+        private final List<SegmentView> segments;
+
+        private MessageView(final String xmlName, final List<SegmentView> segments) {
+            this.xmlName = xmlName;
+            this.segments = segments;
+        }
+
+        @Override
+        public Object get(final String name) {
+            switch (name) {
+                case "xmlName":
+                    return xmlName;
+                case "segments":
+                    return segments;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final class SegmentView implements TemplateView {
+        private final String xmltag;
+        private final String xmlName;
+        private final int minOccurs;
+        private final int maxOccurs;
+        private final String namespacePrefix;
+        private final List<SegmentView> segments;
+        private final TemplateFunction render;
+
+        private SegmentView(final String xmltag, final String xmlName, final int minOccurs, final int maxOccurs, final String namespacePrefix, final List<SegmentView> segments, final String render) {
+            this.xmltag = xmltag;
+            this.xmlName = xmlName;
+            this.minOccurs = minOccurs;
+            this.maxOccurs = maxOccurs;
+            this.namespacePrefix = namespacePrefix;
+            this.segments = segments;
+            this.render = s -> render;
+        }
+
+        @Override
+        public Object get(final String name) {
+            switch (name) {
+                case "xmltag":
+                    return xmltag;
+                case "xmlName":
+                    return xmlName;
+                case "minOccurs":
+                    return minOccurs;
+                case "maxOccurs":
+                    return maxOccurs;
+                case "namespacePrefix":
+                    return namespacePrefix;
+                case "segments":
+                    return segments;
+                case "render":
+                    return render;
+                default:
+                    return null;
+            }
+        }
+    }
 }
@@ -42,115 +42,96 @@
  */
 package org.smooks.edi.edg.template;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.github.mustachejava.TemplateFunction;
 import org.smooks.edi.edisax.model.internal.*;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class SegmentsTemplate extends Template {
     private static final String SEGMENT_PART_REPEAT_MUSTACHE_PARTIAL = "{{> EDISegmentPartRepeatSequenceFormat.xsd.mustache}}";
     private static final String SEGMENT_MUSTACHE_PARTIAL = "{{> EDISegmentSequenceFormat.xsd.mustache}}\n";
+    private static final TemplateFunction SEGMENT_PART_REPEAT_RENDER = s -> SEGMENT_PART_REPEAT_MUSTACHE_PARTIAL;
+    private static final TemplateFunction SEGMENT_RENDER = s -> SEGMENT_MUSTACHE_PARTIAL;
 
     public SegmentsTemplate(final String version, final Edimap edimap) {
         super(version);
-        final List<Map<String, Object>> segments = prepareSegments(edimap.getSegments().getSegments());
-        final List<Map<String, Object>> compositeDataElements = prepareCompositeDataElements(edimap.getCompositeDataElements());
-        final List<Map<String, Object>> simpleDataElements = prepareSimpleDataElements(edimap.getSimpleDataElements());
+        final Map<String, AlphaTypeView> alphaTypes = new HashMap<>();
+        final Map<String, NumericTypeView> numericTypes = new HashMap<>();
 
-        Map<String, Map<String, String>> alphaTypes = new HashMap<>();
-        Map<String, Map<String, String>> numericTypes = new HashMap<>();
-
-        simpleDataElements.forEach(de -> de.put("base", (Function<String, String>) s -> {
-            String base;
-            if (de.get("dataType").equals("String")) {
-                base = "alpha" + de.get("minLength") + "-" + de.get("maxLength");
-                alphaTypes.put(base, new HashMap<String, String>() {{
-                    this.put("minLength", String.valueOf(de.get("minLength")));
-                    this.put("maxLength", String.valueOf(de.get("maxLength")));
-                }});
-            } else if (de.get("dataType").equals("DABigDecimal")) {
-                base = "numeric";
-                String textNumberPattern;
-                if (de.get("minLength") == de.get("maxLength")) {
-                    base += de.get("maxLength");
-                    textNumberPattern = "0000";
-                } else {
-                    base += "1-" + de.get("maxLength");
-                    textNumberPattern = "";
-                }
-                numericTypes.put(base, new HashMap<String, String>() {{
-                    this.put("totalDigits", String.valueOf(de.get("maxLength")));
-                    this.put("textNumberPattern", textNumberPattern);
-                }});
-            } else {
-                throw new UnsupportedOperationException("Unknown data type: " + de.get("dataType"));
-            }
-
-            return base;
-        }));
-
-        scope.put("segments", segments);
-        scope.put("compositeDataElements", compositeDataElements);
-        scope.put("dataElements", simpleDataElements);
-        scope.put("alphaTypes", alphaTypes.entrySet());
-        scope.put("numericTypes", numericTypes.entrySet());
+        scope.put("segments", prepareSegments(edimap.getSegments().getSegments()));
+        scope.put("compositeDataElements", prepareCompositeDataElements(edimap.getCompositeDataElements()));
+        scope.put("dataElements", prepareSimpleDataElements(edimap.getSimpleDataElements(), alphaTypes, numericTypes));
+        scope.put("alphaTypes", alphaTypes.values());
+        scope.put("numericTypes", numericTypes.values());
     }
 
-    private List<Map<String, Object>> prepareSegments(final List<SegmentGroup> segments) {
+    private List<SegmentView> prepareSegments(final List<SegmentGroup> segments) {
         final List<SegmentGroup> undefinedSegments = segments.stream().filter(s -> !s.getSegcode().equals("UGH") && !s.getSegcode().equals("UGT") && !s.getSegcode().equals("UNS")).collect(Collectors.toList());
         undefinedSegments.forEach(s -> ((Segment) s).getFields().forEach(f -> f.setXmltag(f.getXmltag().toUpperCase())));
 
-        final List<Map<String, Object>> undefinedSegmentsAsMap = OBJECT_MAPPER.convertValue(undefinedSegments, new TypeReference<List<Map<String, Object>>>() {
-        });
-        undefinedSegmentsAsMap.forEach(s -> ((List<Map<String, Object>>) s.get("fields")).forEach(f -> f.put("minOccurs", (boolean) f.get("required") ? 1 : 0)));
-        reduceFields(undefinedSegmentsAsMap);
-
-        return undefinedSegmentsAsMap;
+        return undefinedSegments.stream().map(s -> new SegmentView(getXmlName(s), reduceFields(((Segment) s).getFields()))).collect(Collectors.toList());
     }
 
-    private List<Map<String, Object>> prepareCompositeDataElements(final List<Field> compositeDataElements) {
+    private List<CompositeDataElementView> prepareCompositeDataElements(final List<Field> compositeDataElements) {
         compositeDataElements.forEach(f -> f.getComponents().forEach(c -> {
             c.setXmltag(c.getXmltag().toUpperCase());
         }));
-        final List<Map<String, Object>> compositeDataElementsAsMap = OBJECT_MAPPER.convertValue(compositeDataElements, new TypeReference<List<Map<String, Object>>>() {
-        });
-        compositeDataElementsAsMap.forEach(s -> ((List<Map<String, Object>>) s.get("components")).forEach(f -> f.put("minOccurs", (boolean) f.get("required") ? 1 : 0)));
-
-        reduceComponents(compositeDataElementsAsMap);
 
-        return compositeDataElementsAsMap;
+        return compositeDataElements.stream().map(f -> new CompositeDataElementView(getXmlName(f), reduceComponents(f.getComponents()))).collect(Collectors.toList());
     }
 
-    private List<Map<String, Object>> prepareSimpleDataElements(final List<Component> simpleDataElements) {
+    private List<DataElementView> prepareSimpleDataElements(final List<Component> simpleDataElements, final Map<String, AlphaTypeView> alphaTypes, final Map<String, NumericTypeView> numericTypes) {
         simpleDataElements.forEach(de -> {
             de.setXmltag(de.getXmltag().toUpperCase());
         });
 
-        return OBJECT_MAPPER.convertValue(simpleDataElements, new TypeReference<List<Map<String, Object>>>() {
-        });
+        final List<DataElementView> dataElementViews = new ArrayList<>(simpleDataElements.size());
+        for (Component dataElement : simpleDataElements) {
+            String base;
+            if (dataElement.getDataType().equals("String")) {
+                base = "alpha" + dataElement.getMinLength() + "-" + dataElement.getMaxLength();
+                alphaTypes.put(base, new AlphaTypeView(base, String.valueOf(dataElement.getMinLength()), String.valueOf(dataElement.getMaxLength())));
+            } else if (dataElement.getDataType().equals("DABigDecimal")) {
+                base = "numeric";
+                String textNumberPattern;
+                if (Objects.equals(dataElement.getMinLength(), dataElement.getMaxLength())) {
+                    base += dataElement.getMaxLength();
+                    textNumberPattern = "0000";
+                } else {
+                    base += "1-" + dataElement.getMaxLength();
+                    textNumberPattern = "";
+                }
+                numericTypes.put(base, new NumericTypeView(base, String.valueOf(dataElement.getMaxLength()), textNumberPattern));
+            } else {
+                throw new UnsupportedOperationException("Unknown data type: " + dataElement.getDataType());
+            }
+
+            final CodeList codeList = dataElement.getCodeList();
+            dataElementViews.add(new DataElementView(getXmlName(dataElement), base, codeList == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(codeList.getCodes()))));
+        }
+
+        return dataElementViews;
     }
 
-    private void reduceComponents(final List<Map<String, Object>> compositeDataElements) {
-        for (Map<String, Object> compositeDataElement : compositeDataElements) {
-            final List<Map<String, Object>> components = (List<Map<String, Object>>) compositeDataElement.get("components");
-            if (!components.isEmpty()) {
-                compositeDataElement.put("components", reduceComponents(components.get(0), components.size() > 1 ? components.subList(1, components.size()) : Collections.EMPTY_LIST));
-            }
+    private List<ComponentView> reduceComponents(final List<Component> components) {
+        if (components.isEmpty()) {
+            return Collections.emptyList();
         }
+
+        final List<ComponentDraft> componentDrafts = components.stream().map(ComponentDraft::new).collect(Collectors.toList());
+        return reduceComponents(componentDrafts.get(0), componentDrafts.size() > 1 ? componentDrafts.subList(1, componentDrafts.size()) : Collections.emptyList()).stream().map(ComponentDraft::toView).collect(Collectors.toList());
     }
 
-    private List<Map<String, Object>> reduceComponents(Map<String, Object> componentHead, List<Map<String, Object>> componentsTail) {
-        final String xmlTagComponentHead = (String) componentHead.get("xmltag");
+    private List<ComponentDraft> reduceComponents(ComponentDraft componentHead, List<ComponentDraft> componentsTail) {
+        final String xmlTagComponentHead = componentHead.xmltag;
         final AtomicInteger maxOccurs = new AtomicInteger(1);
-        final List<Map<String, Object>> components = new ArrayList<>();
+        final List<ComponentDraft> components = new ArrayList<>();
         components.add(componentHead);
         if (!componentsTail.isEmpty()) {
-            for (Map<String, Object> nextComponent : componentsTail) {
-                final String xmlTagNextComponent = (String) nextComponent.get("xmltag");
+            for (ComponentDraft nextComponent : componentsTail) {
+                final String xmlTagNextComponent = nextComponent.xmltag;
                 if (xmlTagComponentHead.equals(xmlTagNextComponent)) {
                     maxOccurs.getAndIncrement();
                 } else {
@@ -159,25 +140,25 @@ public class SegmentsTemplate extends Template {
             }
 
             if (componentsTail.size() > (maxOccurs.get() - 1)) {
-                final Map<String, Object> newComponentHead = componentsTail.get(maxOccurs.get() - 1);
-                final List<Map<String, Object>> newComponentsTail;
+                final ComponentDraft newComponentHead = componentsTail.get(maxOccurs.get() - 1);
+                final List<ComponentDraft> newComponentsTail;
                 if (componentsTail.size() > maxOccurs.get()) {
                     newComponentsTail = componentsTail.subList(maxOccurs.get(), componentsTail.size());
                 } else {
-                    newComponentsTail = Collections.EMPTY_LIST;
+                    newComponentsTail = Collections.emptyList();
                 }
-                final List<Map<String, Object>> reducedTailComponents = reduceComponents(newComponentHead, newComponentsTail);
-                for (Map<String, Object> nextComponent : reducedTailComponents) {
-                    final String xmlTagNextComponent = (String) nextComponent.get("xmltag");
+                final List<ComponentDraft> reducedTailComponents = reduceComponents(newComponentHead, newComponentsTail);
+                for (ComponentDraft nextComponent : reducedTailComponents) {
+                    final String xmlTagNextComponent = nextComponent.xmltag;
                     if (xmlTagComponentHead.equals(xmlTagNextComponent)) {
                         final char nextLetter;
                         if (Character.isLetter(xmlTagComponentHead.charAt(xmlTagComponentHead.length() - 1))) {
                             nextLetter = ((char) (xmlTagComponentHead.charAt(xmlTagComponentHead.length() - 1) + 1));
                         } else {
-                            componentHead.put("xmltag", xmlTagComponentHead + "a");
+                            componentHead.xmltag = xmlTagComponentHead + "a";
                             nextLetter = 'b';
                         }
-                        nextComponent.put("xmltag", xmlTagNextComponent + nextLetter);
+                        nextComponent.xmltag = xmlTagNextComponent + nextLetter;
                     }
                 }
 
@@ -185,53 +166,41 @@ public class SegmentsTemplate extends Template {
             }
         }
 
-        componentHead.put("maxOccurs", maxOccurs.get());
+        componentHead.maxOccurs = maxOccurs.get();
         return components;
     }
 
-    private void reduceFields(final List<Map<String, Object>> segments) {
-        for (Map<String, Object> segment : segments) {
-            final List<Map<String, Object>> fields = (List<Map<String, Object>>) segment.get("fields");
-            segment.put("fields", reduceFields(fields.get(0), fields.size() > 1 ? fields.subList(1, fields.size()) : Collections.EMPTY_LIST));
-        }
+    private List<FieldView> reduceFields(final List<Field> fields) {
+        return reduceFields(fields.get(0), fields.size() > 1 ? fields.subList(1, fields.size()) : Collections.emptyList());
     }
 
-    private List<Map<String, Object>> reduceFields(Map<String, Object> fieldHead, List<Map<String, Object>> fieldsTail) {
+    private List<FieldView> reduceFields(Field fieldHead, List<Field> fieldsTail) {
         final AtomicInteger repetitions = new AtomicInteger(0);
-        final List<Map<String, Object>> fields = new ArrayList<>();
-        fields.add(fieldHead);
+        final List<FieldView> fields = new ArrayList<>();
         if (!fieldsTail.isEmpty()) {
-            for (Map<String, Object> nextField : fieldsTail) {
-                if (fieldHead.get("xmltag").equals(nextField.get("xmltag"))) {
+            for (Field nextField : fieldsTail) {
+                if (fieldHead.getXmltag().equals(nextField.getXmltag())) {
                     repetitions.getAndIncrement();
                 } else {
                     break;
                 }
             }
-            if (fieldsTail.size() > repetitions.get()) {
-                final Map<String, Object> newFieldHead = fieldsTail.get(repetitions.get());
-                final List<Map<String, Object>> newFieldsTail;
-                if (fieldsTail.size() > repetitions.get() + 1) {
-                    newFieldsTail = fieldsTail.subList(repetitions.get() + 1, fieldsTail.size());
-                } else {
-                    newFieldsTail = Collections.EMPTY_LIST;
-                }
-                fields.addAll(reduceFields(newFieldHead, newFieldsTail));
-            }
         }
 
-        if (repetitions.get() > 0) {
-            fieldHead.put("maxOccurs", repetitions.get() + 1);
-        } else {
-            fieldHead.put("maxOccurs", fieldHead.get("cardinality"));
-        }
-        fieldHead.put("render", (TemplateFunction) s -> {
-            if (repetitions.get() > 0 || ((int) fieldHead.get("cardinality")) > 1) {
-                return SEGMENT_PART_REPEAT_MUSTACHE_PARTIAL;
+        final boolean isRepeatable = repetitions.get() > 0 || fieldHead.getCardinality() > 1;
+        final int maxOccurs = repetitions.get() > 0 ? repetitions.get() + 1 : fieldHead.getCardinality();
+        fields.add(new FieldView(fieldHead.getXmltag(), getXmlName(fieldHead), fieldHead.isRequired() ? 1 : 0, maxOccurs, isRepeatable ? SEGMENT_PART_REPEAT_RENDER : SEGMENT_RENDER));
+
+        if (fieldsTail.size() > repetitions.get()) {
+            final Field newFieldHead = fieldsTail.get(repetitions.get());
+            final List<Field> newFieldsTail;
+            if (fieldsTail.size() > repetitions.get() + 1) {
+                newFieldsTail = fieldsTail.subList(repetitions.get() + 1, fieldsTail.size());
             } else {
-                return SEGMENT_MUSTACHE_PARTIAL;
+                newFieldsTail = Collections.emptyList();
             }
-        });
+            fields.addAll(reduceFields(newFieldHead, newFieldsTail));
+        }
 
         return fields;
     }
@@ -240,4 +209,205 @@ public class SegmentsTemplate extends Template {
     public String getName() {
         return "EDIFACT-Templates/EDIFACT-Segments.dfdl.xsd.mustache";
     }
+
+    private static final class ComponentDraft {
+        private final Component component;
+        private String xmltag;
+        private int maxOccurs;
+
+        private ComponentDraft(final Component component) {
+            this.component = component;
+            this.xmltag = component.getXmltag();
+        }
+
+        private ComponentView toView() {
+            return new ComponentView(xmltag, getXmlName(component), component.isRequired() ? 1 : 0, maxOccurs);
+        }
+    }
+
+    private static final class SegmentView implements TemplateView {
+        private final String xmlName;
+        private final List<FieldView> fields;
+
+        private SegmentView(final String xmlName, final List<FieldView> fields) {
+            this.xmlName = xmlName;
+            this.fields = Collections.unmodifiableList(fields);
+        }
+
+        @Override
+        public Object get(final String name) {
+            switch (name) {
+                case "xmlName":
+                    return xmlName;
+                case "fields":
+                    return fields;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final class FieldView implements TemplateView {
+        private final String xmltag;
+        private final String xmlName;
+        private final int minOccurs;
+        private final int maxOccurs;
+        private final TemplateFunction render;
+
+        private FieldView(final String xmltag, final String xmlName, final int minOccurs, final int maxOccurs, final TemplateFunction render) {
+            this.xmltag = xmltag;
+            this.xmlName = xmlName;
+            this.minOccurs = minOccurs;
+            this.maxOccurs = maxOccurs;
+            this.render = render;
+        }
+
+        @Override
+        public Object get(final String name) {
+            switch (name) {
+                case "xmltag":
+                    return xmltag;
+                case "xmlName":
+                    return xmlName;
+                case "minOccurs":
+                    return minOccurs;
+                case "maxOccurs":
+                    return maxOccurs;
+                case "render":
+                    return render;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final class CompositeDataElementView implements TemplateView {
+        private final String xmlName;
+        private final List<ComponentView> components;
+
+        private CompositeDataElementView(final String xmlName, final List<ComponentView> components) {
+            this.xmlName = xmlName;
+            this.components = Collections.unmodifiableList(components);
+        }
+
+        @Override
+        public Object get(final String name) {
+            switch (name) {
+                case "xmlName":
+                    return xmlName;
+                case "components":
+                    return components;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final class ComponentView implements TemplateView {
+        private final String xmltag;
+        private final String xmlName;
+        private final int minOccurs;
+        private final int maxOccurs;
+
+        private ComponentView(final String xmltag, final String xmlName, final int minOccurs, final int maxOccurs) {
+            this.xmltag = xmltag;
+            this.xmlName = xmlName;
+            this.minOccurs = minOccurs;
+            this.maxOccurs = maxOccurs;
+        }
+
+        @Override
+        public Object get(final String name) {
+            switch (name) {
+                case "xmltag":
+                    return xmltag;
+                case "xmlName":
+                    return xmlName;
+                case "minOccurs":
+                    return minOccurs;
+                case "maxOccurs":
+                    return maxOccurs;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final class DataElementView implements TemplateView {
+        private final String xmlName;
+        private final String base;
+        private final List<String> codes;
+
+        private DataElementView(final String xmlName, final String base, final List<String> codes) {
+            this.xmlName = xmlName;
+            this.base = base;
+            this.codes = codes;
+        }
+
+        @Override
+        public Object get(final String name) {
+            switch (name) {
+                case "xmlName":
+                    return xmlName;
+                case "base":
+                    return base;
+                case "codes":
+                    return codes;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final class AlphaTypeView implements TemplateView {
+        private final String name;
+        private final String minLength;
+        private final String maxLength;
+
+        private AlphaTypeView(final String name, final String minLength, final String maxLength) {
+            this.name = name;
+            this.minLength = minLength;
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public Object get(final String name) {
+            switch (name) {
+                case "name":
+                    return this.name;
+                case "minLength":
+                    return minLength;
+                case "maxLength":
+                    return maxLength;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final class NumericTypeView implements TemplateView {
+        private final String name;
+        private final String totalDigits;
+        private final String textNumberPattern;
+
+        private NumericTypeView(final String name, final String totalDigits, final String textNumberPattern) {
+            this.name = name;
+            this.totalDigits = totalDigits;
+            this.textNumberPattern = textNumberPattern;
+        }
+
+        @Override
+        public Object get(final String name) {
+            switch (name) {
+                case "name":
+                    return this.name;
+                case "totalDigits":
+                    return totalDigits;
+                case "textNumberPattern":
+                    return textNumberPattern;
+                default:
+                    return null;
+            }
+        }
+    }
 }
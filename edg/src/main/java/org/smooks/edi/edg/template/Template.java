@@ -42,24 +42,19 @@
  */
 package org.smooks.edi.edg.template;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import com.github.mustachejava.DefaultMustacheFactory;
 import com.github.mustachejava.Mustache;
 import com.github.mustachejava.MustacheException;
-import com.github.mustachejava.reflect.ReflectionObjectHandler;
-import com.github.mustachejava.util.DecoratedCollection;
+import org.smooks.edi.edisax.model.internal.MappingNode;
+import org.smooks.edi.edisax.util.IllegalNameException;
 
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
 public abstract class Template {
-    protected static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
-
     protected final String version;
     protected final DefaultMustacheFactory mustacheFactory;
     protected Map<String, Object> scope = new HashMap<>();
@@ -75,15 +70,7 @@ public abstract class Template {
                 }
             }
         };
-        mustacheFactory.setObjectHandler(new ReflectionObjectHandler() {
-            @Override
-            public Object coerce(Object object) {
-                if (object instanceof Collection) {
-                    return new DecoratedCollection((Collection) object);
-                }
-                return super.coerce(object);
-            }
-        });
+        mustacheFactory.setObjectHandler(new ViewObjectHandler());
         this.version = version;
         scope.put("version", version);
     }
@@ -94,11 +81,23 @@ public abstract class Template {
 
     public abstract String getName();
 
+    protected static String getXmlName(final MappingNode mappingNode) {
+        try {
+            return mappingNode.getXmlName();
+        } catch (IllegalNameException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
     public String materialise() {
-        final Mustache segmentsMustache = mustacheFactory.compile(getName());
         final StringWriter stringWriter = new StringWriter();
-        segmentsMustache.execute(stringWriter, getScope());
+        materialise(stringWriter);
 
         return stringWriter.toString();
     }
+
+    public void materialise(final Writer writer) {
+        final Mustache segmentsMustache = mustacheFactory.compile(getName());
+        segmentsMustache.execute(writer, getScope());
+    }
 }
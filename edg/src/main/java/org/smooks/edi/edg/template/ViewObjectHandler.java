@@ -0,0 +1,167 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edg
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edg.template;
+
+import com.github.mustachejava.Binding;
+import com.github.mustachejava.Code;
+import com.github.mustachejava.TemplateContext;
+import com.github.mustachejava.reflect.BaseObjectHandler;
+import com.github.mustachejava.util.Wrapper;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves template names against {@link TemplateView}s and {@link Map}s only, so rendering never goes through
+ * reflection. Like {@link com.github.mustachejava.util.DecoratedCollection}, collections are iterated as elements
+ * exposing <code>value</code>, <code>index</code>, <code>first</code> and <code>last</code>.
+ */
+final class ViewObjectHandler extends BaseObjectHandler {
+
+    @Override
+    public Object coerce(final Object object) {
+        if (object instanceof Collection) {
+            return new DecoratedIterable((Collection<?>) object);
+        }
+        return object;
+    }
+
+    @Override
+    public Binding createBinding(final String name, final TemplateContext templateContext, final Code code) {
+        final Wrapper wrapper = find(name, null);
+        return wrapper::call;
+    }
+
+    @Override
+    public Wrapper find(final String name, final List<Object> scopes) {
+        if (name == null) {
+            return s -> null;
+        } else if (name.equals(".")) {
+            return s -> s.get(s.size() - 1);
+        }
+
+        final String[] path = name.split("\\.");
+        return s -> {
+            for (int i = s.size() - 1; i >= 0; i--) {
+                Object value = get(s.get(i), path[0]);
+                if (value != null) {
+                    for (int j = 1; j < path.length && value != null; j++) {
+                        value = get(value, path[j]);
+                    }
+                    return coerce(value);
+                }
+            }
+            return null;
+        };
+    }
+
+    private static Object get(final Object scope, final String name) {
+        if (scope instanceof TemplateView) {
+            return ((TemplateView) scope).get(name);
+        } else if (scope instanceof Map) {
+            return ((Map<?, ?>) scope).get(name);
+        } else {
+            return null;
+        }
+    }
+
+    private static final class DecoratedIterable implements Iterable<Element> {
+        private final Collection<?> collection;
+
+        private DecoratedIterable(final Collection<?> collection) {
+            this.collection = collection;
+        }
+
+        @Override
+        public Iterator<Element> iterator() {
+            final Iterator<?> iterator = collection.iterator();
+            return new Iterator<Element>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Element next() {
+                    final Object value = iterator.next();
+                    final int elementIndex = index++;
+                    return new Element(value, elementIndex, elementIndex == 0, !iterator.hasNext());
+                }
+            };
+        }
+    }
+
+    private static final class Element implements TemplateView {
+        private final Object value;
+        private final int index;
+        private final boolean first;
+        private final boolean last;
+
+        private Element(final Object value, final int index, final boolean first, final boolean last) {
+            this.value = value;
+            this.index = index;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        public Object get(final String name) {
+            switch (name) {
+                case "value":
+                    return value;
+                case "index":
+                    return index;
+                case "first":
+                    return first;
+                case "last":
+                    return last;
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -56,7 +56,9 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class EdifactDfdlSchemaGeneratorTestCase {
@@ -79,6 +81,21 @@ public class EdifactDfdlSchemaGeneratorTestCase {
         assertTrue(new File("target/generated-test-resources/d03b/EDIFACT-Segments.dfdl.xsd").exists());
     }
 
+    @Test
+    public void testMainSkipsUnchangedDirectory() throws Throwable {
+        EdifactDfdlSchemaGenerator.main(new String[]{"/d03b.zip,org.smooks.edi.ect.formats.unedifact.parser.UnEdifactDirectoryParser", "target/generated-test-resources"});
+        File messageSchemaFile = new File("target/generated-test-resources/d03b/EDIFACT-Messages.dfdl.xsd");
+        assertTrue(messageSchemaFile.setLastModified(0));
+
+        EdifactDfdlSchemaGenerator.main(new String[]{"/d03b.zip,org.smooks.edi.ect.formats.unedifact.parser.UnEdifactDirectoryParser", "target/generated-test-resources"});
+        assertEquals(0, messageSchemaFile.lastModified());
+
+        assertTrue(new File("target/generated-test-resources/d03b/EDIFACT-Segments.dfdl.xsd").delete());
+        EdifactDfdlSchemaGenerator.main(new String[]{"/d03b.zip,org.smooks.edi.ect.formats.unedifact.parser.UnEdifactDirectoryParser", "target/generated-test-resources"});
+        assertTrue(new File("target/generated-test-resources/d03b/EDIFACT-Segments.dfdl.xsd").exists());
+        assertNotEquals(0, messageSchemaFile.lastModified());
+    }
+
     @Test
     public void testDfdlSchema() throws Throwable {
         EdifactDfdlSchemaGenerator.main(new String[]{"/d03b.zip,org.smooks.edi.ect.formats.unedifact.parser.UnEdifactDirectoryParser", "target/generated-test-resources"});
@@ -0,0 +1,378 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi;
+
+import org.apache.daffodil.japi.Daffodil;
+import org.apache.daffodil.japi.DataProcessor;
+import org.apache.daffodil.japi.ValidationMode;
+import org.apache.daffodil.util.Misc;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.edi.schemas.DfdlSchemaCompiler;
+import org.smooks.edi.schemas.Sha256;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * JVM-wide store of compiled DFDL {@link DataProcessor}s.
+ * <p/>
+ * Processors are keyed by a SHA-256 hash of the resolved schema set (the entry schema together with every schema it
+ * transitively includes or imports), the DFDL variables, the validation mode and the message types. Smooks instances
+ * configured with an identical schema set therefore share a single compiled processor regardless of where the
+ * schemas were materialised. When a directory is given, compiled processors are also saved there as
+ * <code>&lt;hash&gt;.bin</code> files and reloaded on later lookups, including after a restart. The files known to be
+ * saved are remembered, so that lookups of a processor already in memory do not check the directory again.
+ * <p/>
+ * Processors validating in {@link ValidationMode#Full} mode are never persisted because Daffodil does not permit full
+ * validation on a reloaded processor.
+ */
+public final class CompiledDataProcessorStore {
+
+    /**
+     * Resource parameter naming the directory compiled processors are persisted to.
+     */
+    public static final String DIRECTORY_PARAMETER = "compiledSchemaDirectory";
+
+    /**
+     * System property naming the directory compiled processors are persisted to when the resource parameter is absent.
+     */
+    public static final String DIRECTORY_PROPERTY = "org.smooks.cartridges.edi.compiledSchemaDirectory";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompiledDataProcessorStore.class);
+    private static final Pattern SCHEMA_LOCATION_PATTERN = Pattern.compile("schemaLocation\\s*=\\s*[\"']([^\"']+)[\"']");
+    private static final CompiledDataProcessorStore INSTANCE = new CompiledDataProcessorStore();
+
+    private final ConcurrentMap<String, FutureTask<DataProcessor>> dataProcessors = new ConcurrentHashMap<>();
+    private final Set<File> persistedFiles = ConcurrentHashMap.newKeySet();
+
+    CompiledDataProcessorStore() {
+    }
+
+    public static CompiledDataProcessorStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the compiled processor for a schema set, compiling it at most once per JVM.
+     *
+     * @param schemaUri      entry schema URI, either absolute or a classpath resource
+     * @param variables      DFDL external variables
+     * @param validationMode validation mode of the processor
+     * @param messageTypes   message types the entry schema was narrowed to, or an empty list
+     * @param directory      directory to persist compiled processors to, or <code>null</code> to keep them in memory only
+     * @return the compiled processor
+     */
+    public DataProcessor getOrCompile(final URI schemaUri, final Map<String, String> variables, final ValidationMode validationMode, final List<String> messageTypes, final File directory) {
+        return getOrCompile(schemaUri, null, null, variables, validationMode, messageTypes, directory);
+    }
+
+    /**
+     * Gets the compiled processor for a root element of a schema set, compiling it at most once per JVM.
+     *
+     * @param schemaUri      entry schema URI, either absolute or a classpath resource
+     * @param rootName       name of the root element, or <code>null</code> for the first element of the entry schema
+     * @param rootNamespace  namespace of the root element, or <code>null</code> to infer it
+     * @param variables      DFDL external variables
+     * @param validationMode validation mode of the processor
+     * @param messageTypes   message types the entry schema was narrowed to, or an empty list
+     * @param directory      directory to persist compiled processors to, or <code>null</code> to keep them in memory only
+     * @return the compiled processor
+     */
+    public DataProcessor getOrCompile(final URI schemaUri, final String rootName, final String rootNamespace, final Map<String, String> variables, final ValidationMode validationMode, final List<String> messageTypes, final File directory) {
+        final URI resolvedSchemaUri = resolveRoot(schemaUri);
+        final String key;
+        try {
+            key = createKey(resolvedSchemaUri, rootName, rootNamespace, variables, validationMode, messageTypes);
+        } catch (IOException e) {
+            throw new SmooksConfigException(e);
+        }
+
+        final DataProcessor dataProcessor = get(key, () -> loadOrCompile(key, resolvedSchemaUri, rootName, rootNamespace, variables, validationMode, directory));
+        if (directory != null && validationMode != ValidationMode.Full) {
+            // the processor may have been compiled for a configuration persisting elsewhere or not at all
+            final File compiledSchemaFile = new File(directory, key + ".bin").getAbsoluteFile();
+            if (!persistedFiles.contains(compiledSchemaFile)) {
+                if (compiledSchemaFile.isFile()) {
+                    persistedFiles.add(compiledSchemaFile);
+                } else {
+                    persist(dataProcessor, compiledSchemaFile);
+                }
+            }
+        }
+
+        return dataProcessor;
+    }
+
+    /**
+     * Forgets which processors were persisted to a directory so that they are persisted again on their next lookup,
+     * e.g., after the directory was cleared. The store does not otherwise notice persisted files going missing.
+     *
+     * @param directory directory processors were persisted to
+     */
+    public void forgetPersisted(final File directory) {
+        final File absoluteDirectory = directory.getAbsoluteFile();
+        persistedFiles.removeIf(persistedFile -> absoluteDirectory.equals(persistedFile.getParentFile()));
+    }
+
+    /**
+     * Gets a processor that was compiled ahead of time, reloading it at most once per JVM.
+     *
+     * @param compiledSchemaUrl location of the saved processor
+     * @param variables         DFDL external variables
+     * @param validationMode    validation mode of the processor, other than {@link ValidationMode#Full}
+     * @return the reloaded processor
+     */
+    public DataProcessor getOrReload(final URL compiledSchemaUrl, final Map<String, String> variables, final ValidationMode validationMode) {
+        final String key = compiledSchemaUrl + ":" + validationMode + ":" + new TreeMap<>(variables);
+
+        return get(key, () -> {
+            final DataProcessor dataProcessor;
+            try (ReadableByteChannel readableByteChannel = Channels.newChannel(compiledSchemaUrl.openStream())) {
+                dataProcessor = Daffodil.compiler().reload(readableByteChannel);
+            }
+            LOGGER.debug("Reloaded precompiled schema from [{}]", compiledSchemaUrl);
+
+            return dataProcessor.withValidationMode(validationMode).withExternalVariables(new HashMap<>(variables));
+        });
+    }
+
+    private DataProcessor get(final String key, final Callable<DataProcessor> dataProcessorCallable) {
+        FutureTask<DataProcessor> dataProcessorTask = dataProcessors.get(key);
+        if (dataProcessorTask == null) {
+            final FutureTask<DataProcessor> newDataProcessorTask = new FutureTask<>(dataProcessorCallable);
+            dataProcessorTask = dataProcessors.putIfAbsent(key, newDataProcessorTask);
+            if (dataProcessorTask == null) {
+                dataProcessorTask = newDataProcessorTask;
+                dataProcessorTask.run();
+            }
+        }
+
+        try {
+            return dataProcessorTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmooksConfigException(e);
+        } catch (ExecutionException e) {
+            dataProcessors.remove(key, dataProcessorTask);
+            if (e.getCause() instanceof SmooksConfigException) {
+                throw (SmooksConfigException) e.getCause();
+            }
+            throw new SmooksConfigException(e.getCause());
+        }
+    }
+
+    /**
+     * Gets the persistence directory configured by the {@link #DIRECTORY_PROPERTY} system property.
+     *
+     * @return the directory or <code>null</code> when the property is not set
+     */
+    public static File getDefaultDirectory() {
+        final String directory = System.getProperty(DIRECTORY_PROPERTY);
+        return directory == null || directory.trim().isEmpty() ? null : new File(directory.trim());
+    }
+
+    static String createKey(final URI schemaUri, final Map<String, String> variables, final ValidationMode validationMode, final List<String> messageTypes) throws IOException {
+        return createKey(schemaUri, null, null, variables, validationMode, messageTypes);
+    }
+
+    static String createKey(final URI schemaUri, final String rootName, final String rootNamespace, final Map<String, String> variables, final ValidationMode validationMode, final List<String> messageTypes) throws IOException {
+        final MessageDigest messageDigest = Sha256.newMessageDigest();
+        update(messageDigest, String.valueOf(Daffodil.class.getPackage().getImplementationVersion()));
+        digestSchemaSet(resolveRoot(schemaUri), messageDigest, new HashSet<>());
+        for (Map.Entry<String, String> variable : new TreeMap<>(variables).entrySet()) {
+            update(messageDigest, variable.getKey());
+            update(messageDigest, variable.getValue());
+        }
+        update(messageDigest, validationMode.name());
+        update(messageDigest, messageTypes.stream().sorted().collect(Collectors.joining(":")));
+        if (rootName != null) {
+            update(messageDigest, rootName);
+            update(messageDigest, String.valueOf(rootNamespace));
+        }
+
+        return Sha256.toHex(messageDigest);
+    }
+
+    private static void digestSchemaSet(final URI schemaUri, final MessageDigest messageDigest, final Set<URI> visited) throws IOException {
+        if (!visited.add(schemaUri)) {
+            return;
+        }
+
+        final byte[] schema = read(schemaUri);
+        messageDigest.update(intToBytes(schema.length));
+        messageDigest.update(schema);
+
+        final Matcher matcher = SCHEMA_LOCATION_PATTERN.matcher(new String(schema, StandardCharsets.UTF_8));
+        while (matcher.find()) {
+            final String schemaLocation = matcher.group(1);
+            final URI includedSchemaUri = resolve(schemaUri, schemaLocation);
+            if (includedSchemaUri == null) {
+                // left for the compiler to report
+                update(messageDigest, schemaLocation);
+            } else {
+                digestSchemaSet(includedSchemaUri, messageDigest, visited);
+            }
+        }
+    }
+
+    static URI resolveRoot(final URI schemaUri) {
+        if (schemaUri.isAbsolute()) {
+            return schemaUri;
+        }
+        try {
+            return Misc.getRequiredResource(schemaUri.toString());
+        } catch (Exception e) {
+            throw new SmooksConfigException("Schema [" + schemaUri + "] not found", e);
+        }
+    }
+
+    static URI resolve(final URI baseUri, final String schemaLocation) {
+        try {
+            final URI schemaLocationUri = new URI(schemaLocation);
+            if (schemaLocationUri.isAbsolute()) {
+                return schemaLocationUri;
+            }
+            if (schemaLocation.startsWith("/")) {
+                return Misc.getRequiredResource(schemaLocation);
+            }
+            final URI resolvedSchemaUri;
+            if (baseUri.isOpaque()) {
+                final String base = baseUri.toString();
+                final int entrySeparator = base.indexOf("!/");
+                if (entrySeparator < 0) {
+                    return null;
+                }
+                resolvedSchemaUri = new URI(base.substring(0, entrySeparator + 1) + new URI(base.substring(entrySeparator + 1)).resolve(schemaLocationUri));
+            } else {
+                resolvedSchemaUri = baseUri.resolve(schemaLocationUri);
+            }
+            read(resolvedSchemaUri);
+
+            return resolvedSchemaUri;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private DataProcessor loadOrCompile(final String key, final URI schemaUri, final String rootName, final String rootNamespace, final Map<String, String> variables, final ValidationMode validationMode, final File directory) throws Exception {
+        final boolean persistent = directory != null && validationMode != ValidationMode.Full;
+        final File compiledSchemaFile = persistent ? new File(directory, key + ".bin").getAbsoluteFile() : null;
+
+        DataProcessor dataProcessor = null;
+        if (persistent && compiledSchemaFile.isFile()) {
+            try {
+                dataProcessor = Daffodil.compiler().reload(compiledSchemaFile);
+                persistedFiles.add(compiledSchemaFile);
+                LOGGER.debug("Reloaded compiled schema [{}] from [{}]", schemaUri, compiledSchemaFile);
+            } catch (Exception e) {
+                LOGGER.warn("Discarding unreadable compiled schema [" + compiledSchemaFile + "]", e);
+                Files.deleteIfExists(compiledSchemaFile.toPath());
+            }
+        }
+
+        if (dataProcessor == null) {
+            dataProcessor = DfdlSchemaCompiler.compile(schemaUri, rootName, rootNamespace);
+            if (persistent) {
+                persist(dataProcessor, compiledSchemaFile);
+            }
+        }
+
+        return dataProcessor.withValidationMode(validationMode).withExternalVariables(new HashMap<>(variables));
+    }
+
+    private void persist(final DataProcessor dataProcessor, final File compiledSchemaFile) {
+        try {
+            DfdlSchemaCompiler.save(dataProcessor, compiledSchemaFile);
+            persistedFiles.add(compiledSchemaFile);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to save compiled schema to [" + compiledSchemaFile + "]", e);
+        }
+    }
+
+    private static byte[] read(final URI uri) throws IOException {
+        try (InputStream inputStream = uri.toURL().openStream()) {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+
+    private static void update(final MessageDigest messageDigest, final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        messageDigest.update(intToBytes(bytes.length));
+        messageDigest.update(bytes);
+    }
+
+    private static byte[] intToBytes(final int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+}
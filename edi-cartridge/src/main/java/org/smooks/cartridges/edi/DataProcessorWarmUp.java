@@ -0,0 +1,245 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi;
+
+import org.apache.daffodil.japi.DataProcessor;
+import org.apache.daffodil.japi.ValidationMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.smooks.api.SmooksConfigException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiles DFDL schemas on a background executor ahead of the Smooks configurations that use them.
+ * <p/>
+ * Schemas are compiled into the JVM-wide {@link CompiledDataProcessorStore}, so a Smooks configuration loaded while
+ * its schema is still compiling blocks only until that schema is ready, and not on the rest of the warm-up. Schemas
+ * are compiled in parallel, up to the number of threads the warm-up was created with. Progress is exposed through
+ * {@link #getCompletedCount()}, {@link #getFailures()} and {@link #isReady()}, which suits health checks. Only the
+ * compilations still running are held on to: a schema submitted again once compiled is served by the store.
+ */
+public class DataProcessorWarmUp implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataProcessorWarmUp.class);
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final ExecutorService executorService;
+    private final Map<String, Future<DataProcessor>> pendingDataProcessors = new HashMap<>();
+    private final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+    private final AtomicInteger submittedCount = new AtomicInteger();
+    private final AtomicInteger completedCount = new AtomicInteger();
+
+    public DataProcessorWarmUp() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public DataProcessorWarmUp(final int threads) {
+        this(Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "smooks-dfdl-warm-up-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    public DataProcessorWarmUp(final ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Submits a schema for compilation with the default EDI variables, no validation and the persistence directory
+     * given by the {@link CompiledDataProcessorStore#DIRECTORY_PROPERTY} system property.
+     *
+     * @param schemaUri entry schema URI
+     * @return the pending processor
+     */
+    public Future<DataProcessor> submit(final URI schemaUri) {
+        return submit(schemaUri, EdiDataProcessorFactory.DEFAULT_VARIABLES, ValidationMode.Off, Collections.emptyList(), CompiledDataProcessorStore.getDefaultDirectory());
+    }
+
+    /**
+     * Submits a schema for compilation. The arguments must match those of the Smooks configuration for the
+     * configuration to pick up the compiled processor. A schema set already compiling with the same settings is not
+     * submitted again, whatever URI it is submitted under.
+     *
+     * @param schemaUri      entry schema URI
+     * @param variables      DFDL external variables
+     * @param validationMode validation mode of the processor
+     * @param messageTypes   message types the entry schema was narrowed to, or an empty list
+     * @param directory      directory to persist compiled processors to, or <code>null</code>
+     * @return the pending processor
+     */
+    public Future<DataProcessor> submit(final URI schemaUri, final Map<String, String> variables, final ValidationMode validationMode, final List<String> messageTypes, final File directory) {
+        String key;
+        try {
+            key = CompiledDataProcessorStore.createKey(schemaUri, variables, validationMode, messageTypes);
+        } catch (IOException | SmooksConfigException e) {
+            // compiling fails the same way, which is reported under the schema URI
+            key = schemaUri.toString();
+        }
+
+        return submit(key, schemaUri.toString(), () -> CompiledDataProcessorStore.getInstance().getOrCompile(schemaUri, variables, validationMode, messageTypes, directory));
+    }
+
+    /**
+     * Submits a named compilation task. A task submitted under the name of a task still running is ignored.
+     *
+     * @param name                  name the task is reported under
+     * @param dataProcessorCallable task returning the compiled processor
+     * @return the pending processor
+     */
+    public Future<DataProcessor> submit(final String name, final Callable<DataProcessor> dataProcessorCallable) {
+        return submit(name, name, dataProcessorCallable);
+    }
+
+    private synchronized Future<DataProcessor> submit(final String key, final String name, final Callable<DataProcessor> dataProcessorCallable) {
+        final Future<DataProcessor> submittedDataProcessor = pendingDataProcessors.get(key);
+        if (submittedDataProcessor != null) {
+            return submittedDataProcessor;
+        }
+
+        final Future<DataProcessor> dataProcessor = executorService.submit(() -> {
+            final long startTime = System.currentTimeMillis();
+            try {
+                final DataProcessor compiledDataProcessor = dataProcessorCallable.call();
+                LOGGER.info("Compiled schema [{}] in {} ms", name, System.currentTimeMillis() - startTime);
+                failures.remove(name);
+                completedCount.incrementAndGet();
+                return compiledDataProcessor;
+            } catch (Exception e) {
+                LOGGER.error("Failed to compile schema [" + name + "]", e);
+                failures.put(name, e);
+                throw e;
+            } finally {
+                // waits for the submitting thread to have registered the task
+                synchronized (this) {
+                    pendingDataProcessors.remove(key);
+                }
+            }
+        });
+        pendingDataProcessors.put(key, dataProcessor);
+        submittedCount.incrementAndGet();
+
+        return dataProcessor;
+    }
+
+    /**
+     * @return the number of schemas submitted
+     */
+    public int getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    /**
+     * @return the number of schemas compiled successfully
+     */
+    public int getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * @return the schemas which failed to compile, keyed by name
+     */
+    public Map<String, Throwable> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * @return <code>true</code> if every submitted schema compiled successfully
+     */
+    public boolean isReady() {
+        synchronized (this) {
+            return failures.isEmpty() && pendingDataProcessors.isEmpty();
+        }
+    }
+
+    /**
+     * Waits until every submitted schema is compiled or failed to compile.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of the timeout
+     * @return <code>true</code> if every submitted schema compiled successfully within the timeout
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     */
+    public boolean awaitReady(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        final List<Future<DataProcessor>> dataProcessors;
+        synchronized (this) {
+            dataProcessors = new ArrayList<>(pendingDataProcessors.values());
+        }
+        for (Future<DataProcessor> pendingDataProcessor : dataProcessors) {
+            try {
+                pendingDataProcessor.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                return false;
+            }
+        }
+
+        return isReady();
+    }
+
+    /**
+     * Stops accepting schemas. Compilations already submitted run to completion.
+     */
+    @Override
+    public void close() {
+        executorService.shutdown();
+    }
+}
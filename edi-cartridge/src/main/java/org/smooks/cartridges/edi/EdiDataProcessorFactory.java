@@ -47,50 +47,123 @@ import org.apache.daffodil.japi.ValidationMode;
 import org.smooks.cartridges.dfdl.DataProcessorFactory;
 import org.smooks.cartridges.dfdl.DfdlSchema;
 import org.smooks.api.resource.config.Parameter;
+import org.smooks.api.resource.config.ResourceConfig;
 import org.smooks.api.SmooksConfigException;
 import org.smooks.api.ApplicationContext;
 
 import javax.inject.Inject;
+import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class EdiDataProcessorFactory extends DataProcessorFactory {
 
+    /**
+     * Values of the EDI format variables when the corresponding delimiter parameters are not set.
+     */
+    protected static final Map<String, String> DEFAULT_VARIABLES;
+
+    static {
+        final Map<String, String> defaultVariables = new HashMap<>();
+        defaultVariables.put("{http://www.ibm.com/dfdl/EDI/Format}SegmentTerm", "'%NL;%WSP*; '%WSP*;");
+        defaultVariables.put("{http://www.ibm.com/dfdl/EDI/Format}FieldSep", "+");
+        defaultVariables.put("{http://www.ibm.com/dfdl/EDI/Format}CompositeSep", ":");
+        defaultVariables.put("{http://www.ibm.com/dfdl/EDI/Format}EscapeChar", "?");
+        defaultVariables.put("{http://www.ibm.com/dfdl/EDI/Format}RepeatSep", "*");
+        defaultVariables.put("{http://www.ibm.com/dfdl/EDI/Format}DecimalSep", ".");
+        defaultVariables.put("{http://www.ibm.com/dfdl/EDI/Format}GroupingSep", ",");
+        DEFAULT_VARIABLES = Collections.unmodifiableMap(defaultVariables);
+    }
+
     @Inject
     protected ApplicationContext applicationContext;
 
     @Override
     public DataProcessor createDataProcessor() {
         try {
-            final Map<String, String> variables = new HashMap<>();
-            variables.put("{http://www.ibm.com/dfdl/EDI/Format}SegmentTerm", resourceConfig.getParameterValue("segmentTerminator", String.class, "'%NL;%WSP*; '%WSP*;"));
-            variables.put("{http://www.ibm.com/dfdl/EDI/Format}FieldSep", resourceConfig.getParameterValue("dataElementSeparator", String.class, "+"));
-            variables.put("{http://www.ibm.com/dfdl/EDI/Format}CompositeSep", resourceConfig.getParameterValue("compositeDataElementSeparator", String.class, ":"));
-            variables.put("{http://www.ibm.com/dfdl/EDI/Format}EscapeChar", resourceConfig.getParameterValue("escapeCharacter", String.class, "?"));
-            variables.put("{http://www.ibm.com/dfdl/EDI/Format}RepeatSep", resourceConfig.getParameterValue("repetitionSeparator", String.class, "*"));
-            variables.put("{http://www.ibm.com/dfdl/EDI/Format}DecimalSep", resourceConfig.getParameterValue("decimalSign", String.class, "."));
-            variables.put("{http://www.ibm.com/dfdl/EDI/Format}GroupingSep", resourceConfig.getParameterValue("triadSeparator", String.class, ","));
-
-            final List<Parameter<?>> variableParameters = resourceConfig.getParameters("variables");
-            if (variableParameters != null) {
-                for (Parameter<?> variableParameter : variableParameters) {
-                    final Map.Entry<String, String> variable = (Map.Entry<String, String>) variableParameter.getValue();
-                    variables.put(variable.getKey(), variable.getValue());
-                }
-            }
-
-            return doCreateDataProcessor(variables);
+            return doCreateDataProcessor(createVariables(resourceConfig));
         } catch (Throwable t) {
             throw new SmooksConfigException(t);
         }
     }
 
+    /**
+     * Creates the DFDL external variables from the delimiter and <code>variables</code> parameters of a resource.
+     *
+     * @param resourceConfig EDI parser or unparser resource
+     * @return the DFDL external variables
+     */
+    static Map<String, String> createVariables(final ResourceConfig resourceConfig) {
+        final Map<String, String> variables = new HashMap<>();
+        variables.put("{http://www.ibm.com/dfdl/EDI/Format}SegmentTerm", resourceConfig.getParameterValue("segmentTerminator", String.class, DEFAULT_VARIABLES.get("{http://www.ibm.com/dfdl/EDI/Format}SegmentTerm")));
+        variables.put("{http://www.ibm.com/dfdl/EDI/Format}FieldSep", resourceConfig.getParameterValue("dataElementSeparator", String.class, DEFAULT_VARIABLES.get("{http://www.ibm.com/dfdl/EDI/Format}FieldSep")));
+        variables.put("{http://www.ibm.com/dfdl/EDI/Format}CompositeSep", resourceConfig.getParameterValue("compositeDataElementSeparator", String.class, DEFAULT_VARIABLES.get("{http://www.ibm.com/dfdl/EDI/Format}CompositeSep")));
+        variables.put("{http://www.ibm.com/dfdl/EDI/Format}EscapeChar", resourceConfig.getParameterValue("escapeCharacter", String.class, DEFAULT_VARIABLES.get("{http://www.ibm.com/dfdl/EDI/Format}EscapeChar")));
+        variables.put("{http://www.ibm.com/dfdl/EDI/Format}RepeatSep", resourceConfig.getParameterValue("repetitionSeparator", String.class, DEFAULT_VARIABLES.get("{http://www.ibm.com/dfdl/EDI/Format}RepeatSep")));
+        variables.put("{http://www.ibm.com/dfdl/EDI/Format}DecimalSep", resourceConfig.getParameterValue("decimalSign", String.class, DEFAULT_VARIABLES.get("{http://www.ibm.com/dfdl/EDI/Format}DecimalSep")));
+        variables.put("{http://www.ibm.com/dfdl/EDI/Format}GroupingSep", resourceConfig.getParameterValue("triadSeparator", String.class, DEFAULT_VARIABLES.get("{http://www.ibm.com/dfdl/EDI/Format}GroupingSep")));
+
+        final List<Parameter<?>> variableParameters = resourceConfig.getParameters("variables");
+        if (variableParameters != null) {
+            for (Parameter<?> variableParameter : variableParameters) {
+                final Map.Entry<String, String> variable = (Map.Entry<String, String>) variableParameter.getValue();
+                variables.put(variable.getKey(), variable.getValue());
+            }
+        }
+
+        return variables;
+    }
+
     protected DataProcessor doCreateDataProcessor(final Map<String, String> variables) throws URISyntaxException {
-        final DfdlSchema dfdlSchema = new DfdlSchema(new URI(schemaUri), variables, ValidationMode.valueOf(resourceConfig.getParameterValue("validationMode", String.class, "Off")), Boolean.parseBoolean(resourceConfig.getParameterValue("cacheOnDisk", String.class, "false")), Boolean.parseBoolean(resourceConfig.getParameterValue("debugging", String.class, "false")), null);
-        return compileOrGet(dfdlSchema);
+        return compileOrGet(new URI(schemaUri), variables, Collections.emptyList(), schemaUri);
+    }
+
+    /**
+     * Gets the compiled processor from the JVM-wide {@link CompiledDataProcessorStore}. Debugging processors bypass the
+     * store since they carry a per-instance debugger. Compiled processors are persisted to the directory named by the
+     * <code>compiledSchemaDirectory</code> parameter, else by the {@link CompiledDataProcessorStore#DIRECTORY_PROPERTY}
+     * system property, else to the DFDL cartridge's working directory when <code>cacheOnDisk</code> is enabled.
+     *
+     * @param entrySchemaUri entry schema URI
+     * @param variables      DFDL external variables
+     * @param messageTypes   message types the entry schema was narrowed to, or an empty list
+     * @param schemaName     name identifying the schema when registering a debugging processor
+     * @return the compiled processor
+     */
+    protected DataProcessor compileOrGet(final URI entrySchemaUri, final Map<String, String> variables, final List<String> messageTypes, final String schemaName) {
+        final ValidationMode validationMode = ValidationMode.valueOf(resourceConfig.getParameterValue("validationMode", String.class, "Off"));
+        final boolean debugging = Boolean.parseBoolean(resourceConfig.getParameterValue("debugging", String.class, "false"));
+        if (debugging) {
+            final DfdlSchema dfdlSchema = new DfdlSchema(entrySchemaUri, variables, validationMode, Boolean.parseBoolean(resourceConfig.getParameterValue("cacheOnDisk", String.class, "false")), true, null) {
+                @Override
+                public String getName() {
+                    return schemaName + ":" + getValidationMode() + ":" + isCacheOnDisk() + ":" + isDebugging() + ":" + variables.toString();
+                }
+            };
+            return compileOrGet(dfdlSchema);
+        }
+
+        return CompiledDataProcessorStore.getInstance().getOrCompile(entrySchemaUri, variables, validationMode, messageTypes, getCompiledSchemaDirectory(resourceConfig));
+    }
+
+    /**
+     * Gets the directory compiled processors of a resource are persisted to.
+     *
+     * @param resourceConfig EDI parser or unparser resource
+     * @return the directory, or <code>null</code> to keep compiled processors in memory only
+     */
+    static File getCompiledSchemaDirectory(final ResourceConfig resourceConfig) {
+        final String compiledSchemaDirectory = resourceConfig.getParameterValue(CompiledDataProcessorStore.DIRECTORY_PARAMETER, String.class);
+        File directory = compiledSchemaDirectory == null ? CompiledDataProcessorStore.getDefaultDirectory() : new File(compiledSchemaDirectory);
+        if (directory == null && Boolean.parseBoolean(resourceConfig.getParameterValue("cacheOnDisk", String.class, "false"))) {
+            directory = new File(DfdlSchema.WORKING_DIRECTORY);
+        }
+
+        return directory;
     }
 
     @Override
@@ -0,0 +1,408 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi;
+
+import org.apache.daffodil.japi.DaffodilParseXMLReader;
+import org.apache.daffodil.japi.DataProcessor;
+import org.apache.daffodil.japi.Diagnostic;
+import org.apache.daffodil.japi.ParseResult;
+import org.apache.daffodil.japi.io.InputSourceDataInputStream;
+import org.smooks.api.ApplicationContext;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+import org.smooks.api.resource.config.ResourceConfig;
+import org.smooks.api.resource.reader.SmooksXMLReader;
+import org.smooks.cartridges.dfdl.DataProcessorFactory;
+import org.smooks.engine.injector.Scope;
+import org.smooks.engine.lifecycle.PostConstructLifecyclePhase;
+import org.smooks.engine.lookup.LifecycleManagerLookup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.xml.XMLConstants;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * EDI reader reusing its DFDL parse state across executions.
+ * <p/>
+ * Each reader pools up to one parse state per available processor: a Daffodil SAX reader, the handler forwarding its
+ * events and an input buffer, which are reset and reused by later parses rather than allocated anew. A parse takes a
+ * state from the pool, or creates one when the pool is empty, e.g., for a nested parse, and hands it back once done.
+ * Inputs of up to {@link #MAX_BUFFERED_INPUT} bytes, which covers the typical status or acknowledgement message, are
+ * read into the buffer and parsed from memory. Larger inputs are parsed from the stream once the buffer is full. EDI
+ * is read as bytes, so an input source with only a character stream is rejected. As with the DFDL cartridge parser,
+ * the input is parsed until its end, one message after the other, and the events are those of that parser for the
+ * same processor.
+ */
+public class EdiParser implements SmooksXMLReader {
+
+    /**
+     * Largest input, in bytes, parsed from the reusable buffer.
+     */
+    public static final int MAX_BUFFERED_INPUT = 64 * 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EdiParser.class);
+    private static final String NAMESPACE_PREFIXES_FEATURE = "http://xml.org/sax/features/namespace-prefixes";
+    private static final String PARSE_RESULT_PROPERTY = "urn:ogf:dfdl:2013:imp:daffodil.apache.org:2018:sax:ParseResult";
+    private static final DefaultHandler NO_OP_HANDLER = new DefaultHandler();
+    private static final int MAX_POOLED_PARSE_STATES = Runtime.getRuntime().availableProcessors();
+
+    @Inject
+    private ResourceConfig resourceConfig;
+
+    @Inject
+    private ApplicationContext applicationContext;
+
+    private final Map<String, Boolean> features = new HashMap<>();
+    private final BlockingQueue<ParseState> parseStates = new ArrayBlockingQueue<>(MAX_POOLED_PARSE_STATES);
+    private DataProcessor dataProcessor;
+    private boolean indent;
+    private ContentHandler contentHandler;
+    private DTDHandler dtdHandler;
+    private EntityResolver entityResolver;
+    private ErrorHandler errorHandler;
+
+    public EdiParser() {
+
+    }
+
+    public EdiParser(final DataProcessor dataProcessor) {
+        this.dataProcessor = dataProcessor;
+    }
+
+    @PostConstruct
+    public void postConstruct() {
+        indent = Boolean.parseBoolean(resourceConfig.getParameterValue("indent", String.class, "false"));
+        dataProcessor = createDataProcessor(resourceConfig);
+    }
+
+    /**
+     * Creates a processor with the <code>dataProcessorFactory</code> of a resource config.
+     *
+     * @param resourceConfig config of the processor
+     * @return the processor
+     */
+    protected DataProcessor createDataProcessor(final ResourceConfig resourceConfig) {
+        final String dataProcessorFactoryClassName = resourceConfig.getParameterValue("dataProcessorFactory", String.class, EdiDataProcessorFactory.class.getName());
+        final DataProcessorFactory dataProcessorFactory;
+        try {
+            dataProcessorFactory = (DataProcessorFactory) Class.forName(dataProcessorFactoryClassName).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new SmooksConfigException(e);
+        }
+        applicationContext.getRegistry().lookup(new LifecycleManagerLookup()).applyPhase(dataProcessorFactory, new PostConstructLifecyclePhase(new Scope(applicationContext.getRegistry(), resourceConfig, dataProcessorFactory)));
+        return dataProcessorFactory.createDataProcessor();
+    }
+
+    protected DataProcessor getDataProcessor() {
+        return dataProcessor;
+    }
+
+    protected boolean isIndent() {
+        return indent;
+    }
+
+    @Override
+    public void setExecutionContext(final ExecutionContext executionContext) {
+
+    }
+
+    public EdiParser setIndent(final boolean indent) {
+        this.indent = indent;
+        return this;
+    }
+
+    @Override
+    public void parse(final InputSource input) throws IOException, SAXException {
+        if (contentHandler == null) {
+            throw new IllegalStateException("'contentHandler' not set.  Cannot parse EDI stream.");
+        }
+
+        if (input.getByteStream() != null) {
+            parse(input.getByteStream());
+        } else if (input.getCharacterStream() != null) {
+            throw new SAXException("Cannot parse EDI from a character stream: EDI is decoded by the DFDL schema and needs a byte stream");
+        } else if (input.getSystemId() != null) {
+            try (InputStream inputStream = new URL(input.getSystemId()).openStream()) {
+                parse(inputStream);
+            }
+        } else {
+            throw new SAXException("Cannot parse EDI from an input source without a byte stream or a system ID");
+        }
+    }
+
+    private void parse(final InputStream inputStream) throws IOException, SAXException {
+        ParseState parseState = parseStates.poll();
+        if (parseState == null) {
+            parseState = new ParseState(dataProcessor);
+        }
+        parseState.contentHandler.reset(contentHandler, indent);
+        parseState.xmlReader.setErrorHandler(errorHandler == null ? NO_OP_HANDLER : errorHandler);
+        try {
+            final InputSourceDataInputStream inputSourceDataInputStream = parseState.read(decorate(inputStream));
+            ParseResult parseResult = null;
+            while (parseResult == null || !parseResult.location().isAtEnd()) {
+                final long bytePos = parseResult == null ? 1 : parseResult.location().bytePos1b();
+                parseState.xmlReader.parse(inputSourceDataInputStream);
+                parseResult = (ParseResult) parseState.xmlReader.getProperty(PARSE_RESULT_PROPERTY);
+                for (Diagnostic diagnostic : parseResult.getDiagnostics()) {
+                    if (diagnostic.isError()) {
+                        throw new SmooksException(diagnostic.getSomeMessage(), diagnostic.getSomeCause());
+                    } else {
+                        LOGGER.debug(diagnostic.getSomeMessage());
+                    }
+                }
+                if (parseResult.location().bytePos1b() == bytePos && !parseResult.location().isAtEnd()) {
+                    throw new SmooksException("Failed to parse EDI stream: no data consumed at byte position " + bytePos);
+                }
+            }
+        } finally {
+            parseState.reset();
+            parseStates.offer(parseState);
+        }
+    }
+
+    /**
+     * Decorates the EDI input before it is parsed. The default implementation returns the input as is.
+     *
+     * @param inputStream EDI input
+     * @return the stream to parse
+     */
+    protected InputStream decorate(final InputStream inputStream) {
+        return inputStream;
+    }
+
+    @Override
+    public void parse(final String systemId) throws IOException, SAXException {
+        parse(new InputSource(systemId));
+    }
+
+    @Override
+    public boolean getFeature(final String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+        final Boolean feature = features.get(name);
+        return feature != null && feature;
+    }
+
+    @Override
+    public void setFeature(final String name, final boolean value) throws SAXNotRecognizedException, SAXNotSupportedException {
+        features.put(name, value);
+    }
+
+    @Override
+    public Object getProperty(final String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+        return null;
+    }
+
+    @Override
+    public void setProperty(final String name, final Object value) throws SAXNotRecognizedException, SAXNotSupportedException {
+
+    }
+
+    @Override
+    public void setEntityResolver(final EntityResolver entityResolver) {
+        this.entityResolver = entityResolver;
+    }
+
+    @Override
+    public EntityResolver getEntityResolver() {
+        return entityResolver;
+    }
+
+    @Override
+    public void setDTDHandler(final DTDHandler dtdHandler) {
+        this.dtdHandler = dtdHandler;
+    }
+
+    @Override
+    public DTDHandler getDTDHandler() {
+        return dtdHandler;
+    }
+
+    @Override
+    public void setContentHandler(final ContentHandler contentHandler) {
+        this.contentHandler = contentHandler;
+    }
+
+    @Override
+    public ContentHandler getContentHandler() {
+        return contentHandler;
+    }
+
+    @Override
+    public void setErrorHandler(final ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    @Override
+    public ErrorHandler getErrorHandler() {
+        return errorHandler;
+    }
+
+    /**
+     * Parse state of a reader, used by one parse at a time and reused by later parses.
+     */
+    private static final class ParseState {
+        private final DaffodilParseXMLReader xmlReader;
+        private final ContentHandlerOutputter contentHandler = new ContentHandlerOutputter();
+        private byte[] buffer = new byte[4096];
+
+        private ParseState(final DataProcessor dataProcessor) {
+            xmlReader = dataProcessor.newXMLReaderInstance();
+            xmlReader.setFeature(NAMESPACE_PREFIXES_FEATURE, true);
+            xmlReader.setContentHandler(contentHandler);
+        }
+
+        /**
+         * Reads the input into the buffer, growing it up to {@link #MAX_BUFFERED_INPUT} bytes, and falls back to
+         * streaming the rest of the input once the buffer is full.
+         */
+        private InputSourceDataInputStream read(final InputStream inputStream) throws IOException {
+            int length = 0;
+            int count;
+            while ((count = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+                length += count;
+                if (length == buffer.length) {
+                    if (buffer.length >= MAX_BUFFERED_INPUT) {
+                        return new InputSourceDataInputStream(new SequenceInputStream(new ByteArrayInputStream(buffer), inputStream));
+                    }
+                    final byte[] grownBuffer = new byte[Math.min(buffer.length * 2, MAX_BUFFERED_INPUT)];
+                    System.arraycopy(buffer, 0, grownBuffer, 0, length);
+                    buffer = grownBuffer;
+                }
+            }
+
+            return new InputSourceDataInputStream(ByteBuffer.wrap(buffer, 0, length).slice());
+        }
+
+        /**
+         * Drops the handlers of the last parse so that they are not held on to until the next one.
+         */
+        private void reset() {
+            contentHandler.reset(NO_OP_HANDLER, false);
+            xmlReader.setErrorHandler(NO_OP_HANDLER);
+        }
+    }
+
+    /**
+     * Forwards the events of the Daffodil reader the way the DFDL cartridge's infoset outputter emits them: namespace
+     * declarations, which the reader reports as attributes with a qualified name only, are named, and elements are
+     * indented with a new line and tabs when asked to, leaving the content of simple elements untouched.
+     */
+    private static final class ContentHandlerOutputter extends XMLFilterImpl {
+        private final AttributesImpl attributes = new AttributesImpl();
+        private char[] indentation = "\n\t\t\t\t\t\t\t\t".toCharArray();
+        private boolean indent;
+        private int depth;
+        private boolean endedElement;
+
+        private void reset(final ContentHandler contentHandler, final boolean indent) {
+            setContentHandler(contentHandler);
+            this.indent = indent;
+            attributes.clear();
+            depth = 0;
+            endedElement = false;
+        }
+
+        @Override
+        public void startElement(final String uri, final String localName, final String qName, final Attributes atts) throws SAXException {
+            attributes.clear();
+            for (int i = 0; i < atts.getLength(); i++) {
+                final String attributeQName = atts.getQName(i);
+                if (atts.getLocalName(i).isEmpty() && (attributeQName.equals(XMLConstants.XMLNS_ATTRIBUTE) || attributeQName.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":"))) {
+                    attributes.addAttribute(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, attributeQName.substring(attributeQName.indexOf(':') + 1), attributeQName, atts.getType(i), atts.getValue(i));
+                } else {
+                    attributes.addAttribute(atts.getURI(i), atts.getLocalName(i), attributeQName, atts.getType(i), atts.getValue(i));
+                }
+            }
+            if (indent && depth > 0) {
+                indent(depth);
+            }
+            depth++;
+            endedElement = false;
+            super.startElement(uri, localName, qName, attributes);
+        }
+
+        @Override
+        public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+            depth--;
+            if (indent && endedElement) {
+                indent(depth);
+            }
+            endedElement = true;
+            super.endElement(uri, localName, qName);
+        }
+
+        private void indent(final int tabs) throws SAXException {
+            if (indentation.length <= tabs) {
+                indentation = Arrays.copyOf(indentation, Math.max(indentation.length * 2, tabs + 1));
+                Arrays.fill(indentation, 1, indentation.length, '\t');
+            }
+            super.characters(indentation, 0, tabs + 1);
+        }
+    }
+}
@@ -58,6 +58,7 @@ public class EdiReaderConfigurator extends DfdlReaderConfigurator {
     protected String repetitionSeparator ="*";
     protected String decimalSign = ".";
     protected String triadSeparator = ",";
+    protected String compiledSchemaDirectory;
 
     public EdiReaderConfigurator(final String schemaUri) {
         super(schemaUri);
@@ -105,6 +106,12 @@ public class EdiReaderConfigurator extends DfdlReaderConfigurator {
         return this;
     }
 
+    public EdiReaderConfigurator setCompiledSchemaDirectory(String compiledSchemaDirectory) {
+        AssertArgument.isNotNullAndNotEmpty(compiledSchemaDirectory, "compiledSchemaDirectory");
+        this.compiledSchemaDirectory = compiledSchemaDirectory;
+        return this;
+    }
+
     @Override
     protected String getDataProcessorFactory() {
         return "org.smooks.cartridges.edi.EdiDataProcessorFactory";
@@ -115,6 +122,7 @@ public class EdiReaderConfigurator extends DfdlReaderConfigurator {
         final List<ResourceConfig> resourceConfigs = super.toConfig();
         final ResourceConfig resourceConfig = resourceConfigs.get(0);
 
+        resourceConfig.setResource(EdiParser.class.getName());
         resourceConfig.setParameter(new DefaultParameter<>("dataProcessorFactory", getDataProcessorFactory()));
         resourceConfig.setParameter(new DefaultParameter<>("segmentTerminator", segmentTerminator));
         resourceConfig.setParameter(new DefaultParameter<>("dataElementSeparator", dataElementSeparator));
@@ -123,6 +131,9 @@ public class EdiReaderConfigurator extends DfdlReaderConfigurator {
         resourceConfig.setParameter(new DefaultParameter<>("repetitionSeparator", repetitionSeparator));
         resourceConfig.setParameter(new DefaultParameter<>("decimalSign", decimalSign));
         resourceConfig.setParameter(new DefaultParameter<>("triadSeparator", triadSeparator));
+        if (compiledSchemaDirectory != null) {
+            resourceConfig.setParameter(new DefaultParameter<>(CompiledDataProcessorStore.DIRECTORY_PARAMETER, compiledSchemaDirectory));
+        }
 
         return resourceConfigs;
     }
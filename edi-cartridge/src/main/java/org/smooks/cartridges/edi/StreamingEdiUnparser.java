@@ -0,0 +1,396 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi;
+
+import org.apache.daffodil.japi.DataProcessor;
+import org.apache.daffodil.japi.Diagnostic;
+import org.apache.daffodil.japi.UnparseResult;
+import org.apache.daffodil.japi.ValidationMode;
+import org.apache.daffodil.japi.infoset.W3CDOMInfosetInputter;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+import org.smooks.api.TypedKey;
+import org.smooks.api.lifecycle.ExecutionLifecycleCleanable;
+import org.smooks.api.resource.config.ResourceConfig;
+import org.smooks.api.resource.visitor.sax.ng.ParameterizedVisitor;
+import org.smooks.io.Stream;
+import org.smooks.io.payload.FilterResult;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Result;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * EDI unparser writing each selected fragment out as soon as the fragment ends.
+ * <p/>
+ * Unlike <code>edi:unparser</code>, which unparses the whole document under <code>unparseOnNode</code> in one go,
+ * every element matched by <code>unparseOnNode</code> is unparsed on its own, with the global element of the same
+ * name in the DFDL schema as root, and written to the result stream before the next fragment is read. Smooks holds
+ * only the fragment being unparsed in memory. <code>unparseOnNode</code> would typically select the envelope
+ * segments and the messages, for instance <code>UNB,Message,UNZ</code>. Elements enclosing the fragments are not
+ * unparsed, so they must not carry any representation of their own, such as initiators or terminators.
+ * <p/>
+ * With a <code>parallelism</code> greater than one, fragments are unparsed on a pool of that many threads, each into
+ * its own buffer. Completed fragments are written out in document order, in batches, and at most four fragments per
+ * thread are pending at any time so that memory stays bounded.
+ * <p/>
+ * Unparsed fragments are written as they are to the output stream of a {@link StreamResult}. For any other result,
+ * they are decoded with the encoding set by the <code>dfdl:format</code> of the schema, or with the
+ * <code>encoding</code> parameter when the schema computes its encoding at runtime. Debugging is not supported.
+ */
+public class StreamingEdiUnparser implements ParameterizedVisitor, ExecutionLifecycleCleanable {
+
+    private static final String DFDL_NAMESPACE = "http://www.ogf.org/dfdl/dfdl-1.0/";
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal.withInitial(() -> {
+        try {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new SmooksException(e);
+        }
+    });
+
+    @Inject
+    private ResourceConfig resourceConfig;
+
+    private final TypedKey<Deque<Future<byte[]>>> pendingFragmentsTypedKey = new TypedKey<>();
+    private final Map<String, DataProcessor> dataProcessors = new ConcurrentHashMap<>();
+    private URI schemaUri;
+    private Map<String, String> variables;
+    private ValidationMode validationMode;
+    private File compiledSchemaDirectory;
+    private Charset encoding;
+    private ExecutorService executorService;
+    private int maxPendingFragments;
+
+    @PostConstruct
+    public void postConstruct() throws URISyntaxException {
+        if (Boolean.parseBoolean(resourceConfig.getParameterValue("debugging", String.class, "false"))) {
+            throw new SmooksConfigException("Debugging is not supported by the streaming EDI unparser");
+        }
+        schemaUri = new URI(resourceConfig.getParameterValue("schemaURI", String.class));
+        variables = EdiDataProcessorFactory.createVariables(resourceConfig);
+        validationMode = ValidationMode.valueOf(resourceConfig.getParameterValue("validationMode", String.class, "Off"));
+        compiledSchemaDirectory = EdiDataProcessorFactory.getCompiledSchemaDirectory(resourceConfig);
+        final String schemaEncoding = readSchemaEncoding(schemaUri);
+        encoding = Charset.forName(schemaEncoding == null ? resourceConfig.getParameterValue("encoding", String.class, "UTF-8") : schemaEncoding);
+
+        final int parallelism = Integer.parseInt(resourceConfig.getParameterValue("parallelism", String.class, "1"));
+        if (parallelism > 1) {
+            executorService = Executors.newFixedThreadPool(parallelism, runnable -> {
+                final Thread thread = new Thread(runnable, "smooks-edi-unparser-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            maxPendingFragments = parallelism * 4;
+        }
+    }
+
+    @PreDestroy
+    public void preDestroy() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Override
+    public int getMaxNodeDepth() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void visitBefore(final Element element, final ExecutionContext executionContext) {
+
+    }
+
+    @Override
+    public void visitAfter(final Element element, final ExecutionContext executionContext) {
+        final Document fragment = DOCUMENT_BUILDER.get().newDocument();
+        fragment.appendChild(fragment.importNode(element, true));
+        final DataProcessor dataProcessor = getDataProcessor(element);
+
+        if (executorService == null) {
+            write(Collections.singletonList(unparse(dataProcessor, fragment)), executionContext);
+        } else {
+            Deque<Future<byte[]>> pendingFragments = executionContext.get(pendingFragmentsTypedKey);
+            if (pendingFragments == null) {
+                pendingFragments = new ArrayDeque<>();
+                executionContext.put(pendingFragmentsTypedKey, pendingFragments);
+            }
+            pendingFragments.add(executorService.submit(() -> unparse(dataProcessor, fragment)));
+            drain(pendingFragments, maxPendingFragments, executionContext);
+        }
+    }
+
+    /**
+     * Writes out the fragments still being unparsed in parallel, in document order, unless the execution terminated
+     * with an error, in which case they are cancelled.
+     */
+    @Override
+    public void executeExecutionLifecycleCleanup(final ExecutionContext executionContext) {
+        final Deque<Future<byte[]>> pendingFragments = executionContext.get(pendingFragmentsTypedKey);
+        if (pendingFragments != null) {
+            executionContext.remove(pendingFragmentsTypedKey);
+            if (executionContext.getTerminationError() == null) {
+                drain(pendingFragments, 0, executionContext);
+            } else {
+                cancel(pendingFragments);
+            }
+        }
+    }
+
+    /**
+     * Writes out, in document order, the completed fragments at the head of the queue together with as many fragments
+     * as needed to bring the queue down to the given size.
+     */
+    private void drain(final Deque<Future<byte[]>> pendingFragments, final int maxPendingFragments, final ExecutionContext executionContext) {
+        final List<byte[]> completedFragments = new ArrayList<>();
+        try {
+            while (!pendingFragments.isEmpty() && (pendingFragments.size() > maxPendingFragments || pendingFragments.peek().isDone())) {
+                completedFragments.add(pendingFragments.remove().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmooksException(e);
+        } catch (ExecutionException e) {
+            cancel(pendingFragments);
+            if (e.getCause() instanceof SmooksException) {
+                throw (SmooksException) e.getCause();
+            }
+            throw new SmooksException(e.getCause());
+        }
+        if (!completedFragments.isEmpty()) {
+            write(completedFragments, executionContext);
+        }
+    }
+
+    private static void cancel(final Deque<Future<byte[]>> pendingFragments) {
+        pendingFragments.forEach(pendingFragment -> pendingFragment.cancel(true));
+        pendingFragments.clear();
+    }
+
+    private byte[] unparse(final DataProcessor dataProcessor, final Document fragment) {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        final UnparseResult unparseResult = dataProcessor.unparse(new W3CDOMInfosetInputter(fragment), Channels.newChannel(byteArrayOutputStream));
+        if (unparseResult.isError()) {
+            final StringBuilder message = new StringBuilder("Failed to unparse fragment [").append(fragment.getDocumentElement().getTagName()).append("]");
+            for (Diagnostic diagnostic : unparseResult.getDiagnostics()) {
+                message.append(System.lineSeparator()).append(diagnostic.getMessage());
+            }
+            throw new SmooksException(message.toString());
+        }
+
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Writes unparsed fragments to the result, one after the other, without copying them into a single buffer. The
+     * bytes go straight to the output stream of a {@link StreamResult} and are otherwise decoded with the
+     * <code>encoding</code> parameter for the result writer.
+     */
+    private void write(final List<byte[]> unparsedFragments, final ExecutionContext executionContext) {
+        try {
+            final Writer writer = Stream.out(executionContext);
+            final Result result = FilterResult.getResult(executionContext, StreamResult.class);
+            if (result instanceof StreamResult && ((StreamResult) result).getOutputStream() != null) {
+                writer.flush();
+                final OutputStream outputStream = ((StreamResult) result).getOutputStream();
+                for (byte[] unparsedFragment : unparsedFragments) {
+                    outputStream.write(unparsedFragment);
+                }
+            } else {
+                for (byte[] unparsedFragment : unparsedFragments) {
+                    writer.write(new String(unparsedFragment, encoding));
+                }
+            }
+        } catch (IOException e) {
+            throw new SmooksException(e);
+        }
+    }
+
+    /**
+     * Reads the encoding set by the <code>dfdl:format</code> of the entry schema, following format references into
+     * the imported and included schemas.
+     *
+     * @return the encoding or <code>null</code> when it is computed at runtime, is not a Java charset or is not found
+     */
+    static String readSchemaEncoding(final URI schemaUri) {
+        try {
+            final URI entrySchemaUri = CompiledDataProcessorStore.resolveRoot(schemaUri);
+            final Element schema = parseSchema(entrySchemaUri);
+            for (Element format : getSchemaFormats(schema)) {
+                final String schemaEncoding = readEncoding(entrySchemaUri, format, new HashSet<>());
+                return schemaEncoding != null && Charset.isSupported(schemaEncoding) ? schemaEncoding : null;
+            }
+        } catch (Exception e) {
+            return null;
+        }
+
+        return null;
+    }
+
+    private static String readEncoding(final URI schemaUri, final Element format, final Set<String> visitedFormats) throws Exception {
+        if (format.hasAttribute("encoding")) {
+            final String schemaEncoding = format.getAttribute("encoding");
+            return schemaEncoding.startsWith("{") ? null : schemaEncoding;
+        }
+        final String ref = format.getAttribute("ref");
+        final int colonIndex = ref.indexOf(':');
+        final String namespace = format.lookupNamespaceURI(colonIndex < 0 ? null : ref.substring(0, colonIndex));
+        final String name = ref.substring(colonIndex + 1);
+        if (ref.isEmpty() || !visitedFormats.add("{" + namespace + "}" + name)) {
+            return null;
+        }
+
+        return readDefinedEncoding(schemaUri, namespace == null ? "" : namespace, name, visitedFormats, new HashSet<>());
+    }
+
+    private static String readDefinedEncoding(final URI schemaUri, final String namespace, final String name, final Set<String> visitedFormats, final Set<URI> visitedSchemas) throws Exception {
+        if (!visitedSchemas.add(schemaUri)) {
+            return null;
+        }
+        final Element schema = parseSchema(schemaUri);
+        if (schema.getAttribute("targetNamespace").equals(namespace)) {
+            final NodeList defineFormats = schema.getElementsByTagNameNS(DFDL_NAMESPACE, "defineFormat");
+            for (int i = 0; i < defineFormats.getLength(); i++) {
+                final Element defineFormat = (Element) defineFormats.item(i);
+                if (defineFormat.getAttribute("name").equals(name)) {
+                    for (Element format : getChildElements(defineFormat, DFDL_NAMESPACE, "format")) {
+                        return readEncoding(schemaUri, format, visitedFormats);
+                    }
+                }
+            }
+        }
+        for (Node child = schema.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(child.getNamespaceURI()) && (child.getLocalName().equals("import") || child.getLocalName().equals("include"))) {
+                final URI includedSchemaUri = CompiledDataProcessorStore.resolve(schemaUri, ((Element) child).getAttribute("schemaLocation"));
+                if (includedSchemaUri != null) {
+                    final String schemaEncoding = readDefinedEncoding(includedSchemaUri, namespace, name, visitedFormats, visitedSchemas);
+                    if (schemaEncoding != null) {
+                        return schemaEncoding;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static Element parseSchema(final URI schemaUri) throws Exception {
+        final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+
+        return documentBuilderFactory.newDocumentBuilder().parse(schemaUri.toString()).getDocumentElement();
+    }
+
+    /**
+     * Gets the <code>dfdl:format</code> elements of the schema annotations.
+     */
+    private static List<Element> getSchemaFormats(final Element schema) {
+        final List<Element> formats = new ArrayList<>();
+        for (Element annotation : getChildElements(schema, XMLConstants.W3C_XML_SCHEMA_NS_URI, "annotation")) {
+            for (Element appinfo : getChildElements(annotation, XMLConstants.W3C_XML_SCHEMA_NS_URI, "appinfo")) {
+                formats.addAll(getChildElements(appinfo, DFDL_NAMESPACE, "format"));
+            }
+        }
+
+        return formats;
+    }
+
+    private static List<Element> getChildElements(final Element parent, final String namespace, final String localName) {
+        final List<Element> childElements = new ArrayList<>();
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && namespace.equals(child.getNamespaceURI()) && child.getLocalName().equals(localName)) {
+                childElements.add((Element) child);
+            }
+        }
+
+        return childElements;
+    }
+
+    private DataProcessor getDataProcessor(final Element element) {
+        final String rootName = element.getLocalName() == null ? element.getTagName() : element.getLocalName();
+        final String rootNamespace = element.getNamespaceURI() == null ? "" : element.getNamespaceURI();
+        return dataProcessors.computeIfAbsent("{" + rootNamespace + "}" + rootName, key -> {
+            try {
+                return CompiledDataProcessorStore.getInstance().getOrCompile(schemaUri, rootName, rootNamespace, variables, validationMode, Collections.emptyList(), compiledSchemaDirectory);
+            } catch (SmooksConfigException e) {
+                throw new SmooksException("No global element [" + key + "] to unparse the fragment with in [" + schemaUri + "]", e);
+            }
+        });
+    }
+}
@@ -0,0 +1,175 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi;
+
+import org.apache.daffodil.japi.DataProcessor;
+import org.apache.daffodil.japi.ValidationMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompiledDataProcessorStoreTestCase {
+
+    private static final URI MAPPING_SCHEMA_URI = URI.create("/edi-to-xml-mapping.dfdl.xsd");
+    private static final String ENTRY_SCHEMA = "<schema><include schemaLocation=\"common.xsd\"/></schema>";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testCreateKeyIsContentAddressed() throws IOException {
+        final URI schemaUri = writeSchemaSet(tempDir.resolve("a"), "<schema/>");
+        final URI relocatedSchemaUri = writeSchemaSet(tempDir.resolve("b"), "<schema/>");
+        final URI changedSchemaUri = writeSchemaSet(tempDir.resolve("c"), "<schema><element name=\"x\"/></schema>");
+
+        final String key = CompiledDataProcessorStore.createKey(schemaUri, Collections.emptyMap(), ValidationMode.Off, Collections.emptyList());
+        assertEquals(key, CompiledDataProcessorStore.createKey(relocatedSchemaUri, Collections.emptyMap(), ValidationMode.Off, Collections.emptyList()));
+        assertNotEquals(key, CompiledDataProcessorStore.createKey(changedSchemaUri, Collections.emptyMap(), ValidationMode.Off, Collections.emptyList()));
+    }
+
+    @Test
+    public void testCreateKeyIncludesSettings() throws IOException {
+        final URI schemaUri = writeSchemaSet(tempDir, "<schema/>");
+        final Map<String, String> variables = new HashMap<>();
+        variables.put("{http://www.ibm.com/dfdl/EDI/Format}FieldSep", "+");
+        variables.put("{http://www.ibm.com/dfdl/EDI/Format}CompositeSep", ":");
+        final Map<String, String> reorderedVariables = new LinkedHashMap<>();
+        reorderedVariables.put("{http://www.ibm.com/dfdl/EDI/Format}CompositeSep", ":");
+        reorderedVariables.put("{http://www.ibm.com/dfdl/EDI/Format}FieldSep", "+");
+
+        final String key = CompiledDataProcessorStore.createKey(schemaUri, variables, ValidationMode.Off, Arrays.asList("INVOIC", "ORDERS"));
+        assertEquals(key, CompiledDataProcessorStore.createKey(schemaUri, reorderedVariables, ValidationMode.Off, Arrays.asList("ORDERS", "INVOIC")));
+        assertNotEquals(key, CompiledDataProcessorStore.createKey(schemaUri, variables, ValidationMode.Limited, Arrays.asList("INVOIC", "ORDERS")));
+        assertNotEquals(key, CompiledDataProcessorStore.createKey(schemaUri, variables, ValidationMode.Off, Collections.singletonList("INVOIC")));
+        assertNotEquals(key, CompiledDataProcessorStore.createKey(schemaUri, Collections.emptyMap(), ValidationMode.Off, Arrays.asList("INVOIC", "ORDERS")));
+    }
+
+    @Test
+    public void testGetOrCompilePersistsUnderKey() throws IOException {
+        final File directory = tempDir.toFile();
+        final DataProcessor dataProcessor = new CompiledDataProcessorStore().getOrCompile(MAPPING_SCHEMA_URI, EdiDataProcessorFactory.DEFAULT_VARIABLES, ValidationMode.Off, Collections.emptyList(), directory);
+
+        assertNotNull(dataProcessor);
+        assertTrue(new File(directory, createMappingSchemaKey() + ".bin").isFile());
+    }
+
+    @Test
+    public void testGetOrCompileReloadsAfterRestart() throws IOException {
+        final File directory = tempDir.toFile();
+        new CompiledDataProcessorStore().getOrCompile(MAPPING_SCHEMA_URI, EdiDataProcessorFactory.DEFAULT_VARIABLES, ValidationMode.Off, Collections.emptyList(), directory);
+        final File compiledSchemaFile = new File(directory, createMappingSchemaKey() + ".bin");
+        assertTrue(compiledSchemaFile.setLastModified(0));
+
+        final DataProcessor dataProcessor = new CompiledDataProcessorStore().getOrCompile(MAPPING_SCHEMA_URI, EdiDataProcessorFactory.DEFAULT_VARIABLES, ValidationMode.Off, Collections.emptyList(), directory);
+
+        assertNotNull(dataProcessor);
+        assertEquals(0, compiledSchemaFile.lastModified());
+    }
+
+    @Test
+    public void testForgetPersisted() throws IOException {
+        final CompiledDataProcessorStore compiledDataProcessorStore = new CompiledDataProcessorStore();
+        final File directory = tempDir.toFile();
+        compiledDataProcessorStore.getOrCompile(MAPPING_SCHEMA_URI, EdiDataProcessorFactory.DEFAULT_VARIABLES, ValidationMode.Off, Collections.emptyList(), directory);
+        final File compiledSchemaFile = new File(directory, createMappingSchemaKey() + ".bin");
+        assertTrue(compiledSchemaFile.delete());
+
+        compiledDataProcessorStore.getOrCompile(MAPPING_SCHEMA_URI, EdiDataProcessorFactory.DEFAULT_VARIABLES, ValidationMode.Off, Collections.emptyList(), directory);
+        assertFalse(compiledSchemaFile.exists());
+
+        compiledDataProcessorStore.forgetPersisted(directory);
+        compiledDataProcessorStore.getOrCompile(MAPPING_SCHEMA_URI, EdiDataProcessorFactory.DEFAULT_VARIABLES, ValidationMode.Off, Collections.emptyList(), directory);
+        assertTrue(compiledSchemaFile.isFile());
+    }
+
+    @Test
+    public void testGetOrCompileCompilesOnceConcurrently() throws Exception {
+        final CompiledDataProcessorStore compiledDataProcessorStore = new CompiledDataProcessorStore();
+        final File directory = tempDir.toFile();
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<DataProcessor>> dataProcessors = executorService.invokeAll(Collections.nCopies(4, (Callable<DataProcessor>) () -> compiledDataProcessorStore.getOrCompile(MAPPING_SCHEMA_URI, EdiDataProcessorFactory.DEFAULT_VARIABLES, ValidationMode.Off, Collections.emptyList(), directory)));
+            final DataProcessor dataProcessor = dataProcessors.get(0).get();
+            assertNotNull(dataProcessor);
+            for (Future<DataProcessor> otherDataProcessor : dataProcessors) {
+                assertSame(dataProcessor, otherDataProcessor.get());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        assertEquals(1, directory.list().length);
+    }
+
+    private String createMappingSchemaKey() throws IOException {
+        return CompiledDataProcessorStore.createKey(MAPPING_SCHEMA_URI, EdiDataProcessorFactory.DEFAULT_VARIABLES, ValidationMode.Off, Collections.emptyList());
+    }
+
+    private URI writeSchemaSet(final Path directory, final String includedSchema) throws IOException {
+        Files.createDirectories(directory);
+        Files.write(directory.resolve("common.xsd"), includedSchema.getBytes(StandardCharsets.UTF_8));
+        return Files.write(directory.resolve("entry.xsd"), ENTRY_SCHEMA.getBytes(StandardCharsets.UTF_8)).toUri();
+    }
+}
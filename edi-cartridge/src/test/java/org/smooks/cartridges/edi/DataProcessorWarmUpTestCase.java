@@ -0,0 +1,108 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi;
+
+import org.apache.daffodil.japi.DataProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DataProcessorWarmUpTestCase {
+
+    @Test
+    public void testSubmit() throws Exception {
+        try (DataProcessorWarmUp dataProcessorWarmUp = new DataProcessorWarmUp(2)) {
+            final Future<DataProcessor> dataProcessor = dataProcessorWarmUp.submit(new URI("/edi-to-xml-mapping.dfdl.xsd"));
+            assertSame(dataProcessor, dataProcessorWarmUp.submit(new URI("/edi-to-xml-mapping.dfdl.xsd")));
+
+            assertTrue(dataProcessorWarmUp.awaitReady(5, TimeUnit.MINUTES));
+            assertTrue(dataProcessorWarmUp.isReady());
+            assertEquals(1, dataProcessorWarmUp.getSubmittedCount());
+            assertEquals(1, dataProcessorWarmUp.getCompletedCount());
+            assertNotNull(dataProcessor.get());
+        }
+    }
+
+    @Test
+    public void testSubmitDeduplicatesByCompiledSchema() throws Exception {
+        try (DataProcessorWarmUp dataProcessorWarmUp = new DataProcessorWarmUp(1)) {
+            // keeps the schema pending while it is submitted again
+            final CountDownLatch countDownLatch = new CountDownLatch(1);
+            dataProcessorWarmUp.submit("blocker", () -> {
+                countDownLatch.await();
+                return null;
+            });
+            final Future<DataProcessor> dataProcessor = dataProcessorWarmUp.submit(new URI("/edi-to-xml-mapping.dfdl.xsd"));
+            assertSame(dataProcessor, dataProcessorWarmUp.submit(getClass().getResource("/edi-to-xml-mapping.dfdl.xsd").toURI()));
+            countDownLatch.countDown();
+
+            assertTrue(dataProcessorWarmUp.awaitReady(5, TimeUnit.MINUTES));
+            final Future<DataProcessor> resubmittedDataProcessor = dataProcessorWarmUp.submit(new URI("/edi-to-xml-mapping.dfdl.xsd"));
+            assertNotSame(dataProcessor, resubmittedDataProcessor);
+            assertSame(dataProcessor.get(), resubmittedDataProcessor.get());
+            assertEquals(3, dataProcessorWarmUp.getSubmittedCount());
+        }
+    }
+
+    @Test
+    public void testSubmitWhenSchemaIsMissing() throws Exception {
+        try (DataProcessorWarmUp dataProcessorWarmUp = new DataProcessorWarmUp(2)) {
+            dataProcessorWarmUp.submit(new URI("/missing.dfdl.xsd"));
+
+            assertFalse(dataProcessorWarmUp.awaitReady(5, TimeUnit.MINUTES));
+            assertFalse(dataProcessorWarmUp.isReady());
+            assertEquals(0, dataProcessorWarmUp.getCompletedCount());
+            assertTrue(dataProcessorWarmUp.getFailures().containsKey("/missing.dfdl.xsd"));
+        }
+    }
+}
@@ -46,8 +46,23 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.smooks.Smooks;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+import org.smooks.api.resource.visitor.sax.ng.AfterVisitor;
 import org.smooks.support.StreamUtils;
 
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.smooks.support.SmooksUtil.filterAndSerialize;
 
@@ -74,6 +89,16 @@ public class EdiFunctionalTestCase {
         smooks.close();
     }
 
+    @Test
+    public void testSmooksConfigGivenParserReusedAcrossExecutions() throws Exception {
+        smooks.addConfigurations("/smooks-parser-config.xml");
+        String expected = StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/expected.xml"), "UTF-8");
+        for (int i = 0; i < 3; i++) {
+            String result = filterAndSerialize(smooks.createExecutionContext(), getClass().getResourceAsStream("/data/edi-input.txt"), smooks);
+            assertTrue(StreamUtils.compareCharStreams(expected, result));
+        }
+    }
+
     @Test
     public void testSmooksConfigGivenUnparser() throws Exception {
         smooks.addConfigurations("/smooks-unparser-config.xml");
@@ -81,4 +106,96 @@ public class EdiFunctionalTestCase {
 
         assertTrue(StreamUtils.compareCharStreams(StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/edi-input.txt"), "UTF-8"), result));
     }
+
+    @Test
+    public void testSmooksConfigGivenStreamingUnparser() throws Exception {
+        smooks.addConfigurations("/smooks-streaming-unparser-config.xml");
+        String result = filterAndSerialize(smooks.createExecutionContext(), getClass().getResourceAsStream("/data/expected.xml"), smooks);
+
+        assertTrue(StreamUtils.compareCharStreams(StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/edi-input.txt"), "UTF-8"), result));
+    }
+
+    @Test
+    public void testSmooksConfigGivenStreamingUnparserDecodesWithSchemaEncoding() throws Exception {
+        smooks.addConfigurations("/smooks-streaming-unparser-config.xml");
+        String message = StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/expected.xml"), "UTF-8").replace("Some", "S\u00f6m\u00e9");
+        String expected = StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/edi-input.txt"), "UTF-8").replace("Some", "S\u00f6m\u00e9");
+
+        // the schema is ISO-8859-1 while the encoding parameter defaults to UTF-8
+        String result = filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream(message.getBytes(StandardCharsets.UTF_8)), smooks);
+
+        assertEquals(expected, result.replace("\r\n", "\n"));
+    }
+
+    @Test
+    public void testSmooksConfigGivenStreamingUnparserWritesSchemaEncodedBytesToOutputStream() throws Exception {
+        smooks.addConfigurations("/smooks-streaming-unparser-config.xml");
+        String message = StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/expected.xml"), "UTF-8").replace("Some", "S\u00f6m\u00e9");
+        String expected = StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/edi-input.txt"), "UTF-8").replace("Some", "S\u00f6m\u00e9");
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        smooks.filterSource(smooks.createExecutionContext(), new StreamSource(new ByteArrayInputStream(message.getBytes(StandardCharsets.UTF_8))), new StreamResult(result));
+
+        assertEquals(expected, new String(result.toByteArray(), StandardCharsets.ISO_8859_1).replace("\r\n", "\n"));
+    }
+
+    @Test
+    public void testSmooksConfigGivenStreamingUnparserRejectsDebugging() throws Exception {
+        String config = StreamUtils.readStreamAsString(getClass().getResourceAsStream("/smooks-streaming-unparser-config.xml"), "UTF-8").replace("<edi:streamingUnparser ", "<edi:streamingUnparser debugging=\"true\" ");
+        smooks.addConfigurations("smooks-streaming-unparser-config.xml", new ByteArrayInputStream(config.getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(SmooksConfigException.class, () -> filterAndSerialize(smooks.createExecutionContext(), getClass().getResourceAsStream("/data/expected.xml"), smooks));
+    }
+
+    @Test
+    public void testReadSchemaEncoding() {
+        assertEquals("iso-8859-1", StreamingEdiUnparser.readSchemaEncoding(URI.create("/edi-to-xml-mapping.dfdl.xsd")));
+        assertNull(StreamingEdiUnparser.readSchemaEncoding(URI.create("/missing.dfdl.xsd")));
+    }
+
+    @Test
+    public void testSmooksConfigGivenParallelStreamingUnparser() throws Exception {
+        smooks.addConfigurations("/smooks-parallel-streaming-unparser-config.xml");
+        String result = filterAndSerialize(smooks.createExecutionContext(), getClass().getResourceAsStream("/data/expected.xml"), smooks);
+
+        assertTrue(StreamUtils.compareCharStreams(StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/edi-input.txt"), "UTF-8"), result));
+    }
+
+    @Test
+    public void testSmooksConfigGivenParallelStreamingUnparserFlushesPendingFragments() throws Exception {
+        smooks.addConfigurations("/smooks-parallel-streaming-unparser-config.xml");
+        String message = StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/expected.xml"), "UTF-8");
+        String ediMessage = StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/edi-input.txt"), "UTF-8");
+        StringBuilder batch = new StringBuilder("<batch>");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            batch.append(message);
+            expected.append(ediMessage);
+        }
+        batch.append("</batch>");
+
+        // the last fragments are still being unparsed when the document ends and are written out on cleanup (%NL; unparses as CRLF)
+        String result = filterAndSerialize(smooks.createExecutionContext(), new ByteArrayInputStream(batch.toString().getBytes(StandardCharsets.UTF_8)), smooks);
+
+        assertEquals(expected.toString(), result.replace("\r\n", "\n"));
+    }
+
+    @Test
+    public void testSmooksConfigGivenParallelStreamingUnparserCancelsPendingFragmentsOnError() throws Exception {
+        smooks.addConfigurations("/smooks-parallel-streaming-unparser-config.xml");
+        smooks.addVisitor((AfterVisitor) (element, executionContext) -> {
+            throw new SmooksException("Failed to visit [" + element.getTagName() + "]");
+        }, "fail");
+        String message = StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/expected.xml"), "UTF-8");
+        StringBuilder batch = new StringBuilder("<batch>");
+        for (int i = 0; i < 10; i++) {
+            batch.append(message);
+        }
+        batch.append("<fail/></batch>");
+        StringWriter result = new StringWriter();
+
+        assertThrows(SmooksException.class, () -> smooks.filterSource(smooks.createExecutionContext(), new StreamSource(new StringReader(batch.toString())), new StreamResult(result)));
+        // the fragments still being unparsed when the visitor fails are cancelled rather than written out
+        assertTrue(result.toString().split("Fennelly", -1).length - 1 < 10);
+    }
 }
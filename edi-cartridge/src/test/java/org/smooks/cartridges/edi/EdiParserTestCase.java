@@ -0,0 +1,220 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edi;
+
+import org.apache.daffodil.japi.DataProcessor;
+import org.apache.daffodil.japi.ValidationMode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.smooks.api.SmooksException;
+import org.smooks.support.StreamUtils;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EdiParserTestCase {
+
+    private static DataProcessor dataProcessor;
+    private static String ediMessage;
+
+    @BeforeAll
+    public static void beforeAll(@TempDir Path tempDir) throws IOException {
+        final Map<String, String> variables = new HashMap<>(EdiDataProcessorFactory.DEFAULT_VARIABLES);
+        variables.put("{http://www.ibm.com/dfdl/EDI/Format}SegmentTerm", "%NL;");
+        variables.put("{http://www.ibm.com/dfdl/EDI/Format}FieldSep", "*");
+        variables.put("{http://www.ibm.com/dfdl/EDI/Format}CompositeSep", "^");
+        dataProcessor = new CompiledDataProcessorStore().getOrCompile(URI.create("/edi-to-xml-mapping.dfdl.xsd"), variables, ValidationMode.Off, Collections.emptyList(), tempDir.toFile());
+        ediMessage = StreamUtils.readStreamAsString(EdiParserTestCase.class.getResourceAsStream("/data/edi-input.txt"), "UTF-8");
+    }
+
+    @Test
+    public void testParseReusesParseStateAcrossParses() throws Exception {
+        final EdiParser ediParser = new EdiParser(dataProcessor);
+        final String expected = parse(ediParser, ediMessage);
+
+        assertTrue(expected.contains("<lastname>Fennelly</lastname>"));
+        assertThrows(SmooksException.class, () -> parse(ediParser, "not EDI"));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected, parse(ediParser, ediMessage));
+        }
+    }
+
+    @Test
+    public void testParseGivenTrailingGarbage() {
+        final EdiParser ediParser = new EdiParser(dataProcessor);
+
+        assertThrows(SmooksException.class, () -> parse(ediParser, ediMessage + "GARBAGE GARBAGE\n"));
+    }
+
+    @Test
+    public void testParseGivenConcatenatedMessages() throws Exception {
+        final EdiParser ediParser = new EdiParser(dataProcessor);
+        final List<String> lastNames = new ArrayList<>();
+        ediParser.setContentHandler(new DefaultHandler() {
+            private StringBuilder lastName;
+
+            @Override
+            public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) {
+                lastName = localName.equals("lastname") ? new StringBuilder() : null;
+            }
+
+            @Override
+            public void characters(final char[] ch, final int start, final int length) {
+                if (lastName != null) {
+                    lastName.append(ch, start, length);
+                }
+            }
+
+            @Override
+            public void endElement(final String uri, final String localName, final String qName) {
+                if (lastName != null) {
+                    lastNames.add(lastName.toString());
+                    lastName = null;
+                }
+            }
+        });
+        ediParser.parse(new InputSource(new ByteArrayInputStream((ediMessage + ediMessage).getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals(Arrays.asList("Fennelly", "Fennelly"), lastNames);
+    }
+
+    @Test
+    public void testParseGivenNestedParse() throws Exception {
+        final EdiParser ediParser = new EdiParser(dataProcessor);
+        final String expected = parse(ediParser, ediMessage);
+        final StringWriter nestedResult = new StringWriter();
+        final TransformerHandler nestedContentHandler = createContentHandler(nestedResult);
+        final StringWriter result = new StringWriter();
+
+        // parses the message again, with the same reader, from within the first parse
+        ediParser.setContentHandler(new XMLFilterImpl() {
+            {
+                setContentHandler(createContentHandler(result));
+            }
+
+            @Override
+            public void startElement(final String uri, final String localName, final String qName, final Attributes atts) throws SAXException {
+                if (localName.equals("personal-details")) {
+                    ediParser.setContentHandler(nestedContentHandler);
+                    try {
+                        ediParser.parse(new InputSource(new ByteArrayInputStream(ediMessage.getBytes(StandardCharsets.UTF_8))));
+                    } catch (IOException e) {
+                        throw new SAXException(e);
+                    }
+                }
+                super.startElement(uri, localName, qName, atts);
+            }
+        });
+        ediParser.parse(new InputSource(new ByteArrayInputStream(ediMessage.getBytes(StandardCharsets.UTF_8))));
+
+        assertEquals(expected, result.toString());
+        assertEquals(expected, nestedResult.toString());
+    }
+
+    @Test
+    public void testParseGivenInputLargerThanBuffer() throws Exception {
+        final StringBuilder firstName = new StringBuilder();
+        while (firstName.length() <= EdiParser.MAX_BUFFERED_INPUT) {
+            firstName.append("Tom");
+        }
+        final EdiParser ediParser = new EdiParser(dataProcessor);
+
+        final String result = parse(ediParser, ediMessage.replace("Mr~Tom", firstName));
+
+        assertTrue(result.contains("<firstname>" + firstName + "</firstname>"));
+        assertTrue(result.contains("<lastname>Fennelly</lastname>"));
+        assertEquals(parse(ediParser, ediMessage), parse(new EdiParser(dataProcessor), ediMessage));
+    }
+
+    @Test
+    public void testParseGivenCharacterStream() {
+        final EdiParser ediParser = new EdiParser(dataProcessor);
+        ediParser.setContentHandler(new XMLFilterImpl());
+
+        final SAXException saxException = assertThrows(SAXException.class, () -> ediParser.parse(new InputSource(new StringReader(ediMessage))));
+        assertTrue(saxException.getMessage().contains("character stream"));
+    }
+
+    private static String parse(final EdiParser ediParser, final String edi) throws Exception {
+        final StringWriter result = new StringWriter();
+        ediParser.setContentHandler(createContentHandler(result));
+        ediParser.parse(new InputSource(new ByteArrayInputStream(edi.getBytes(StandardCharsets.UTF_8))));
+
+        return result.toString();
+    }
+
+    private static TransformerHandler createContentHandler(final StringWriter result) {
+        try {
+            final TransformerHandler transformerHandler = ((SAXTransformerFactory) SAXTransformerFactory.newInstance()).newTransformerHandler();
+            transformerHandler.setResult(new StreamResult(result));
+            return transformerHandler;
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
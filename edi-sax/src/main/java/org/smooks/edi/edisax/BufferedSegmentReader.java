@@ -79,6 +79,10 @@ public class BufferedSegmentReader {
     private BufferedSegmentListener segmentListener;
     private boolean ignoreNewLines;
     private int charReadCount = 0;
+    private MessageDataDigest messageDataDigest;
+    private boolean digesting;
+    private boolean decodingByteStream;
+    private RawDataReader rawDataReader;
 
 
     /**
@@ -92,6 +96,7 @@ public class BufferedSegmentReader {
         if(reader == null) {
             readEncoding = Charset.defaultCharset();
             reader = new InputStreamReader(underlyingByteStream, readEncoding);
+            decodingByteStream = true;
         } else if(reader instanceof InputStreamReader) {
             readEncoding = Charset.forName(((InputStreamReader) reader).getEncoding());
         }
@@ -150,7 +155,13 @@ public class BufferedSegmentReader {
         }
 
         // Create a new reader and skip passed the already read characters...
-        reader = new InputStreamReader(underlyingByteStream, encoding);
+        if(rawDataReader != null) {
+            rawDataReader = new RawDataReader(underlyingByteStream, encoding);
+            rawDataReader.setMessageDataDigest(digesting ? messageDataDigest : null);
+            reader = rawDataReader;
+        } else {
+            reader = new InputStreamReader(underlyingByteStream, encoding);
+        }
         underlyingByteStream.skip(charReadCount);
         try {
             return readEncoding;
@@ -159,6 +170,86 @@ public class BufferedSegmentReader {
         }
     }
 
+    /**
+     * Set the {@link MessageDataDigest} used to digest the raw data of a message.
+     * <p/>
+     * The digest is computed over the bytes of the input source exactly as they are read, in the same
+     * pass as the parse.  Since the bytes of every character must be known, the input source must be
+     * a byte stream, and the digest must be set before anything is read.
+     * @param messageDataDigest The message data digest, or null to disable digesting.
+     * @throws IllegalStateException The input source is a character stream, or data has already been read.
+     * @see #startDigest()
+     * @see #endDigest()
+     */
+    public void setMessageDataDigest(MessageDataDigest messageDataDigest) throws IllegalStateException {
+        if(messageDataDigest != null && rawDataReader == null) {
+            if(!decodingByteStream) {
+                throw new IllegalStateException("Unable to digest the raw message data of a character stream.  The input source must be a byte stream.");
+            }
+            if(charReadCount > 0) {
+                throw new IllegalStateException("Unable to digest the raw message data.  The MessageDataDigest must be set before reading.");
+            }
+            rawDataReader = new RawDataReader(underlyingByteStream, readEncoding);
+            reader = rawDataReader;
+        }
+        this.messageDataDigest = messageDataDigest;
+        if(rawDataReader != null) {
+            rawDataReader.setMessageDataDigest(null);
+        }
+        digesting = false;
+    }
+
+    /**
+     * Get the {@link MessageDataDigest} used to digest the raw data of a message.
+     * @return The message data digest, or null if not set.
+     */
+    public MessageDataDigest getMessageDataDigest() {
+        return messageDataDigest;
+    }
+
+    /**
+     * Start digesting the raw message data.
+     * <p/>
+     * Characters currently held in the segment buffer (e.g. a {@link #peek(int, boolean) peeked}
+     * segment code) are included in the digest, followed by every character read until
+     * {@link #endDigest()} is called.
+     * @throws IllegalStateException No {@link MessageDataDigest} set.
+     */
+    public void startDigest() throws IllegalStateException {
+        if(messageDataDigest == null) {
+            throw new IllegalStateException("No MessageDataDigest set on BufferedSegmentReader.");
+        }
+
+        messageDataDigest.reset();
+        rawDataReader.digestLastChars(messageDataDigest, segmentBuffer.length());
+        rawDataReader.setMessageDataDigest(messageDataDigest);
+        digesting = true;
+    }
+
+    /**
+     * Is the raw message data being digested?
+     * @return True between calls to {@link #startDigest()} and {@link #endDigest()}, otherwise false.
+     */
+    public boolean isDigesting() {
+        return digesting;
+    }
+
+    /**
+     * End digesting the raw message data.
+     * @return The digest of the data read since {@link #startDigest()}.
+     * @throws IllegalStateException {@link #startDigest()} not called.
+     */
+    public byte[] endDigest() throws IllegalStateException {
+        if(!digesting) {
+            throw new IllegalStateException("BufferedSegmentReader is not digesting.  startDigest() not called.");
+        }
+
+        rawDataReader.setMessageDataDigest(null);
+        digesting = false;
+
+        return messageDataDigest.digest();
+    }
+
     /**
      * Get the current delimiter set.
      * @return the currentDelimiters The current delimiter set.
@@ -319,8 +410,8 @@ public class BufferedSegmentReader {
     public boolean moveToNextSegment(boolean clearBuffer) throws IOException {
         char[] segmentDelimiter = currentDelimiters.getSegmentDelimiter();
         int delimiterLen = segmentDelimiter.length;
-        String escape = currentDelimiters.getEscape();
-        int escapeLen = escape != null ? escape.length() : 0;
+        char escapeChar = currentDelimiters.getEscapeChar();
+        boolean hasEscape = (escapeChar != Delimiters.NO_CHAR);
         boolean ignoreCRLF;
 
         int c = readChar();
@@ -343,55 +434,60 @@ public class BufferedSegmentReader {
         // Ignore leading whitespace on a segment...
         c = forwardPastWhitespace(c);
 
-        boolean escapingMode = false;
+        char segmentChar = currentDelimiters.getSegmentChar();
+        if(segmentChar != Delimiters.NO_CHAR && currentDelimiters.getCharClass(segmentChar) == Delimiters.CHAR_CLASS_SEGMENT) {
+            readSegment(c, ignoreCRLF);
+        } else {
+            boolean escapingMode = false;
 
-        // Read the next segment...
-        while(c != -1) {
-            char theChar = (char) c;
+            // Read the next segment...
+            while(c != -1) {
+                char theChar = (char) c;
 
-            if (ignoreCRLF && (theChar == '\n' || theChar == '\r')) {
-                c = readChar();
-                continue;
-            }
-
-            segmentBuffer.append((char)c);
+                if (ignoreCRLF && (theChar == '\n' || theChar == '\r')) {
+                    c = readChar();
+                    continue;
+                }
 
-            int segLen = segmentBuffer.length();
-            if(segLen >= delimiterLen) {
-                boolean reachedSegEnd = true;
+                segmentBuffer.append((char)c);
 
-                for(int i = 0; i < delimiterLen; i++) {
-                    char segChar = segmentBuffer.charAt(segLen - 1 - i);
-                    char delimChar = segmentDelimiter[delimiterLen - 1 - i];
+                int segLen = segmentBuffer.length();
+                if(segLen >= delimiterLen) {
+                    boolean reachedSegEnd = true;
+
+                    for(int i = 0; i < delimiterLen; i++) {
+                        char segChar = segmentBuffer.charAt(segLen - 1 - i);
+                        char delimChar = segmentDelimiter[delimiterLen - 1 - i];
+
+                        if (escapingMode) {
+                            if (segChar == delimChar) {
+                                segmentBuffer = segmentBuffer.delete(segLen - 2, segLen - 1);
+                            }
+                            escapingMode = false;
+                            reachedSegEnd = false;
+                            break;
+                        } else if (hasEscape && segChar == escapeChar) {
+                            escapingMode = true;
+                        }
 
-                    if (escapingMode) {
-                        if (segChar == delimChar) {
-                            segmentBuffer = segmentBuffer.delete(segLen - 2, segLen - 1);
+                        if (segChar != delimChar) {
+                            // Not the end of a segment
+                            reachedSegEnd = false;
+                            break;
                         }
-                        escapingMode = false;
-                        reachedSegEnd = false;
-                        break;
-                    } else if (escape != null && escape.equals(Character.toString(segChar))) {
-                        escapingMode = true;
+
                     }
 
-                    if (segChar != delimChar) {
-                        // Not the end of a segment
-                        reachedSegEnd = false;
+                    // We've reached the end of a segment...
+                    if(reachedSegEnd) {
+                        // Trim off the delimiter and break out...
+                        segmentBuffer.setLength(segLen - delimiterLen);
                         break;
                     }
-
                 }
 
-                // We've reached the end of a segment...
-                if(reachedSegEnd) {
-                    // Trim off the delimiter and break out...
-                    segmentBuffer.setLength(segLen - delimiterLen);
-                    break;
-                }
+                c = readChar();
             }
-
-            c = readChar();
         }
 
         if(LOGGER.isDebugEnabled()) {
@@ -436,7 +532,7 @@ public class BufferedSegmentReader {
         assertCurrentSegmentExists();
 
         if(currentSegmentFields == null) {
-            currentSegmentFields = EDIUtils.split(segmentBuffer.toString(), currentDelimiters.getField(), currentDelimiters.getEscape());
+            currentSegmentFields = EDIUtils.split(segmentBuffer.toString(), currentDelimiters, Delimiters.CHAR_CLASS_FIELD);
 
             // If the segment delimiter is a LF, strip off any preceding CR characters...
             if(currentDelimiters.getSegment().equals("\n")) {
@@ -461,6 +557,44 @@ public class BufferedSegmentReader {
         return currentSegmentNumber;
     }
 
+    /**
+     * Read the rest of a segment delimited by a single character, classifying each character with the
+     * {@link Delimiters#getCharClass(char) character class table} of the current delimiters.
+     * @param c The first character of the segment.
+     * @param ignoreCRLF Ignore CR and LF characters.
+     * @throws IOException Error reading from EDI stream.
+     */
+    private void readSegment(int c, boolean ignoreCRLF) throws IOException {
+        boolean escapingMode = false;
+
+        while(c != -1) {
+            char theChar = (char) c;
+
+            if (ignoreCRLF && (theChar == '\n' || theChar == '\r')) {
+                c = readChar();
+                continue;
+            }
+
+            byte charClass = currentDelimiters.getCharClass(theChar);
+            if (escapingMode) {
+                escapingMode = false;
+                if (charClass == Delimiters.CHAR_CLASS_SEGMENT) {
+                    // Replace the escape char with the escaped segment delimiter...
+                    segmentBuffer.setCharAt(segmentBuffer.length() - 1, theChar);
+                } else {
+                    segmentBuffer.append(theChar);
+                }
+            } else if (charClass == Delimiters.CHAR_CLASS_SEGMENT) {
+                break;
+            } else {
+                escapingMode = (charClass == Delimiters.CHAR_CLASS_ESCAPE);
+                segmentBuffer.append(theChar);
+            }
+
+            c = readChar();
+        }
+    }
+
     private int forwardPastWhitespace() throws IOException {
         return forwardPastWhitespace(readChar());
     }
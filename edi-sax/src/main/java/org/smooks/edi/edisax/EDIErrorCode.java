@@ -0,0 +1,121 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax;
+
+/**
+ * EDI parse error codes.
+ * <p/>
+ * Each code carries the corresponding UN/EDIFACT syntax error code (data element 0085), as reported in
+ * CONTRL messages.
+ */
+public enum EDIErrorCode {
+
+    /**
+     * The value is not valid for the {@link EDITypeEnum type} of the value node.
+     */
+    INVALID_TYPE("12"),
+
+    /**
+     * The value is not a code in the code list of the value node.
+     */
+    NOT_IN_CODE_LIST("12"),
+
+    /**
+     * A required value is empty.
+     */
+    MISSING_VALUE("13"),
+
+    /**
+     * The value is shorter than the minimum length of the value node.
+     */
+    VALUE_TOO_SHORT("40"),
+
+    /**
+     * The value is longer than the maximum length of the value node.
+     */
+    VALUE_TOO_LONG("39"),
+
+    /**
+     * A segment or field does not contain all the required fields or components.
+     */
+    MISSING_CONSTITUENT("13"),
+
+    /**
+     * A segment, field or component contains more fields, components or sub-components than defined.
+     */
+    TOO_MANY_CONSTITUENTS("16"),
+
+    /**
+     * A required segment or segment group is missing.
+     */
+    MISSING_SEGMENT("13"),
+
+    /**
+     * The message contains a segment that is not defined in this position.
+     */
+    UNEXPECTED_SEGMENT("15"),
+
+    /**
+     * The control count in a trailer segment does not match the number of segments, messages or groups read.
+     */
+    CONTROL_COUNT_MISMATCH("29"),
+
+    /**
+     * The control reference in a trailer segment does not match the reference in the header segment.
+     */
+    CONTROL_REFERENCE_MISMATCH("28");
+
+    private final String syntaxErrorCode;
+
+    EDIErrorCode(String syntaxErrorCode) {
+        this.syntaxErrorCode = syntaxErrorCode;
+    }
+
+    /**
+     * Get the UN/EDIFACT syntax error code (data element 0085).
+     * @return The syntax error code.
+     */
+    public String getSyntaxErrorCode() {
+        return syntaxErrorCode;
+    }
+}
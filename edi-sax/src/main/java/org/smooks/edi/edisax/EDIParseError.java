@@ -0,0 +1,158 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax;
+
+import org.smooks.edi.edisax.model.internal.MappingNode;
+import org.smooks.edi.edisax.model.internal.ValueNode;
+
+/**
+ * EDI parse error record.
+ * <p/>
+ * A lightweight descriptor of an error found while parsing an EDI message.  The error message is only built
+ * when {@link #getMessage()} is called.  Records are owned and reused by an {@link EDIParseErrors} buffer, so they
+ * are only valid until the buffer is cleared.
+ */
+public class EDIParseError {
+
+    private EDIErrorCode errorCode;
+    private int segmentNumber;
+    private MappingNode node;
+    private CharSequence value;
+    private int offset;
+
+    EDIParseError set(EDIErrorCode errorCode, int segmentNumber, MappingNode node, CharSequence value, int offset) {
+        this.errorCode = errorCode;
+        this.segmentNumber = segmentNumber;
+        this.node = node;
+        this.value = value;
+        this.offset = offset;
+        return this;
+    }
+
+    public EDIErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    public int getSegmentNumber() {
+        return segmentNumber;
+    }
+
+    /**
+     * Get the segment, field, component or sub-component where the error occurred.
+     * @return The mapping model node.
+     */
+    public MappingNode getNode() {
+        return node;
+    }
+
+    /**
+     * Get the value in error.
+     * @return The value, or null if the error does not relate to a value.
+     */
+    public CharSequence getValue() {
+        return value;
+    }
+
+    /**
+     * Get the offset of the error within the {@link #getValue() value}.
+     * @return The offset, or -1 if the error does not relate to a position in a value.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Build the error message.
+     * @return The error message.
+     */
+    public String getMessage() {
+        StringBuilder message = new StringBuilder();
+
+        switch (errorCode) {
+            case INVALID_TYPE:
+                message.append("Value [").append(value).append("] is not a valid ").append(((ValueNode) node).getEDIType());
+                message.append(" value (at offset ").append(offset).append(").");
+                break;
+            case NOT_IN_CODE_LIST:
+                message.append("Value [").append(value).append("] is not a code in the code list.");
+                break;
+            case MISSING_VALUE:
+                message.append("Expected to contain a value.");
+                break;
+            case VALUE_TOO_SHORT:
+                message.append("Value [").append(value).append("] should have a length greater than [").append(((ValueNode) node).getMinLength()).append("].");
+                break;
+            case VALUE_TOO_LONG:
+                message.append("Value [").append(value).append("] exceeds allowed maximum length of [").append(((ValueNode) node).getMaxLength()).append("].");
+                break;
+            case MISSING_CONSTITUENT:
+                message.append("Missing required constituent at position ").append(offset + 1).append('.');
+                break;
+            case TOO_MANY_CONSTITUENTS:
+                message.append("Unexpected constituent at position ").append(offset + 1).append('.');
+                break;
+            case MISSING_SEGMENT:
+                message.append("Missing required segment.");
+                break;
+            case UNEXPECTED_SEGMENT:
+                message.append("Unexpected segment.");
+                break;
+            case CONTROL_COUNT_MISMATCH:
+                message.append("Control count [").append(value).append("] does not match the number of instances read.");
+                break;
+            case CONTROL_REFERENCE_MISMATCH:
+                message.append("Control reference [").append(value).append("] does not match the header reference.");
+                break;
+            default:
+                message.append(errorCode).append('.');
+        }
+        message.append(" Node [").append(node.getXmltag()).append("]. Segment number ").append(segmentNumber).append('.');
+
+        return message.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
@@ -0,0 +1,106 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax;
+
+import org.smooks.edi.edisax.model.internal.MappingNode;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * Reusable buffer of {@link EDIParseError} records.
+ * <p/>
+ * Clearing the buffer keeps the allocated records for reuse, so recording errors on a parser that is used for
+ * many messages does not allocate once the buffer has grown to the largest number of errors per message.
+ */
+public class EDIParseErrors extends AbstractList<EDIParseError> {
+
+    private EDIParseError[] errors = new EDIParseError[8];
+    private int size;
+
+    /**
+     * Record an error.
+     * @param errorCode The error code.
+     * @param segmentNumber The number of the segment in which the error occurred.
+     * @param node The mapping model node where the error occurred.
+     * @param value The value in error, or null.
+     * @param offset The offset of the error within the value, or -1.
+     * @return The error record.
+     */
+    public EDIParseError add(EDIErrorCode errorCode, int segmentNumber, MappingNode node, CharSequence value, int offset) {
+        if (size == errors.length) {
+            errors = Arrays.copyOf(errors, size * 2);
+        }
+        EDIParseError error = errors[size];
+        if (error == null) {
+            error = new EDIParseError();
+            errors[size] = error;
+        }
+        size++;
+        return error.set(errorCode, segmentNumber, node, value, offset);
+    }
+
+    @Override
+    public EDIParseError get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return errors[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Clear the buffer.  Previously returned records are reused.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            errors[i].set(null, 0, null, null, -1);
+        }
+        size = 0;
+    }
+}
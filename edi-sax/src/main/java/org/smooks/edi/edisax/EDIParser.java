@@ -141,6 +141,27 @@ import java.util.regex.Pattern;
  * <p/>
  * By default, segments, fields, and components are not truncatable.
  *
+ * <h3>Code Lists</h3>
+ * Field and component values can be checked against the {@link CodeList} of the field or component (e.g. as read
+ * from the UN/EDIFACT UNCL by the ECT directory parsers) by turning on the {@link #FEATURE_VALIDATE_CODE_LISTS}
+ * feature.  Values not contained in the code list result in an {@link EDIParseException}.
+ * <p/>
+ * By default, code lists are not validated.
+ *
+ * <h3>Value Types</h3>
+ * When {@link #FEATURE_VALIDATE validation} is turned on, field, component and sub-component values are also
+ * validated against the {@link EDITypeEnum type} of their "dataType" (UN/EDIFACT <i>n</i>, <i>a</i>, <i>an</i>,
+ * date and time representations), using the decimal separator of the mapping model delimiters.  Invalid values do
+ * not stop the parse, but are recorded in the {@link #getParseErrors() parse errors} of the parser.
+ *
+ * <h3>Collecting Errors</h3>
+ * By default, the parser throws an {@link EDIParseException} on the first error in the message.  When the
+ * {@link #FEATURE_COLLECT_ERRORS} feature is turned on, errors in segment, field, component and sub-component
+ * content (missing values, unexpected number of fields or components, lengths and code lists) are instead recorded
+ * as {@link EDIParseError} records in the {@link #getParseErrors() parse errors} of the parser, and parsing continues
+ * with the next value.  No exceptions are created for such errors and their messages are only built on request.
+ * Errors in the segment structure of the message are still thrown, after being recorded.
+ *
  * @author tfennelly
  */
 public class EDIParser implements XMLReader {
@@ -148,6 +169,8 @@ public class EDIParser implements XMLReader {
     public static final String FEATURE_VALIDATE = "http://xml.org/sax/features/validation";
     public static final String FEATURE_IGNORE_NEWLINES = "http://xml.org/sax/features/ignore-newlines";
     public static final String FEATURE_IGNORE_EMPTY_NODES = "http://smooks.org/edi/sax/features/ignore-empty-nodes";
+    public static final String FEATURE_VALIDATE_CODE_LISTS = "http://smooks.org/edi/sax/features/validate-code-lists";
+    public static final String FEATURE_COLLECT_ERRORS = "http://smooks.org/edi/sax/features/collect-errors";
 	private static final Attributes EMPTY_ATTRIBS = new AttributesImpl();
     
     private Map<String, Boolean> features;
@@ -161,6 +184,10 @@ public class EDIParser implements XMLReader {
     private EdifactModel edifactModel;
     private BufferedSegmentReader segmentReader;
     private Boolean ignoreEmptyNodes;
+    private Boolean validateCodeLists;
+    private Boolean collectErrors;
+    private char decimalSeparator;
+    private final EDIParseErrors parseErrors = new EDIParseErrors();
 
     /**
      * Set the {@link NamespaceDeclarationStack} to be used by the reader instance.
@@ -420,8 +447,41 @@ public class EDIParser implements XMLReader {
 		return this;
 	}
 
+    /**
+     * Reset the parser to its initial state, so that it can be reused (e.g. from an {@link EDIParserPool}).
+     * <p/>
+     * The features are restored to their defaults, and the content handler, mapping model, segment reader,
+     * namespace stack, indent depth and parse errors are cleared.  Allocated buffers are retained.
+     * @return This parser instance.
+     */
+    public EDIParser reset() {
+        contentHandler = null;
+        edifactModel = null;
+        segmentReader = null;
+        nsStack = null;
+        indentDepth = null;
+        parseErrors.clear();
+        if (features != null) {
+            features.clear();
+            putDefaultFeatures();
+        }
+        ignoreEmptyNodes = null;
+        validateCodeLists = null;
+        collectErrors = null;
+
+        return this;
+    }
+
 	private void parse(boolean indent) throws SAXException, IOException, EDIParseException {
         boolean ignoreUnmappedSegment = edifactModel.getEdimap().isIgnoreUnmappedSegments();
+        Delimiters delimiters = edifactModel.getDelimiters();
+
+        parseErrors.clear();
+        if (delimiters != null && delimiters.getDecimalSeparator() != null && delimiters.getDecimalSeparator().length() > 0) {
+            decimalSeparator = delimiters.getDecimalSeparator().charAt(0);
+        } else {
+            decimalSeparator = '.';
+        }
 
 		startElement(edifactModel.getEdimap().getSegments(), indent);
 
@@ -433,6 +493,7 @@ public class EDIParser implements XMLReader {
 		    while (segmentReader.hasCurrentSegment()) {
                 if (!EMPTY_LINE.matcher(segmentReader.getSegmentBuffer().toString()).matches()
                         && !ignoreUnmappedSegment) {
+                    parseErrors.add(EDIErrorCode.UNEXPECTED_SEGMENT, segmentReader.getCurrentSegmentNumber(), edifactModel.getEdimap().getSegments(), null, -1);
 		            throw new EDIParseException(edifactModel.getEdimap(), "Reached end of mapping model but there are more EDI segments in the incoming message.  Read " + segmentReader.getCurrentSegmentNumber() + " segment(s). Current EDI segment is [" + segmentReader.getSegmentBuffer() + "]");
 		        }
 		        segmentReader.moveToNextSegment();
@@ -503,6 +564,7 @@ public class EDIParser implements XMLReader {
                         // check if strict segment matching is inforced
                         if (!ignoreUnmappedSegment) {
                     // If we haven't read the minimum number of instances of the current "expected" segment, raise an error...
+                        parseErrors.add(EDIErrorCode.MISSING_SEGMENT, segmentReader.getCurrentSegmentNumber(), expectedSegmentGroup, null, -1);
                         throw new EDIParseException(edifactModel.getEdimap(), "Must be a minimum of " + minOccurs + " instances of segment [" + expectedSegmentGroup.getSegcode() + "].  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedSegmentGroup, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
                     } else {
                             // skip unmapped current segment
@@ -510,6 +572,7 @@ public class EDIParser implements XMLReader {
                             currentSegmentFields = null;
                             // check that there still are messages in the EDI message stream for the required segments in the model
                             if (!segmentReader.hasCurrentSegment()) {
+                                parseErrors.add(EDIErrorCode.MISSING_SEGMENT, segmentReader.getCurrentSegmentNumber(), expectedSegmentGroup, null, -1);
                                 throw new EDIParseException(edifactModel.getEdimap(), "Reached end of EDI message stream but there must be a minimum of " + minOccurs + " instances of segment [" + expectedSegmentGroup.getSegcode() + "].  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedSegmentGroup, segmentReader.getCurrentSegmentNumber(), null);
                             }
                             continue;
@@ -546,6 +609,7 @@ public class EDIParser implements XMLReader {
             currentSegmentFields = null;
 
             if (segmentProcessingCount < minOccurs && !segmentReader.hasCurrentSegment()) {
+                parseErrors.add(EDIErrorCode.MISSING_SEGMENT, segmentReader.getCurrentSegmentNumber(), expectedSegmentGroup, null, -1);
                 throw new EDIParseException(edifactModel.getEdimap(), "Reached end of EDI message stream but there must be a minimum of " + minOccurs + " instances of segment [" + expectedSegmentGroup.getSegcode() + "].  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedSegmentGroup, segmentReader.getCurrentSegmentNumber(), null);
             }
         }
@@ -593,14 +657,14 @@ public class EDIParser implements XMLReader {
         Delimiters delimiters = segmentReader.getDelimiters();
         String fieldRepeat = delimiters.getFieldRepeat();
 		for(int i = 0; i < numFields; i++) {
-			if (ignoreUnmappedFields && i >= numFieldsMapped) {
+			if (i >= numFieldsMapped && (ignoreUnmappedFields || collectErrors())) {
                 break;
             }
 			String fieldMessageVal = currentSegmentFields[i + 1]; // +1 to skip the segment code
 			Field expectedField = expectedFields.get(i);
 
 			if(fieldRepeat != null) {
-				String[] repeatedFields = EDIUtils.split(fieldMessageVal, fieldRepeat, delimiters.getEscape());
+				String[] repeatedFields = EDIUtils.split(fieldMessageVal, delimiters, Delimiters.CHAR_CLASS_FIELD_REPEAT);
 				for(String repeatedField : repeatedFields) {
 					mapField(repeatedField, expectedField, i, segmentCode);
 				}
@@ -624,14 +688,16 @@ public class EDIParser implements XMLReader {
 		// If there are components defined on this field...
 		if(expectedComponents.size() != 0) {
             Delimiters delimiters = segmentReader.getDelimiters();
-			String[] currentFieldComponents = EDIUtils.split(fieldMessageVal, delimiters.getComponent(), delimiters.getEscape());
+			String[] currentFieldComponents = EDIUtils.split(fieldMessageVal, delimiters, Delimiters.CHAR_CLASS_COMPONENT);
 
             assertComponentsOK(expectedField, fieldIndex, segmentCode, expectedComponents, currentFieldComponents);
 
             if (currentFieldComponents.length > 0 || !ignoreEmptyNodes()) {
             	startElement(expectedField, true);
-	            // Iterate over the field components and map them...
-				for(int i = 0; i < currentFieldComponents.length; i++) {
+	            // Iterate over the field components and map them.  Only when collecting errors can there be more
+	            // components than expected at this point...
+				int numComponents = collectErrors() ? Math.min(currentFieldComponents.length, expectedComponents.size()) : currentFieldComponents.length;
+				for(int i = 0; i < numComponents; i++) {
 					String componentMessageVal = currentFieldComponents[i];
 					Component expectedComponent = expectedComponents.get(i);
 	
@@ -641,7 +707,11 @@ public class EDIParser implements XMLReader {
             }
 		} else {
             if(expectedField.isRequired() && fieldMessageVal.length() == 0) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + expectedField.getXmltag() + ") expected to contain a value.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedField, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                if (collectErrors()) {
+                    parseErrors.add(EDIErrorCode.MISSING_VALUE, segmentReader.getCurrentSegmentNumber(), expectedField, null, -1);
+                } else {
+                    throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + expectedField.getXmltag() + ") expected to contain a value.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedField, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                }
             }
 
             if (fieldMessageVal.length() > 0 || !ignoreEmptyNodes()) {
@@ -667,15 +737,20 @@ public class EDIParser implements XMLReader {
 
 		if(expectedSubComponents.size() != 0) {
             Delimiters delimiters = segmentReader.getDelimiters();
-			String[] currentComponentSubComponents = EDIUtils.split(componentMessageVal, delimiters.getSubComponent(), delimiters.getEscape());
+			String[] currentComponentSubComponents = EDIUtils.split(componentMessageVal, delimiters, Delimiters.CHAR_CLASS_SUB_COMPONENT);
 
             assertSubComponentsOK(expectedComponent, fieldIndex, componentIndex, segmentCode, field, expectedSubComponents, currentComponentSubComponents);
 
             if (currentComponentSubComponents.length > 0 || !ignoreEmptyNodes()) {
                 startElement(expectedComponent, true);
-                for(int i = 0; i < currentComponentSubComponents.length; i++) {
+                int numSubComponents = collectErrors() ? Math.min(currentComponentSubComponents.length, expectedSubComponents.size()) : currentComponentSubComponents.length;
+                for(int i = 0; i < numSubComponents; i++) {
                     if(expectedSubComponents.get(i).isRequired() && currentComponentSubComponents[i].length() == 0) {
-                        throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + field + "), component " + (componentIndex + 1) + " (" + expectedComponent.getXmltag() + "), sub-component " + (i + 1) + " (" + expectedSubComponents.get(i).getXmltag() + ") expected to contain a value.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedSubComponents.get(i), segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                        if (collectErrors()) {
+                            parseErrors.add(EDIErrorCode.MISSING_VALUE, segmentReader.getCurrentSegmentNumber(), expectedSubComponents.get(i), null, -1);
+                        } else {
+                            throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + field + "), component " + (componentIndex + 1) + " (" + expectedComponent.getXmltag() + "), sub-component " + (i + 1) + " (" + expectedSubComponents.get(i).getXmltag() + ") expected to contain a value.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedSubComponents.get(i), segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                        }
                     }
 
                     startElement(expectedSubComponents.get(i), true);
@@ -686,7 +761,11 @@ public class EDIParser implements XMLReader {
             }
 		} else {
             if(expectedComponent.isRequired() && componentMessageVal.length() == 0) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + field + "), component " + (componentIndex + 1) + " (" + expectedComponent.getXmltag() + ") expected to contain a value.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedComponent, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                if (collectErrors()) {
+                    parseErrors.add(EDIErrorCode.MISSING_VALUE, segmentReader.getCurrentSegmentNumber(), expectedComponent, null, -1);
+                } else {
+                    throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + field + "), component " + (componentIndex + 1) + " (" + expectedComponent.getXmltag() + ") expected to contain a value.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedComponent, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                }
             }
 
             if (componentMessageVal.length() > 0 || !ignoreEmptyNodes()) {
@@ -722,7 +801,11 @@ public class EDIParser implements XMLReader {
             }
 
             if(throwException) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segment.getSegcode() + "] expected to contain " + (numFieldsExpected - 1) + " fields.  Actually contains " + (currentSegmentFields.length - 1) + " fields (not including segment code).  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", segment, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                if (collectErrors()) {
+                    parseErrors.add(EDIErrorCode.MISSING_CONSTITUENT, segmentReader.getCurrentSegmentNumber(), segment, null, currentSegmentFields.length - 1);
+                } else {
+                    throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segment.getSegcode() + "] expected to contain " + (numFieldsExpected - 1) + " fields.  Actually contains " + (currentSegmentFields.length - 1) + " fields (not including segment code).  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", segment, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                }
             }
 
             numberOfFieldsToValidate = currentSegmentFields.length;
@@ -731,6 +814,9 @@ public class EDIParser implements XMLReader {
         	// we have more fields than we are expecting.
         	if(segment.isIgnoreUnmappedFields()) {
         		numberOfFieldsToValidate= numFieldsExpected;
+        	} else if (collectErrors()) {
+                parseErrors.add(EDIErrorCode.TOO_MANY_CONSTITUENTS, segmentReader.getCurrentSegmentNumber(), segment, null, numFieldsExpected - 1);
+                numberOfFieldsToValidate = numFieldsExpected;
         	} else {
         		throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segment.getSegcode() + "] expected to contain " + (numFieldsExpected - 1) + " fields.  Actually contains " + (currentSegmentFields.length - 1) + " fields (not including segment code).  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", segment, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
         	}
@@ -742,7 +828,7 @@ public class EDIParser implements XMLReader {
         for (int i = 1; i < numberOfFieldsToValidate; i++) {
             Field field = expectedFields.get(i-1);
             if (field.getComponents().size() == 0 && (!currentSegmentFields[i].equals(""))) {
-                validateValueNode(field, currentSegmentFields[i]);
+                validateValueNode(field, field.getCodeList(), currentSegmentFields[i]);
             }
         }
     }
@@ -751,7 +837,9 @@ public class EDIParser implements XMLReader {
         if (currentFieldComponents.length != expectedComponents.size()) {
             boolean throwException = false;
 
-            if (expectedField.isTruncatable()){
+            if (currentFieldComponents.length > expectedComponents.size()) {
+                throwException = true;
+            } else if (expectedField.isTruncatable()){
 
                 //When there are no Components in Field it should not throw exception, since
                 //the Field is just created (with Field-separator) for satisfying requirement for Fields
@@ -773,14 +861,23 @@ public class EDIParser implements XMLReader {
             }
 
             if (throwException) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + expectedField.getXmltag() + ") expected to contain " + expectedComponents.size() + " components.  Actually contains " + currentFieldComponents.length + " components.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedField, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                if (collectErrors()) {
+                    if (currentFieldComponents.length > expectedComponents.size()) {
+                        parseErrors.add(EDIErrorCode.TOO_MANY_CONSTITUENTS, segmentReader.getCurrentSegmentNumber(), expectedField, null, expectedComponents.size());
+                    } else {
+                        parseErrors.add(EDIErrorCode.MISSING_CONSTITUENT, segmentReader.getCurrentSegmentNumber(), expectedField, null, currentFieldComponents.length);
+                    }
+                } else {
+                    throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + expectedField.getXmltag() + ") expected to contain " + expectedComponents.size() + " components.  Actually contains " + currentFieldComponents.length + " components.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedField, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                }
             }
         }
 
-        for (int i = 0; i < currentFieldComponents.length; i++) {
+        int numComponents = collectErrors() ? Math.min(currentFieldComponents.length, expectedComponents.size()) : currentFieldComponents.length;
+        for (int i = 0; i < numComponents; i++) {
             Component component = expectedComponents.get(i);
             if (component.getSubComponents().size() == 0 && (!currentFieldComponents[i].equals(""))) {
-                validateValueNode(component, currentFieldComponents[i]);
+                validateValueNode(component, component.getCodeList(), currentFieldComponents[i]);
             }
         }
     }
@@ -789,7 +886,9 @@ public class EDIParser implements XMLReader {
         if (currentComponentSubComponents.length != expectedSubComponents.size()) {
             boolean throwException = false;
 
-            if (expectedComponent.isTruncatable()) {
+            if (currentComponentSubComponents.length > expectedSubComponents.size()) {
+                throwException = true;
+            } else if (expectedComponent.isTruncatable()) {
 
                 //When there are no SubComponents in field it should not throw exception, since
                 //the Component is just created (with Component-separator) for satisfying requirement
@@ -811,19 +910,37 @@ public class EDIParser implements XMLReader {
             }
 
             if (throwException) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + field + "), component " + (componentIndex + 1) + " (" + expectedComponent.getXmltag() + ") expected to contain " + expectedSubComponents.size() + " sub-components.  Actually contains " + currentComponentSubComponents.length + " sub-components.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedComponent, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                if (collectErrors()) {
+                    if (currentComponentSubComponents.length > expectedSubComponents.size()) {
+                        parseErrors.add(EDIErrorCode.TOO_MANY_CONSTITUENTS, segmentReader.getCurrentSegmentNumber(), expectedComponent, null, expectedSubComponents.size());
+                    } else {
+                        parseErrors.add(EDIErrorCode.MISSING_CONSTITUENT, segmentReader.getCurrentSegmentNumber(), expectedComponent, null, currentComponentSubComponents.length);
+                    }
+                } else {
+                    throw new EDIParseException(edifactModel.getEdimap(), "Segment [" + segmentCode + "], field " + (fieldIndex + 1) + " (" + field + "), component " + (componentIndex + 1) + " (" + expectedComponent.getXmltag() + ") expected to contain " + expectedSubComponents.size() + " sub-components.  Actually contains " + currentComponentSubComponents.length + " sub-components.  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", expectedComponent, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                }
             }
         }
 
-        for (int i = 0; i < currentComponentSubComponents.length; i++) {
+        int numSubComponents = collectErrors() ? Math.min(currentComponentSubComponents.length, expectedSubComponents.size()) : currentComponentSubComponents.length;
+        for (int i = 0; i < numSubComponents; i++) {
             SubComponent subComponent = expectedSubComponents.get(i);
             if (!currentComponentSubComponents[i].equals("")) {
-                validateValueNode(subComponent, currentComponentSubComponents[i]);
+                validateValueNode(subComponent, null, currentComponentSubComponents[i]);
             }
         }
     }
 
-    private void validateValueNode(ValueNode valueNode, String value) throws EDIParseException {
+    private void validateValueNode(ValueNode valueNode, CodeList codeList, String value) throws EDIParseException {
+
+        // Test code list.
+        if (codeList != null && validateCodeLists() && !codeList.contains(value)) {
+            if (collectErrors()) {
+                parseErrors.add(EDIErrorCode.NOT_IN_CODE_LIST, segmentReader.getCurrentSegmentNumber(), valueNode, value, -1);
+            } else {
+                throw new EDIParseException(edifactModel.getEdimap(), "Value [" + value + "] is not a code in the code list of [" + valueNode.getXmltag() + "]. Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", valueNode, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+            }
+        }
 
         // Return when validation is turned off.
         if (!getFeature(FEATURE_VALIDATE)) {
@@ -833,16 +950,60 @@ public class EDIParser implements XMLReader {
         //Test minLength.
         if (valueNode.getMinLength() != null) {
             if (value.length() < valueNode.getMinLength()) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Value [" + value + "] should have a length greater than [" + valueNode.getMinLength() + "]. Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", valueNode, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                if (collectErrors()) {
+                    parseErrors.add(EDIErrorCode.VALUE_TOO_SHORT, segmentReader.getCurrentSegmentNumber(), valueNode, value, value.length());
+                } else {
+                    throw new EDIParseException(edifactModel.getEdimap(), "Value [" + value + "] should have a length greater than [" + valueNode.getMinLength() + "]. Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", valueNode, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                }
             }
         }
 
         //Test maxLength.
         if (valueNode.getMaxLength() != null) {
             if (value.length() > valueNode.getMaxLength()) {
-                throw new EDIParseException(edifactModel.getEdimap(), "Value [" + value + "] exceeds allowed maximum length of [" + valueNode.getMaxLength() + "]. Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", valueNode, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                if (collectErrors()) {
+                    parseErrors.add(EDIErrorCode.VALUE_TOO_LONG, segmentReader.getCurrentSegmentNumber(), valueNode, value, valueNode.getMaxLength());
+                } else {
+                    throw new EDIParseException(edifactModel.getEdimap(), "Value [" + value + "] exceeds allowed maximum length of [" + valueNode.getMaxLength() + "]. Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".", valueNode, segmentReader.getCurrentSegmentNumber(), segmentReader.getCurrentSegmentFields());
+                }
+            }
+        }
+
+        //Test type.
+        int invalidOffset = valueNode.getEDIType().validate(value, decimalSeparator);
+        if (invalidOffset != -1) {
+            parseErrors.add(EDIErrorCode.INVALID_TYPE, segmentReader.getCurrentSegmentNumber(), valueNode, value, invalidOffset);
+        }
+    }
+
+    /**
+     * Get the errors recorded while parsing the last message.
+     * <p/>
+     * The returned buffer is reused by the parser, and is cleared at the start of each parse.
+     * @return The parse errors.
+     */
+    public EDIParseErrors getParseErrors() {
+        return parseErrors;
+    }
+
+    /**
+     * Is the last message to be rejected on account of its parse errors?
+     * <p/>
+     * When {@link #FEATURE_COLLECT_ERRORS collecting errors}, every recorded error rejects the message.  Otherwise, the
+     * errors which reject a message are thrown, and the {@link EDIErrorCode#INVALID_TYPE invalid values} recorded
+     * in a message that parses are warnings only.
+     * @return True if the message is to be rejected, otherwise false.
+     */
+    public boolean isMessageRejected() {
+        if (collectErrors()) {
+            return !parseErrors.isEmpty();
+        }
+        for (EDIParseError parseError : parseErrors) {
+            if (parseError.getErrorCode() != EDIErrorCode.INVALID_TYPE) {
+                return true;
             }
         }
+        return false;
     }
 
 	public void startElement(MappingNode node, boolean indent) throws SAXException {
@@ -944,9 +1105,15 @@ public class EDIParser implements XMLReader {
 
     private void initializeFeatures() {
         features = new HashMap<String,Boolean>();
+        putDefaultFeatures();
+    }
+
+    private void putDefaultFeatures() {
         features.put(FEATURE_VALIDATE, false);
         features.put(FEATURE_IGNORE_NEWLINES, false);
         features.put(FEATURE_IGNORE_EMPTY_NODES, true);
+        features.put(FEATURE_VALIDATE_CODE_LISTS, false);
+        features.put(FEATURE_COLLECT_ERRORS, false);
     }
     private boolean ignoreEmptyNodes() {
         if (ignoreEmptyNodes == null) {
@@ -956,6 +1123,22 @@ public class EDIParser implements XMLReader {
         return ignoreEmptyNodes;
     }
 
+    private boolean validateCodeLists() {
+        if (validateCodeLists == null) {
+            validateCodeLists = getFeature(FEATURE_VALIDATE_CODE_LISTS);
+        }
+
+        return validateCodeLists;
+    }
+
+    private boolean collectErrors() {
+        if (collectErrors == null) {
+            collectErrors = getFeature(FEATURE_COLLECT_ERRORS);
+        }
+
+        return collectErrors;
+    }
+
     /****************************************************************************
      *
      * The following methods are currently unimplemnted...
@@ -972,6 +1155,9 @@ public class EDIParser implements XMLReader {
 
     public void setFeature(String name, boolean value) {
     	getFeatures().put(name, value);
+        ignoreEmptyNodes = null;
+        validateCodeLists = null;
+        collectErrors = null;
     }
 
     public DTDHandler getDTDHandler() {
@@ -0,0 +1,123 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax;
+
+import java.util.ArrayDeque;
+
+/**
+ * Pool of reusable {@link EDIParser} instances.
+ * <p/>
+ * Used by the interchange parsers to avoid creating (and configuring) a new {@link EDIParser}
+ * for every message in an interchange.  Parsers are {@link EDIParser#reset() reset} when returned
+ * to the pool.  The pool is thread safe and so can be shared between interchange parser instances.
+ */
+public class EDIParserPool {
+
+    /**
+     * Default maximum number of idle parsers held by the pool.
+     */
+    public static final int DEFAULT_MAX_IDLE = 16;
+
+    private final ArrayDeque<EDIParser> idleParsers;
+    private final int maxIdle;
+
+    /**
+     * Create a pool holding up to {@link #DEFAULT_MAX_IDLE} idle parsers.
+     */
+    public EDIParserPool() {
+        this(DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * Create a pool.
+     * @param maxIdle The maximum number of idle parsers held by the pool.  Parsers returned to a
+     * full pool are discarded.
+     */
+    public EDIParserPool(int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("Invalid 'maxIdle' value '" + maxIdle + "'.  Must be zero or greater.");
+        }
+        this.maxIdle = maxIdle;
+        this.idleParsers = new ArrayDeque<EDIParser>(Math.min(maxIdle, DEFAULT_MAX_IDLE));
+    }
+
+    /**
+     * Borrow a parser from the pool.
+     * <p/>
+     * A new parser is created if the pool is empty.
+     * @return A parser in its initial state.
+     */
+    public EDIParser borrowParser() {
+        EDIParser parser;
+        synchronized (idleParsers) {
+            parser = idleParsers.pollFirst();
+        }
+
+        return (parser != null ? parser : new EDIParser());
+    }
+
+    /**
+     * Return a parser to the pool.
+     * <p/>
+     * The parser must not be used by the caller after it has been returned.
+     * @param parser The parser.
+     */
+    public void returnParser(EDIParser parser) {
+        parser.reset();
+        synchronized (idleParsers) {
+            if (idleParsers.size() < maxIdle) {
+                idleParsers.addFirst(parser);
+            }
+        }
+    }
+
+    /**
+     * Get the number of idle parsers held by the pool.
+     * @return The number of idle parsers.
+     */
+    public int getIdleCount() {
+        synchronized (idleParsers) {
+            return idleParsers.size();
+        }
+    }
+}
@@ -47,9 +47,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
+/**
+ * EDI value types.
+ * <p/>
+ * Each type can {@link #validate(CharSequence, char) validate} a value against the corresponding UN/EDIFACT
+ * representation (<i>n</i>, <i>a</i>, <i>an</i>, date and time).  Validation does not allocate and does not throw
+ * exceptions, so it can be performed on every value as it is tokenized.
+ */
 public enum EDITypeEnum {
     String("String", String.class),
+    Alphabetic("String", String.class),
 	Numeric("Double", String.class),
+	Integer("Long", Long.class),
 	Decimal("Double", Double.class),
 	Date("Date", Date.class),
 	Time("Date", Date.class),
@@ -74,6 +83,239 @@ public enum EDITypeEnum {
         return javaClass;
     }
 
+    /**
+     * Get the type for the supplied mapping model data type.
+     * <p/>
+     * The UN/EDIFACT representations "n", "a" and "an" are also accepted.
+     *
+     * @param dataType The data type of a value node.
+     * @return The type, or {@link #Custom} if the data type is not known.
+     */
+    public static EDITypeEnum fromDataType(String dataType) {
+        if (dataType == null) {
+            return String;
+        }
+        switch (dataType) {
+            case "String":
+            case "an":
+                return String;
+            case "Alphabetic":
+            case "a":
+                return Alphabetic;
+            case "Numeric":
+            case "n":
+                return Numeric;
+            case "Decimal":
+            case "Double":
+            case "Float":
+            case "BigDecimal":
+            case "DABigDecimal":
+            case "DADouble":
+                return Decimal;
+            case "Integer":
+            case "Long":
+                return Integer;
+            case "Date":
+                return Date;
+            case "Time":
+                return Time;
+            case "Binary":
+                return Binary;
+            default:
+                return Custom;
+        }
+    }
+
+    /**
+     * Get the type for the supplied mapping model data type and data type parameters.
+     * <p/>
+     * Parameters such as a date "format" or a decimal format change the lexical form of a value, so a data type
+     * with parameters resolves to {@link #Custom} and its values are not validated.
+     *
+     * @param dataType The data type of a value node.
+     * @param parameters The data type parameters of the value node.
+     * @return The type, or {@link #Custom} if the data type is not known or is parameterised.
+     */
+    public static EDITypeEnum fromDataType(String dataType, List<Map.Entry<String, String>> parameters) {
+        EDITypeEnum type = fromDataType(dataType);
+        if (type != String && type != Alphabetic && parameters != null && !parameters.isEmpty()) {
+            return Custom;
+        }
+        return type;
+    }
+
+    /**
+     * Validate the supplied value against this type.
+     *
+     * @param value The value.
+     * @param decimalSeparator The decimal separator of numeric values.
+     * @return The offset of the first invalid character in the value, the length of the value if the value is
+     * incomplete, or -1 if the value is valid.
+     */
+    public int validate(CharSequence value, char decimalSeparator) {
+        switch (this) {
+            case Alphabetic:
+                return validateAlphabetic(value);
+            case Numeric:
+            case Decimal:
+                return validateNumeric(value, decimalSeparator, true);
+            case Integer:
+                return validateNumeric(value, decimalSeparator, false);
+            case Date:
+                return validateDate(value);
+            case Time:
+                return validateTime(value, 0);
+            case Binary:
+                return validateBinary(value);
+            default:
+                return -1;
+        }
+    }
+
+    private static int validateAlphabetic(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (isDigit(value.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int validateNumeric(CharSequence value, char decimalSeparator, boolean fraction) {
+        int length = value.length();
+        int i = 0;
+
+        if (length > 0 && value.charAt(0) == '-') {
+            i++;
+        }
+
+        int digitsBeforeSeparator = 0;
+        int digitsAfterSeparator = 0;
+        int separatorOffset = -1;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (isDigit(c)) {
+                if (separatorOffset == -1) {
+                    digitsBeforeSeparator++;
+                } else {
+                    digitsAfterSeparator++;
+                }
+            } else if (fraction && c == decimalSeparator && separatorOffset == -1 && digitsBeforeSeparator > 0) {
+                separatorOffset = i;
+            } else {
+                return i;
+            }
+        }
+
+        if (digitsBeforeSeparator == 0 || (separatorOffset != -1 && digitsAfterSeparator == 0)) {
+            return length;
+        }
+        return -1;
+    }
+
+    private static int validateDate(CharSequence value) {
+        // YYMMDD, CCYYMMDD, CCYYMMDDHHMM or CCYYMMDDHHMMSS
+        int length = value.length();
+        int monthOffset;
+        if (length == 6) {
+            monthOffset = 2;
+        } else if (length == 8 || length == 12 || length == 14) {
+            monthOffset = 4;
+        } else {
+            return incomplete(value, 0);
+        }
+
+        int invalidOffset = validateDigits(value, 0, length);
+        if (invalidOffset != -1) {
+            return invalidOffset;
+        }
+
+        int month = twoDigits(value, monthOffset);
+        if (month < 1 || month > 12) {
+            return monthOffset;
+        }
+        int day = twoDigits(value, monthOffset + 2);
+        int year = (monthOffset == 4 ? twoDigits(value, 0) * 100 : 2000) + twoDigits(value, monthOffset - 2);
+        if (day < 1 || day > daysInMonth(month, year)) {
+            return monthOffset + 2;
+        }
+
+        if (length > 8) {
+            return validateTime(value, 8);
+        }
+        return -1;
+    }
+
+    private static int validateTime(CharSequence value, int offset) {
+        // HHMM or HHMMSS
+        int length = value.length() - offset;
+        if (length != 4 && length != 6) {
+            return incomplete(value, offset);
+        }
+
+        int invalidOffset = validateDigits(value, offset, value.length());
+        if (invalidOffset != -1) {
+            return invalidOffset;
+        }
+
+        if (twoDigits(value, offset) > 23) {
+            return offset;
+        }
+        if (twoDigits(value, offset + 2) > 59) {
+            return offset + 2;
+        }
+        if (length == 6 && twoDigits(value, offset + 4) > 59) {
+            return offset + 4;
+        }
+        return -1;
+    }
+
+    private static int validateBinary(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '0' && c != '1') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int validateDigits(CharSequence value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isDigit(value.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int incomplete(CharSequence value, int offset) {
+        int invalidOffset = validateDigits(value, offset, value.length());
+        return invalidOffset != -1 ? invalidOffset : value.length();
+    }
+
+    private static int twoDigits(CharSequence value, int offset) {
+        return (value.charAt(offset) - '0') * 10 + (value.charAt(offset + 1) - '0');
+    }
+
+    private static int daysInMonth(int month, int year) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
     private Properties getProperties(List<Map.Entry<String, String>> parameters) {
         Properties properties = new Properties();
         for (Map.Entry<String,String> entry : parameters) {
@@ -0,0 +1,132 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax;
+
+import org.smooks.assertion.AssertArgument;
+
+import java.security.MessageDigest;
+import java.util.zip.Checksum;
+
+/**
+ * Digest of the raw message data read by the {@link BufferedSegmentReader}.
+ * <p/>
+ * Adapts either a {@link MessageDigest} (e.g. SHA-256 for AUTACK) or a {@link Checksum}
+ * (e.g. CRC32, or CRC32C on Java 9+).  Instances are reset and reused for every message and
+ * so are not thread safe.
+ *
+ * @see BufferedSegmentReader#setMessageDataDigest(MessageDataDigest)
+ */
+public abstract class MessageDataDigest {
+
+    /**
+     * Create a digest backed by a {@link MessageDigest}.
+     * @param messageDigest The message digest.
+     * @return The message data digest.
+     */
+    public static MessageDataDigest forMessageDigest(final MessageDigest messageDigest) {
+        AssertArgument.isNotNull(messageDigest, "messageDigest");
+        return new MessageDataDigest() {
+            public void reset() {
+                messageDigest.reset();
+            }
+
+            public void update(byte[] bytes, int offset, int length) {
+                messageDigest.update(bytes, offset, length);
+            }
+
+            public byte[] digest() {
+                return messageDigest.digest();
+            }
+        };
+    }
+
+    /**
+     * Create a digest backed by a {@link Checksum}.
+     * <p/>
+     * The digest value is the 8 byte big-endian representation of {@link Checksum#getValue()}.
+     * @param checksum The checksum.
+     * @return The message data digest.
+     */
+    public static MessageDataDigest forChecksum(final Checksum checksum) {
+        AssertArgument.isNotNull(checksum, "checksum");
+        return new MessageDataDigest() {
+            public void reset() {
+                checksum.reset();
+            }
+
+            public void update(byte[] bytes, int offset, int length) {
+                checksum.update(bytes, offset, length);
+            }
+
+            public byte[] digest() {
+                long value = checksum.getValue();
+                byte[] digest = new byte[8];
+                for (int i = 7; i >= 0; i--) {
+                    digest[i] = (byte) value;
+                    value >>>= 8;
+                }
+                checksum.reset();
+                return digest;
+            }
+        };
+    }
+
+    /**
+     * Reset the digest in preparation for a new message.
+     */
+    public abstract void reset();
+
+    /**
+     * Update the digest with raw message data.
+     * @param bytes The data.
+     * @param offset The data offset.
+     * @param length The data length.
+     */
+    public abstract void update(byte[] bytes, int offset, int length);
+
+    /**
+     * Complete the digest.
+     * @return The digest value.
+     */
+    public abstract byte[] digest();
+}
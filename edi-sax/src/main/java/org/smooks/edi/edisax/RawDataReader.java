@@ -0,0 +1,201 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reader decoding a byte stream one character at a time, so that the raw bytes of each character read are known.
+ * <p/>
+ * Used by the {@link BufferedSegmentReader} when a {@link MessageDataDigest} is set, to digest the bytes of a message
+ * exactly as they were read.  The bytes of the last {@link #HISTORY_LENGTH} characters read are retained, so that
+ * characters already read when the digest is started (e.g. a peeked segment code) can be included in it.
+ */
+class RawDataReader extends Reader {
+
+    static final int HISTORY_LENGTH = 32;
+
+    private final InputStream inputStream;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer byteBuffer = ByteBuffer.allocate(8192);
+    private final CharBuffer charBuffer = CharBuffer.allocate(2);
+    private final byte[] historyBytes = new byte[HISTORY_LENGTH * 8];
+    private final long[] historyCharEnds = new long[HISTORY_LENGTH];
+    private long bytesConsumed;
+    private long charsRead;
+    private boolean endOfInput;
+    private boolean flushed;
+    private MessageDataDigest messageDataDigest;
+
+    RawDataReader(InputStream inputStream, Charset encoding) {
+        this.inputStream = inputStream;
+        this.decoder = encoding.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        byteBuffer.flip();
+        charBuffer.flip();
+    }
+
+    /**
+     * Set the digest to update with the bytes of the characters read from now on.
+     * @param messageDataDigest The message data digest, or null to stop digesting.
+     */
+    void setMessageDataDigest(MessageDataDigest messageDataDigest) {
+        this.messageDataDigest = messageDataDigest;
+    }
+
+    /**
+     * Update a digest with the bytes of the last characters read.
+     * @param messageDataDigest The message data digest.
+     * @param numChars The number of characters.
+     * @throws IllegalStateException The bytes of the characters are no longer retained.
+     */
+    void digestLastChars(MessageDataDigest messageDataDigest, int numChars) throws IllegalStateException {
+        if (numChars == 0) {
+            return;
+        }
+        if (numChars > charsRead || numChars >= HISTORY_LENGTH) {
+            throw new IllegalStateException("Unable to digest the last " + numChars + " characters read.  Only the bytes of the last " + Math.min(charsRead, HISTORY_LENGTH - 1) + " characters are retained.");
+        }
+
+        long start = (numChars == charsRead ? 0 : historyCharEnds[(int) ((charsRead - numChars - 1) % HISTORY_LENGTH)]);
+        if (bytesConsumed - start > historyBytes.length) {
+            throw new IllegalStateException("Unable to digest the last " + numChars + " characters read.  Their bytes are no longer retained.");
+        }
+        int offset = (int) (start % historyBytes.length);
+        int length = (int) (bytesConsumed - start);
+        int firstLength = Math.min(length, historyBytes.length - offset);
+        messageDataDigest.update(historyBytes, offset, firstLength);
+        if (firstLength < length) {
+            messageDataDigest.update(historyBytes, 0, length - firstLength);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!charBuffer.hasRemaining() && !decodeNext()) {
+            return -1;
+        }
+        historyCharEnds[(int) (charsRead++ % HISTORY_LENGTH)] = bytesConsumed;
+        return charBuffer.get();
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) throws IOException {
+        int count = 0;
+        while (count < length) {
+            int c = read();
+            if (c == -1) {
+                return (count == 0 ? -1 : count);
+            }
+            chars[offset + count++] = (char) c;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    /**
+     * Decode the next character, or surrogate pair, consuming only the bytes that encode it.
+     */
+    private boolean decodeNext() throws IOException {
+        charBuffer.clear().limit(1);
+        while (!flushed) {
+            int start = byteBuffer.position();
+            CoderResult result = decoder.decode(byteBuffer, charBuffer, endOfInput);
+            consumed(start, byteBuffer.position());
+            if (charBuffer.position() > 0) {
+                charBuffer.flip();
+                return true;
+            }
+            if (result.isOverflow()) {
+                // A surrogate pair...
+                charBuffer.limit(2);
+            } else if (endOfInput) {
+                decoder.flush(charBuffer);
+                flushed = true;
+                charBuffer.flip();
+                return charBuffer.hasRemaining();
+            } else {
+                fill();
+            }
+        }
+        charBuffer.flip();
+        return false;
+    }
+
+    private void fill() throws IOException {
+        byteBuffer.compact();
+        int count = inputStream.read(byteBuffer.array(), byteBuffer.position(), byteBuffer.remaining());
+        if (count == -1) {
+            endOfInput = true;
+        } else {
+            byteBuffer.position(byteBuffer.position() + count);
+        }
+        byteBuffer.flip();
+    }
+
+    private void consumed(int start, int end) {
+        if (start == end) {
+            return;
+        }
+        byte[] bytes = byteBuffer.array();
+        if (messageDataDigest != null) {
+            messageDataDigest.update(bytes, start, end - start);
+        }
+        for (int i = start; i < end; i++) {
+            historyBytes[(int) (bytesConsumed++ % historyBytes.length)] = bytes[i];
+        }
+    }
+}
@@ -52,10 +52,13 @@ import org.smooks.support.StreamUtils;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -72,23 +75,55 @@ import java.util.zip.ZipOutputStream;
 
 /**
  * Java Archive.
+ * <p/>
+ * By default, archive entries are written to a temporary directory on the file system. An archive created with
+ * {@link StorageMode#IN_MEMORY} keeps the entry data in memory instead and only writes an entry to a temporary
+ * file if a {@link File} is explicitly asked for through {@link #getEntry(String)} or {@link #getEntries()}.
  *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 public class Archive {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Archive.class);
+    private static final String IN_MEMORY_URL_PROTOCOL = "archive";
+
+    /**
+     * Archive entry storage mode.
+     */
+    public enum StorageMode {
+        /**
+         * Entries are written to a temporary directory on the file system.
+         */
+        FILE_SYSTEM,
+        /**
+         * Entries are held in memory.
+         */
+        IN_MEMORY
+    }
 
 	private final String archiveName;
+    private final StorageMode storageMode;
     private File tmpDir;
-    private final LinkedHashMap<String, File> entries = new LinkedHashMap<String, File>();
+    private final LinkedHashMap<String, ArchiveEntry> entries = new LinkedHashMap<String, ArchiveEntry>();
+    private Map<String, File> entryFiles;
+    private final URLStreamHandler inMemoryURLStreamHandler = new InMemoryURLStreamHandler();
 
     /**
      * Public constructor.
      */
     public Archive() {
+        this(StorageMode.FILE_SYSTEM);
+    }
+
+    /**
+     * Public constructor.
+     * @param storageMode The entry {@link StorageMode}.
+     */
+    public Archive(StorageMode storageMode) {
+        AssertArgument.isNotNull(storageMode, "storageMode");
         this.archiveName = "Unknown";
-        createTempDir();
+        this.storageMode = storageMode;
+        initStorage();
     }
 
     /**
@@ -96,9 +131,20 @@ public class Archive {
      * @param archiveName The archive name of the deployment.
      */
     public Archive(String archiveName) {
+        this(archiveName, StorageMode.FILE_SYSTEM);
+    }
+
+    /**
+     * Public constructor.
+     * @param archiveName The archive name of the deployment.
+     * @param storageMode The entry {@link StorageMode}.
+     */
+    public Archive(String archiveName, StorageMode storageMode) {
         AssertArgument.isNotNull(archiveName, "archiveName");
+        AssertArgument.isNotNull(storageMode, "storageMode");
         this.archiveName = archiveName;
-        createTempDir();
+        this.storageMode = storageMode;
+        initStorage();
     }
 
     /**
@@ -107,8 +153,17 @@ public class Archive {
      * @throws IOException Error reading from zip stream.
      */
     public Archive(ZipInputStream archiveStream) throws IOException {
-        this.archiveName = "Unknown";
-        createTempDir();
+        this(archiveStream, StorageMode.FILE_SYSTEM);
+    }
+
+    /**
+     * Public constructor.
+     * @param archiveStream Archive stream containing initial archive entries.
+     * @param storageMode The entry {@link StorageMode}.
+     * @throws IOException Error reading from zip stream.
+     */
+    public Archive(ZipInputStream archiveStream, StorageMode storageMode) throws IOException {
+        this(storageMode);
         addEntries(archiveStream);
     }
 
@@ -119,9 +174,22 @@ public class Archive {
      * @throws IOException Error reading from zip stream.
      */
     public Archive(String archiveName, ZipInputStream archiveStream) throws IOException {
+        this(archiveName, archiveStream, StorageMode.FILE_SYSTEM);
+    }
+
+    /**
+     * Public constructor.
+     * @param archiveName The archive name of the deployment.
+     * @param archiveStream Archive stream containing initial archive entries.
+     * @param storageMode The entry {@link StorageMode}.
+     * @throws IOException Error reading from zip stream.
+     */
+    public Archive(String archiveName, ZipInputStream archiveStream, StorageMode storageMode) throws IOException {
         AssertArgument.isNotNullAndNotEmpty(archiveName, "archiveName");
+        AssertArgument.isNotNull(storageMode, "storageMode");
         this.archiveName = archiveName;
-        createTempDir();
+        this.storageMode = storageMode;
+        initStorage();
         addEntries(archiveStream);
     }
 
@@ -133,6 +201,14 @@ public class Archive {
         return archiveName;
     }
 
+    /**
+     * Get the entry {@link StorageMode} of this archive.
+     * @return The storage mode.
+     */
+    public StorageMode getStorageMode() {
+        return storageMode;
+    }
+
     /**
      * Add the supplied data as an entry in the deployment.
      *
@@ -185,25 +261,15 @@ public class Archive {
     public Archive addEntry(String path, byte[] data) {
         AssertArgument.isNotNullAndNotEmpty(path, "path");
 
-        File entryFile = new File(tmpDir, path);
-
-        if (entryFile.exists()) {
-            entryFile.delete();
-        }
-
-        entryFile.getParentFile().mkdirs();
-        if (data == null) {
-            entryFile.mkdir();
+        entryFiles = null;
+        if (storageMode == StorageMode.IN_MEMORY) {
+            entries.put(trimLeadingSlash(path.trim()), new ArchiveEntry(data, data == null));
         } else {
-            try {
-                FileUtils.writeFile(data, entryFile);
-            } catch (IOException e) {
-                throw new IllegalStateException("Unexpected error writing Archive file '" + entryFile.getAbsolutePath() + "'.", e);
-            }
+            ArchiveEntry entry = new ArchiveEntry(null, data == null);
+            entry.file = writeEntryFile(path, data);
+            entries.put(trimLeadingSlash(path.trim()), entry);
         }
 
-        entries.put(trimLeadingSlash(path.trim()), entryFile);
-
         return this;
     }
 
@@ -218,6 +284,7 @@ public class Archive {
     public Archive addEntry(String path) {
         AssertArgument.isNotNullAndNotEmpty(path, "path");
 
+        entryFiles = null;
         path = path.trim();
         if(path.endsWith("/")) {
             entries.put(trimLeadingSlash(path), null);
@@ -278,7 +345,7 @@ public class Archive {
         try {
             ZipEntry zipEntry = zipStream.getNextEntry();
             ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
-            byte[] byteReadBuffer = new byte[512];
+            byte[] byteReadBuffer = new byte[4096];
             int byteReadCount;
 
             while(zipEntry != null) {
@@ -311,6 +378,7 @@ public class Archive {
      * @return This archive instance.
      */
     public Archive removeEntry(String path) {
+        entryFiles = null;
         entries.remove(path);
         return this;
     }
@@ -320,11 +388,36 @@ public class Archive {
      * <p/>
      * The returned map entries are ordered in line with the order in which they were added
      * to the archive.
+     * <p/>
+     * On an {@link StorageMode#IN_MEMORY} archive, the first call writes every entry to a temporary file.  The map
+     * is kept until the archive is next modified, so repeated calls do not copy the entries again.  Use
+     * {@link #getEntryNames()} and {@link #getEntryBytes(String)} where a {@link File} is not needed.
      *
      * @return An unmodifiable {@link Map} of the archive entries.
      */
     public Map<String, File> getEntries() {
-        return Collections.unmodifiableMap(entries);
+        if (entryFiles == null) {
+            Map<String, File> files = new LinkedHashMap<String, File>();
+
+            for (Entry<String, ArchiveEntry> entry : entries.entrySet()) {
+                files.put(entry.getKey(), toFile(entry.getKey(), entry.getValue()));
+            }
+            entryFiles = Collections.unmodifiableMap(files);
+        }
+
+        return entryFiles;
+    }
+
+    /**
+     * Get the archive entry names.
+     * <p/>
+     * The returned names are ordered in line with the order in which they were added
+     * to the archive.
+     *
+     * @return An unmodifiable {@link Set} of the archive entry names.
+     */
+    public Set<String> getEntryNames() {
+        return Collections.unmodifiableSet(entries.keySet());
     }
 
     /**
@@ -333,10 +426,10 @@ public class Archive {
      * @return The entry name at that index.
      */
     public String getEntryName(int index) {
-        Set<Entry<String, File>> entrySet = entries.entrySet();
+        Set<Entry<String, ArchiveEntry>> entrySet = entries.entrySet();
         int i = 0;
 
-        for (Entry<String, File> entry : entrySet) {
+        for (Entry<String, ArchiveEntry> entry : entrySet) {
             if(i == index) {
                 return entry.getKey();
             }
@@ -350,25 +443,15 @@ public class Archive {
     /**
      * Get the value of the entry at the specified index in the archive.
      * @param index The index.
-     * @return The entry value at that index.
+     * @return A copy of the entry value at that index.
      */
     public byte[] getEntryValue(int index) {
-        Set<Entry<String, File>> entrySet = entries.entrySet();
+        Set<Entry<String, ArchiveEntry>> entrySet = entries.entrySet();
         int i = 0;
 
-        for (Entry<String, File> entry : entrySet) {
+        for (Entry<String, ArchiveEntry> entry : entrySet) {
             if(i == index) {
-                File entryFile = entry.getValue();
-
-                if (entryFile != null) {
-                    try {
-                        return FileUtils.readFile(entryFile);
-                    } catch (IOException e) {
-                        throw new IllegalStateException("Unexpected error reading Archive file '" + entryFile.getAbsolutePath() + "'.", e);
-                    }
-                } else {
-                    return null;
-                }
+                return copyEntry(entry.getValue());
             }
 
             i++;
@@ -379,50 +462,55 @@ public class Archive {
 
     /**
      * Get an Archive entries bytes.
+     * <p/>
+     * The returned array is a copy, so changing it does not change the entry.
+     *
      * @param resName Entry resource name.
      * @return The bytes, or null if the entry is not in the Archive.
      */
     public byte[] getEntryBytes(String resName) {
-        File entryFile = getEntry(resName);
-
-        if (entryFile != null) {
-            try {
-                return FileUtils.readFile(entryFile);
-            } catch (IOException e) {
-                throw new IllegalStateException("Unexpected error reading Archive file '" + entryFile.getAbsolutePath() + "'.", e);
-            }
-        } else {
-            return null;
-        }
+        AssertArgument.isNotNullAndNotEmpty(resName, "resName");
+        return copyEntry(entries.get(resName));
     }
 
     /**
      * Get an Archive entry file.
+     * <p/>
+     * On an {@link StorageMode#IN_MEMORY} archive, the entry is written to a temporary file on the first call.
+     *
      * @param resName Entry resource name.
      * @return The entry File, or null if the entry is not in the Archive.
      */
     public File getEntry(String resName) {
         AssertArgument.isNotNullAndNotEmpty(resName, "resName");
-        return entries.get(resName);
+        return toFile(resName, entries.get(resName));
     }
 
     /**
      * Get an Archive entry resource URL.
+     * <p/>
+     * The URL of an {@link StorageMode#IN_MEMORY} archive entry is served from memory.
+     *
      * @param resName Entry resource name.
      * @return The entry resource URL, or null if the entry is not in the Archive.
      */
     public URL getEntryURL(String resName) {
-        File entry = getEntry(resName);
+        AssertArgument.isNotNullAndNotEmpty(resName, "resName");
+        ArchiveEntry entry = entries.get(resName);
 
-        if (entry != null) {
-            try {
-                return entry.toURI().toURL();
-            } catch (MalformedURLException e) {
-                throw new IllegalStateException("Unexpected error getting URL for Archive file '" + entry.getAbsolutePath() + "'.", e);
-            }
-        } else {
+        if (entry == null) {
             return null;
         }
+
+        try {
+            if (entry.file == null) {
+                return new URL(IN_MEMORY_URL_PROTOCOL, null, -1, "/" + resName, inMemoryURLStreamHandler);
+            } else {
+                return entry.file.toURI().toURL();
+            }
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException("Unexpected error getting URL for Archive entry '" + resName + "'.", e);
+        }
     }
 
     /**
@@ -466,16 +554,14 @@ public class Archive {
             outputFolder.mkdirs();
         }
 
-        Set<Entry<String, File>> entrySet = entries.entrySet();
-        for (Entry<String, File> entry : entrySet) {
-            File archEntryFile = entry.getValue();
-            byte[] fileBytes;
+        Set<Entry<String, ArchiveEntry>> entrySet = entries.entrySet();
+        for (Entry<String, ArchiveEntry> entry : entrySet) {
+            ArchiveEntry archiveEntry = entry.getValue();
             File entryFile = new File(outputFolder, entry.getKey());
 
-            if (archEntryFile != null) {
-                fileBytes = FileUtils.readFile(archEntryFile);
+            if (!isDirectory(archiveEntry)) {
                 entryFile.getParentFile().mkdirs();
-                FileUtils.writeFile(fileBytes, entryFile);
+                FileUtils.writeFile(readEntry(archiveEntry), entryFile);
             } else {
                 entryFile.mkdirs();
             }
@@ -497,21 +583,20 @@ public class Archive {
     }
 
     private void writeEntriesToArchive(ZipOutputStream archiveStream) throws IOException {
-        File manifestFile = entries.get(JarFile.MANIFEST_NAME);
+        ArchiveEntry manifestEntry = entries.get(JarFile.MANIFEST_NAME);
 
         // Always write the jar manifest as the first entry, if it exists...
-        if(manifestFile != null) {
-            byte[] manifest = FileUtils.readFile(manifestFile);
-            writeEntry(JarFile.MANIFEST_NAME, manifest, archiveStream);
+        if(manifestEntry != null) {
+            writeEntry(JarFile.MANIFEST_NAME, readEntry(manifestEntry), archiveStream);
         }
 
-        Set<Entry<String, File>> entrySet = entries.entrySet();
-        for (Entry<String, File> entry : entrySet) {
+        Set<Entry<String, ArchiveEntry>> entrySet = entries.entrySet();
+        for (Entry<String, ArchiveEntry> entry : entrySet) {
             if(!entry.getKey().equals(JarFile.MANIFEST_NAME)) {
-                File file = entry.getValue();
+                ArchiveEntry archiveEntry = entry.getValue();
 
-                if (file != null && !file.isDirectory()) {
-                    writeEntry(entry.getKey(), FileUtils.readFile(file), archiveStream);
+                if (!isDirectory(archiveEntry)) {
+                    writeEntry(entry.getKey(), readEntry(archiveEntry), archiveStream);
                 } else {
                     writeEntry(entry.getKey(), null, archiveStream);
                 }
@@ -544,16 +629,11 @@ public class Archive {
     }
 
     public Archive merge(Archive archive) {
-        Map<String, File> entriesToMerge = archive.getEntries();
-        for (Entry<String, File> entry : entriesToMerge.entrySet()) {
-            File file = entry.getValue();
+        for (Entry<String, ArchiveEntry> entry : archive.entries.entrySet()) {
+            ArchiveEntry archiveEntry = entry.getValue();
 
-            if (file != null && !file.isDirectory()) {
-                try {
-                    addEntry(entry.getKey(), FileUtils.readFile(file));
-                } catch (IOException e) {
-                    throw new IllegalStateException("Unexpected error reading Archive file '" + file.getAbsolutePath() + "'.", e);
-                }
+            if (!isDirectory(archiveEntry)) {
+                addEntry(entry.getKey(), readEntry(archiveEntry));
             } else {
                 addEntry(entry.getKey(), (byte[]) null);
             }
@@ -566,6 +646,76 @@ public class Archive {
         return entries.containsKey(path);
     }
 
+    private void initStorage() {
+        if (storageMode == StorageMode.FILE_SYSTEM) {
+            createTempDir();
+        }
+    }
+
+    private File writeEntryFile(String path, byte[] data) {
+        createTempDir();
+
+        File entryFile = new File(tmpDir, path);
+
+        if (entryFile.exists()) {
+            entryFile.delete();
+        }
+
+        entryFile.getParentFile().mkdirs();
+        if (data == null) {
+            entryFile.mkdir();
+        } else {
+            try {
+                FileUtils.writeFile(data, entryFile);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unexpected error writing Archive file '" + entryFile.getAbsolutePath() + "'.", e);
+            }
+        }
+
+        return entryFile;
+    }
+
+    private File toFile(String path, ArchiveEntry entry) {
+        if (entry == null) {
+            return null;
+        }
+        if (entry.file == null) {
+            // In-memory entry... spill it to the temp dir now that a File is needed...
+            entry.file = writeEntryFile(path, entry.bytes);
+        }
+
+        return entry.file;
+    }
+
+    private byte[] readEntry(ArchiveEntry entry) {
+        if (entry == null) {
+            return null;
+        } else if (entry.bytes != null) {
+            return entry.bytes;
+        } else if (entry.file != null && !entry.directory) {
+            try {
+                return FileUtils.readFile(entry.file);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unexpected error reading Archive file '" + entry.file.getAbsolutePath() + "'.", e);
+            }
+        } else {
+            return null;
+        }
+    }
+
+    private byte[] copyEntry(ArchiveEntry entry) {
+        if (entry != null && entry.bytes != null) {
+            return entry.bytes.clone();
+        }
+
+        // entries stored on the file system are read into a new array anyway...
+        return readEntry(entry);
+    }
+
+    private boolean isDirectory(ArchiveEntry entry) {
+        return entry == null || entry.directory;
+    }
+
     private void createTempDir() {
         if (tmpDir == null) {
             try {
@@ -581,8 +731,51 @@ public class Archive {
         }
     }
 
+    /**
+     * Archive entry.  Holds the entry data in memory ({@link StorageMode#IN_MEMORY}) or in a file.
+     */
+    private static class ArchiveEntry {
+
+        private final byte[] bytes;
+        private final boolean directory;
+        private File file;
+
+        private ArchiveEntry(byte[] bytes, boolean directory) {
+            this.bytes = bytes;
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * {@link URLStreamHandler} serving {@link StorageMode#IN_MEMORY} archive entries.
+     */
+    private class InMemoryURLStreamHandler extends URLStreamHandler {
+
+        @Override
+        protected URLConnection openConnection(URL url) {
+            return new URLConnection(url) {
+                @Override
+                public void connect() {
+                    connected = true;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    byte[] bytes = readEntry(entries.get(getURL().getPath().substring(1)));
+
+                    if (bytes == null) {
+                        throw new FileNotFoundException("Archive entry '" + getURL().getPath() + "' not found in archive '" + archiveName + "'.");
+                    }
+
+                    return new ByteArrayInputStream(bytes);
+                }
+            };
+        }
+    }
+
     private static class DeleteOnExitHook {
 
+
         static {
             Runtime.getRuntime().addShutdownHook(
                 new Thread() {
@@ -44,7 +44,11 @@ package org.smooks.edi.edisax.interchange;
 
 import org.smooks.assertion.AssertArgument;
 import org.smooks.edi.edisax.BufferedSegmentReader;
+import org.smooks.edi.edisax.EDIErrorCode;
+import org.smooks.edi.edisax.EDIParseErrors;
+import org.smooks.edi.edisax.EDIParseException;
 import org.smooks.edi.edisax.EDIParser;
+import org.smooks.edi.edisax.EDIParserPool;
 import org.smooks.edi.edisax.model.EdifactModel;
 import org.smooks.edi.edisax.model.internal.Delimiters;
 import org.smooks.edi.edisax.model.internal.Description;
@@ -66,16 +70,26 @@ public class InterchangeContext {
 
     public static final String INTERCHANGE_MESSAGE_BLOCK_ELEMENT_NAME = "interchangeMessage";
 
+    private static final EdifactModel CONTROL_MODEL = createControlModel();
+
 	private final BufferedSegmentReader segmentReader;
 	private final ContentHandler contentHandler;
     private final Map<String,Boolean> features;
     private final EDIParser controlSegmentParser;
     public Integer indentDepth = 0;
-    private final ControlBlockHandlerFactory controlBlockHandlerFactory;
+    private ControlBlockHandlerFactory controlBlockHandlerFactory;
     private final boolean validate;
     private final MappingsRegistry registry;
     private NamespaceDeclarationStack namespaceDeclarationStack;
     private boolean containerManagedNamespaceStack = false;
+    private InterchangeListener interchangeListener;
+    private ControlCountVerification controlCountVerification = ControlCountVerification.NONE;
+    private final EDIParseErrors controlErrors = new EDIParseErrors();
+    private int messageCount;
+    private int groupCount;
+    private int groupMessageCount;
+    private byte[] messageDigest;
+    private EDIParserPool parserPool;
 
     /**
 	 * Public constructor.
@@ -111,18 +125,39 @@ public class InterchangeContext {
             this.containerManagedNamespaceStack = true;
         }
         controlSegmentParser.setNamespaceDeclarationStack(this.namespaceDeclarationStack);
+        controlSegmentParser.setMappingModel(CONTROL_MODEL);
+    }
 
+    private static EdifactModel createControlModel() {
         Edimap controlMap = new Edimap();
-        EdifactModel controlModel = new EdifactModel(controlMap);
 
         controlMap.setDescription(new Description().setName("EDI Message Interchange Control Model").setVersion("N/A"));
-        controlSegmentParser.setMappingModel(controlModel);
+
+        return new EdifactModel(controlMap);
     }
 
     public ControlBlockHandler getControlBlockHandler(String segCode) throws SAXException {
         return controlBlockHandlerFactory.getControlBlockHandler(segCode);
     }
 
+    /**
+     * Get the {@link ControlBlockHandlerFactory} for the interchange.
+     * @return The control block handler factory.
+     */
+    public ControlBlockHandlerFactory getControlBlockHandlerFactory() {
+        return controlBlockHandlerFactory;
+    }
+
+    /**
+     * Set the {@link ControlBlockHandlerFactory} for the rest of the interchange (e.g. once the syntax
+     * version of the interchange is known).
+     * @param controlBlockHandlerFactory The control block handler factory.
+     */
+    public void setControlBlockHandlerFactory(ControlBlockHandlerFactory controlBlockHandlerFactory) {
+        AssertArgument.isNotNull(controlBlockHandlerFactory, "controlBlockHandlerFactory");
+        this.controlBlockHandlerFactory = controlBlockHandlerFactory;
+    }
+
     public BufferedSegmentReader getSegmentReader() {
 		return segmentReader;
 	}
@@ -143,8 +178,32 @@ public class InterchangeContext {
         return namespaceDeclarationStack;
     }
 
+    /**
+     * Get the {@link EDIParserPool} from which message parsers are borrowed.
+     * @return The parser pool, or null if a new parser is created for every message.
+     */
+    public EDIParserPool getParserPool() {
+        return parserPool;
+    }
+
+    /**
+     * Set the {@link EDIParserPool} from which message parsers are borrowed.
+     * @param parserPool The parser pool, or null if a new parser is to be created for every message.
+     */
+    public void setParserPool(EDIParserPool parserPool) {
+        this.parserPool = parserPool;
+    }
+
+    /**
+     * Get a message parser, configured for this interchange.
+     * <p/>
+     * The parser is borrowed from the {@link #getParserPool() parser pool} (if set), and should be
+     * {@link #releaseParser(EDIParser) released} once the message has been processed.
+     * @param mappingModel The message mapping model.
+     * @return The message parser.
+     */
     public EDIParser newParser(EdifactModel mappingModel) {
-		EDIParser parser = new EDIParser();
+		EDIParser parser = (parserPool != null ? parserPool.borrowParser() : new EDIParser());
 
 		parser.setContentHandler(contentHandler);
 		parser.setMappingModel(mappingModel);
@@ -157,6 +216,16 @@ public class InterchangeContext {
 		return parser;
 	}
 
+    /**
+     * Release a message parser obtained from {@link #newParser(EdifactModel)}.
+     * @param parser The message parser.
+     */
+    public void releaseParser(EDIParser parser) {
+        if(parserPool != null) {
+            parserPool.returnParser(parser);
+        }
+    }
+
     public EDIParser getControlSegmentParser() {
 		return controlSegmentParser;
 	}
@@ -192,4 +261,168 @@ public class InterchangeContext {
     public boolean isContainerManagedNamespaceStack() {
         return containerManagedNamespaceStack;
     }
+
+    /**
+     * Get the {@link ControlCountVerification} mode applied to the trailer segments.
+     * @return The control count verification mode.
+     */
+    public ControlCountVerification getControlCountVerification() {
+        return controlCountVerification;
+    }
+
+    /**
+     * Set the {@link ControlCountVerification} mode applied to the trailer segments.
+     * @param controlCountVerification The control count verification mode.
+     */
+    public void setControlCountVerification(ControlCountVerification controlCountVerification) {
+        AssertArgument.isNotNull(controlCountVerification, "controlCountVerification");
+        this.controlCountVerification = controlCountVerification;
+    }
+
+    /**
+     * Get the control count and reference errors of the group and interchange trailer segments, as
+     * recorded in {@link ControlCountVerification#REPORT} mode.
+     * @return The control errors.
+     */
+    public EDIParseErrors getControlErrors() {
+        return controlErrors;
+    }
+
+    /**
+     * Count a message header.
+     */
+    public void messageStarted() {
+        messageCount++;
+        groupMessageCount++;
+    }
+
+    /**
+     * Count a group header.
+     */
+    public void groupStarted() {
+        groupCount++;
+        groupMessageCount = 0;
+    }
+
+    /**
+     * Get the number of messages read in the interchange.
+     * @return The number of messages.
+     */
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Get the number of groups read in the interchange.
+     * @return The number of groups.
+     */
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * Get the number of messages read in the current group.
+     * @return The number of messages.
+     */
+    public int getGroupMessageCount() {
+        return groupMessageCount;
+    }
+
+    /**
+     * Verify the control count (field 1) and control reference (field 2) of the current trailer segment,
+     * according to the {@link #getControlCountVerification() control count verification mode}.
+     * <p/>
+     * Mismatches are recorded in the errors buffer.  In {@link ControlCountVerification#STRICT} mode, the exception
+     * for the first mismatch is returned rather than thrown, so that the handler can notify the
+     * {@link #getInterchangeListener() interchange listener} of the trailer before throwing it.
+     *
+     * @param trailerSegment The trailer segment mapping.
+     * @param trailerFields The trailer segment fields.
+     * @param count The number of segments, messages or groups read.
+     * @param countDescription Description of what is counted, for the error message.
+     * @param headerRef The control reference of the corresponding header segment.
+     * @param parseErrors The errors buffer in which to record mismatches.
+     * @return The exception to throw for a mismatched control count or reference in
+     * {@link ControlCountVerification#STRICT} mode, otherwise null.
+     */
+    public EDIParseException verifyTrailer(Segment trailerSegment, String[] trailerFields, int count, String countDescription, String headerRef, EDIParseErrors parseErrors) {
+        if (controlCountVerification == ControlCountVerification.NONE) {
+            return null;
+        }
+
+        String controlCount = (trailerFields.length > 1 ? trailerFields[1] : "");
+        String controlRef = (trailerFields.length > 2 ? trailerFields[2] : "");
+        EDIParseException mismatch = null;
+
+        if (!isCount(controlCount, count)) {
+            parseErrors.add(EDIErrorCode.CONTROL_COUNT_MISMATCH, segmentReader.getCurrentSegmentNumber(), trailerSegment, controlCount, -1);
+            if (controlCountVerification == ControlCountVerification.STRICT) {
+                mismatch = new EDIParseException("Segment [" + trailerFields[0] + "] control count [" + controlCount + "] does not match the number of " + countDescription + " read [" + count + "].  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".");
+            }
+        }
+        if (headerRef != null && !headerRef.equals(controlRef)) {
+            parseErrors.add(EDIErrorCode.CONTROL_REFERENCE_MISMATCH, segmentReader.getCurrentSegmentNumber(), trailerSegment, controlRef, -1);
+            if (controlCountVerification == ControlCountVerification.STRICT && mismatch == null) {
+                mismatch = new EDIParseException("Segment [" + trailerFields[0] + "] control reference [" + controlRef + "] does not match the header reference [" + headerRef + "].  Currently at segment number " + segmentReader.getCurrentSegmentNumber() + ".");
+            }
+        }
+
+        return mismatch;
+    }
+
+    private static boolean isCount(String value, int count) {
+        int length = value.length();
+        if (length == 0) {
+            return false;
+        }
+
+        long parsedValue = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            parsedValue = parsedValue * 10 + (c - '0');
+            if (parsedValue > Integer.MAX_VALUE) {
+                return false;
+            }
+        }
+
+        return parsedValue == count;
+    }
+
+    /**
+     * Get the digest of the raw data of the last completed message (UNH to UNT inclusive).
+     * <p/>
+     * Only available if a {@link org.smooks.edi.edisax.MessageDataDigest} is set on the
+     * {@link #getSegmentReader() segment reader}.
+     * @return The message digest, or null if no message digest is available.
+     */
+    public byte[] getMessageDigest() {
+        return messageDigest;
+    }
+
+    /**
+     * Set the digest of the raw data of the last completed message.
+     * @param messageDigest The message digest.
+     */
+    public void setMessageDigest(byte[] messageDigest) {
+        this.messageDigest = messageDigest;
+    }
+
+    /**
+     * Get the {@link InterchangeListener} to be notified of the interchange control segments.
+     * @return The interchange listener, or null if no listener is set.
+     */
+    public InterchangeListener getInterchangeListener() {
+        return interchangeListener;
+    }
+
+    /**
+     * Set the {@link InterchangeListener} to be notified of the interchange control segments.
+     * @param interchangeListener The interchange listener.
+     */
+    public void setInterchangeListener(InterchangeListener interchangeListener) {
+        this.interchangeListener = interchangeListener;
+    }
 }
@@ -0,0 +1,91 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.interchange;
+
+import org.smooks.edi.edisax.EDIParseErrors;
+import org.smooks.edi.edisax.model.internal.Delimiters;
+
+/**
+ * Interchange listener.
+ * <p/>
+ * Notified by the control block handlers as the interchange, group and message control segments are read.
+ * The segment field arrays are those read by the {@link org.smooks.edi.edisax.BufferedSegmentReader}, with
+ * the segment code at index 0.  Listeners must copy any data they need to keep, and should be cheap, since
+ * they are called inline while the interchange is being parsed.
+ */
+public interface InterchangeListener {
+
+    /**
+     * The interchange header segment has been read.
+     * @param unbFields The interchange header fields.
+     * @param delimiters The interchange delimiters.
+     */
+    void interchangeStart(String[] unbFields, Delimiters delimiters);
+
+    /**
+     * A group header segment has been read.
+     * @param ungFields The group header fields.
+     */
+    void groupStart(String[] ungFields);
+
+    /**
+     * A message has been parsed.
+     * @param unhFields The message header fields.
+     * @param unhSegmentNumber The segment number of the message header in the interchange.
+     * @param parseErrors The errors recorded while parsing the message.
+     * @param rejected True if the message failed to parse.
+     */
+    void message(String[] unhFields, int unhSegmentNumber, EDIParseErrors parseErrors, boolean rejected);
+
+    /**
+     * A group trailer segment has been read.
+     * @param uneFields The group trailer fields.
+     */
+    void groupEnd(String[] uneFields);
+
+    /**
+     * The interchange trailer segment has been read.
+     * @param unzFields The interchange trailer fields.
+     */
+    void interchangeEnd(String[] unzFields);
+}
@@ -46,22 +46,33 @@ import org.smooks.assertion.AssertArgument;
 import org.smooks.edi.edisax.EDIConfigurationException;
 import org.smooks.edi.edisax.model.internal.*;
 import org.smooks.resource.URIResourceLocator;
+import org.smooks.support.StreamUtils;
 import org.smooks.support.XmlUtil;
 import org.smooks.xml.XsdDOMValidator;
-import org.w3c.dom.*;
+import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
 import javax.xml.XMLConstants;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringReader;
 import java.net.URI;
 import java.util.List;
 
 
 /**
  * Digests an edi-message-mapping and populates a {@link Edimap}.
+ * <p/>
+ * The mapping model is digested in a single streaming (StAX) pass.  XSD validation of the mapping model
+ * requires an extra DOM parse, so it is off by default.  Switch it on through {@link #setValidate(boolean)}
+ * or for all digesters through the {@link #VALIDATE_SYSTEM_PROPERTY} system property.
  *
  * @author bardl
  */
@@ -69,6 +80,7 @@ public class EDIConfigDigester {
 
 	private URI modelURI;
 	private URIResourceLocator importLocator;
+    private boolean validate = Boolean.getBoolean(VALIDATE_SYSTEM_PROPERTY);
 
     public static final String XSD_V10 = "http://www.milyn.org/schema/edi-message-mapping-1.0.xsd";
     public static final String XSD_V11 = "http://www.milyn.org/schema/edi-message-mapping-1.1.xsd";
@@ -79,8 +91,20 @@ public class EDIConfigDigester {
     public static final String XSD_V16 = "http://www.milyn.org/schema/edi-message-mapping-1.6.xsd";
     public static final String XSD_V17 = "https://www.smooks.org/schema/edi-message-mapping-1.7.xsd";
 
-    private static final String NAMESPACE_SUFFIX = ":";
-    
+    /**
+     * System property switching on XSD validation of digested edi-message-mapping configurations.
+     */
+    public static final String VALIDATE_SYSTEM_PROPERTY = "org.smooks.edi.edisax.model.validate";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+        // mapping models may come from user supplied archives
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
     /**
      * Public default Constructor.
      */
@@ -100,6 +124,16 @@ public class EDIConfigDigester {
     	importLocator.setBaseURI(importBaseURI);
     }
 
+    /**
+     * Validate the edi-message-mapping configuration against its XSD before digesting it.
+     * @param validate True if the configuration is to be validated, otherwise false.
+     * @return This digester instance.
+     */
+    public EDIConfigDigester setValidate(boolean validate) {
+        this.validate = validate;
+        return this;
+    }
+
     /**
      * Digest the XML edi-message-mapping configuration stream.
      * @param stream the edi-message-mapping stream.
@@ -121,15 +155,18 @@ public class EDIConfigDigester {
      * @throws EDIConfigurationException Multiple or no namespaces in edi-message-mapping.
      */
     public Edimap digestEDIConfig(InputStream stream) throws IOException, SAXException, EDIConfigurationException {
-        Document configDoc;
+        if (validate) {
+            byte[] config = StreamUtils.readStream(stream);
 
-        try {
-            configDoc = XmlUtil.parseStream(stream);
-        } catch (ParserConfigurationException ee) {
-            throw new SAXException("Unable to parse Smooks configuration.", ee);
+            validate(parse(new ByteArrayInputStream(config)));
+            stream = new ByteArrayInputStream(config);
         }
 
-        return digestEDIConfig(configDoc);
+        try {
+            return digestEDIConfig(XML_INPUT_FACTORY.createXMLStreamReader(stream));
+        } catch (XMLStreamException e) {
+            throw new SAXException("Unable to parse edi-message-mapping configuration.", e);
+        }
     }
 
     /**
@@ -141,18 +178,37 @@ public class EDIConfigDigester {
      * @throws EDIConfigurationException Multiple or no namespaces in edi-message-mapping.
      */
     public Edimap digestEDIConfig(Reader stream) throws IOException, SAXException, EDIConfigurationException {
-        Document configDoc;
+        if (validate) {
+            String config = StreamUtils.readStream(stream);
+
+            validate(parse(new StringReader(config)));
+            stream = new StringReader(config);
+        }
+
+        try {
+            return digestEDIConfig(XML_INPUT_FACTORY.createXMLStreamReader(stream));
+        } catch (XMLStreamException e) {
+            throw new SAXException("Unable to parse edi-message-mapping configuration.", e);
+        }
+    }
 
+    private static Document parse(InputStream stream) throws IOException, SAXException {
         try {
-            configDoc = XmlUtil.parseStream(stream);
+            return XmlUtil.parseStream(stream);
         } catch (ParserConfigurationException ee) {
             throw new SAXException("Unable to parse Smooks configuration.", ee);
         }
+    }
 
-        return digestEDIConfig(configDoc);
+    private static Document parse(Reader stream) throws IOException, SAXException {
+        try {
+            return XmlUtil.parseStream(stream);
+        } catch (ParserConfigurationException ee) {
+            throw new SAXException("Unable to parse Smooks configuration.", ee);
+        }
     }
 
-    private Edimap digestEDIConfig(Document configDoc) throws SAXException, EDIConfigurationException, IOException {
+    private static void validate(Document configDoc) throws SAXException, IOException, EDIConfigurationException {
         XsdDOMValidator validator = new XsdDOMValidator(configDoc);
 
         if (validator.getNamespaces().size() == 0) {
@@ -162,18 +218,35 @@ public class EDIConfigDigester {
             throw new EDIConfigurationException("Unsupported use of multiple configuration namespaces from inside the edi-message-mapping configuration.");
         }
 
-        String ediNS = validator.getNamespaces().get(0).toString();
-
         validator.validate();
+    }
 
-        Edimap edimap = new Edimap(modelURI);
+    private Edimap digestEDIConfig(XMLStreamReader reader) throws SAXException, EDIConfigurationException {
+        try {
+            reader.nextTag();
 
-        if(assertValidXSD(ediNS)) {
-            digestXSDValidatedConfig(configDoc,  edimap, ediNS);
-        } else {
-            throw new SAXException("Cannot parse edi-message-mapping configuration.  Unsupported default Namespace '" + ediNS + "'.");
+            String ediNS = reader.getNamespaceURI();
+            if (ediNS == null || ediNS.length() == 0) {
+                throw new EDIConfigurationException("The edi-message-mapping configuration must contain a namespace.");
+            }
+
+            Edimap edimap = new Edimap(modelURI);
+
+            if(assertValidXSD(ediNS)) {
+                digestXSDValidatedConfig(reader, edimap, ediNS);
+            } else {
+                throw new SAXException("Cannot parse edi-message-mapping configuration.  Unsupported default Namespace '" + ediNS + "'.");
+            }
+            return edimap;
+        } catch (XMLStreamException e) {
+            throw new SAXException("Unable to parse edi-message-mapping configuration.", e);
+        } finally {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // Ignore...
+            }
         }
-        return edimap;
     }
 
     /**
@@ -188,65 +261,59 @@ public class EDIConfigDigester {
 
     /**
      * Digest child elements of edimap.
-     * @param configDoc the Edimap element.
+     * @param reader the reader, positioned on the Edimap element.
      * @param edimap the {@link Edimap} to populate.
-     * @param schemaName the schema uri.
+     * @param ediNS the schema uri.
      * @throws EDIConfigurationException is thrown when unable to retrieve namespace in configuration.
      */
-    private void digestXSDValidatedConfig(Document configDoc, Edimap edimap, String schemaName) throws EDIConfigurationException {
-
-    	// Check the namespace attribute
-    	Element documentElement = configDoc.getDocumentElement();
-
-        //Retrieve the namespace for the schema.
-        String namespacePrefix = retrieveNamespace(documentElement, schemaName);
-
-        NodeList nodes = documentElement.getChildNodes();
-        for (int i = 0; i < nodes.getLength(); i++) {
-            Node node = nodes.item(i);
-
-            if (node.getNodeName().equalsIgnoreCase(namespacePrefix + "import")) {
-                digestImport(node, edimap);
-            } else if (node.getNodeName().equalsIgnoreCase(namespacePrefix + "description")) {
-                digestDescription(node, edimap);
-            } else if (node.getNodeName().equalsIgnoreCase(namespacePrefix + "delimiters")) {
-                digestDelimiters(node, edimap);
-            } else if (node.getNodeName().equalsIgnoreCase(namespacePrefix + "segments")) {
-                digestSegments(node, edimap, namespacePrefix);
+    private void digestXSDValidatedConfig(XMLStreamReader reader, Edimap edimap, String ediNS) throws EDIConfigurationException, XMLStreamException {
+        while (nextChildElement(reader, ediNS)) {
+            String name = reader.getLocalName();
+
+            if (name.equalsIgnoreCase("import")) {
+                digestImport(reader, edimap);
+            } else if (name.equalsIgnoreCase("description")) {
+                digestDescription(reader, edimap);
+            } else if (name.equalsIgnoreCase("delimiters")) {
+                digestDelimiters(reader, edimap);
+            } else if (name.equalsIgnoreCase("segments")) {
+                digestSegments(reader, edimap, ediNS);
+                continue;
             }
+            skipElement(reader, ediNS);
         }
     }
 
     /**
      * Digest attributes of Delimiter element and populate Delimiter.
-     * @param node the Delimiter element.
+     * @param reader the reader, positioned on the Delimiter element.
      * @param edimap the {@link Edimap} to populate.
      */
-    private static void digestDelimiters(Node node, Edimap edimap) {
+    private static void digestDelimiters(XMLStreamReader reader, Edimap edimap) {
         Delimiters delimiters = new Delimiters();
         edimap.setDelimiters(delimiters);
-        delimiters.setSegment(getAttributeValue(node, "segment"));
-        delimiters.setField(getAttributeValue(node, "field"));
-        delimiters.setFieldRepeat(getAttributeValue(node, "fieldRepeat"));
-        delimiters.setComponent(getAttributeValue(node, "component"));
-        delimiters.setSubComponent(getAttributeValue(node, "sub-component"));
-        delimiters.setEscape(getAttributeValue(node, "escape"));
-        delimiters.setDecimalSeparator(getAttributeValue(node, "decimalSeparator"));
+        delimiters.setSegment(getAttributeValue(reader, "segment"));
+        delimiters.setField(getAttributeValue(reader, "field"));
+        delimiters.setFieldRepeat(getAttributeValue(reader, "fieldRepeat"));
+        delimiters.setComponent(getAttributeValue(reader, "component"));
+        delimiters.setSubComponent(getAttributeValue(reader, "sub-component"));
+        delimiters.setEscape(getAttributeValue(reader, "escape"));
+        delimiters.setDecimalSeparator(getAttributeValue(reader, "decimalSeparator"));
     }
 
     /**
      * Digest attributes of Description element and populate Description.
-     * @param node the Description element.
+     * @param reader the reader, positioned on the Description element.
      * @param edimap the {@link Edimap} to populate.
      */
-    private static void digestDescription(Node node, Edimap edimap) {
+    private static void digestDescription(XMLStreamReader reader, Edimap edimap) {
         Description description = new Description();
         edimap.setDescription(description);
 
-        description.setName(getAttributeValue(node, "name"));
-        description.setVersion(getAttributeValue(node, "version"));
+        description.setName(getAttributeValue(reader, "name"));
+        description.setVersion(getAttributeValue(reader, "version"));
 
-        String namespace = getAttributeValue(node, "namespace");
+        String namespace = getAttributeValue(reader, "namespace");
         if (namespace != null) {
             description.setNamespace(namespace);
         } else {
@@ -256,96 +323,91 @@ public class EDIConfigDigester {
 
     /**
      * Digest attributes of Import element and populate Import.
-     * @param node the Import element.
+     * @param reader the reader, positioned on the Import element.
      * @param edimap the {@link Edimap} to populate.
      */
-    private void digestImport(Node node, Edimap edimap) {
+    private void digestImport(XMLStreamReader reader, Edimap edimap) {
         Import edimapImport = new Import();
         edimap.getImports().add(edimapImport);
         
-        URI resourceURI = importLocator.resolveURI(getAttributeValue(node, "resource"));
+        URI resourceURI = importLocator.resolveURI(getAttributeValue(reader, "resource"));
 		edimapImport.setResourceURI(resourceURI);
         
-		edimapImport.setNamespace(getAttributeValue(node, "namespace"));
-        edimapImport.setTruncatableFields(getNodeValueAsBoolean(node, "truncatableFields"));
-        edimapImport.setTruncatableComponents(getNodeValueAsBoolean(node, "truncatableComponents"));
-        edimapImport.setTruncatableSegments(getNodeValueAsBoolean(node, "truncatableSegments"));
+		edimapImport.setNamespace(getAttributeValue(reader, "namespace"));
+        edimapImport.setTruncatableFields(getNodeValueAsBoolean(reader, "truncatableFields"));
+        edimapImport.setTruncatableComponents(getNodeValueAsBoolean(reader, "truncatableComponents"));
+        edimapImport.setTruncatableSegments(getNodeValueAsBoolean(reader, "truncatableSegments"));
     }
 
     /**
      * Digest attributes and child elements of Segments element. Populates Segments.
-     * @param node the Segments element.
+     * @param reader the reader, positioned on the Segments element.
      * @param edimap the {@link Edimap} to populate.
-     * @param namespacePrefix the prefix used to name elements in xml.
+     * @param ediNS the schema uri.
      * @throws EDIConfigurationException is thrown when values are badly formatted.
      */
-    private void digestSegments(Node node, Edimap edimap, String namespacePrefix) throws EDIConfigurationException {
+    private void digestSegments(XMLStreamReader reader, Edimap edimap, String ediNS) throws EDIConfigurationException, XMLStreamException {
         SegmentGroup segments = new SegmentGroup();
-        setValuesForMappingNode(node, segments, namespacePrefix, null);
+        setValuesForMappingNode(reader, segments, null);
         segments.setNamespace(edimap.getDescription().getNamespace());
         edimap.setSegments(segments);
-        edimap.setIgnoreUnmappedSegments(getNodeValueAsBoolean(node, "ignoreUnmappedSegments"));
+        edimap.setIgnoreUnmappedSegments(getNodeValueAsBoolean(reader, "ignoreUnmappedSegments"));
 
-        NodeList nodes = node.getChildNodes();
-        for (int i = 0; i < nodes.getLength(); i++) {
-            Node currentNode = nodes.item(i);
-
-            digestSegmentGroup(currentNode, edimap.getSegments().getSegments(), namespacePrefix, segments);
+        while (nextChildElement(reader, ediNS)) {
+            if (!digestDocumentation(reader, segments) && !digestSegmentGroup(reader, edimap.getSegments().getSegments(), ediNS, segments)) {
+                skipElement(reader, ediNS);
+            }
         }
     }
 
     /**
      * Digests attributes and child elements of Segment element.
-     * @param node the Segment element.
+     * @param reader the reader, positioned on the Segment element.
      * @param segmentGroup the {@link SegmentGroup} to populate.
-     * @param namespacePrefix the prefix used to name elements in xml.
+     * @param ediNS the schema uri.
      * @throws EDIConfigurationException is thrown when values are badly formatted.
      */
-    private void digestSegment(Node node, SegmentGroup segmentGroup, String namespacePrefix, MappingNode parent) throws EDIConfigurationException {
+    private void digestSegment(XMLStreamReader reader, SegmentGroup segmentGroup, String ediNS, MappingNode parent) throws EDIConfigurationException, XMLStreamException {
 
         if(segmentGroup instanceof Segment) {
             Segment segment = (Segment) segmentGroup;
-            setValuesForSegment(segment, node, namespacePrefix, parent);
+            setValuesForSegment(segment, reader, parent);
 
-            NodeList nodes = node.getChildNodes();
-            for (int i = 0; i < nodes.getLength(); i++) {
-                Node currentNode = nodes.item(i);
-
-                if (currentNode.getNodeName().equalsIgnoreCase(namespacePrefix + "field")) {
+            while (nextChildElement(reader, ediNS)) {
+                if (reader.getLocalName().equalsIgnoreCase("field")) {
                     Field field = new Field();
                     segment.getFields().add(field);
-                    digestField(currentNode, field, namespacePrefix, segment);
-                } else {
-                    digestSegmentGroup(currentNode, segment.getSegments(), namespacePrefix, segment);
+                    digestField(reader, field, ediNS, segment);
+                } else if (!digestDocumentation(reader, segment) && !digestSegmentGroup(reader, segment.getSegments(), ediNS, segment)) {
+                    skipElement(reader, ediNS);
                 }
             }
         } else {
-            segmentGroup.setMaxOccurs(getNodeValueAsInteger(node, "maxOccurs"));
-            segmentGroup.setMinOccurs(getNodeValueAsInteger(node, "minOccurs"));
-            setValuesForMappingNode(node, segmentGroup, namespacePrefix, parent);
-
-            NodeList nodes = node.getChildNodes();
-            for (int i = 0; i < nodes.getLength(); i++) {
-                Node currentNode = nodes.item(i);
+            segmentGroup.setMaxOccurs(getNodeValueAsInteger(reader, "maxOccurs"));
+            segmentGroup.setMinOccurs(getNodeValueAsInteger(reader, "minOccurs"));
+            setValuesForMappingNode(reader, segmentGroup, parent);
 
-                digestSegmentGroup(currentNode, segmentGroup.getSegments(), namespacePrefix, segmentGroup);
+            while (nextChildElement(reader, ediNS)) {
+                if (!digestDocumentation(reader, segmentGroup) && !digestSegmentGroup(reader, segmentGroup.getSegments(), ediNS, segmentGroup)) {
+                    skipElement(reader, ediNS);
+                }
             }
         }
     }
 
-    private boolean digestSegmentGroup(Node currentNode, List<SegmentGroup> segmentGroupList, String namespacePrefix, MappingNode parent) throws EDIConfigurationException {
+    private boolean digestSegmentGroup(XMLStreamReader reader, List<SegmentGroup> segmentGroupList, String ediNS, MappingNode parent) throws EDIConfigurationException, XMLStreamException {
+        String name = reader.getLocalName();
 
-        if (currentNode.getNodeName().equalsIgnoreCase(namespacePrefix + "segmentGroup")) {
+        if (name.equalsIgnoreCase("segmentGroup")) {
             SegmentGroup segment = new SegmentGroup();
-            segment.setDocumentation(getNodeValue(currentNode, namespacePrefix + "documentation"));
             segmentGroupList.add(segment);
-            digestSegment(currentNode, segment, namespacePrefix, parent);
+            digestSegment(reader, segment, ediNS, parent);
 
             return true;
-        } else if (currentNode.getNodeName().equalsIgnoreCase(namespacePrefix + "segment")) {
+        } else if (name.equalsIgnoreCase("segment")) {
             Segment segment = new Segment();
             segmentGroupList.add(segment);
-            digestSegment(currentNode, segment, namespacePrefix, parent);
+            digestSegment(reader, segment, ediNS, parent);
 
             return true;
         }
@@ -355,114 +417,131 @@ public class EDIConfigDigester {
 
     /**
      * Digests attributes and child elements of Field element.
-     * @param node the Field element.
+     * @param reader the reader, positioned on the Field element.
      * @param field the {@link Field} to populate
-     * @param namespacePrefix the prefix used to name elements in xml.
+     * @param ediNS the schema uri.
      * @throws EDIConfigurationException is thrown when values are badly formatted.
      */
-    private void digestField(Node node, Field field, String namespacePrefix, MappingNode parent) throws EDIConfigurationException {
-        setValuesForField(field, node, namespacePrefix, parent);
-
-        NodeList nodes = node.getChildNodes();
-        for (int i = 0; i < nodes.getLength(); i++) {
-            Node currentNode = nodes.item(i);
+    private void digestField(XMLStreamReader reader, Field field, String ediNS, MappingNode parent) throws EDIConfigurationException, XMLStreamException {
+        setValuesForField(field, reader, parent);
 
-            if (currentNode.getNodeName().equalsIgnoreCase(namespacePrefix + "component")) {
+        while (nextChildElement(reader, ediNS)) {
+            if (reader.getLocalName().equalsIgnoreCase("component")) {
                 Component component = new Component();
                 field.getComponents().add(component);
-                digestComponent(currentNode, component, namespacePrefix, field);
+                digestComponent(reader, component, ediNS, field);
+            } else if (!digestDocumentation(reader, field)) {
+                skipElement(reader, ediNS);
             }
         }
     }
 
     /**
      * Digests attributes and child elements of Component element.
-     * @param node the Component element.
+     * @param reader the reader, positioned on the Component element.
      * @param component the {@link Component} to populate.
-     * @param namespacePrefix the prefix used to name elements in xml.
+     * @param ediNS the schema uri.
      * @throws EDIConfigurationException is thrown when values are badly formatted.
      */
-    private void digestComponent(Node node, Component component, String namespacePrefix, MappingNode parent) throws EDIConfigurationException {
-        setValuesForComponent(component, node, namespacePrefix, parent);
+    private void digestComponent(XMLStreamReader reader, Component component, String ediNS, MappingNode parent) throws EDIConfigurationException, XMLStreamException {
+        setValuesForComponent(component, reader, parent);
 
-        NodeList nodes = node.getChildNodes();
-        for (int i = 0; i < nodes.getLength(); i++) {
-            Node currentNode = nodes.item(i);
-
-            if (currentNode.getNodeName().equalsIgnoreCase(namespacePrefix + "sub-component")) {
+        while (nextChildElement(reader, ediNS)) {
+            if (reader.getLocalName().equalsIgnoreCase("sub-component")) {
                 SubComponent subComponent = new SubComponent();
                 component.getSubComponents().add(subComponent);
-                setValuesForSubComponent(currentNode, subComponent, namespacePrefix, component);
+                setValuesForSubComponent(reader, subComponent, component);
+
+                while (nextChildElement(reader, ediNS)) {
+                    if (!digestDocumentation(reader, subComponent)) {
+                        skipElement(reader, ediNS);
+                    }
+                }
+            } else if (!digestDocumentation(reader, component)) {
+                skipElement(reader, ediNS);
             }
         }
     }
 
+    /**
+     * Digest the documentation element, if the reader is positioned on one.
+     * @param reader the reader.
+     * @param mappingNode the {@link MappingNode} owning the documentation.
+     * @return True if the documentation element was digested, otherwise false.
+     */
+    private static boolean digestDocumentation(XMLStreamReader reader, MappingNode mappingNode) throws XMLStreamException {
+        if (reader.getLocalName().equals("documentation")) {
+            mappingNode.setDocumentation(reader.getElementText());
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Set values in {@link Segment}.
      * @param segment the {@link Segment} to populate.
-     * @param node the Segment element.
+     * @param reader the reader, positioned on the Segment element.
      */
-    private void setValuesForSegment(Segment segment, Node node, String namespacePrefix, MappingNode parent) {
-        segment.setMaxOccurs(getNodeValueAsInteger(node, "maxOccurs"));
-        segment.setMinOccurs(getNodeValueAsInteger(node, "minOccurs"));
-        segment.setSegcode(getAttributeValue(node, "segcode"));
-        segment.setTruncatable(getNodeValueAsBoolean(node, "truncatable"));
-        segment.setIgnoreUnmappedFields(getNodeValueAsBoolean(node, "ignoreUnmappedFields"));
-        segment.setDescription(getAttributeValue(node, "description"));
-        setValuesForMappingNode(node, segment, namespacePrefix, parent);
+    private void setValuesForSegment(Segment segment, XMLStreamReader reader, MappingNode parent) {
+        segment.setMaxOccurs(getNodeValueAsInteger(reader, "maxOccurs"));
+        segment.setMinOccurs(getNodeValueAsInteger(reader, "minOccurs"));
+        segment.setSegcode(getAttributeValue(reader, "segcode"));
+        segment.setTruncatable(getNodeValueAsBoolean(reader, "truncatable"));
+        segment.setIgnoreUnmappedFields(getNodeValueAsBoolean(reader, "ignoreUnmappedFields"));
+        segment.setDescription(getAttributeValue(reader, "description"));
+        setValuesForMappingNode(reader, segment, parent);
 
         if(segment.getNodeTypeRef() == null) {
             // Backward compatibility support.  Schema pre v 1.4 supported a segref
             // on <segment>, which we thn generalised as nodeTypeRef for all node types.
-            segment.setNodeTypeRef(getAttributeValue(node, "segref"));
+            segment.setNodeTypeRef(getAttributeValue(reader, "segref"));
         }
     }
 
     /**
      * Set values in {@link Field}.
      * @param field the {@link Field} to populate.
-     * @param node the Field element.
+     * @param reader the reader, positioned on the Field element.
      * @throws EDIConfigurationException is thrown when values are badly formatted.
      */
-    private void setValuesForField(Field field, Node node, String namespacePrefix, MappingNode parent) throws EDIConfigurationException {
-        field.setRequired(getNodeValueAsBoolean(node, "required"));
-        field.setTruncatable(getNodeValueAsBoolean(node, "truncatable"));
-        setValuesForValueNode(node, field, namespacePrefix, parent);
+    private void setValuesForField(Field field, XMLStreamReader reader, MappingNode parent) throws EDIConfigurationException {
+        field.setRequired(getNodeValueAsBoolean(reader, "required"));
+        field.setTruncatable(getNodeValueAsBoolean(reader, "truncatable"));
+        setValuesForValueNode(reader, field, parent);
     }
 
     /**
      * Set values in {@link Component}.
      * @param component the {@link Component} to populate.
-     * @param node the Component element.
+     * @param reader the reader, positioned on the Component element.
      * @throws EDIConfigurationException is thrown when values are badly formatted.
      */
-    private void setValuesForComponent(Component component, Node node, String namespacePrefix, MappingNode parent) throws EDIConfigurationException {
-        component.setRequired(getNodeValueAsBoolean(node, "required"));
-        component.setTruncatable(getNodeValueAsBoolean(node, "truncatable"));
-        setValuesForValueNode(node, component, namespacePrefix, parent);
+    private void setValuesForComponent(Component component, XMLStreamReader reader, MappingNode parent) throws EDIConfigurationException {
+        component.setRequired(getNodeValueAsBoolean(reader, "required"));
+        component.setTruncatable(getNodeValueAsBoolean(reader, "truncatable"));
+        setValuesForValueNode(reader, component, parent);
     }
 
     /**
      * Set values in {@link SubComponent}.
-     * @param node the {@link SubComponent} to populate.
-     * @param subComponent the SubComponent element.
+     * @param reader the reader, positioned on the SubComponent element.
+     * @param subComponent the {@link SubComponent} to populate.
      * @throws EDIConfigurationException is thrown when values are badly formatted.
      */
-    private void setValuesForSubComponent(Node node, SubComponent subComponent, String namespacePrefix, MappingNode parent) throws EDIConfigurationException {
-        subComponent.setRequired(getNodeValueAsBoolean(node, "required"));
-        setValuesForValueNode(node, subComponent, namespacePrefix, parent);
+    private void setValuesForSubComponent(XMLStreamReader reader, SubComponent subComponent, MappingNode parent) throws EDIConfigurationException {
+        subComponent.setRequired(getNodeValueAsBoolean(reader, "required"));
+        setValuesForValueNode(reader, subComponent, parent);
     }
 
     /**
      * Set values in {@link MappingNode}.
-     * @param node the {@link MappingNode} to populate.
-     * @param mappingNode the MappingNode element.
+     * @param reader the reader, positioned on the MappingNode element.
+     * @param mappingNode the {@link MappingNode} to populate.
      */
-    private void setValuesForMappingNode(Node node, MappingNode mappingNode, String namespacePrefix, MappingNode parent) {
-        mappingNode.setName(getAttributeValue(node, "name"));
-        mappingNode.setXmltag(getAttributeValue(node, "xmltag"));
-        mappingNode.setNodeTypeRef(getAttributeValue(node, "nodeTypeRef"));
-        mappingNode.setDocumentation(getNodeValue(node, namespacePrefix + "documentation"));
+    private void setValuesForMappingNode(XMLStreamReader reader, MappingNode mappingNode, MappingNode parent) {
+        mappingNode.setName(getAttributeValue(reader, "name"));
+        mappingNode.setXmltag(getAttributeValue(reader, "xmltag"));
+        mappingNode.setNodeTypeRef(getAttributeValue(reader, "nodeTypeRef"));
         mappingNode.setParent(parent);
         if (parent != null) {
         	mappingNode.setNamespace(parent.getNamespace());
@@ -471,30 +550,36 @@ public class EDIConfigDigester {
 
     /**
      * Set values in {@link ValueNode}.
-     * @param node the {@link ValueNode} to populate.
-     * @param valueNode the ValueNode element.
+     * @param reader the reader, positioned on the ValueNode element.
+     * @param valueNode the {@link ValueNode} to populate.
      * @throws EDIConfigurationException is thrown when values are badly formatted.
      */
-    private void setValuesForValueNode(Node node, ValueNode valueNode, String namespacePrefix, MappingNode parent) throws EDIConfigurationException {
-        setValuesForMappingNode(node, valueNode, namespacePrefix, parent);
-        String type = getAttributeValue(node, "dataType");
+    private void setValuesForValueNode(XMLStreamReader reader, ValueNode valueNode, MappingNode parent) throws EDIConfigurationException {
+        setValuesForMappingNode(reader, valueNode, parent);
+        String type = getAttributeValue(reader, "dataType");
         if(type != null) {
             valueNode.setDataType(type);
         } else {
-            valueNode.setDataType(getAttributeValue(node, "type"));
+            valueNode.setDataType(getAttributeValue(reader, "type"));
+        }
+        String typeParameters = getAttributeValue(reader, "dataTypeParameters");
+        if(typeParameters != null) {
+            valueNode.setDataTypeParameters(typeParameters);
+        } else {
+            valueNode.setDataTypeParameters(getAttributeValue(reader, "typeParameters"));
         }
-        valueNode.setMinLength(getNodeValueAsInteger(node, "minLength"));
-        valueNode.setMaxLength(getNodeValueAsInteger(node, "maxLength"));
+        valueNode.setMinLength(getNodeValueAsInteger(reader, "minLength"));
+        valueNode.setMaxLength(getNodeValueAsInteger(reader, "maxLength"));
     }
 
     /**
      * Gets attribute value from node if it exists. Otherwise returns null.
-     * @param node the node.
+     * @param reader the reader, positioned on the element.
      * @param name the name of the attribute.
      * @return Boolean value if attribute exists in node.
      */
-    private static Boolean getNodeValueAsBoolean(Node node, String name) {
-        String value = getAttributeValue(node, name);
+    private static Boolean getNodeValueAsBoolean(XMLStreamReader reader, String name) {
+        String value = getAttributeValue(reader, name);
         if (value == null) {
             return null;
         }
@@ -503,12 +588,12 @@ public class EDIConfigDigester {
 
     /**
      * Gets attribute value from node if it exists. Otherwise returns null.
-     * @param node the node.
+     * @param reader the reader, positioned on the element.
      * @param name the name of the attribute.
      * @return Integer value if attribute exists in node.
      */
-    private static Integer getNodeValueAsInteger(Node node, String name) {
-        String value = getAttributeValue(node, name);
+    private static Integer getNodeValueAsInteger(XMLStreamReader reader, String name) {
+        String value = getAttributeValue(reader, name);
         if (value == null) {
             return null;
         }
@@ -517,59 +602,46 @@ public class EDIConfigDigester {
 
     /**
      * Gets attribute value from node if it exists. Otherwise returns null.
-     * @param node the node.
+     * @param reader the reader, positioned on the element.
      * @param name the name of the attribute.
      * @return String value if attribute exists in node.
      */
-    private static String getAttributeValue(Node node, String name) {
-        return node.getAttributes().getNamedItem(name) != null ? node.getAttributes().getNamedItem(name).getNodeValue() : null;
+    private static String getAttributeValue(XMLStreamReader reader, String name) {
+        return reader.getAttributeValue(null, name);
     }
 
     /**
-     * Gets attribute value from node if it exists. Otherwise returns null.
-     * @param node the node.
-     * @param name the name of the attribute.
-     * @return String value if attribute exists in node.
+     * Move the reader to the next child element of the current element.
+     * @param reader the reader.
+     * @param ediNS the schema uri.
+     * @return True if the reader is positioned on the next child element, false if the end
+     * of the current element was reached.
+     * @throws EDIConfigurationException is thrown when the child element is not in the schema namespace.
      */
-    private static String getNodeValue(Node node, String name) {
-        NodeList nodes = node.getChildNodes();
-        for (int i = 0; i < nodes.getLength(); i++) {
-            Node n = nodes.item(i);
-            if (n.getNodeName().equals(name)) {
-                return n.getTextContent();
-//            } else if (node.hasChildNodes()) {
-//                String value = getNodeValue(n, name);
-//                if (value != null) {
-//                    return value;
-//                }
+    private static boolean nextChildElement(XMLStreamReader reader, String ediNS) throws XMLStreamException, EDIConfigurationException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (!ediNS.equals(reader.getNamespaceURI())) {
+                    throw new EDIConfigurationException("Unsupported use of multiple configuration namespaces from inside the edi-message-mapping configuration.");
+                }
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
             }
         }
-        return null;  //().getNamedItem(name) != null ? node.getAttributes().getNamedItem(name).getNodeValue() : null;
+        return false;
     }
 
     /**
-     * Retrives the namespaceprefix from edimap element in edi-message-mapping.
-     * @param documentElement the edimap element.
-     * @param schemaName the schema uri.
-     * @return the namespaceprefix used in the edi-message-mapping.
-     * @throws EDIConfigurationException is thrown when no namespace exists in configuration.
+     * Skip the remainder of the current element, including its children.
+     * @param reader the reader.
+     * @param ediNS the schema uri.
      */
-    private static String retrieveNamespace(Element documentElement, String schemaName) throws EDIConfigurationException {
-        NamedNodeMap attributes = documentElement.getAttributes();
-        Node node;
-        for (int i = 0; i < attributes.getLength(); i++) {
-            node = attributes.item(i);
-            if (node.getNodeValue().equals(schemaName)) {
-                String prefix = node.getNodeName();
-                if (prefix.startsWith("xmlns:")) {
-                    return node.getNodeName().replace("xmlns:", "") + NAMESPACE_SUFFIX;
-                } else if (prefix.startsWith("xmlns")) {
-                    return node.getNodeName().replace("xmlns", "");
-                } else {
-                    throw new EDIConfigurationException("No namespace exists in edi-message-mapping. A namespace must be declared in order to digest configuration file.");
-                }
-            }
+    private static void skipElement(XMLStreamReader reader, String ediNS) throws XMLStreamException, EDIConfigurationException {
+        while (nextChildElement(reader, ediNS)) {
+            skipElement(reader, ediNS);
         }
-        return "";
     }
 }
@@ -42,12 +42,33 @@
  */
 package org.smooks.edi.edisax.model.internal;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Code list of a {@link Field} or {@link Component}.
+ * <p/>
+ * The codes are compiled into a two-level (hash and displace) perfect hash table on the first call to
+ * {@link #contains(CharSequence)}: the first hash picks a bucket, whose displacement seeds the second hash picking
+ * the slot.  Checking a value therefore costs two hash computations and at most one code comparison, without
+ * allocating, and the table stays linear in the number of codes.  The codes should not be modified after the code
+ * list has been used for lookups (other than through {@link #setCodes(List)}, which discards the compiled table).
+ */
 public class CodeList {
+
+    private static final int CODES_PER_BUCKET = 4;
+    private static final int MAX_DISPLACEMENTS = 1 << 16;
+    private static final int MAX_TABLE_SIZE = 1 << 24;
+    private static final Comparator<char[]> CODE_COMPARATOR = (code1, code2) -> compare(code1, CharBuffer.wrap(code2));
+
     private String documentation;
     private List<String> codes = new ArrayList<>();
+    private volatile CompiledCodes compiledCodes;
 
     public String getDocumentation() {
         return documentation;
@@ -63,5 +84,179 @@ public class CodeList {
 
     public void setCodes(List<String> codes) {
         this.codes = codes;
+        this.compiledCodes = null;
+    }
+
+    /**
+     * Is the supplied value one of the codes in this code list.
+     * @param value The value to check.
+     * @return True if the value is a code in this code list, otherwise false.
+     */
+    public boolean contains(CharSequence value) {
+        CompiledCodes compiled = compiledCodes;
+        if (compiled == null) {
+            compiled = compile(codes);
+            compiledCodes = compiled;
+        }
+        return compiled.contains(value);
+    }
+
+    private static CompiledCodes compile(List<String> codeList) {
+        Set<String> uniqueCodes = new LinkedHashSet<>();
+        if (codeList != null) {
+            for (String code : codeList) {
+                if (code != null) {
+                    uniqueCodes.add(code);
+                }
+            }
+        }
+
+        char[][] codes = new char[uniqueCodes.size()][];
+        int i = 0;
+        for (String code : uniqueCodes) {
+            codes[i++] = code.toCharArray();
+        }
+
+        int tableSize = Integer.highestOneBit(Math.max(codes.length, 1)) << 2;
+        while (tableSize <= MAX_TABLE_SIZE) {
+            CompiledCodes compiled = tryBuildTable(codes, tableSize);
+            if (compiled != null) {
+                return compiled;
+            }
+            tableSize <<= 1;
+        }
+
+        // pathological hash collisions: fall back to a binary search over the sorted codes
+        Arrays.sort(codes, CODE_COMPARATOR);
+        return new CompiledCodes(codes, null);
+    }
+
+    private static CompiledCodes tryBuildTable(char[][] codes, int tableSize) {
+        int bucketCount = Integer.highestOneBit(Math.max((codes.length + CODES_PER_BUCKET - 1) / CODES_PER_BUCKET, 1) * 2 - 1);
+        List<List<char[]>> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (char[] code : codes) {
+            buckets.get(hash(code, 0) & (bucketCount - 1)).add(code);
+        }
+
+        Integer[] bucketOrder = new Integer[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            bucketOrder[i] = i;
+        }
+        // placing the largest buckets first, while the table is emptiest, keeps the displacement search short
+        Arrays.sort(bucketOrder, (bucket1, bucket2) -> buckets.get(bucket2).size() - buckets.get(bucket1).size());
+
+        char[][] table = new char[tableSize][];
+        int[] displacements = new int[bucketCount];
+        int[] slots = new int[CODES_PER_BUCKET];
+        for (int bucketIndex : bucketOrder) {
+            List<char[]> bucket = buckets.get(bucketIndex);
+            if (bucket.isEmpty()) {
+                break;
+            }
+            if (slots.length < bucket.size()) {
+                slots = new int[bucket.size()];
+            }
+            int displacement = findDisplacement(bucket, table, slots);
+            if (displacement == 0) {
+                return null;
+            }
+            for (int i = 0; i < bucket.size(); i++) {
+                table[slots[i]] = bucket.get(i);
+            }
+            displacements[bucketIndex] = displacement;
+        }
+
+        return new CompiledCodes(table, displacements);
+    }
+
+    private static int findDisplacement(List<char[]> bucket, char[][] table, int[] slots) {
+        nextDisplacement:
+        for (int displacement = 1; displacement <= MAX_DISPLACEMENTS; displacement++) {
+            for (int i = 0; i < bucket.size(); i++) {
+                int slot = hash(bucket.get(i), displacement) & (table.length - 1);
+                if (table[slot] != null) {
+                    continue nextDisplacement;
+                }
+                for (int j = 0; j < i; j++) {
+                    if (slots[j] == slot) {
+                        continue nextDisplacement;
+                    }
+                }
+                slots[i] = slot;
+            }
+            return displacement;
+        }
+        return 0;
+    }
+
+    private static int hash(char[] chars, int seed) {
+        int hash = seed * 0x9E3779B9;
+        for (char c : chars) {
+            hash = (hash ^ c) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int hash(CharSequence chars, int seed) {
+        int hash = seed * 0x9E3779B9;
+        for (int i = 0; i < chars.length(); i++) {
+            hash = (hash ^ chars.charAt(i)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int compare(char[] code, CharSequence value) {
+        if (code.length != value.length()) {
+            return code.length - value.length();
+        }
+        for (int i = 0; i < code.length; i++) {
+            if (code[i] != value.charAt(i)) {
+                return code[i] - value.charAt(i);
+            }
+        }
+        return 0;
+    }
+
+    private static final class CompiledCodes {
+
+        private final char[][] table;
+        private final int[] displacements;
+
+        private CompiledCodes(char[][] table, int[] displacements) {
+            this.table = table;
+            this.displacements = displacements;
+        }
+
+        private boolean contains(CharSequence value) {
+            if (displacements == null) {
+                return binarySearch(value);
+            }
+            int displacement = displacements[hash(value, 0) & (displacements.length - 1)];
+            if (displacement == 0) {
+                return false;
+            }
+            char[] candidate = table[hash(value, displacement) & (table.length - 1)];
+            return candidate != null && compare(candidate, value) == 0;
+        }
+
+        private boolean binarySearch(CharSequence value) {
+            int low = 0;
+            int high = table.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compare(table[middle], value);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 }
@@ -42,11 +42,34 @@
  */
 package org.smooks.edi.edisax.model.internal;
 
-import java.util.LinkedHashSet;
-import java.util.Set;
-
+import java.util.Arrays;
+
+/**
+ * EDI delimiters.
+ * <p/>
+ * The delimiter characters and a classification table for the delimiter characters are precomputed
+ * whenever a delimiter is set, so that segment scanners can classify each character with a single
+ * table lookup (see {@link #getCharClass(char)}).  Once {@link #freeze() frozen}, a delimiters instance
+ * can no longer be modified and can be safely shared.
+ */
 public class Delimiters {
 
+    /**
+     * Char value of an undefined (or multi-character) delimiter.
+     */
+    public static final char NO_CHAR = '\uFFFF';
+
+    public static final byte CHAR_CLASS_NONE = 0;
+    public static final byte CHAR_CLASS_SEGMENT = 1;
+    public static final byte CHAR_CLASS_FIELD = 2;
+    public static final byte CHAR_CLASS_FIELD_REPEAT = 3;
+    public static final byte CHAR_CLASS_COMPONENT = 4;
+    public static final byte CHAR_CLASS_SUB_COMPONENT = 5;
+    public static final byte CHAR_CLASS_ESCAPE = 6;
+    public static final byte CHAR_CLASS_CR_LF = 7;
+
+    private static final int CHAR_CLASS_TABLE_SIZE = 256;
+
     private String segment;
     private String field;
     private String fieldRepeat;
@@ -54,18 +77,33 @@ public class Delimiters {
     private String subComponent;
     private String escape;
     private String decimalSeparator;
-    private volatile char[] segmentDelimiter;
+    private String repetitionSeparator;
+    private char[] segmentDelimiter;
     private boolean ignoreCRLF;
-    private Set<Character> delimiterChars = new LinkedHashSet<Character>();
+    private char segmentChar = NO_CHAR;
+    private char fieldChar = NO_CHAR;
+    private char fieldRepeatChar = NO_CHAR;
+    private char componentChar = NO_CHAR;
+    private char subComponentChar = NO_CHAR;
+    private char escapeChar = NO_CHAR;
+    private char decimalSeparatorChar = NO_CHAR;
+    private final byte[] charClasses = new byte[CHAR_CLASS_TABLE_SIZE];
+    private boolean escapable;
+    private boolean frozen;
+
+    public Delimiters() {
+        initCharClasses();
+    }
 
     public String getSegment() {
         return segment;
     }
 
     public Delimiters setSegment(String value) {
+        assertNotFrozen();
         this.segment = value;
-		initSegmentDelimiter();
-        initDelimiterChars();
+        initSegmentDelimiter();
+        initCharClasses();
         return this;
     }
 
@@ -74,8 +112,10 @@ public class Delimiters {
     }
 
     public Delimiters setField(String value) {
+        assertNotFrozen();
         this.field = value;
-        initDelimiterChars();
+        fieldChar = toChar(value);
+        initCharClasses();
         return this;
     }
 
@@ -84,8 +124,10 @@ public class Delimiters {
 	}
 
     public Delimiters setFieldRepeat(String fieldRepeat) {
+        assertNotFrozen();
 		this.fieldRepeat = fieldRepeat;
-        initDelimiterChars();
+        fieldRepeatChar = toChar(fieldRepeat);
+        initCharClasses();
 		return this;
 	}
 
@@ -94,8 +136,10 @@ public class Delimiters {
     }
 
     public Delimiters setComponent(String value) {
+        assertNotFrozen();
         this.component = value;
-        initDelimiterChars();
+        componentChar = toChar(value);
+        initCharClasses();
         return this;
     }
 
@@ -104,8 +148,10 @@ public class Delimiters {
     }
 
     public Delimiters setSubComponent(String value) {
+        assertNotFrozen();
         this.subComponent = value;
-        initDelimiterChars();
+        subComponentChar = toChar(value);
+        initCharClasses();
         return this;
     }
 
@@ -114,14 +160,17 @@ public class Delimiters {
     }
 
     public Delimiters setEscape(String escape) {
+        assertNotFrozen();
         this.escape = escape;
-        initDelimiterChars();
+        escapeChar = toChar(escape);
+        initCharClasses();
         return this;
     }
 
     public Delimiters setDecimalSeparator(String decimalSeparator) {
+        assertNotFrozen();
 	    this.decimalSeparator = decimalSeparator;
-	    initDelimiterChars();
+        decimalSeparatorChar = toChar(decimalSeparator);
 	    return this;
     }
 
@@ -129,33 +178,185 @@ public class Delimiters {
 	    return decimalSeparator;
     }
 
+    /**
+     * Set the UN/EDIFACT repetition separator, as declared in the reserved position of the UNA segment.
+     * <p/>
+     * Unlike the {@link #setFieldRepeat(String) field repeat} delimiter, the repetition separator is not used to
+     * split fields.  It is kept so that the interchange service string advice can be echoed.
+     * @param repetitionSeparator The repetition separator.
+     * @return This delimiters instance.
+     */
+    public Delimiters setRepetitionSeparator(String repetitionSeparator) {
+        assertNotFrozen();
+        this.repetitionSeparator = repetitionSeparator;
+        return this;
+    }
+
+    public String getRepetitionSeparator() {
+        return repetitionSeparator;
+    }
+
     public char[] getSegmentDelimiter() {
-		if(segmentDelimiter == null) {
-			initSegmentDelimiter();
-		}
 		return segmentDelimiter;
 	}
 
     public boolean ignoreCRLF() {
-		if(segmentDelimiter == null) {
-			initSegmentDelimiter();
-		}
 		return ignoreCRLF;
 	}
 
-    private synchronized void initSegmentDelimiter() {
-		if(segmentDelimiter != null) {
-			return;
-		}
+    /**
+     * Get the segment delimiter char.
+     * @return The segment delimiter char, or {@link #NO_CHAR} if the segment delimiter is not a single character.
+     */
+    public char getSegmentChar() {
+        return segmentChar;
+    }
+
+    /**
+     * Get the field delimiter char.
+     * @return The field delimiter char, or {@link #NO_CHAR} if the field delimiter is not a single character.
+     */
+    public char getFieldChar() {
+        return fieldChar;
+    }
+
+    /**
+     * Get the field repeat delimiter char.
+     * @return The field repeat delimiter char, or {@link #NO_CHAR} if the field repeat delimiter is not a single character.
+     */
+    public char getFieldRepeatChar() {
+        return fieldRepeatChar;
+    }
+
+    /**
+     * Get the component delimiter char.
+     * @return The component delimiter char, or {@link #NO_CHAR} if the component delimiter is not a single character.
+     */
+    public char getComponentChar() {
+        return componentChar;
+    }
+
+    /**
+     * Get the sub-component delimiter char.
+     * @return The sub-component delimiter char, or {@link #NO_CHAR} if the sub-component delimiter is not a single character.
+     */
+    public char getSubComponentChar() {
+        return subComponentChar;
+    }
+
+    /**
+     * Get the escape (release) char.
+     * @return The escape char, or {@link #NO_CHAR} if the escape is not a single character.
+     */
+    public char getEscapeChar() {
+        return escapeChar;
+    }
 
-        this.ignoreCRLF = segment.endsWith("!$");
+    /**
+     * Get the decimal separator char.
+     * @return The decimal separator char, or {@link #NO_CHAR} if the decimal separator is not a single character.
+     */
+    public char getDecimalSeparatorChar() {
+        return decimalSeparatorChar;
+    }
 
-        if (ignoreCRLF) {
-            segmentDelimiter = segment.replace("!$", "").toCharArray();
+    /**
+     * Classify a character.
+     * <p/>
+     * CR and LF characters that are not delimiters are classified as {@link #CHAR_CLASS_CR_LF}.
+     * @param c The character.
+     * @return The character class, one of the <code>CHAR_CLASS_*</code> constants.
+     */
+    public byte getCharClass(char c) {
+        if(c < CHAR_CLASS_TABLE_SIZE) {
+            return charClasses[c];
+        }
+
+        if(c == escapeChar) {
+            return CHAR_CLASS_ESCAPE;
+        } else if(c == segmentChar) {
+            return CHAR_CLASS_SEGMENT;
+        } else if(c == fieldChar) {
+            return CHAR_CLASS_FIELD;
+        } else if(c == fieldRepeatChar) {
+            return CHAR_CLASS_FIELD_REPEAT;
+        } else if(c == componentChar) {
+            return CHAR_CLASS_COMPONENT;
+        } else if(c == subComponentChar) {
+            return CHAR_CLASS_SUB_COMPONENT;
+        }
+        return CHAR_CLASS_NONE;
+    }
+
+    /**
+     * Freeze this delimiters instance, preventing further modification.
+     * @return This delimiters instance.
+     */
+    public Delimiters freeze() {
+        frozen = true;
+        return this;
+    }
+
+    /**
+     * Is this delimiters instance frozen.
+     * @return True if this instance is frozen, otherwise false.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void assertNotFrozen() {
+        if(frozen) {
+            throw new IllegalStateException("Delimiters instance is frozen and cannot be modified.  Clone it to create a modifiable copy.");
+        }
+    }
+
+    private void initSegmentDelimiter() {
+        if(segment == null) {
+            ignoreCRLF = false;
+            segmentDelimiter = null;
         } else {
-            segmentDelimiter = segment.toCharArray();
+            ignoreCRLF = segment.endsWith("!$");
+            if (ignoreCRLF) {
+                segmentDelimiter = segment.replace("!$", "").toCharArray();
+            } else {
+                segmentDelimiter = segment.toCharArray();
+            }
         }
-	}
+        segmentChar = (segmentDelimiter != null && segmentDelimiter.length == 1 ? segmentDelimiter[0] : NO_CHAR);
+    }
+
+    private void initCharClasses() {
+        Arrays.fill(charClasses, CHAR_CLASS_NONE);
+        charClasses['\r'] = CHAR_CLASS_CR_LF;
+        charClasses['\n'] = CHAR_CLASS_CR_LF;
+
+        // Lowest precedence first...
+        setCharClass(subComponentChar, CHAR_CLASS_SUB_COMPONENT);
+        setCharClass(componentChar, CHAR_CLASS_COMPONENT);
+        setCharClass(fieldRepeatChar, CHAR_CLASS_FIELD_REPEAT);
+        setCharClass(fieldChar, CHAR_CLASS_FIELD);
+        setCharClass(segmentChar, CHAR_CLASS_SEGMENT);
+        setCharClass(escapeChar, CHAR_CLASS_ESCAPE);
+
+        // Delimiters can only be escaped if they are all single characters...
+        escapable = escapeChar != NO_CHAR
+                && (segmentDelimiter == null || segmentChar != NO_CHAR)
+                && (field == null || fieldChar != NO_CHAR)
+                && (fieldRepeat == null || fieldRepeatChar != NO_CHAR)
+                && (component == null || componentChar != NO_CHAR)
+                && (subComponent == null || subComponentChar != NO_CHAR);
+    }
+
+    private void setCharClass(char c, byte charClass) {
+        if(c < CHAR_CLASS_TABLE_SIZE) {
+            charClasses[c] = charClass;
+        }
+    }
+
+    private static char toChar(String delimiter) {
+        return (delimiter != null && delimiter.length() == 1 ? delimiter.charAt(0) : NO_CHAR);
+    }
 
     public boolean removeableNodeToken(String string, DelimiterType delimiterType) {
         if(string.length() == 0) {
@@ -203,66 +404,40 @@ public class Delimiters {
         if(string.length() == 0) {
             return string;
         }
-        if(delimiterChars.isEmpty()) {
+        if(!escapable) {
             return string;
         }
 
-        StringBuilder escapeBuffer = new StringBuilder();
+        StringBuilder escapeBuffer = null;
         int stringLen = string.length();
 
         for(int i = 0; i < stringLen; i++) {
             char c = string.charAt(i);
-
-            if(delimiterChars.contains(c)) {
-                escapeBuffer.append(escape);
+            byte charClass = getCharClass(c);
+
+            if(charClass != CHAR_CLASS_NONE && charClass != CHAR_CLASS_CR_LF) {
+                if(escapeBuffer == null) {
+                    escapeBuffer = new StringBuilder(stringLen + 8);
+                    escapeBuffer.append(string, 0, i);
+                }
+                escapeBuffer.append(escapeChar);
+            }
+            if(escapeBuffer != null) {
+                escapeBuffer.append(c);
             }
-            escapeBuffer.append(c);
-        }
-
-        return escapeBuffer.toString();
-    }
-
-    private void initDelimiterChars() {
-        delimiterChars.clear();
-
-        if(segmentDelimiter != null && (segmentDelimiter.length == 0 || segmentDelimiter.length > 1)) {
-            return;
-        } else if(field != null && (field.length() == 0 || field.length() > 1)) {
-            return;
-        } else if(fieldRepeat != null && (fieldRepeat.length() == 0 || fieldRepeat.length() > 1)) {
-            return;
-        } else if(component != null && (component.length() == 0 || component.length() > 1)) {
-            return;
-        } else if(subComponent != null && (subComponent.length() == 0 || subComponent.length() > 1)) {
-            return;
-        } else if(escape == null || (escape.length() == 0 || escape.length() > 1)) {
-            return;
         }
 
-        if(segmentDelimiter != null) {
-            delimiterChars.add(segmentDelimiter[0]);
-        }
-        if(field != null) {
-            delimiterChars.add(field.charAt(0));
-        }
-        if(fieldRepeat != null) {
-            delimiterChars.add(fieldRepeat.charAt(0));
-        }
-        if(component != null) {
-            delimiterChars.add(component.charAt(0));
-        }
-        if(subComponent != null) {
-            delimiterChars.add(subComponent.charAt(0));
-        }
-        if(escape != null) {
-            delimiterChars.add(escape.charAt(0));
-        }
+        return (escapeBuffer != null ? escapeBuffer.toString() : string);
     }
 
     private boolean equals(String delimiter, char c) {
         return delimiter != null && delimiter.length() == 1 && delimiter.charAt(0) == c;
     }
 
+    /**
+     * Clone this delimiters instance.
+     * @return A modifiable (not frozen) copy of this delimiters instance.
+     */
     @Override
     public Object clone() {
         Delimiters delimiters = new Delimiters();
@@ -273,9 +448,17 @@ public class Delimiters {
         delimiters.subComponent = subComponent;
         delimiters.escape = escape;
         delimiters.decimalSeparator = decimalSeparator;
+        delimiters.repetitionSeparator = repetitionSeparator;
         delimiters.segmentDelimiter = segmentDelimiter;
         delimiters.ignoreCRLF = ignoreCRLF;
-        delimiters.delimiterChars.addAll(delimiterChars);
+        delimiters.segmentChar = segmentChar;
+        delimiters.fieldChar = fieldChar;
+        delimiters.fieldRepeatChar = fieldRepeatChar;
+        delimiters.componentChar = componentChar;
+        delimiters.subComponentChar = subComponentChar;
+        delimiters.escapeChar = escapeChar;
+        delimiters.decimalSeparatorChar = decimalSeparatorChar;
+        delimiters.initCharClasses();
         return delimiters;
     }
 }
@@ -115,6 +115,10 @@ public class Edimap {
         EdimapWriter.write(this, writer);
     }
 
+    public void write(Writer writer, String encoding) throws IOException {
+        EdimapWriter.write(this, writer, encoding);
+    }
+
     public List<Component> getSimpleDataElements() {
         return simpleDataElements;
     }
@@ -42,6 +42,13 @@
  */
 package org.smooks.edi.edisax.model.internal;
 
+import org.smooks.edi.edisax.EDITypeEnum;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 /**
  * ValueNode.
  *
@@ -53,6 +60,8 @@ public class ValueNode extends MappingNode {
     private Integer minLength;
     private Integer maxLength;
     private Class<?> typeClass;
+    private List<Map.Entry<String, String>> dataTypeParameters = Collections.emptyList();
+    private EDITypeEnum ediType = EDITypeEnum.String;
 
     public ValueNode() {
 	}
@@ -70,6 +79,55 @@ public class ValueNode extends MappingNode {
     public void setDataType(String dataType) {
         this.dataType = dataType;
         typeClass = String.class;
+        ediType = EDITypeEnum.fromDataType(dataType, dataTypeParameters);
+    }
+
+    public List<Map.Entry<String, String>> getDataTypeParameters() {
+        return dataTypeParameters;
+    }
+
+    /**
+     * Get the data type parameters in their mapping model form, e.g. "format=yyyyMMdd;locale=en".
+     * @return The data type parameters, or null if the value has none.
+     */
+    public String getDataTypeParametersString() {
+        if (dataTypeParameters.isEmpty()) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, String> parameter : dataTypeParameters) {
+            if (builder.length() > 0) {
+                builder.append(';');
+            }
+            builder.append(parameter.getKey()).append('=').append(parameter.getValue());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Set the data type parameters from their mapping model form, e.g. "format=yyyyMMdd;locale=en".
+     * @param dataTypeParameters The data type parameters, or null if the value has none.
+     */
+    public void setDataTypeParameters(String dataTypeParameters) {
+        List<Map.Entry<String, String>> parameters = new ArrayList<>();
+        if (dataTypeParameters != null) {
+            for (String parameter : dataTypeParameters.split(";")) {
+                int separatorIndex = parameter.indexOf('=');
+                if (separatorIndex > 0) {
+                    parameters.add(new ParamEntry<>(parameter.substring(0, separatorIndex).trim(), parameter.substring(separatorIndex + 1).trim()));
+                }
+            }
+        }
+        this.dataTypeParameters = parameters.isEmpty() ? Collections.<Map.Entry<String, String>>emptyList() : Collections.unmodifiableList(parameters);
+        ediType = EDITypeEnum.fromDataType(dataType, this.dataTypeParameters);
+    }
+
+    /**
+     * Get the {@link EDITypeEnum} resolved from the {@link #getDataType() data type}.
+     * @return The EDI type of the value.
+     */
+    public EDITypeEnum getEDIType() {
+        return ediType;
     }
 
     public Class<?> getTypeClass() {
@@ -0,0 +1,428 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.unedifact;
+
+import org.smooks.edi.edisax.EDIParseError;
+import org.smooks.edi.edisax.EDIParseErrors;
+import org.smooks.edi.edisax.interchange.InterchangeListener;
+import org.smooks.edi.edisax.model.internal.Component;
+import org.smooks.edi.edisax.model.internal.Delimiters;
+import org.smooks.edi.edisax.model.internal.Field;
+import org.smooks.edi.edisax.model.internal.MappingNode;
+import org.smooks.edi.edisax.model.internal.Segment;
+import org.smooks.edi.edisax.model.internal.SubComponent;
+import org.smooks.edi.edisax.util.EDIUtils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * UN/EDIFACT CONTRL acknowledgement generator.
+ * <p/>
+ * An {@link InterchangeListener} that collects the interchange, group and message status while a
+ * {@link UNEdifactInterchangeParser} parses an interchange, and then writes the CONTRL message for that interchange,
+ * without re-reading it.  Only rejected messages (and the groups containing them) are kept, so an interchange of
+ * thousands of accepted messages is acknowledged from a few counters.
+ * <p/>
+ * For a complete report of the errors in each message, turn on the {@link org.smooks.edi.edisax.EDIParser#FEATURE_COLLECT_ERRORS}
+ * feature on the interchange parser.
+ *
+ * <h3>Usage</h3>
+ * <pre>
+ * ContrlGenerator contrlGenerator = new ContrlGenerator();
+ * UNEdifactInterchangeParser parser = new UNEdifactInterchangeParser();
+ *
+ * parser.setFeature(EDIParser.FEATURE_COLLECT_ERRORS, true);
+ * parser.setInterchangeListener(contrlGenerator);
+ * parser.setContentHandler(contentHandler);
+ * try {
+ *     parser.parse(new InputSource(interchangeStream));
+ * } finally {
+ *     contrlGenerator.writeInterchange(writer, "CONTRL0001", new Date());
+ * }
+ * </pre>
+ */
+public class ContrlGenerator implements InterchangeListener {
+
+    /**
+     * Action code (0083): this level and all lower levels rejected.
+     */
+    public static final String ACTION_REJECTED = "4";
+    /**
+     * Action code (0083): this level acknowledged, next lower level acknowledged if not explicitly rejected.
+     */
+    public static final String ACTION_ACKNOWLEDGED = "7";
+
+    private Delimiters delimiters = UNEdifactInterchangeParser.defaultUNEdifactDelimiters;
+    private String syntaxIdentifier;
+    private String sender;
+    private String recipient;
+    private String controlRef;
+    private boolean interchangeComplete;
+    private int messageCount;
+    private int rejectedMessageCount;
+    private final List<RejectedMessage> rejectedMessages = new ArrayList<>();
+    private final List<RejectedGroup> rejectedGroups = new ArrayList<>();
+    private RejectedGroup currentGroup;
+    private int contrlSegmentCount;
+
+    public void interchangeStart(String[] unbFields, Delimiters delimiters) {
+        this.delimiters = delimiters;
+        syntaxIdentifier = getField(unbFields, 1);
+        sender = getField(unbFields, 2);
+        recipient = getField(unbFields, 3);
+        controlRef = getField(unbFields, 5);
+        interchangeComplete = false;
+        messageCount = 0;
+        rejectedMessageCount = 0;
+        rejectedMessages.clear();
+        rejectedGroups.clear();
+        currentGroup = null;
+    }
+
+    public void groupStart(String[] ungFields) {
+        currentGroup = new RejectedGroup(getField(ungFields, 5), getField(ungFields, 2), getField(ungFields, 3));
+    }
+
+    public void message(String[] unhFields, int unhSegmentNumber, EDIParseErrors parseErrors, boolean rejected) {
+        messageCount++;
+        if (!rejected) {
+            return;
+        }
+
+        rejectedMessageCount++;
+        RejectedMessage rejectedMessage = new RejectedMessage(getField(unhFields, 1), getField(unhFields, 2));
+        for (EDIParseError parseError : parseErrors) {
+            rejectedMessage.errors.add(new ErrorPosition(parseError, unhSegmentNumber));
+        }
+
+        if (currentGroup != null) {
+            currentGroup.messages.add(rejectedMessage);
+        } else {
+            rejectedMessages.add(rejectedMessage);
+        }
+    }
+
+    public void groupEnd(String[] uneFields) {
+        if (currentGroup != null && !currentGroup.messages.isEmpty()) {
+            rejectedGroups.add(currentGroup);
+        }
+        currentGroup = null;
+    }
+
+    public void interchangeEnd(String[] unzFields) {
+        interchangeComplete = true;
+    }
+
+    /**
+     * Get the number of messages read from the interchange.
+     * @return The number of messages.
+     */
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Get the number of rejected messages.
+     * @return The number of rejected messages.
+     */
+    public int getRejectedMessageCount() {
+        return rejectedMessageCount;
+    }
+
+    /**
+     * Get the interchange action code (0083) that will be reported in the CONTRL UCI segment.
+     * @return {@link #ACTION_ACKNOWLEDGED} if the complete interchange was read, otherwise {@link #ACTION_REJECTED}.
+     */
+    public String getInterchangeAction() {
+        return interchangeComplete ? ACTION_ACKNOWLEDGED : ACTION_REJECTED;
+    }
+
+    /**
+     * Write the CONTRL acknowledgement as a complete interchange (UNA, UNB, CONTRL message, UNZ), addressed to the
+     * sender of the acknowledged interchange.
+     * @param writer The writer.
+     * @param interchangeControlRef The interchange control reference of the CONTRL interchange.
+     * @param preparationDate The date and time of preparation of the CONTRL interchange.
+     * @throws IOException Error writing the acknowledgement.
+     */
+    public void writeInterchange(Writer writer, String interchangeControlRef, Date preparationDate) throws IOException {
+        assertInterchangeStarted();
+
+        if (!isDefaultDelimiters()) {
+            writer.write("UNA");
+            writer.write(delimiters.getComponent());
+            writer.write(delimiters.getField());
+            writer.write(delimiters.getDecimalSeparator() != null ? delimiters.getDecimalSeparator() : ".");
+            writer.write(delimiters.getEscape() != null ? delimiters.getEscape() : " ");
+            writer.write(getRepetitionSeparator());
+            writer.write(delimiters.getSegment());
+        }
+
+        String dateFormat = isSyntaxVersion4() ? "yyyyMMdd" : "yyMMdd";
+        String preparationDateTime = new SimpleDateFormat(dateFormat).format(preparationDate) + delimiters.getComponent() + new SimpleDateFormat("HHmm").format(preparationDate);
+        writeSegment(writer, "UNB", escapeComposite(syntaxIdentifier), escapeComposite(recipient), escapeComposite(sender), preparationDateTime, delimiters.escape(interchangeControlRef));
+        writeMessage(writer, "1");
+        writeSegment(writer, "UNZ", "1", delimiters.escape(interchangeControlRef));
+    }
+
+    /**
+     * Write the CONTRL message (UNH to UNT).
+     * @param writer The writer.
+     * @param messageRef The message reference number of the CONTRL message.
+     * @throws IOException Error writing the acknowledgement.
+     */
+    public void writeMessage(Writer writer, String messageRef) throws IOException {
+        assertInterchangeStarted();
+
+        String component = delimiters.getComponent();
+        String escapedMessageRef = delimiters.escape(messageRef);
+        String messageIdentifier = isSyntaxVersion4() ? "CONTRL" + component + "4" + component + "1" + component + "UN" : "CONTRL" + component + "D" + component + "3" + component + "UN";
+
+        contrlSegmentCount = 0;
+        writeSegment(writer, "UNH", escapedMessageRef, messageIdentifier);
+        writeSegment(writer, "UCI", escapeComposite(controlRef), escapeComposite(sender), escapeComposite(recipient), getInterchangeAction());
+        for (RejectedMessage rejectedMessage : rejectedMessages) {
+            writeMessageResponse(writer, rejectedMessage);
+        }
+        for (RejectedGroup rejectedGroup : rejectedGroups) {
+            writeGroupResponse(writer, rejectedGroup);
+        }
+        if (currentGroup != null && !currentGroup.messages.isEmpty()) {
+            // The interchange was not completely read...
+            writeGroupResponse(writer, currentGroup);
+        }
+        writeSegment(writer, "UNT", Integer.toString(contrlSegmentCount + 1), escapedMessageRef);
+    }
+
+    private void writeGroupResponse(Writer writer, RejectedGroup rejectedGroup) throws IOException {
+        writeSegment(writer, "UCF", escapeComposite(rejectedGroup.groupRef), escapeComposite(rejectedGroup.senderApp), escapeComposite(rejectedGroup.recipientApp), ACTION_ACKNOWLEDGED);
+        for (RejectedMessage rejectedMessage : rejectedGroup.messages) {
+            writeMessageResponse(writer, rejectedMessage);
+        }
+    }
+
+    private void writeMessageResponse(Writer writer, RejectedMessage rejectedMessage) throws IOException {
+        int currentSegmentPosition = -1;
+
+        writeSegment(writer, "UCM", escapeComposite(rejectedMessage.messageRef), escapeComposite(rejectedMessage.messageIdentifier), ACTION_REJECTED);
+        for (ErrorPosition error : rejectedMessage.errors) {
+            if (error.elementPosition == -1) {
+                writeSegment(writer, "UCS", Integer.toString(error.segmentPosition), error.syntaxErrorCode);
+                currentSegmentPosition = error.segmentPosition;
+            } else {
+                if (error.segmentPosition != currentSegmentPosition) {
+                    writeSegment(writer, "UCS", Integer.toString(error.segmentPosition));
+                    currentSegmentPosition = error.segmentPosition;
+                }
+                String elementPosition = Integer.toString(error.elementPosition);
+                if (error.componentPosition != -1) {
+                    elementPosition += delimiters.getComponent() + error.componentPosition;
+                }
+                writeSegment(writer, "UCD", error.syntaxErrorCode, elementPosition);
+            }
+        }
+    }
+
+    private void writeSegment(Writer writer, String segmentCode, String... fields) throws IOException {
+        int numFields = fields.length;
+
+        // Trailing empty fields are omitted...
+        while (numFields > 0 && (fields[numFields - 1] == null || fields[numFields - 1].length() == 0)) {
+            numFields--;
+        }
+
+        writer.write(segmentCode);
+        for (int i = 0; i < numFields; i++) {
+            writer.write(delimiters.getField());
+            if (fields[i] != null) {
+                writer.write(fields[i]);
+            }
+        }
+        writer.write(delimiters.getSegment());
+        contrlSegmentCount++;
+    }
+
+    /**
+     * Escape a field value echoed from the acknowledged interchange.
+     * <p/>
+     * The field splitter only removes the escapes of field delimiters, so the value is split into its components
+     * (honouring the remaining escapes) and each component is {@link Delimiters#escape(String) escaped} again.
+     */
+    private String escapeComposite(String value) {
+        if (value == null || value.length() == 0) {
+            return value;
+        }
+
+        char componentChar = delimiters.getComponentChar();
+        char escapeChar = delimiters.getEscapeChar();
+        StringBuilder composite = new StringBuilder(value.length() + 8);
+        StringBuilder component = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == escapeChar && escapeChar != Delimiters.NO_CHAR && i + 1 < value.length()) {
+                component.append(value.charAt(++i));
+            } else if (c == componentChar) {
+                composite.append(delimiters.escape(component.toString())).append(c);
+                component.setLength(0);
+            } else {
+                component.append(c);
+            }
+        }
+        return composite.append(delimiters.escape(component.toString())).toString();
+    }
+
+    private String getRepetitionSeparator() {
+        String repetitionSeparator = delimiters.getRepetitionSeparator();
+        if (!isSyntaxVersion4()) {
+            return " ";
+        } else if (repetitionSeparator == null || repetitionSeparator.trim().length() == 0) {
+            // Default syntax version 4 repetition separator...
+            return "*";
+        }
+        return repetitionSeparator;
+    }
+
+    private boolean isSyntaxVersion4() {
+        String[] syntaxIdComponents = EDIUtils.split(syntaxIdentifier, delimiters, Delimiters.CHAR_CLASS_COMPONENT);
+        return syntaxIdComponents.length > 1 && syntaxIdComponents[1].equals("4");
+    }
+
+    private boolean isDefaultDelimiters() {
+        Delimiters defaultDelimiters = UNEdifactInterchangeParser.defaultUNEdifactDelimiters;
+        return defaultDelimiters.getSegment().equals(delimiters.getSegment())
+                && defaultDelimiters.getField().equals(delimiters.getField())
+                && defaultDelimiters.getComponent().equals(delimiters.getComponent())
+                && defaultDelimiters.getEscape().equals(delimiters.getEscape())
+                && defaultDelimiters.getDecimalSeparator().equals(delimiters.getDecimalSeparator());
+    }
+
+    private void assertInterchangeStarted() {
+        if (syntaxIdentifier == null) {
+            throw new IllegalStateException("No interchange header has been read.  Cannot write CONTRL acknowledgement.");
+        }
+    }
+
+    private static String getField(String[] fields, int index) {
+        return index < fields.length ? fields[index] : null;
+    }
+
+    private static class RejectedGroup {
+        private final String groupRef;
+        private final String senderApp;
+        private final String recipientApp;
+        private final List<RejectedMessage> messages = new ArrayList<>();
+
+        private RejectedGroup(String groupRef, String senderApp, String recipientApp) {
+            this.groupRef = groupRef;
+            this.senderApp = senderApp;
+            this.recipientApp = recipientApp;
+        }
+    }
+
+    private static class RejectedMessage {
+        private final String messageRef;
+        private final String messageIdentifier;
+        private final List<ErrorPosition> errors = new ArrayList<>();
+
+        private RejectedMessage(String messageRef, String messageIdentifier) {
+            this.messageRef = messageRef;
+            this.messageIdentifier = messageIdentifier;
+        }
+    }
+
+    /**
+     * Position of an error in the message, as reported in the UCS and UCD segments.
+     */
+    private static class ErrorPosition {
+        private final int segmentPosition;
+        private final String syntaxErrorCode;
+        private int elementPosition = -1;
+        private int componentPosition = -1;
+
+        private ErrorPosition(EDIParseError parseError, int unhSegmentNumber) {
+            segmentPosition = parseError.getSegmentNumber() - unhSegmentNumber + 1;
+            syntaxErrorCode = parseError.getErrorCode().getSyntaxErrorCode();
+
+            // Missing and unexpected constituents are reported at the offset of the constituent...
+            boolean constituentError = parseError.getValue() == null && parseError.getOffset() != -1;
+            MappingNode node = parseError.getNode();
+
+            if (node instanceof SubComponent) {
+                // Sub-components cannot be addressed in a CONTRL message...
+                node = node.getParent();
+                constituentError = false;
+            }
+            if (node instanceof Segment) {
+                if (constituentError) {
+                    elementPosition = parseError.getOffset() + 1;
+                }
+            } else if (node instanceof Component) {
+                if (node.getParent() instanceof Field) {
+                    Field field = (Field) node.getParent();
+                    elementPosition = getFieldPosition(field);
+                    componentPosition = field.getComponents().indexOf(node) + 1;
+                }
+            } else if (node instanceof Field) {
+                elementPosition = getFieldPosition((Field) node);
+                if (constituentError) {
+                    componentPosition = parseError.getOffset() + 1;
+                }
+            }
+            if (elementPosition == -1) {
+                componentPosition = -1;
+            }
+        }
+
+        private static int getFieldPosition(Field field) {
+            if (field.getParent() instanceof Segment) {
+                return ((Segment) field.getParent()).getFields().indexOf(field) + 1;
+            }
+            return -1;
+        }
+    }
+}
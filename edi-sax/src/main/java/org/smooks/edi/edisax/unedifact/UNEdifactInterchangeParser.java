@@ -51,12 +51,17 @@ import javax.xml.XMLConstants;
 import org.smooks.assertion.AssertArgument;
 import org.smooks.edi.edisax.BufferedSegmentReader;
 import org.smooks.edi.edisax.EDIParser;
+import org.smooks.edi.edisax.EDIParserPool;
+import org.smooks.edi.edisax.MessageDataDigest;
 import org.smooks.edi.edisax.interchange.ControlBlockHandler;
 import org.smooks.edi.edisax.interchange.ControlBlockHandlerFactory;
+import org.smooks.edi.edisax.interchange.ControlCountVerification;
 import org.smooks.edi.edisax.interchange.InterchangeContext;
+import org.smooks.edi.edisax.interchange.InterchangeListener;
 import org.smooks.edi.edisax.model.internal.Delimiters;
 import org.smooks.edi.edisax.registry.LazyMappingsRegistry;
 import org.smooks.edi.edisax.registry.MappingsRegistry;
+import org.smooks.edi.edisax.unedifact.handlers.SyntaxVersionControlBlockHandlerFactory;
 import org.smooks.edi.edisax.unedifact.handlers.r41.UNEdifact41ControlBlockHandlerFactory;
 import org.smooks.namespace.NamespaceDeclarationStack;
 import org.smooks.namespace.NamespaceDeclarationStackAware;
@@ -82,6 +87,12 @@ public class UNEdifactInterchangeParser implements XMLReader, NamespaceDeclarati
 
     private final Map<String, Boolean> features = new HashMap<String, Boolean>();
 	
+	/**
+	 * Default UN/EDIFACT delimiters, used when an interchange has no UNA segment.
+	 * <p/>
+	 * Each parse takes a {@link Delimiters#freeze() frozen} copy, so changes only apply to later parses.  Clone
+	 * this instance rather than setting it on anything that modifies its delimiters.
+	 */
 	public static final Delimiters defaultUNEdifactDelimiters = new Delimiters().setSegment("'").setField("+").setComponent(":").setEscape("?").setDecimalSeparator(".");
 	
 	/**
@@ -92,6 +103,12 @@ public class UNEdifactInterchangeParser implements XMLReader, NamespaceDeclarati
     private HierarchyChangeListener hierarchyChangeListener;
     private InterchangeContext interchangeContext;
     private NamespaceDeclarationStack namespaceDeclarationStack;
+    private InterchangeListener interchangeListener;
+    private ControlCountVerification controlCountVerification = ControlCountVerification.NONE;
+    private MessageDataDigest messageDataDigest;
+    private ControlBlockHandlerFactory controlBlockHandlerFactory;
+    private EDIParserPool parserPool = new EDIParserPool();
+    private boolean syntaxVersionDetection;
 
     public void parse(InputSource unedifactInterchange) throws IOException, SAXException {
 		AssertArgument.isNotNull(unedifactInterchange, "unedifactInterchange");
@@ -106,17 +123,35 @@ public class UNEdifactInterchangeParser implements XMLReader, NamespaceDeclarati
 
         boolean endDocument = false;
         try {
-            ControlBlockHandlerFactory handlerFactory = new UNEdifact41ControlBlockHandlerFactory(hierarchyChangeListener);
-	        BufferedSegmentReader segmentReader = new BufferedSegmentReader(unedifactInterchange, defaultUNEdifactDelimiters);
+            if(controlBlockHandlerFactory == null) {
+                if(syntaxVersionDetection) {
+                    controlBlockHandlerFactory = SyntaxVersionControlBlockHandlerFactory.getInstance(hierarchyChangeListener);
+                } else {
+                    controlBlockHandlerFactory = UNEdifact41ControlBlockHandlerFactory.getInstance(hierarchyChangeListener);
+                }
+            }
+            ControlBlockHandlerFactory handlerFactory = controlBlockHandlerFactory;
+	        BufferedSegmentReader segmentReader = new BufferedSegmentReader(unedifactInterchange, ((Delimiters) defaultUNEdifactDelimiters.clone()).freeze());
 	        boolean validate = getFeature(EDIParser.FEATURE_VALIDATE);
 	        String segCode;
 	        
 	        segmentReader.mark();
+	        segmentReader.setMessageDataDigest(messageDataDigest);
 	        segmentReader.setIgnoreNewLines(getFeature(EDIParser.FEATURE_IGNORE_NEWLINES));
 
 	        contentHandler.startDocument();
 	        AttributesImpl attrs = new AttributesImpl();
 	        attrs.addAttribute(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, ControlBlockHandlerFactory.ENVELOPE_PREFIX, XMLConstants.XMLNS_ATTRIBUTE + ":" + ControlBlockHandlerFactory.ENVELOPE_PREFIX, "CDATA", handlerFactory.getNamespace());
+	        if(handlerFactory instanceof SyntaxVersionControlBlockHandlerFactory) {
+	            // Declare the namespaces of the other syntax versions e.g. "env3" for "urn:org.smooks.edi.unedifact.v3"...
+	            for(ControlBlockHandlerFactory versionHandlerFactory : ((SyntaxVersionControlBlockHandlerFactory) handlerFactory).getHandlerFactories()) {
+	                String versionNamespace = versionHandlerFactory.getNamespace();
+	                if(!versionNamespace.equals(handlerFactory.getNamespace())) {
+	                    String versionPrefix = ControlBlockHandlerFactory.ENVELOPE_PREFIX + versionNamespace.substring(versionNamespace.lastIndexOf(".v") + 2);
+	                    attrs.addAttribute(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, versionPrefix, XMLConstants.XMLNS_ATTRIBUTE + ":" + versionPrefix, "CDATA", versionNamespace);
+	                }
+	            }
+	        }
             String envElementQName = ControlBlockHandlerFactory.ENVELOPE_PREFIX + ":unEdifact";
             contentHandler.startElement(handlerFactory.getNamespace(), "unEdifact", envElementQName, attrs);
 	
@@ -125,6 +160,9 @@ public class UNEdifactInterchangeParser implements XMLReader, NamespaceDeclarati
 		        if(segCode.length() == 3) {
                     interchangeContext = createInterchangeContext(segmentReader, validate, handlerFactory, namespaceDeclarationStack);
                     namespaceDeclarationStack = interchangeContext.getNamespaceDeclarationStack();
+                    interchangeContext.setInterchangeListener(interchangeListener);
+                    interchangeContext.setControlCountVerification(controlCountVerification);
+                    interchangeContext.setParserPool(parserPool);
 
                     if(hierarchyChangeListener != null) {
                         hierarchyChangeListener.attachXMLReader(interchangeContext.getControlSegmentParser());
@@ -228,6 +266,74 @@ public class UNEdifactInterchangeParser implements XMLReader, NamespaceDeclarati
 
     public void setHierarchyChangeListener(HierarchyChangeListener listener) {
         this.hierarchyChangeListener = listener;
+        this.controlBlockHandlerFactory = null;
+    }
+
+    /**
+     * Set the {@link InterchangeListener} to be notified of the interchange control segments
+     * (e.g. a {@link ContrlGenerator}).
+     * @param interchangeListener The interchange listener.
+     * @return This parser instance.
+     */
+    public UNEdifactInterchangeParser setInterchangeListener(InterchangeListener interchangeListener) {
+        this.interchangeListener = interchangeListener;
+        return this;
+    }
+
+    /**
+     * Set the {@link ControlCountVerification} mode applied to the UNT, UNE and UNZ trailer segments.
+     * <p/>
+     * Defaults to {@link ControlCountVerification#NONE}.
+     * @param controlCountVerification The control count verification mode.
+     * @return This parser instance.
+     */
+    public UNEdifactInterchangeParser setControlCountVerification(ControlCountVerification controlCountVerification) {
+        AssertArgument.isNotNull(controlCountVerification, "controlCountVerification");
+        this.controlCountVerification = controlCountVerification;
+        return this;
+    }
+
+    /**
+     * Set the {@link MessageDataDigest} used to digest the raw data of each message (UNH to UNT inclusive)
+     * while it is being parsed.
+     * <p/>
+     * The digest of the last completed message is available from {@link InterchangeContext#getMessageDigest()}.
+     * @param messageDataDigest The message data digest, or null to disable digesting.
+     * @return This parser instance.
+     */
+    public UNEdifactInterchangeParser setMessageDataDigest(MessageDataDigest messageDataDigest) {
+        this.messageDataDigest = messageDataDigest;
+        return this;
+    }
+
+    /**
+     * Set the {@link EDIParserPool} from which the message parsers are borrowed.
+     * <p/>
+     * By default, each interchange parser instance has its own pool.  A pool can be shared between
+     * interchange parser instances (e.g. one per thread).  Set to null to create a new parser for
+     * every message.
+     * @param parserPool The parser pool.
+     * @return This parser instance.
+     */
+    public UNEdifactInterchangeParser setParserPool(EDIParserPool parserPool) {
+        this.parserPool = parserPool;
+        return this;
+    }
+
+    /**
+     * Select the control segment definitions (and namespace) of each interchange from the syntax version
+     * declared in its UNB segment.
+     * <p/>
+     * Disabled by default, in which case all interchanges are processed using the
+     * {@link UNEdifact41ControlBlockHandlerFactory v4.1} control segment definitions.
+     * @param syntaxVersionDetection True if the syntax version is to be detected, otherwise false.
+     * @return This parser instance.
+     * @see SyntaxVersionControlBlockHandlerFactory
+     */
+    public UNEdifactInterchangeParser setSyntaxVersionDetection(boolean syntaxVersionDetection) {
+        this.syntaxVersionDetection = syntaxVersionDetection;
+        this.controlBlockHandlerFactory = null;
+        return this;
     }
 
     /****************************************************************************
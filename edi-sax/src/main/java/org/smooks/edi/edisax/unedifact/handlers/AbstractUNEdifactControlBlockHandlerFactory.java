@@ -0,0 +1,253 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.unedifact.handlers;
+
+import org.smooks.api.SmooksConfigException;
+import org.smooks.edi.edisax.interchange.ControlBlockHandler;
+import org.smooks.edi.edisax.interchange.ControlBlockHandlerFactory;
+import org.smooks.edi.edisax.model.EDIConfigDigester;
+import org.smooks.edi.edisax.model.internal.Component;
+import org.smooks.edi.edisax.model.internal.Edimap;
+import org.smooks.edi.edisax.model.internal.Field;
+import org.smooks.edi.edisax.model.internal.Segment;
+import org.smooks.edi.edisax.model.internal.SegmentGroup;
+import org.smooks.edi.edisax.model.internal.SubComponent;
+import org.smooks.xml.hierarchy.HierarchyChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Abstract UN/EDIFACT control block handler factory.
+ * <p/>
+ * Subclasses supply the control segment definitions of a syntax version.  The control block handlers
+ * are stateless and are created once per factory instance, so factory instances are thread safe and
+ * should be reused.
+ *
+ * @see SyntaxVersionControlBlockHandlerFactory
+ */
+public abstract class AbstractUNEdifactControlBlockHandlerFactory implements ControlBlockHandlerFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractUNEdifactControlBlockHandlerFactory.class);
+
+    private static final Map<String, Charset> TO_CHARSET_MAPPING;
+
+    private final UNHHandler unhHandler;
+    private final UNGHandler ungHandler;
+    private final UNAHandler unaHandler;
+    private final UNBHandler unbHandler;
+    private final GenericHandler genericHandler;
+
+    /**
+     * Create the factory.
+     * @param controlSegments The control segment definitions of the syntax version.
+     * @param hierarchyChangeListener The hierarchy change listener, or null.
+     */
+    protected AbstractUNEdifactControlBlockHandlerFactory(ControlSegments controlSegments, HierarchyChangeListener hierarchyChangeListener) {
+        unhHandler = new UNHHandler(controlSegments.unhSegment, controlSegments.untSegment, hierarchyChangeListener);
+        ungHandler = new UNGHandler(controlSegments.ungSegment, controlSegments.uneSegment);
+        unaHandler = new UNAHandler();
+        unbHandler = new UNBHandler(controlSegments.unbSegment, controlSegments.unzSegment, TO_CHARSET_MAPPING);
+        genericHandler = new GenericHandler();
+    }
+
+    public ControlBlockHandler getControlBlockHandler(String segCode) throws SAXException {
+
+        if(segCode.equals("UNH")) {
+            return unhHandler;
+        } else if(segCode.equals("UNG")) {
+            return ungHandler;
+        } else if(segCode.equals("UNA")) {
+            return unaHandler;
+        } else if(segCode.equals("UNB")) {
+            return unbHandler;
+        } else if(segCode.charAt(0) == 'U') {
+            return genericHandler;
+        }
+
+        throw new SAXException("Unknown/Unexpected UN/EDIFACT control block segment code '" + segCode + "'.");
+    }
+
+    /**
+     * Get the character set mappings for the UNB syntax identifier (S001/0001) and coded character
+     * encoding (S001/0133) codes.
+     * @return The character set mappings.
+     */
+    public static Map<String, Charset> getCharsetMapping() {
+        return TO_CHARSET_MAPPING;
+    }
+
+    /**
+     * Control segment definitions of a syntax version.
+     */
+    protected static class ControlSegments {
+
+        private Segment unbSegment;
+        private Segment unzSegment;
+        private Segment ungSegment;
+        private Segment uneSegment;
+        private Segment unhSegment;
+        private Segment untSegment;
+
+        /**
+         * Read the control segment definitions.
+         * @param factoryClass The factory class, used to load the definitions resource.
+         * @param resource The definitions (EDI mapping model) resource.
+         * @param syntaxVersion The syntax version, for error reporting.
+         * @return The control segment definitions.
+         */
+        public static ControlSegments read(Class<?> factoryClass, String resource, String syntaxVersion) {
+            return read(factoryClass, resource, syntaxVersion, null);
+        }
+
+        /**
+         * Read the control segment definitions of another syntax version, mapping them into a different namespace.
+         * @param factoryClass The factory class, used to load the definitions resource.
+         * @param resource The definitions (EDI mapping model) resource.
+         * @param syntaxVersion The syntax version, for error reporting.
+         * @param namespace The namespace of the mapped control segments, or null to use the namespace declared
+         * by the definitions.
+         * @return The control segment definitions.
+         */
+        public static ControlSegments read(Class<?> factoryClass, String resource, String syntaxVersion, String namespace) {
+            ControlSegments controlSegments = new ControlSegments();
+
+            try {
+                InputStream definitionsStream = factoryClass.getResourceAsStream(resource);
+                try {
+                    Edimap controlBlockSegments = EDIConfigDigester.digestConfig(definitionsStream);
+                    List<SegmentGroup> segments = controlBlockSegments.getSegments().getSegments();
+                    for(SegmentGroup segment : segments) {
+                        if(namespace != null) {
+                            setNamespace((Segment) segment, namespace);
+                        }
+                        if(segment.getSegcode().equals("UNB")) {
+                            controlSegments.unbSegment = (Segment) segment;
+                        } else if(segment.getSegcode().equals("UNZ")) {
+                            controlSegments.unzSegment = (Segment) segment;
+                        } else if(segment.getSegcode().equals("UNG")) {
+                            controlSegments.ungSegment = (Segment) segment;
+                        } else if(segment.getSegcode().equals("UNE")) {
+                            controlSegments.uneSegment = (Segment) segment;
+                        } else if(segment.getSegcode().equals("UNH")) {
+                            controlSegments.unhSegment = (Segment) segment;
+                        } else if(segment.getSegcode().equals("UNT")) {
+                            controlSegments.untSegment = (Segment) segment;
+                        }
+                    }
+                } finally {
+                    definitionsStream.close();
+                }
+            } catch (Exception e) {
+                throw new SmooksConfigException("Unexpected exception reading UN/EDIFACT v" + syntaxVersion + " segment definitions.", e);
+            }
+
+            return controlSegments;
+        }
+
+        private static void setNamespace(Segment segment, String namespace) {
+            segment.setNamespace(namespace);
+            for(Field field : segment.getFields()) {
+                field.setNamespace(namespace);
+                for(Component component : field.getComponents()) {
+                    component.setNamespace(namespace);
+                    for(SubComponent subComponent : component.getSubComponents()) {
+                        subComponent.setNamespace(namespace);
+                    }
+                }
+            }
+        }
+    }
+
+    static {
+        Map<String, Charset> toCharsetMapping = new HashMap<String, Charset>();
+
+        // http://www.gefeg.com/jswg/cl/v41/40107/cl1.htm
+        addCharsetMapping(toCharsetMapping, "UNOA", "ASCII");
+        addCharsetMapping(toCharsetMapping, "UNOB", "ASCII");
+        addCharsetMapping(toCharsetMapping, "UNOC", "ISO8859-1");
+        addCharsetMapping(toCharsetMapping, "UNOD", "ISO8859-2");
+        addCharsetMapping(toCharsetMapping, "UNOE", "ISO8859-5");
+        addCharsetMapping(toCharsetMapping, "UNOF", "ISO8859-7");
+        addCharsetMapping(toCharsetMapping, "UNOG", "ISO8859-3");
+        addCharsetMapping(toCharsetMapping, "UNOH", "ISO8859-4");
+        addCharsetMapping(toCharsetMapping, "UNOI", "ISO8859-6");
+        addCharsetMapping(toCharsetMapping, "UNOJ", "ISO8859-8");
+        addCharsetMapping(toCharsetMapping, "UNOK", "ISO8859-9");
+        addCharsetMapping(toCharsetMapping, "UNOL", "ISO8859-15");
+        addCharsetMapping(toCharsetMapping, "UNOW", "UTF-8");
+        addCharsetMapping(toCharsetMapping, "UNOX", "ISO-2022-CN");
+        addCharsetMapping(toCharsetMapping, "UNOY", "UTF-8");
+
+        // http://www.gefeg.com/jswg/cl/v41/40107/cl17.htm
+        addCharsetMapping(toCharsetMapping, "1", "ASCII");
+        addCharsetMapping(toCharsetMapping, "2", "ASCII");
+        addCharsetMapping(toCharsetMapping, "3", "IBM500");
+        addCharsetMapping(toCharsetMapping, "4", "IBM850");
+        addCharsetMapping(toCharsetMapping, "5", "UTF-16");
+        addCharsetMapping(toCharsetMapping, "6", "UTF-32");
+        addCharsetMapping(toCharsetMapping, "7", "UTF-8");
+        addCharsetMapping(toCharsetMapping, "8", "UTF-16");
+
+        // IATA PADIS
+        addCharsetMapping(toCharsetMapping, "IATA", "ASCII");
+        addCharsetMapping(toCharsetMapping, "IATB", "ASCII");
+
+        TO_CHARSET_MAPPING = Collections.unmodifiableMap(toCharsetMapping);
+    }
+
+    private static void addCharsetMapping(Map<String, Charset> toCharsetMapping, String code, String charsetName) {
+        if(Charset.isSupported(charsetName)) {
+            toCharsetMapping.put(code, Charset.forName(charsetName));
+        } else {
+            LOGGER.debug("Unsupported character set '" + charsetName + "'.  Cannot support for '" + code + "' if defined on the syntaxIdentifier field on the UNB segment.  Check the JVM version etc.");
+        }
+    }
+}
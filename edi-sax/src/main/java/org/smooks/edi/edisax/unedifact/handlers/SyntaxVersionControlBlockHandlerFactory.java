@@ -0,0 +1,144 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.unedifact.handlers;
+
+import org.smooks.edi.edisax.interchange.ControlBlockHandler;
+import org.smooks.edi.edisax.interchange.ControlBlockHandlerFactory;
+import org.smooks.edi.edisax.unedifact.handlers.r3.UNEdifact3ControlBlockHandlerFactory;
+import org.smooks.edi.edisax.unedifact.handlers.r41.UNEdifact41ControlBlockHandlerFactory;
+import org.smooks.edi.edisax.unedifact.handlers.r42.UNEdifact42ControlBlockHandlerFactory;
+import org.smooks.xml.hierarchy.HierarchyChangeListener;
+import org.xml.sax.SAXException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * UN/EDIFACT control block handler factory that selects the control block handlers of the syntax
+ * version declared on each interchange.
+ * <p/>
+ * The syntax version number (UNB S001/0002) and, for version 4, the syntax release number (UNB S001/0076)
+ * are read once per interchange by the {@link UNBHandler}, which then hands the rest of the interchange
+ * to the factory of that version:
+ * <ul>
+ *     <li>Versions 1, 2 and 3: {@link UNEdifact3ControlBlockHandlerFactory}.</li>
+ *     <li>Version 4, Release 2: {@link UNEdifact42ControlBlockHandlerFactory}.</li>
+ *     <li>Any other version: {@link UNEdifact41ControlBlockHandlerFactory}.</li>
+ * </ul>
+ * The envelope namespace is that of {@link UNEdifact41ControlBlockHandlerFactory}.
+ */
+public class SyntaxVersionControlBlockHandlerFactory implements ControlBlockHandlerFactory {
+
+    private static final SyntaxVersionControlBlockHandlerFactory DEFAULT_INSTANCE = new SyntaxVersionControlBlockHandlerFactory(null);
+
+    private final AbstractUNEdifactControlBlockHandlerFactory v3HandlerFactory;
+    private final AbstractUNEdifactControlBlockHandlerFactory v41HandlerFactory;
+    private final AbstractUNEdifactControlBlockHandlerFactory v42HandlerFactory;
+    private final List<AbstractUNEdifactControlBlockHandlerFactory> handlerFactories;
+
+    public SyntaxVersionControlBlockHandlerFactory(HierarchyChangeListener hierarchyChangeListener) {
+        v3HandlerFactory = UNEdifact3ControlBlockHandlerFactory.getInstance(hierarchyChangeListener);
+        v41HandlerFactory = UNEdifact41ControlBlockHandlerFactory.getInstance(hierarchyChangeListener);
+        v42HandlerFactory = UNEdifact42ControlBlockHandlerFactory.getInstance(hierarchyChangeListener);
+        handlerFactories = Collections.unmodifiableList(Arrays.asList(v3HandlerFactory, v41HandlerFactory, v42HandlerFactory));
+    }
+
+    /**
+     * Get a factory instance.
+     * @param hierarchyChangeListener The hierarchy change listener, or null.
+     * @return The shared factory instance if no hierarchy change listener is supplied, otherwise a new
+     * factory instance.
+     */
+    public static SyntaxVersionControlBlockHandlerFactory getInstance(HierarchyChangeListener hierarchyChangeListener) {
+        if(hierarchyChangeListener == null) {
+            return DEFAULT_INSTANCE;
+        }
+        return new SyntaxVersionControlBlockHandlerFactory(hierarchyChangeListener);
+    }
+
+    public String getNamespace() {
+        return v41HandlerFactory.getNamespace();
+    }
+
+    public ControlBlockHandler getControlBlockHandler(String segCode) throws SAXException {
+        // The syntax version is not known before the UNB segment is read...
+        return v41HandlerFactory.getControlBlockHandler(segCode);
+    }
+
+    /**
+     * Get the control block handler factory of a syntax version.
+     * @param syntaxIdComponents The components of the UNB syntax identifier (S001).
+     * @return The control block handler factory.
+     */
+    public AbstractUNEdifactControlBlockHandlerFactory getHandlerFactory(String[] syntaxIdComponents) {
+        String version = (syntaxIdComponents.length > 1 ? syntaxIdComponents[1] : "");
+
+        if(version.length() == 1) {
+            switch (version.charAt(0)) {
+                case '1':
+                case '2':
+                case '3':
+                    return v3HandlerFactory;
+                case '4':
+                    String release = (syntaxIdComponents.length > 4 ? syntaxIdComponents[4] : "");
+                    if(release.equals("02") || release.equals("2")) {
+                        return v42HandlerFactory;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return v41HandlerFactory;
+    }
+
+    /**
+     * Get the control block handler factories of all supported syntax versions.
+     * @return The control block handler factories.
+     */
+    public List<AbstractUNEdifactControlBlockHandlerFactory> getHandlerFactories() {
+        return handlerFactories;
+    }
+}
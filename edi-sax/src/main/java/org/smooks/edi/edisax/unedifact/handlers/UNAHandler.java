@@ -74,11 +74,12 @@ public class UNAHandler implements ControlBlockHandler {
 		delimiters.setDecimalSeparator(segmentReader.read(1));
 		// 4th char is the escape char ("release")...
 		delimiters.setEscape(    segmentReader.read(1));
-		// 5th char is reserved for future use...
-		segmentReader.read(1);
+		// 5th char is reserved (the repetition separator in syntax version 4)...
+		delimiters.setRepetitionSeparator(segmentReader.read(1));
 		// 6th char is the segment delimiter...
 		delimiters.setSegment(   segmentReader.read(1));
 
-		interchangeContext.pushDelimiters(delimiters);
+		// The delimiters are shared by all segment scanners for the rest of the interchange...
+		interchangeContext.pushDelimiters(delimiters.freeze());
 	}
 }
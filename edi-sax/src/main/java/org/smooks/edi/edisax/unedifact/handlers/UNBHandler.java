@@ -44,13 +44,15 @@ package org.smooks.edi.edisax.unedifact.handlers;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.util.HashMap;
 import java.util.Map;
 
 import org.smooks.edi.edisax.BufferedSegmentReader;
 import org.smooks.edi.edisax.EDIParseException;
 import org.smooks.edi.edisax.interchange.ControlBlockHandler;
+import org.smooks.edi.edisax.interchange.ControlBlockHandlerFactory;
 import org.smooks.edi.edisax.interchange.InterchangeContext;
+import org.smooks.edi.edisax.interchange.InterchangeListener;
+import org.smooks.edi.edisax.model.internal.Delimiters;
 import org.smooks.edi.edisax.model.internal.Segment;
 import org.smooks.edi.edisax.util.EDIUtils;
 import org.xml.sax.SAXException;
@@ -61,11 +63,11 @@ import org.xml.sax.SAXException;
  */
 public class UNBHandler implements ControlBlockHandler {
 
-	private Segment unbSegment;
-	private Segment unzSegment;
-	private Map<String, Charset> toCharsetMapping;
+	private final Segment unbSegment;
+	private final Segment unzSegment;
+	private final Map<String, Charset> toCharsetMapping;
 
-    public UNBHandler(Segment unbSegment, Segment unzSegment, HashMap<String, Charset> toCharsetMapping) {
+    public UNBHandler(Segment unbSegment, Segment unzSegment, Map<String, Charset> toCharsetMapping) {
         this.unbSegment = unbSegment;
         this.unzSegment = unzSegment;
         this.toCharsetMapping = toCharsetMapping;
@@ -77,14 +79,31 @@ public class UNBHandler implements ControlBlockHandler {
 		segmentReader.moveToNextSegment(false);
 		
 		String[] fields = segmentReader.getCurrentSegmentFields();
+		String[] syntaxIdComponents = EDIUtils.split(fields[1], segmentReader.getDelimiters(), Delimiters.CHAR_CLASS_COMPONENT);
+
+		ControlBlockHandlerFactory handlerFactory = interchangeContext.getControlBlockHandlerFactory();
+		if(handlerFactory instanceof SyntaxVersionControlBlockHandlerFactory) {
+			// Select the syntax version once, and hand the rest of the interchange to the handlers of that version...
+			ControlBlockHandlerFactory versionHandlerFactory = ((SyntaxVersionControlBlockHandlerFactory) handlerFactory).getHandlerFactory(syntaxIdComponents);
+			interchangeContext.setControlBlockHandlerFactory(versionHandlerFactory);
+			((UNBHandler) versionHandlerFactory.getControlBlockHandler("UNB")).process(interchangeContext, fields, syntaxIdComponents);
+		} else {
+			process(interchangeContext, fields, syntaxIdComponents);
+		}
+	}
+
+	private void process(InterchangeContext interchangeContext, String[] fields, String[] syntaxIdComponents) throws IOException, SAXException {
+		BufferedSegmentReader segmentReader = interchangeContext.getSegmentReader();
+		InterchangeListener interchangeListener = interchangeContext.getInterchangeListener();
+		if(interchangeListener != null) {
+			interchangeListener.interchangeStart(fields, segmentReader.getDelimiters());
+		}
 		
 		interchangeContext.mapControlSegment(unbSegment, true);
-		
-		String[] syntaxIdComponents = EDIUtils.split(fields[1], segmentReader.getDelimiters().getComponent(), segmentReader.getDelimiters().getEscape());
 
 		// First component (index 0) defines the char repertoire.  Fourth 
 		// component (index 3) is optional and can override...
-		if(syntaxIdComponents.length < 4) {
+		if(syntaxIdComponents.length < 4 || syntaxIdComponents[3].length() == 0) {
 			changeReadEncoding(syntaxIdComponents[0], interchangeContext.getSegmentReader());
 		} else {
 			changeReadEncoding(syntaxIdComponents[3], interchangeContext.getSegmentReader());
@@ -95,6 +114,15 @@ public class UNBHandler implements ControlBlockHandler {
 
 	        if(segCode.equals("UNZ")) {
 	    		segmentReader.moveToNextSegment(false);
+	    		String[] unzFields = segmentReader.getCurrentSegmentFields();
+	    		int count = (interchangeContext.getGroupCount() > 0 ? interchangeContext.getGroupCount() : interchangeContext.getMessageCount());
+	    		EDIParseException trailerMismatch = interchangeContext.verifyTrailer(unzSegment, unzFields, count, "groups or messages", (fields.length > 5 ? fields[5] : null), interchangeContext.getControlErrors());
+	    		if(interchangeListener != null) {
+	    			interchangeListener.interchangeEnd(unzFields);
+	    		}
+	    		if(trailerMismatch != null) {
+	    			throw trailerMismatch;
+	    		}
 	    		interchangeContext.mapControlSegment(unzSegment, true);
 	    		break;
             } else if(segCode.length() > 0) {
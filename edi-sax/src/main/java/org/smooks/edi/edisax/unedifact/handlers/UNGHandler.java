@@ -48,6 +48,7 @@ import org.smooks.edi.edisax.BufferedSegmentReader;
 import org.smooks.edi.edisax.EDIParseException;
 import org.smooks.edi.edisax.interchange.ControlBlockHandler;
 import org.smooks.edi.edisax.interchange.InterchangeContext;
+import org.smooks.edi.edisax.interchange.InterchangeListener;
 import org.smooks.edi.edisax.model.internal.Segment;
 import org.xml.sax.SAXException;
 
@@ -57,8 +58,8 @@ import org.xml.sax.SAXException;
  */
 public class UNGHandler implements ControlBlockHandler {
 
-	private Segment ungSegment;
-	private Segment uneSegment;
+	private final Segment ungSegment;
+	private final Segment uneSegment;
 
     public UNGHandler(Segment ungSegment, Segment uneSegment) {
         this.ungSegment = ungSegment;
@@ -71,6 +72,12 @@ public class UNGHandler implements ControlBlockHandler {
 		interchangeContext.getControlSegmentParser().startElement("group", ungSegment.getNamespace(), true);
 
 		segmentReader.moveToNextSegment(false);
+		String[] ungFields = segmentReader.getCurrentSegmentFields();
+		interchangeContext.groupStarted();
+		InterchangeListener interchangeListener = interchangeContext.getInterchangeListener();
+		if(interchangeListener != null) {
+			interchangeListener.groupStart(ungFields);
+		}
 		interchangeContext.mapControlSegment(ungSegment, true);
 
         while(true) {
@@ -78,6 +85,14 @@ public class UNGHandler implements ControlBlockHandler {
 
 	        if(segCode.equals("UNE")) {
 	    		segmentReader.moveToNextSegment(false);
+	    		String[] uneFields = segmentReader.getCurrentSegmentFields();
+	    		EDIParseException trailerMismatch = interchangeContext.verifyTrailer(uneSegment, uneFields, interchangeContext.getGroupMessageCount(), "messages", (ungFields.length > 5 ? ungFields[5] : null), interchangeContext.getControlErrors());
+	    		if(interchangeListener != null) {
+	    			interchangeListener.groupEnd(uneFields);
+	    		}
+	    		if(trailerMismatch != null) {
+	    			throw trailerMismatch;
+	    		}
 	    		interchangeContext.mapControlSegment(uneSegment, true);
 	    		break;
             } else if(segCode.length() > 0) {
@@ -46,9 +46,11 @@ import java.io.IOException;
 
 import org.smooks.edi.edisax.BufferedSegmentListener;
 import org.smooks.edi.edisax.BufferedSegmentReader;
+import org.smooks.edi.edisax.EDIParseException;
 import org.smooks.edi.edisax.EDIParser;
 import org.smooks.edi.edisax.interchange.ControlBlockHandler;
 import org.smooks.edi.edisax.interchange.InterchangeContext;
+import org.smooks.edi.edisax.interchange.InterchangeListener;
 import org.smooks.edi.edisax.model.EdifactModel;
 import org.smooks.edi.edisax.model.internal.Description;
 import org.smooks.edi.edisax.model.internal.Edimap;
@@ -66,11 +68,11 @@ import javax.xml.XMLConstants;
  */
 public class UNHHandler implements ControlBlockHandler {
 
-    private Segment unhSegment;
-    private Segment untSegment;
-    private static UNTSegmentListener untSegmentListener = new UNTSegmentListener();
+    private final Segment unhSegment;
+    private final Segment untSegment;
+    private static final UNTSegmentListener untSegmentListener = new UNTSegmentListener();
 
-    private HierarchyChangeListener hierarchyChangeListener;
+    private final HierarchyChangeListener hierarchyChangeListener;
 
     public UNHHandler(Segment unhSegment, Segment untSegment, HierarchyChangeListener hierarchyChangeListener) {
         this.unhSegment = unhSegment;
@@ -82,11 +84,30 @@ public class UNHHandler implements ControlBlockHandler {
 		BufferedSegmentReader segmentReader = interchangeContext.getSegmentReader();
 		MappingsRegistry registry = interchangeContext.getRegistry();
 
+		// Digest the raw message data from the (already peeked) UNH segment code...
+		boolean digest = (segmentReader.getMessageDataDigest() != null);
+		interchangeContext.setMessageDigest(null);
+		if(digest) {
+			segmentReader.startDigest();
+		}
+		try {
+			processMessage(interchangeContext, segmentReader, registry, digest);
+		} finally {
+			// Stop digesting if the message failed before reaching the UNT segment...
+			if(segmentReader.isDigesting()) {
+				segmentReader.endDigest();
+			}
+		}
+	}
+
+	private void processMessage(InterchangeContext interchangeContext, BufferedSegmentReader segmentReader, MappingsRegistry registry, boolean digest) throws IOException, SAXException {
 		// Move to the end of the UNH segment and map it's fields..
 		segmentReader.moveToNextSegment(false);
 
 		// Select the mapping model to use for this message...
 		String[] fields = segmentReader.getCurrentSegmentFields();
+		int unhSegmentNumber = segmentReader.getCurrentSegmentNumber();
+		interchangeContext.messageStarted();
 		String messageName = fields[2];
 		EdifactModel mappingModel = registry.getMappingModel(messageName, segmentReader.getDelimiters());
         Edimap ediMap = mappingModel.getEdimap();
@@ -110,34 +131,56 @@ public class UNHHandler implements ControlBlockHandler {
         interchangeContext.mapControlSegment(unhSegment, false);
 
 		// Map the message... stopping at the UNT segment...
+		InterchangeListener interchangeListener = interchangeContext.getInterchangeListener();
+		EDIParser parser = interchangeContext.newParser(mappingModel);
 		try {
-			EDIParser parser = interchangeContext.newParser(mappingModel);
-
-			segmentReader.setSegmentListener(untSegmentListener);
-
-            if(hierarchyChangeListener != null) {
-                hierarchyChangeListener.attachXMLReader(parser);
-            } else if (!interchangeContext.isContainerManagedNamespaceStack()) {
-                interchangeContext.getNamespaceDeclarationStack().pushReader(parser);
-            }
-
-            parser.parse();
+			try {
+				segmentReader.setSegmentListener(untSegmentListener);
+
+                if(hierarchyChangeListener != null) {
+                    hierarchyChangeListener.attachXMLReader(parser);
+                } else if (!interchangeContext.isContainerManagedNamespaceStack()) {
+                    interchangeContext.getNamespaceDeclarationStack().pushReader(parser);
+                }
+
+                parser.parse();
+			} catch (EDIParseException e) {
+				if(interchangeListener != null) {
+					interchangeListener.message(fields, unhSegmentNumber, parser.getParseErrors(), true);
+				}
+				throw e;
+			} finally {
+				segmentReader.setSegmentListener(null);
+                if(hierarchyChangeListener != null) {
+                    hierarchyChangeListener.detachXMLReader();
+                } else if (!interchangeContext.isContainerManagedNamespaceStack()) {
+                    interchangeContext.getNamespaceDeclarationStack().popReader();
+                }
+			}
+
+			// We're at the end of the UNT segment now.  See the UNTSegmentListener below.
+			if(digest) {
+				interchangeContext.setMessageDigest(segmentReader.endDigest());
+			}
+
+			// Verify the UNT segment count (UNH and UNT inclusive) before mapping the UNT segment...
+			String[] untFields = segmentReader.getCurrentSegmentFields();
+			int segmentCount = segmentReader.getCurrentSegmentNumber() - unhSegmentNumber + 1;
+			EDIParseException trailerMismatch = interchangeContext.verifyTrailer(untSegment, untFields, segmentCount, "segments", fields[1], parser.getParseErrors());
+
+			if(interchangeListener != null) {
+				interchangeListener.message(fields, unhSegmentNumber, parser.getParseErrors(), trailerMismatch != null || parser.isMessageRejected());
+			}
+			if(trailerMismatch != null) {
+				throw trailerMismatch;
+			}
+			interchangeContext.mapControlSegment(untSegment, true);
+			segmentReader.getSegmentBuffer().setLength(0);
+
+			interchangeContext.getControlSegmentParser().endElement(InterchangeContext.INTERCHANGE_MESSAGE_BLOCK_ELEMENT_NAME, unhSegment.getNamespace(), true);
 		} finally {
-			segmentReader.setSegmentListener(null);
-            if(hierarchyChangeListener != null) {
-                hierarchyChangeListener.detachXMLReader();
-            } else if (!interchangeContext.isContainerManagedNamespaceStack()) {
-                interchangeContext.getNamespaceDeclarationStack().popReader();
-            }
+			interchangeContext.releaseParser(parser);
 		}
-
-		// We're at the end of the UNT segment now.  See the UNTSegmentListener below.
-
-		// Map the UNT segment...
-		interchangeContext.mapControlSegment(untSegment, true);
-		segmentReader.getSegmentBuffer().setLength(0);
-
-		interchangeContext.getControlSegmentParser().endElement(InterchangeContext.INTERCHANGE_MESSAGE_BLOCK_ELEMENT_NAME, unhSegment.getNamespace(), true);
 	}
 
     private static class UNTSegmentListener implements BufferedSegmentListener {
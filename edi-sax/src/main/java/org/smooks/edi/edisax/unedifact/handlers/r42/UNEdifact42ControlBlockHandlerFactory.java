@@ -0,0 +1,86 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.unedifact.handlers.r42;
+
+import org.smooks.edi.edisax.unedifact.handlers.AbstractUNEdifactControlBlockHandlerFactory;
+import org.smooks.edi.edisax.unedifact.handlers.r41.UNEdifact41ControlBlockHandlerFactory;
+import org.smooks.xml.hierarchy.HierarchyChangeListener;
+
+/**
+ * UN/EDIFACT control block handler factory (Version 4, Release 2).
+ * <p/>
+ * The control block handlers are stateless and are created once per factory instance, so factory
+ * instances are thread safe and should be reused.  Use {@link #getInstance(HierarchyChangeListener)}.
+ *
+ * @see org.smooks.edi.edisax.unedifact.handlers.SyntaxVersionControlBlockHandlerFactory
+ */
+public class UNEdifact42ControlBlockHandlerFactory extends AbstractUNEdifactControlBlockHandlerFactory {
+
+    public static final String NAMESPACE = NAMESPACE_ROOT + ".v42";
+
+    // Release 2 leaves the UNB, UNG, UNH, UNT, UNE and UNZ segment layouts unchanged from release 1, so the
+    // v4.1 definitions are reused and mapped into the v4.2 namespace.
+    private static final ControlSegments CONTROL_SEGMENTS = ControlSegments.read(UNEdifact41ControlBlockHandlerFactory.class, "v41-segments.xml", "4.2", NAMESPACE);
+    private static final UNEdifact42ControlBlockHandlerFactory DEFAULT_INSTANCE = new UNEdifact42ControlBlockHandlerFactory(null);
+
+    public UNEdifact42ControlBlockHandlerFactory(HierarchyChangeListener hierarchyChangeListener) {
+        super(CONTROL_SEGMENTS, hierarchyChangeListener);
+    }
+
+    /**
+     * Get a factory instance.
+     * @param hierarchyChangeListener The hierarchy change listener, or null.
+     * @return The shared factory instance if no hierarchy change listener is supplied, otherwise a new
+     * factory instance.
+     */
+    public static UNEdifact42ControlBlockHandlerFactory getInstance(HierarchyChangeListener hierarchyChangeListener) {
+        if(hierarchyChangeListener == null) {
+            return DEFAULT_INSTANCE;
+        }
+        return new UNEdifact42ControlBlockHandlerFactory(hierarchyChangeListener);
+    }
+
+    public String getNamespace() {
+        return NAMESPACE;
+    }
+}
@@ -120,6 +120,87 @@ public class EDIUtils {
         return putCharacterSequenceIntoResult(charSequences);
     }
     
+    /**
+     * Splits a String by one of the delimiters of a delimiter set, as long as the delimiter does not follow the escape
+     * character.  Gives the same result as {@link #split(String, String, String)}, but classifies each character with
+     * the {@link Delimiters#getCharClass(char) character class table} of the delimiters instead of matching strings.
+     * Multi-character delimiters are split with {@link #split(String, String, String)}.
+     *
+     * @param value the string to split, may be null.
+     * @param delimiters the delimiters.
+     * @param delimiterClass the class of the delimiter to split by, e.g. {@link Delimiters#CHAR_CLASS_COMPONENT}.
+     * @return an array of split edi-sequences, null if null string input.
+     */
+    public static String[] split(String value, Delimiters delimiters, byte delimiterClass) {
+        if (value == null) {
+            return null;
+        }
+        if (value.length() == 0) {
+            return new String[0];
+        }
+
+        String delimiter = getDelimiter(delimiters, delimiterClass);
+        char delimiterChar = (delimiter != null && delimiter.length() == 1 ? delimiter.charAt(0) : Delimiters.NO_CHAR);
+        char escapeChar = delimiters.getEscapeChar();
+        if (delimiterChar == Delimiters.NO_CHAR || delimiters.getCharClass(delimiterChar) != delimiterClass || (delimiters.getEscape() != null && escapeChar == Delimiters.NO_CHAR)) {
+            return split(value, delimiter, delimiters.getEscape());
+        }
+
+        List<String> result = new ArrayList<String>();
+        StringBuilder token = null;
+        int tokenStart = 0;
+        int length = value.length();
+        boolean delimiterLast = false;
+
+        for (int i = 0; i < length; i++) {
+            byte charClass = delimiters.getCharClass(value.charAt(i));
+            delimiterLast = false;
+
+            if (charClass == delimiterClass) {
+                result.add(token == null ? value.substring(tokenStart, i) : token.append(value, tokenStart, i).toString());
+                token = null;
+                tokenStart = i + 1;
+                delimiterLast = true;
+            } else if (charClass == Delimiters.CHAR_CLASS_ESCAPE) {
+                if (token == null) {
+                    token = new StringBuilder(length);
+                }
+                token.append(value, tokenStart, i);
+                if (i + 1 < length) {
+                    // An escaped delimiter loses its escape, anything else keeps it...
+                    char escapedChar = value.charAt(++i);
+                    if (escapedChar != delimiterChar) {
+                        token.append(escapeChar);
+                    }
+                    token.append(escapedChar);
+                }
+                tokenStart = i + 1;
+            }
+        }
+
+        String lastToken = (token == null ? value.substring(tokenStart) : token.append(value, tokenStart, length).toString());
+        if (lastToken.length() > 0 || delimiterLast) {
+            result.add(lastToken);
+        }
+
+        return result.toArray(new String[result.size()]);
+    }
+
+    private static String getDelimiter(Delimiters delimiters, byte delimiterClass) {
+        switch (delimiterClass) {
+            case Delimiters.CHAR_CLASS_FIELD:
+                return delimiters.getField();
+            case Delimiters.CHAR_CLASS_FIELD_REPEAT:
+                return delimiters.getFieldRepeat();
+            case Delimiters.CHAR_CLASS_COMPONENT:
+                return delimiters.getComponent();
+            case Delimiters.CHAR_CLASS_SUB_COMPONENT:
+                return delimiters.getSubComponent();
+            default:
+                throw new IllegalArgumentException("Unable to split by delimiter class " + delimiterClass + ".");
+        }
+    }
+
     public static void loadMappingModels(String mappingModelFiles, Map<String, EdifactModel> mappingModels, URI baseURI) throws EDIConfigurationException, IOException, SAXException {
 		AssertArgument.isNotNullAndNotEmpty(mappingModelFiles, "mappingModelFiles");
 		AssertArgument.isNotNull(mappingModels, "mappingModels");
@@ -363,7 +444,7 @@ public class EDIUtils {
 
     private static Archive loadArchive(InputStream rawStream) {
         try {
-            return new Archive(new ZipInputStream(rawStream));
+            return new Archive(new ZipInputStream(rawStream), Archive.StorageMode.IN_MEMORY);
 		} catch(Exception e) {
 			// Assume it's not a Zip file.  Just return null...
 			return null;
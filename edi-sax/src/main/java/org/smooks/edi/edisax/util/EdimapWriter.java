@@ -43,13 +43,12 @@
 package org.smooks.edi.edisax.util;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.lang.reflect.Method;
+import java.nio.charset.Charset;
 import java.util.List;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
 import org.smooks.edi.edisax.model.internal.Component;
 import org.smooks.edi.edisax.model.internal.Delimiters;
 import org.smooks.edi.edisax.model.internal.Description;
@@ -63,43 +62,54 @@ import org.smooks.edi.edisax.model.internal.SubComponent;
 import org.smooks.edi.edisax.unedifact.UNEdifactInterchangeParser;
 import org.smooks.support.ClassUtil;
 import org.smooks.support.XmlUtil;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 
 /**
  * EdimapWriter
+ * <p/>
+ * Streams the EDI Mapping Model straight to the target {@link Writer}, without building an intermediate DOM.
  * @author bardl
  */
 public class EdimapWriter {
 
-    private static DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
-    static {
-        docBuilderFactory.setValidating(false);
-        docBuilderFactory.setNamespaceAware(true);
-    }
-
     private static final String NS = "http://www.milyn.org/schema/edi-message-mapping-1.5.xsd";
+    private static final String NS_PREFIX = "medi:";
+    private static final String INDENT = "    ";
 
-    private Document doc;
+    private final Writer writer;
+    private int depth;
+    private boolean startTagOpen;
 
-    private EdimapWriter() throws ParserConfigurationException {
-        doc = docBuilderFactory.newDocumentBuilder().newDocument();
+    private EdimapWriter(Writer writer) {
+        this.writer = writer;
     }
 
+    /**
+     * Write the EDI Mapping Model.
+     * <p/>
+     * The XML declaration names the encoding of the writer if it is an {@link OutputStreamWriter}, and UTF-8
+     * otherwise.  Use {@link #write(Edimap, Writer, String)} to name the encoding explicitly.
+     * @param edimap The EDI Mapping Model.
+     * @param writer The target writer.
+     * @throws IOException Error writing the model.
+     */
     public static void write(Edimap edimap, Writer writer) throws IOException {
-        try {
-            EdimapWriter edimapWriter = new EdimapWriter();
-
-            edimapWriter.write(edimap);
+        write(edimap, writer, getEncoding(writer));
+    }
 
-            XmlUtil.serialize(edimapWriter.doc, true, writer, true);
-            writer.flush();
-        } catch (ParserConfigurationException e) {
-            IOException ioE = new IOException("Error constructing EDI Mapping Model");
-            ioE.initCause(e);
-            throw ioE;
-        }
+    /**
+     * Write the EDI Mapping Model.
+     * @param edimap The EDI Mapping Model.
+     * @param writer The target writer.
+     * @param encoding The encoding named in the XML declaration.  This should be the encoding the writer produces.
+     * @throws IOException Error writing the model.
+     */
+    public static void write(Edimap edimap, Writer writer, String encoding) throws IOException {
+        EdimapWriter edimapWriter = new EdimapWriter(writer);
+
+        writer.write("<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>");
+        edimapWriter.write(edimap);
+        writer.write("\n");
+        writer.flush();
     }
 
     public static void write(Segment segment, Writer writer) throws IOException {
@@ -109,93 +119,118 @@ public class EdimapWriter {
         segments.getSegments().add(segment);
 
         ediMap.setSegments(segments);
-        ediMap.setDelimiters(UNEdifactInterchangeParser.defaultUNEdifactDelimiters);
+        ediMap.setDelimiters((Delimiters) UNEdifactInterchangeParser.defaultUNEdifactDelimiters.clone());
         ediMap.setDescription(new Description().setName("TODO").setVersion("TODO"));
 
         write(ediMap, writer);
     }
 
-    private void write(Edimap edimap) {
-        Element edimapEl = newElement("edimap", doc);
+    private static String getEncoding(Writer writer) {
+        if (writer instanceof OutputStreamWriter) {
+            // OutputStreamWriter reports the historical name e.g. "UTF8"...
+            return Charset.forName(((OutputStreamWriter) writer).getEncoding()).name();
+        }
 
-        addImports(edimap.getImports(), edimapEl);
-        addDescription(edimap.getDescription(), edimapEl);
-        addDelimiters(edimap.getDelimiters(), edimapEl);
+        return "UTF-8";
+    }
+
+    private void write(Edimap edimap) throws IOException {
+        startElement("edimap");
+        writeAttribute("xmlns:medi", NS);
+
+        addImports(edimap.getImports());
+        addDescription(edimap.getDescription());
+        addDelimiters(edimap.getDelimiters());
 
         SegmentGroup segments = edimap.getSegments();
-        Element segmentsEl = newElement("segments", edimapEl, segments);
+        startElement("segments");
+        mapBeanProperties(segments, "name", "xmltag");
+        addDocumentation(segments);
+        addChildSegments(segments);
+        endElement("segments");
 
-        mapBeanProperties(segments, segmentsEl, "name", "xmltag");
-        addChildSegments(segments, segmentsEl);
+        endElement("edimap");
     }
 
-    private void addImports(List<Import> imports, Element edimapEl) {
+    private void addImports(List<Import> imports) throws IOException {
         for(Import importInst : imports) {
-            mapBeanProperties(importInst, newElement("import", edimapEl), "resource", "namespace", "truncatableComponents", "truncatableFields", "truncatableSegments");
+            startElement("import");
+            mapBeanProperties(importInst, "resource", "namespace", "truncatableComponents", "truncatableFields", "truncatableSegments");
+            endElement("import");
         }
     }
 
-    private void addDescription(Description description, Element edimapEl) {
-        Element descriptionElement = newElement("description", edimapEl);
-
-        mapBeanProperties(description, descriptionElement, "name", "version");
+    private void addDescription(Description description) throws IOException {
+        startElement("description");
+        mapBeanProperties(description, "name", "version");
         if (description.getNamespace() != null && description.getNamespace().trim().length() > 0) {
-        	descriptionElement.setAttribute("namespace", description.getNamespace());
+            writeAttribute("namespace", description.getNamespace());
         }
+        endElement("description");
     }
 
-    private void addDelimiters(Delimiters delimiters, Element edimapEl) {
-        mapBeanProperties(delimiters, newElement("delimiters", edimapEl), "segment", "field", "component", "subComponent|sub-component", "escape", "fieldRepeat");
+    private void addDelimiters(Delimiters delimiters) throws IOException {
+        startElement("delimiters");
+        mapBeanProperties(delimiters, "segment", "field", "component", "subComponent|sub-component", "escape", "fieldRepeat");
+        endElement("delimiters");
     }
 
-    private void addChildSegments(SegmentGroup segmentGroup, Element parentSegment) {
+    private void addChildSegments(SegmentGroup segmentGroup) throws IOException {
         List<SegmentGroup> childSegments = segmentGroup.getSegments();
 
         for(SegmentGroup childSegment : childSegments) {
-            Element segmentEl;
+            String elementName;
 
             if(childSegment instanceof Segment) {
-                segmentEl = newElement("segment", parentSegment, childSegment);
-                mapBeanProperties(childSegment, segmentEl, "segcode", "nodeTypeRef", "description", "ignoreUnmappedFields", "truncatable");
+                elementName = "segment";
+                startElement(elementName);
+                mapBeanProperties(childSegment, "segcode", "nodeTypeRef", "description", "ignoreUnmappedFields", "truncatable");
+                mapBeanProperties(childSegment, "name", "xmltag", "minOccurs", "maxOccurs");
+                addDocumentation(childSegment);
 
-                addFields(((Segment)childSegment).getFields(), segmentEl);
+                addFields(((Segment)childSegment).getFields());
             } else {
-                segmentEl = newElement("segmentGroup", parentSegment, childSegment);
+                elementName = "segmentGroup";
+                startElement(elementName);
+                mapBeanProperties(childSegment, "name", "xmltag", "minOccurs", "maxOccurs");
+                addDocumentation(childSegment);
             }
 
-            mapBeanProperties(childSegment, segmentEl, "name", "xmltag", "minOccurs", "maxOccurs");
-
-            addChildSegments(childSegment, segmentEl);
+            addChildSegments(childSegment);
+            endElement(elementName);
         }
     }
 
-    private void addFields(List<Field> fields, Element segmentEl) {
+    private void addFields(List<Field> fields) throws IOException {
         for(Field field : fields) {
-            Element fieldEl = newElement("field", segmentEl, field);
-
-            mapBeanProperties(field, fieldEl, "name", "xmltag", "nodeTypeRef", "truncatable", "maxLength", "minLength", "required", "dataType", "dataTypeParametersString|dataTypeParameters");
-            addComponents(field.getComponents(), fieldEl);
+            startElement("field");
+            mapBeanProperties(field, "name", "xmltag", "nodeTypeRef", "truncatable", "maxLength", "minLength", "required", "dataType", "dataTypeParametersString|dataTypeParameters");
+            addDocumentation(field);
+            addComponents(field.getComponents());
+            endElement("field");
         }
     }
 
-    private void addComponents(List<Component> components, Element fieldEl) {
+    private void addComponents(List<Component> components) throws IOException {
         for(Component component : components) {
-            Element componentEl = newElement("component", fieldEl, component);
-
-            mapBeanProperties(component, componentEl, "name", "xmltag", "nodeTypeRef", "truncatable", "maxLength", "minLength", "required", "dataType", "dataTypeParametersString|dataTypeParameters");
-            addSubComponents(component.getSubComponents(), componentEl);
+            startElement("component");
+            mapBeanProperties(component, "name", "xmltag", "nodeTypeRef", "truncatable", "maxLength", "minLength", "required", "dataType", "dataTypeParametersString|dataTypeParameters");
+            addDocumentation(component);
+            addSubComponents(component.getSubComponents());
+            endElement("component");
         }
     }
 
-    private void addSubComponents(List<SubComponent> subComponents, Element componentEl) {
+    private void addSubComponents(List<SubComponent> subComponents) throws IOException {
         for(SubComponent subComponent : subComponents) {
-            Element subComponentEl = newElement("sub-component", componentEl, subComponent);
-
-            mapBeanProperties(subComponent, subComponentEl, "name", "xmltag", "nodeTypeRef", "maxLength", "minLength", "required", "dataType", "dataTypeParametersString|dataTypeParameters");
+            startElement("sub-component");
+            mapBeanProperties(subComponent, "name", "xmltag", "nodeTypeRef", "maxLength", "minLength", "required", "dataType", "dataTypeParametersString|dataTypeParameters");
+            addDocumentation(subComponent);
+            endElement("sub-component");
         }
     }
 
-    private void mapBeanProperties(Object bean, Element target, String... properties) {
+    private void mapBeanProperties(Object bean, String... properties) throws IOException {
         for(String property : properties) {
             String[] propertyTokens = property.split("\\|");
             String propertyName;
@@ -212,7 +247,7 @@ public class EdimapWriter {
             Object value = getBeanValue(bean, propertyName);
 
             if(value != null) {
-                target.setAttribute(attributeName, XmlUtil.removeEntities(value.toString()));
+                writeAttribute(attributeName, XmlUtil.removeEntities(value.toString()));
             }
         }
     }
@@ -237,20 +272,93 @@ public class EdimapWriter {
         return null;
     }
 
-    private Element newElement(String name, Node parent) {
-        Element element =  doc.createElementNS(NS, "medi:" + name);
-        parent.appendChild(element);
-        return element;
+    private void addDocumentation(MappingNode mappingNode) throws IOException {
+        if(mappingNode != null && mappingNode.getDocumentation() != null) {
+            startElement("documentation");
+            closeStartTag();
+            writeEscaped(mappingNode.getDocumentation(), false);
+            writer.write("</" + NS_PREFIX + "documentation>");
+            depth--;
+        }
     }
 
-    private Element newElement(String name, Node parent, MappingNode mappingNode) {
-        Element element = newElement(name, parent);
+    private void startElement(String name) throws IOException {
+        closeStartTag();
+        newLine();
+        writer.write('<');
+        writer.write(NS_PREFIX);
+        writer.write(name);
+        depth++;
+        startTagOpen = true;
+    }
 
-        if(mappingNode != null && mappingNode.getDocumentation() != null) {
-            Element documentation = newElement("documentation", element);
-            documentation.appendChild(doc.createTextNode(mappingNode.getDocumentation()));
+    private void writeAttribute(String name, String value) throws IOException {
+        writer.write(' ');
+        writer.write(name);
+        writer.write("=\"");
+        writeEscaped(value, true);
+        writer.write('"');
+    }
+
+    private void endElement(String name) throws IOException {
+        depth--;
+        if(startTagOpen) {
+            writer.write("/>");
+            startTagOpen = false;
+        } else {
+            newLine();
+            writer.write("</");
+            writer.write(NS_PREFIX);
+            writer.write(name);
+            writer.write('>');
         }
+    }
 
-        return element;
+    private void closeStartTag() throws IOException {
+        if(startTagOpen) {
+            writer.write('>');
+            startTagOpen = false;
+        }
+    }
+
+    private void newLine() throws IOException {
+        writer.write('\n');
+        for(int i = 0; i < depth; i++) {
+            writer.write(INDENT);
+        }
+    }
+
+    private void writeEscaped(String value, boolean attribute) throws IOException {
+        int length = value.length();
+
+        for(int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            switch(c) {
+                case '&':
+                    writer.write("&amp;");
+                    break;
+                case '<':
+                    writer.write("&lt;");
+                    break;
+                case '>':
+                    writer.write("&gt;");
+                    break;
+                case '"':
+                    writer.write(attribute ? "&quot;" : "\"");
+                    break;
+                case '\n':
+                    writer.write(attribute ? "&#10;" : "\n");
+                    break;
+                case '\r':
+                    writer.write("&#13;");
+                    break;
+                case '\t':
+                    writer.write(attribute ? "&#9;" : "\t");
+                    break;
+                default:
+                    writer.write(c);
+            }
+        }
     }
 }
@@ -0,0 +1,138 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.registry.DefaultMappingsRegistry;
+import org.smooks.edi.edisax.unedifact.UNEdifactInterchangeParser;
+import org.smooks.edi.edisax.unedifact.handlers.r41.UNEdifact41ControlBlockHandlerFactory;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class EDIParserPoolTest {
+
+    @Test
+    public void test_borrow_return() {
+        EDIParserPool pool = new EDIParserPool(1);
+        EDIParser parser1 = pool.borrowParser();
+        EDIParser parser2 = pool.borrowParser();
+
+        parser1.setFeature(EDIParser.FEATURE_COLLECT_ERRORS, true);
+        parser1.setContentHandler(new MockContentHandler());
+        pool.returnParser(parser1);
+        pool.returnParser(parser2);
+
+        // Only one idle parser is retained, and it's reset...
+        assertEquals(1, pool.getIdleCount());
+        assertSame(parser1, pool.borrowParser());
+        assertFalse(parser1.getFeature(EDIParser.FEATURE_COLLECT_ERRORS));
+        assertTrue(parser1.getFeature(EDIParser.FEATURE_IGNORE_EMPTY_NODES));
+        assertNull(parser1.getContentHandler());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void test_interchange_reuse() throws IOException, SAXException {
+        String interchange = "UNB+UNOA:1+Acme:1+AcmeRecipient:1+20051107:1159+6002'" +
+                "UNH+0001+MSG2:S:93A:UN'BBBB+f1+f2+f3'UNT+3+0001'" +
+                "UNH+0002+MSG2:S:93A:UN'BBBB+f1+f2+f3'UNT+3+0002'" +
+                "UNH+0003+MSG2:S:93A:UN'BBBB+f1+f2+f3'UNT+3+0003'" +
+                "UNZ+3+6002'";
+        EdifactModel model = EDIParser.parseMappingModel(getClass().getResourceAsStream("unedifact/MSG2-model.xml"));
+        EDIParserPool pool = new EDIParserPool();
+        MockContentHandler contentHandler = new MockContentHandler();
+
+        UNEdifactInterchangeParser parser = new UNEdifactInterchangeParser();
+        parser.setMappingsRegistry(new DefaultMappingsRegistry(model));
+        parser.setParserPool(pool);
+        parser.setContentHandler(contentHandler);
+        parser.parse(new InputSource(new ByteArrayInputStream(interchange.getBytes(StandardCharsets.US_ASCII))));
+
+        // The same parser instance is used for all messages...
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(3, contentHandler.xmlMapping.toString().split("<segBB").length - 1);
+    }
+
+    @Test
+    public void test_release_on_failure() throws IOException, SAXException {
+        String interchange = "UNB+UNOA:1+Acme:1+AcmeRecipient:1+20051107:1159+6002'" +
+                "UNH+0001+MSG2:S:93A:UN'BBBB+f1+f2+f3+f4'UNT+3+0001'" +
+                "UNZ+1+6002'";
+        EdifactModel model = EDIParser.parseMappingModel(getClass().getResourceAsStream("unedifact/MSG2-model.xml"));
+        EDIParserPool pool = new EDIParserPool();
+
+        UNEdifactInterchangeParser parser = new UNEdifactInterchangeParser();
+        parser.setMappingsRegistry(new DefaultMappingsRegistry(model));
+        parser.setParserPool(pool);
+        parser.setContentHandler(new MockContentHandler());
+        try {
+            parser.parse(new InputSource(new ByteArrayInputStream(interchange.getBytes(StandardCharsets.US_ASCII))));
+            fail("Expected EDIParseException.");
+        } catch (EDIParseException e) {
+            // Expected...
+        }
+
+        // The message parser is returned to the pool, even though the message failed...
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void test_shared_handler_factory() throws SAXException {
+        UNEdifact41ControlBlockHandlerFactory factory = UNEdifact41ControlBlockHandlerFactory.getInstance(null);
+
+        assertSame(factory, UNEdifact41ControlBlockHandlerFactory.getInstance(null));
+        assertSame(factory.getControlBlockHandler("UNH"), factory.getControlBlockHandler("UNH"));
+    }
+}
@@ -43,17 +43,24 @@
 package org.smooks.edi.edisax;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.smooks.edi.edisax.model.EDIConfigDigester;
 import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.model.internal.CodeList;
+import org.smooks.edi.edisax.model.internal.Component;
+import org.smooks.edi.edisax.model.internal.Field;
 import org.smooks.edi.edisax.model.internal.Segment;
 import org.smooks.edi.edisax.model.internal.SegmentGroup;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 /**
@@ -65,14 +72,14 @@ public class EDIParserTest extends AbstractEDIParserTestCase {
     public void test_validation() throws IOException, SAXException {
         // Valid doc...
         try {
-            EDIConfigDigester.digestConfig(getClass().getResourceAsStream("edi-mapping_01.xml"));
+            new EDIConfigDigester().setValidate(true).digestEDIConfig(getClass().getResourceAsStream("edi-mapping_01.xml"));
         } catch (EDIConfigurationException e) {
             fail("Digesting edi-mapping_01.xml should not fail.");
         }
 
         // Invalid doc...
         try {
-            EDIConfigDigester.digestConfig(getClass().getResourceAsStream("edi-mapping_02.xml"));
+            new EDIConfigDigester().setValidate(true).digestEDIConfig(getClass().getResourceAsStream("edi-mapping_02.xml"));
             fail("Expected SAXException");
         } catch (SAXException e) {
             // OK
@@ -258,4 +265,134 @@ public class EDIParserTest extends AbstractEDIParserTestCase {
 
     }
 
+    @Test
+    public void test_validateCodeLists() throws IOException, SAXException, EDIConfigurationException {
+        EdifactModel model = EDIParser.parseMappingModel(getClass().getResourceAsStream("test01/edi-to-xml-mapping.xml"));
+        Field field = ((Segment) model.getEdimap().getSegments().getSegments().get(0)).getFields().get(0);
+        CodeList codeList = new CodeList();
+        codeList.setCodes(Arrays.asList("1", "3"));
+        field.setCodeList(codeList);
+
+        // Code lists are not validated by default...
+        EDIParser parser = new EDIParser();
+        parser.setContentHandler(new MockContentHandler());
+        parser.setMappingModel(model);
+        parser.parse(new InputSource(getClass().getResourceAsStream("test01/edi-input.txt")));
+
+        parser = new EDIParser();
+        parser.setFeature(EDIParser.FEATURE_VALIDATE_CODE_LISTS, true);
+        parser.setContentHandler(new MockContentHandler());
+        parser.setMappingModel(model);
+        parser.parse(new InputSource(getClass().getResourceAsStream("test01/edi-input.txt")));
+
+        codeList.setCodes(Arrays.asList("2", "3"));
+        parser = new EDIParser();
+        parser.setFeature(EDIParser.FEATURE_VALIDATE_CODE_LISTS, true);
+        parser.setContentHandler(new MockContentHandler());
+        parser.setMappingModel(model);
+        try {
+            parser.parse(new InputSource(getClass().getResourceAsStream("test01/edi-input.txt")));
+            fail("Expected EDIParseException.");
+        } catch (EDIParseException e) {
+            assertTrue(e.getMessage().contains("Value [1] is not a code in the code list of [field-1]"));
+            assertEquals("field-1", e.getErrorNode().getXmltag());
+        }
+    }
+
+    @Test
+    public void test_validateTypes() throws IOException, SAXException, EDIConfigurationException {
+        EdifactModel model = EDIParser.parseMappingModel(getClass().getResourceAsStream("test01/edi-to-xml-mapping.xml"));
+        List<Field> fields = ((Segment) model.getEdimap().getSegments().getSegments().get(0)).getFields();
+        fields.get(0).setDataType("a");
+        fields.get(1).setDataType("n");
+
+        EDIParser parser = new EDIParser();
+        parser.setFeature(EDIParser.FEATURE_VALIDATE, true);
+        parser.setContentHandler(new MockContentHandler());
+        parser.setMappingModel(model);
+        parser.parse(new InputSource(getClass().getResourceAsStream("test01/edi-input.txt")));
+
+        EDIParseErrors parseErrors = parser.getParseErrors();
+        assertEquals(1, parseErrors.size());
+        assertEquals(EDIErrorCode.INVALID_TYPE, parseErrors.get(0).getErrorCode());
+        assertEquals(fields.get(0), parseErrors.get(0).getNode());
+        assertEquals("1", parseErrors.get(0).getValue());
+        assertEquals(0, parseErrors.get(0).getOffset());
+        assertEquals(1, parseErrors.get(0).getSegmentNumber());
+        assertEquals("Value [1] is not a valid Alphabetic value (at offset 0). Node [field-1]. Segment number 1.", parseErrors.get(0).getMessage());
+    }
+
+    @Test
+    public void test_collectErrors() throws IOException, SAXException, EDIConfigurationException {
+        EdifactModel model = EDIParser.parseMappingModel(getClass().getResourceAsStream("test01/edi-to-xml-mapping.xml"));
+        List<Field> fields = ((Segment) model.getEdimap().getSegments().getSegments().get(0)).getFields();
+        fields.get(1).setMaxLength(0);
+        fields.get(2).setRequired(true);
+        fields.remove(4);
+
+        EDIParser parser = new EDIParser();
+        parser.setFeature(EDIParser.FEATURE_VALIDATE, true);
+        parser.setContentHandler(new MockContentHandler());
+        parser.setMappingModel(model);
+        try {
+            parser.parse(new InputSource(getClass().getResourceAsStream("test01/edi-input.txt")));
+            fail("Expected EDIParseException.");
+        } catch (EDIParseException e) {
+            assertEquals(0, parser.getParseErrors().size());
+        }
+
+        parser.setFeature(EDIParser.FEATURE_COLLECT_ERRORS, true);
+        MockContentHandler contentHandler = new MockContentHandler();
+        parser.setContentHandler(contentHandler);
+        parser.parse(new InputSource(getClass().getResourceAsStream("test01/edi-input.txt")));
+
+        EDIParseErrors parseErrors = parser.getParseErrors();
+        assertEquals(3, parseErrors.size());
+        assertEquals(EDIErrorCode.TOO_MANY_CONSTITUENTS, parseErrors.get(0).getErrorCode());
+        assertEquals("message-seg", parseErrors.get(0).getNode().getXmltag());
+        assertEquals(4, parseErrors.get(0).getOffset());
+        assertEquals(EDIErrorCode.VALUE_TOO_LONG, parseErrors.get(1).getErrorCode());
+        assertEquals(fields.get(1), parseErrors.get(1).getNode());
+        assertEquals(EDIErrorCode.MISSING_VALUE, parseErrors.get(2).getErrorCode());
+        assertEquals(fields.get(2), parseErrors.get(2).getNode());
+        assertEquals("Unexpected constituent at position 5. Node [message-seg]. Segment number 1.", parseErrors.get(0).getMessage());
+        assertTrue(contentHandler.xmlMapping.toString().contains("<field-4>4</field-4>"));
+
+        EDIParseError firstError = parseErrors.get(0);
+        parser.setContentHandler(new MockContentHandler());
+        parser.parse(new InputSource(getClass().getResourceAsStream("test01/edi-input.txt")));
+        assertEquals(3, parseErrors.size());
+        assertTrue(firstError == parseErrors.get(0));
+    }
+
+    @Test
+    public void test_tooManyComponents_truncatable() throws IOException, SAXException, EDIConfigurationException {
+        EdifactModel model = EDIParser.parseMappingModel(getClass().getResourceAsStream("test01/edi-to-xml-mapping.xml"));
+        Field field = ((Segment) model.getEdimap().getSegments().getSegments().get(0)).getFields().get(0);
+        field.setTruncatable(true);
+        field.addComponent(new Component("comp-1", field.getNamespace(), false));
+        field.addComponent(new Component("comp-2", field.getNamespace(), false));
+
+        EDIParser parser = new EDIParser();
+        parser.setContentHandler(new MockContentHandler());
+        parser.setMappingModel(model);
+        try {
+            parser.parse(new InputSource(new StringReader("SEG*1^2^3*2**4*5")));
+            fail("Expected EDIParseException.");
+        } catch (EDIParseException e) {
+            assertTrue(e.getMessage().contains("expected to contain 2 components.  Actually contains 3 components."), e.getMessage());
+        }
+
+        parser.setFeature(EDIParser.FEATURE_COLLECT_ERRORS, true);
+        MockContentHandler contentHandler = new MockContentHandler();
+        parser.setContentHandler(contentHandler);
+        parser.parse(new InputSource(new StringReader("SEG*1^2^3*2**4*5")));
+
+        EDIParseErrors parseErrors = parser.getParseErrors();
+        assertEquals(1, parseErrors.size());
+        assertEquals(EDIErrorCode.TOO_MANY_CONSTITUENTS, parseErrors.get(0).getErrorCode());
+        assertEquals(field, parseErrors.get(0).getNode());
+        assertEquals(2, parseErrors.get(0).getOffset());
+        assertTrue(contentHandler.xmlMapping.toString().contains("<comp-2>2</comp-2>"));
+    }
 }
@@ -99,6 +99,29 @@ public class EDIUtilsTest {
 
     }
 
+    @Test
+    public void test_split_delimiters() {
+        Delimiters delimiters = new Delimiters().setSegment("'").setField("+").setFieldRepeat("*").setComponent(":").setSubComponent("~").setEscape("?");
+        String[] values = {"", "+", "?", "a", "first?::second??:third", "ATS+hep:iee+hai??+kai=haikai+slut", "a?+b+c?", "a+?", "??+", "?a:b~c*d", "::x::", "a:b?:c?~d"};
+        byte[] delimiterClasses = {Delimiters.CHAR_CLASS_FIELD, Delimiters.CHAR_CLASS_FIELD_REPEAT, Delimiters.CHAR_CLASS_COMPONENT, Delimiters.CHAR_CLASS_SUB_COMPONENT};
+        String[] delimiterStrings = {"+", "*", ":", "~"};
+
+        assertTrue(EDIUtils.split(null, delimiters, Delimiters.CHAR_CLASS_FIELD) == null);
+        for (String value : values) {
+            for (int i = 0; i < delimiterClasses.length; i++) {
+                String[] test = EDIUtils.split(value, delimiters, delimiterClasses[i]);
+                String[] expected = EDIUtils.split(value, delimiterStrings[i], "?");
+                assertTrue(equal(test, expected), "Result is [" + output(test) + "] should be [" + output(expected) + "] ");
+            }
+        }
+
+        // Multi-character delimiters...
+        delimiters.setField("+#");
+        String[] test = EDIUtils.split("ATS+#hep:iee+#hai??+#kai", delimiters, Delimiters.CHAR_CLASS_FIELD);
+        String[] expected = new String[]{"ATS", "hep:iee", "hai??", "kai"};
+        assertTrue(equal(test, expected), "Result is [" + output(test) + "] should be [" + output(expected) + "] ");
+    }
+
     @Test
     public void test_without_escape() {
         String[] result = EDIUtils.split(null, "*", null);
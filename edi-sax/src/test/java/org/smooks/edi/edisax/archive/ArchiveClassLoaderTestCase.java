@@ -76,4 +76,21 @@ public class ArchiveClassLoaderTestCase {
         String hiString = StreamUtils.readStreamAsString(classLoader.getResourceAsStream("my/resource.txt"), "UTF-8");
         assertEquals("Hi!!", hiString);
     }
+
+	@Test
+    public void test_inMemory() throws IOException, ClassNotFoundException {
+        Archive archive = new Archive("testarchive", Archive.StorageMode.IN_MEMORY);
+
+        archive.addEntry("//my/resource.txt", new ByteArrayInputStream("Hi!!".getBytes()));
+        archive.addEntry(Archive.class);
+
+        ArchiveClassLoader classLoader = new ArchiveClassLoader(archive);
+
+        Class<?> clazzInst = classLoader.loadClass(Archive.class.getName());
+        assertNotSame(Archive.class, clazzInst);
+        assertEquals(Archive.class.getName(), clazzInst.getName());
+
+        assertEquals("Hi!!", StreamUtils.readStreamAsString(classLoader.getResourceAsStream("my/resource.txt"), "UTF-8"));
+        assertEquals("Hi!!", StreamUtils.readStreamAsString(classLoader.getResource("my/resource.txt").openStream(), "UTF-8"));
+    }
 }
@@ -56,6 +56,8 @@ import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -191,4 +193,69 @@ public class ArchiveTestCase {
         archive1.addEntry("archive1/resource.txt", new ByteArrayInputStream("Hi!!".getBytes()));
         assertTrue(archive1.contains("archive1/resource.txt"));
     }
+
+	@Test
+    public void test_inMemory() throws IOException {
+        Archive archive1 = new Archive("testarchive1", Archive.StorageMode.IN_MEMORY);
+
+        archive1.addEntry("//my/resource.txt", new ByteArrayInputStream("Hi!!".getBytes()));
+        archive1.addEntry("my/folder");
+        archive1.addEntry(Archive.class);
+
+        assertEquals("Hi!!", new String(archive1.getEntryBytes("my/resource.txt")));
+        assertEquals("Hi!!", StreamUtils.readStreamAsString(archive1.getEntryURL("my/resource.txt").openStream(), "UTF-8"));
+        assertNull(archive1.getEntryBytes("my/folder/"));
+        assertNull(archive1.getEntryURL("my/missing.txt"));
+
+        Archive archive2 = new Archive(archive1.toInputStream(), Archive.StorageMode.IN_MEMORY);
+
+        assertEquals("my/resource.txt", archive2.getEntryName(0));
+        assertEquals("my/folder/", archive2.getEntryName(1));
+        assertEquals("org/smooks/edi/edisax/archive/Archive.class", archive2.getEntryName(2));
+        assertEquals("Hi!!", new String(archive2.getEntryValue(0)));
+
+        // Asking for a File spills the entry to disk...
+        File entryFile = archive2.getEntry("my/resource.txt");
+        assertTrue(entryFile.isFile());
+        assertEquals("Hi!!", new String(archive2.getEntryBytes("my/resource.txt")));
+    }
+
+	@Test
+    public void test_inMemory_named() throws IOException {
+        Archive archive1 = new Archive("testarchive1", Archive.StorageMode.IN_MEMORY);
+        archive1.addEntry("my/resource.txt", new ByteArrayInputStream("Hi!!".getBytes()));
+
+        Archive archive2 = new Archive("testarchive2", archive1.toInputStream(), Archive.StorageMode.IN_MEMORY);
+
+        assertEquals("testarchive2", archive2.getArchiveName());
+        assertEquals(Archive.StorageMode.IN_MEMORY, archive2.getStorageMode());
+        assertEquals("archive", archive2.getEntryURL("my/resource.txt").getProtocol());
+    }
+
+	@Test
+    public void test_inMemory_entryBytes_are_copies() throws IOException {
+        Archive archive = new Archive(Archive.StorageMode.IN_MEMORY);
+        archive.addEntry("my/resource.txt", new ByteArrayInputStream("Hi!!".getBytes()));
+
+        archive.getEntryBytes("my/resource.txt")[0] = 'X';
+        archive.getEntryValue(0)[1] = 'X';
+
+        assertEquals("Hi!!", new String(archive.getEntryBytes("my/resource.txt")));
+    }
+
+	@Test
+    public void test_inMemory_getEntries_is_cached() throws IOException {
+        Archive archive = new Archive(Archive.StorageMode.IN_MEMORY);
+        archive.addEntry("my/resource1.txt", new ByteArrayInputStream("Hi!!".getBytes()));
+
+        assertSame(archive.getEntries(), archive.getEntries());
+
+        File entryFile = archive.getEntries().get("my/resource1.txt");
+        archive.addEntry("my/resource2.txt", new ByteArrayInputStream("Bye!!".getBytes()));
+
+        assertEquals(2, archive.getEntries().size());
+        assertSame(entryFile, archive.getEntries().get("my/resource1.txt"));
+        archive.removeEntry("my/resource1.txt");
+        assertEquals(1, archive.getEntries().size());
+    }
 }
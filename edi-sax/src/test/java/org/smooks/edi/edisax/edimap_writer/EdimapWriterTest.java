@@ -48,10 +48,14 @@ import org.smooks.edi.edisax.model.internal.Edimap;
 import org.xml.sax.SAXException;
 import org.xmlunit.builder.DiffBuilder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
@@ -73,4 +77,23 @@ public class EdimapWriterTest {
 
         assertFalse(DiffBuilder.compare(getClass().getResourceAsStream(edimapfile)).ignoreWhitespace().withTest(result.toString()).build().hasDifferences());
     }
+
+    @Test
+    public void test_encoding() throws IOException, SAXException {
+        Edimap edimap = EDIConfigDigester.digestConfig(getClass().getResourceAsStream("edimap-01.xml"));
+
+        StringWriter stringWriter = new StringWriter();
+        edimap.write(stringWriter);
+        assertTrue(stringWriter.toString().startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"));
+
+        stringWriter = new StringWriter();
+        edimap.write(stringWriter, "UTF-16");
+        assertTrue(stringWriter.toString().startsWith("<?xml version=\"1.0\" encoding=\"UTF-16\"?>"));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        edimap.write(new OutputStreamWriter(outputStream, StandardCharsets.ISO_8859_1));
+        String result = new String(outputStream.toByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(result.startsWith("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>"));
+        assertFalse(DiffBuilder.compare(getClass().getResourceAsStream("edimap-01.xml")).ignoreWhitespace().withTest(result).build().hasDifferences());
+    }
 }
@@ -0,0 +1,112 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.model.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CodeListTest {
+
+    @Test
+    public void test_contains() {
+        CodeList codeList = new CodeList();
+        codeList.setCodes(Arrays.asList("1", "35", "36", "ZZZ", "35"));
+
+        assertTrue(codeList.contains("1"));
+        assertTrue(codeList.contains("35"));
+        assertTrue(codeList.contains("ZZZ"));
+        assertTrue(codeList.contains(new StringBuilder("36")));
+        assertFalse(codeList.contains(""));
+        assertFalse(codeList.contains("3"));
+        assertFalse(codeList.contains("350"));
+        assertFalse(codeList.contains("ZZ"));
+    }
+
+    @Test
+    public void test_contains_large() {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            codes.add("C" + i);
+        }
+        CodeList codeList = new CodeList();
+        codeList.setCodes(codes);
+
+        for (String code : codes) {
+            assertTrue(codeList.contains(code));
+        }
+        assertFalse(codeList.contains("C5000"));
+        assertFalse(codeList.contains("c1"));
+    }
+
+    @Test
+    public void test_contains_very_large() {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            codes.add(Integer.toString(i, 36).toUpperCase());
+        }
+        CodeList codeList = new CodeList();
+        codeList.setCodes(codes);
+
+        for (String code : codes) {
+            assertTrue(codeList.contains(code));
+        }
+        assertFalse(codeList.contains(Integer.toString(100000, 36).toUpperCase()));
+        assertFalse(codeList.contains("a"));
+    }
+
+    @Test
+    public void test_setCodes_recompiles() {
+        CodeList codeList = new CodeList();
+        assertFalse(codeList.contains("A"));
+
+        codeList.setCodes(Arrays.asList("A", "B"));
+        assertTrue(codeList.contains("A"));
+        assertFalse(codeList.contains("C"));
+    }
+}
@@ -47,6 +47,9 @@ import org.junit.jupiter.api.Test;
 import org.smooks.edi.edisax.unedifact.UNEdifactInterchangeParser;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
@@ -62,4 +65,46 @@ public class DelimitersTest {
         assertEquals("hello world??", delimiters.escape("hello world?"));
         assertEquals("hello ?+ world??", delimiters.escape("hello + world?"));
     }
+
+    @Test
+    public void test_charClass() {
+        Delimiters delimiters = new Delimiters().setSegment("'!$").setField("+").setComponent(":").setSubComponent("~").setEscape("?");
+
+        assertEquals('\'', delimiters.getSegmentChar());
+        assertEquals('+', delimiters.getFieldChar());
+        assertEquals(Delimiters.NO_CHAR, delimiters.getFieldRepeatChar());
+        assertTrue(delimiters.ignoreCRLF());
+        assertEquals(Delimiters.CHAR_CLASS_SEGMENT, delimiters.getCharClass('\''));
+        assertEquals(Delimiters.CHAR_CLASS_FIELD, delimiters.getCharClass('+'));
+        assertEquals(Delimiters.CHAR_CLASS_COMPONENT, delimiters.getCharClass(':'));
+        assertEquals(Delimiters.CHAR_CLASS_SUB_COMPONENT, delimiters.getCharClass('~'));
+        assertEquals(Delimiters.CHAR_CLASS_ESCAPE, delimiters.getCharClass('?'));
+        assertEquals(Delimiters.CHAR_CLASS_CR_LF, delimiters.getCharClass('\n'));
+        assertEquals(Delimiters.CHAR_CLASS_NONE, delimiters.getCharClass('a'));
+        assertEquals(Delimiters.CHAR_CLASS_NONE, delimiters.getCharClass('\u20AC'));
+
+        // Changing a delimiter reclassifies...
+        delimiters.setSegment("\n");
+        assertEquals(Delimiters.CHAR_CLASS_SEGMENT, delimiters.getCharClass('\n'));
+        assertEquals(Delimiters.CHAR_CLASS_NONE, delimiters.getCharClass('\''));
+        assertFalse(delimiters.ignoreCRLF());
+
+        delimiters.setField("\u20AC");
+        assertEquals(Delimiters.CHAR_CLASS_FIELD, delimiters.getCharClass('\u20AC'));
+        assertEquals(Delimiters.CHAR_CLASS_NONE, delimiters.getCharClass('+'));
+    }
+
+    @Test
+    public void test_freeze() {
+        final Delimiters delimiters = new Delimiters().setSegment("'").setField("+").freeze();
+
+        assertTrue(delimiters.isFrozen());
+        assertThrows(IllegalStateException.class, () -> delimiters.setField("*"));
+
+        Delimiters clone = (Delimiters) delimiters.clone();
+        assertFalse(clone.isFrozen());
+        clone.setField("*");
+        assertEquals(Delimiters.CHAR_CLASS_FIELD, clone.getCharClass('*'));
+        assertEquals(Delimiters.CHAR_CLASS_SEGMENT, clone.getCharClass('\''));
+    }
 }
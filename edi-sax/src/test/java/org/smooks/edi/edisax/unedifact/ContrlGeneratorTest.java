@@ -0,0 +1,215 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.unedifact;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.EDIParseException;
+import org.smooks.edi.edisax.EDIParser;
+import org.smooks.edi.edisax.MockContentHandler;
+import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.registry.DefaultMappingsRegistry;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.GregorianCalendar;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class ContrlGeneratorTest {
+
+    private static final String INTERCHANGE = "UNB+UNOA:3+Acme:1+AcmeRecipient:1+20051107:1159+6002'" +
+            "UNG+G1+G1 Division+RecipDivision2++groupref11111'" +
+            "UNH+0001+MSG2:S:93A:UN'" +
+            "BBBB+f1+f2+f3'" +
+            "UNT+3+0001'" +
+            "UNH+0002+MSG2:S:93A:UN'" +
+            "BBBB+f1+f2+f3+f4'" +
+            "UNT+3+0002'" +
+            "UNE+2+groupref11111'" +
+            "UNZ+1+6002'";
+
+    @Test
+    public void test_accepted() throws IOException, SAXException {
+        ContrlGenerator contrlGenerator = new ContrlGenerator();
+        parse(INTERCHANGE.replace("+f4", ""), contrlGenerator, true);
+
+        StringWriter writer = new StringWriter();
+        contrlGenerator.writeMessage(writer, "1");
+
+        assertEquals(2, contrlGenerator.getMessageCount());
+        assertEquals(0, contrlGenerator.getRejectedMessageCount());
+        assertEquals("UNH+1+CONTRL:D:3:UN'UCI+6002+Acme:1+AcmeRecipient:1+7'UNT+3+1'", writer.toString());
+    }
+
+    @Test
+    public void test_rejected() throws IOException, SAXException {
+        ContrlGenerator contrlGenerator = new ContrlGenerator();
+        parse(INTERCHANGE, contrlGenerator, true);
+
+        StringWriter writer = new StringWriter();
+        contrlGenerator.writeInterchange(writer, "C1", new GregorianCalendar(2020, 0, 31, 13, 45).getTime());
+
+        assertEquals(2, contrlGenerator.getMessageCount());
+        assertEquals(1, contrlGenerator.getRejectedMessageCount());
+        assertEquals("UNB+UNOA:3+AcmeRecipient:1+Acme:1+200131:1345+C1'" +
+                "UNH+1+CONTRL:D:3:UN'" +
+                "UCI+6002+Acme:1+AcmeRecipient:1+7'" +
+                "UCF+groupref11111+G1 Division+RecipDivision2+7'" +
+                "UCM+0002+MSG2:S:93A:UN+4'" +
+                "UCS+2'" +
+                "UCD+16+4'" +
+                "UNT+7+1'" +
+                "UNZ+1+C1'", writer.toString());
+    }
+
+    @Test
+    public void test_invalid_type_warning() throws IOException, SAXException {
+        String interchange = INTERCHANGE.replace("+f4", "").replace("BBBB+f1", "BBBB+1x");
+
+        ContrlGenerator contrlGenerator = new ContrlGenerator();
+        parse(interchange, "MSG2-numeric-model.xml", contrlGenerator, false);
+        assertEquals(2, contrlGenerator.getMessageCount());
+        assertEquals(0, contrlGenerator.getRejectedMessageCount());
+
+        contrlGenerator = new ContrlGenerator();
+        parse(interchange, "MSG2-numeric-model.xml", contrlGenerator, true);
+        assertEquals(2, contrlGenerator.getMessageCount());
+        assertEquals(2, contrlGenerator.getRejectedMessageCount());
+
+        StringWriter writer = new StringWriter();
+        contrlGenerator.writeMessage(writer, "1");
+        assertTrue(writer.toString().contains("UCM+0001+MSG2:S:93A:UN+4'UCS+2'UCD+12+1'"), writer.toString());
+    }
+
+    @Test
+    public void test_interchange_rejected() throws IOException, SAXException {
+        ContrlGenerator contrlGenerator = new ContrlGenerator();
+        try {
+            parse(INTERCHANGE, contrlGenerator, false);
+            fail("Expected EDIParseException.");
+        } catch (EDIParseException e) {
+            // Expected...
+        }
+
+        StringWriter writer = new StringWriter();
+        contrlGenerator.writeMessage(writer, "1");
+
+        assertEquals(ContrlGenerator.ACTION_REJECTED, contrlGenerator.getInterchangeAction());
+        assertEquals("UNH+1+CONTRL:D:3:UN'" +
+                "UCI+6002+Acme:1+AcmeRecipient:1+4'" +
+                "UCF+groupref11111+G1 Division+RecipDivision2+7'" +
+                "UCM+0002+MSG2:S:93A:UN+4'" +
+                "UNT+5+1'", writer.toString());
+    }
+
+    @Test
+    public void test_escaped_references() throws IOException, SAXException {
+        ContrlGenerator contrlGenerator = new ContrlGenerator();
+        parse(INTERCHANGE.replace("+f4", "").replace("Acme:1", "Ac?+me?:x:1").replace("AcmeRecipient:1", "Acme?'Recipient:1").replace("6002", "60?:02"), contrlGenerator, true);
+
+        StringWriter writer = new StringWriter();
+        contrlGenerator.writeInterchange(writer, "C?1", new GregorianCalendar(2020, 0, 31, 13, 45).getTime());
+
+        assertEquals("UNB+UNOA:3+Acme?'Recipient:1+Ac?+me?:x:1+200131:1345+C??1'" +
+                "UNH+1+CONTRL:D:3:UN'" +
+                "UCI+60?:02+Ac?+me?:x:1+Acme?'Recipient:1+7'" +
+                "UNT+3+1'" +
+                "UNZ+1+C??1'", writer.toString());
+    }
+
+    @Test
+    public void test_syntax_version_4_repetition_separator() throws IOException, SAXException {
+        ContrlGenerator contrlGenerator = new ContrlGenerator();
+        parse("UNA:+,?*'" + INTERCHANGE.replace("+f4", "").replace("UNOA:3", "UNOC:4"), contrlGenerator, true);
+
+        StringWriter writer = new StringWriter();
+        contrlGenerator.writeInterchange(writer, "C1", new GregorianCalendar(2020, 0, 31, 13, 45).getTime());
+
+        assertEquals("UNA:+,?*'" +
+                "UNB+UNOC:4+AcmeRecipient:1+Acme:1+20200131:1345+C1'" +
+                "UNH+1+CONTRL:4:1:UN'" +
+                "UCI+6002+Acme:1+AcmeRecipient:1+7'" +
+                "UNT+3+1'" +
+                "UNZ+1+C1'", writer.toString());
+
+        contrlGenerator = new ContrlGenerator();
+        parse("UNA:+,? '" + INTERCHANGE.replace("+f4", "").replace("UNOA:3", "UNOC:4"), contrlGenerator, true);
+
+        writer = new StringWriter();
+        contrlGenerator.writeInterchange(writer, "C1", new GregorianCalendar(2020, 0, 31, 13, 45).getTime());
+        assertTrue(writer.toString().startsWith("UNA:+,?*'UNB+UNOC:4+"));
+    }
+
+    @Test
+    public void test_syntax_version_3_reserved() throws IOException, SAXException {
+        ContrlGenerator contrlGenerator = new ContrlGenerator();
+        parse("UNA:+,?*'" + INTERCHANGE.replace("+f4", ""), contrlGenerator, true);
+
+        StringWriter writer = new StringWriter();
+        contrlGenerator.writeInterchange(writer, "C1", new GregorianCalendar(2020, 0, 31, 13, 45).getTime());
+        assertTrue(writer.toString().startsWith("UNA:+,? 'UNB+UNOA:3+"));
+    }
+
+    private void parse(String interchange, ContrlGenerator contrlGenerator, boolean collectErrors) throws IOException, SAXException {
+        parse(interchange, "MSG2-model.xml", contrlGenerator, collectErrors);
+    }
+
+    private void parse(String interchange, String msg2Model, ContrlGenerator contrlGenerator, boolean collectErrors) throws IOException, SAXException {
+        EdifactModel model1 = EDIParser.parseMappingModel(getClass().getResourceAsStream("MSG1-model.xml"));
+        EdifactModel model2 = EDIParser.parseMappingModel(getClass().getResourceAsStream(msg2Model));
+
+        UNEdifactInterchangeParser parser = new UNEdifactInterchangeParser();
+        parser.setMappingsRegistry(new DefaultMappingsRegistry(model1, model2));
+        parser.setFeature(EDIParser.FEATURE_VALIDATE, true);
+        parser.setFeature(EDIParser.FEATURE_COLLECT_ERRORS, collectErrors);
+        parser.setInterchangeListener(contrlGenerator);
+        parser.setContentHandler(new MockContentHandler());
+        parser.parse(new InputSource(new ByteArrayInputStream(interchange.getBytes(StandardCharsets.US_ASCII))));
+    }
+}
@@ -0,0 +1,196 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.unedifact;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.EDIErrorCode;
+import org.smooks.edi.edisax.EDIParseErrors;
+import org.smooks.edi.edisax.EDIParseException;
+import org.smooks.edi.edisax.EDIParser;
+import org.smooks.edi.edisax.MockContentHandler;
+import org.smooks.edi.edisax.interchange.ControlCountVerification;
+import org.smooks.edi.edisax.interchange.InterchangeListener;
+import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.registry.DefaultMappingsRegistry;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class ControlCountVerificationTest {
+
+    private static final String INTERCHANGE = "UNB+UNOA:3+Acme:1+AcmeRecipient:1+20051107:1159+6002'" +
+            "UNG+G1+G1 Division+RecipDivision2++groupref11111'" +
+            "UNH+0001+MSG2:S:93A:UN'" +
+            "BBBB+f1+f2+f3'" +
+            "UNT+3+0001'" +
+            "UNH+0002+MSG2:S:93A:UN'" +
+            "BBBB+f1+f2+f3'" +
+            "UNT+3+0002'" +
+            "UNE+2+groupref11111'" +
+            "UNZ+1+6002'";
+
+    @Test
+    public void test_valid() throws IOException, SAXException {
+        UNEdifactInterchangeParser parser = parse(INTERCHANGE, ControlCountVerification.STRICT);
+
+        assertEquals(1, parser.getInterchangeContext().getGroupCount());
+        assertEquals(2, parser.getInterchangeContext().getMessageCount());
+        assertTrue(parser.getInterchangeContext().getControlErrors().isEmpty());
+    }
+
+    @Test
+    public void test_none() throws IOException, SAXException {
+        UNEdifactInterchangeParser parser = parse(INTERCHANGE.replace("UNT+3+0002", "UNT+25+0002"), ControlCountVerification.NONE);
+
+        assertTrue(parser.getInterchangeContext().getControlErrors().isEmpty());
+    }
+
+    @Test
+    public void test_strict_segment_count() throws IOException, SAXException {
+        try {
+            parse(INTERCHANGE.replace("UNT+3+0002", "UNT+25+0002"), ControlCountVerification.STRICT);
+            fail("Expected EDIParseException.");
+        } catch (EDIParseException e) {
+            assertTrue(e.getMessage().startsWith("Segment [UNT] control count [25] does not match the number of segments read [3]."), e.getMessage());
+        }
+    }
+
+    @Test
+    public void test_strict_segment_count_does_not_map_trailer() throws IOException, SAXException {
+        MockContentHandler contentHandler = new MockContentHandler();
+        try {
+            parse(INTERCHANGE.replace("UNT+3+0002", "UNT+25+0002"), ControlCountVerification.STRICT, null, contentHandler);
+            fail("Expected EDIParseException.");
+        } catch (EDIParseException e) {
+            // Expected...
+        }
+
+        String xml = contentHandler.xmlMapping.toString();
+        assertTrue(xml.contains("<UNT>"), xml);
+        assertEquals(xml.indexOf("<UNT>"), xml.lastIndexOf("<UNT>"), xml);
+    }
+
+    @Test
+    public void test_strict_message_reference() throws IOException, SAXException {
+        try {
+            parse(INTERCHANGE.replace("UNT+3+0002", "UNT+3+0003"), ControlCountVerification.STRICT);
+            fail("Expected EDIParseException.");
+        } catch (EDIParseException e) {
+            assertTrue(e.getMessage().startsWith("Segment [UNT] control reference [0003] does not match the header reference [0002]."), e.getMessage());
+        }
+    }
+
+    @Test
+    public void test_strict_listener_notified() throws IOException, SAXException {
+        ContrlGenerator contrlGenerator = new ContrlGenerator();
+        try {
+            parse(INTERCHANGE.replace("UNT+3+0002", "UNT+25+0002"), ControlCountVerification.STRICT, contrlGenerator);
+            fail("Expected EDIParseException.");
+        } catch (EDIParseException e) {
+            // Expected...
+        }
+
+        assertEquals(2, contrlGenerator.getMessageCount());
+        assertEquals(1, contrlGenerator.getRejectedMessageCount());
+        StringWriter writer = new StringWriter();
+        contrlGenerator.writeMessage(writer, "1");
+        assertTrue(writer.toString().contains("UCM+0002+MSG2:S:93A:UN+4'UCS+3+29'"), writer.toString());
+
+        contrlGenerator = new ContrlGenerator();
+        try {
+            parse(INTERCHANGE.replace("UNZ+1+6002", "UNZ+2+6002"), ControlCountVerification.STRICT, contrlGenerator);
+            fail("Expected EDIParseException.");
+        } catch (EDIParseException e) {
+            assertTrue(e.getMessage().startsWith("Segment [UNZ] control count [2]"), e.getMessage());
+        }
+        assertEquals(2, contrlGenerator.getMessageCount());
+        assertEquals(ContrlGenerator.ACTION_ACKNOWLEDGED, contrlGenerator.getInterchangeAction());
+    }
+
+    @Test
+    public void test_report() throws IOException, SAXException {
+        String interchange = INTERCHANGE.replace("UNE+2+", "UNE+3+").replace("UNZ+1+6002", "UNZ+2+6003");
+        UNEdifactInterchangeParser parser = parse(interchange, ControlCountVerification.REPORT);
+        EDIParseErrors controlErrors = parser.getInterchangeContext().getControlErrors();
+
+        assertEquals(3, controlErrors.size());
+        assertEquals(EDIErrorCode.CONTROL_COUNT_MISMATCH, controlErrors.get(0).getErrorCode());
+        assertEquals("3", controlErrors.get(0).getValue().toString());
+        assertEquals(9, controlErrors.get(0).getSegmentNumber());
+        assertEquals(EDIErrorCode.CONTROL_COUNT_MISMATCH, controlErrors.get(1).getErrorCode());
+        assertEquals("2", controlErrors.get(1).getValue().toString());
+        assertEquals(10, controlErrors.get(1).getSegmentNumber());
+        assertEquals(EDIErrorCode.CONTROL_REFERENCE_MISMATCH, controlErrors.get(2).getErrorCode());
+        assertEquals("6003", controlErrors.get(2).getValue().toString());
+    }
+
+    private UNEdifactInterchangeParser parse(String interchange, ControlCountVerification controlCountVerification) throws IOException, SAXException {
+        return parse(interchange, controlCountVerification, null);
+    }
+
+    private UNEdifactInterchangeParser parse(String interchange, ControlCountVerification controlCountVerification, InterchangeListener interchangeListener) throws IOException, SAXException {
+        return parse(interchange, controlCountVerification, interchangeListener, new MockContentHandler());
+    }
+
+    private UNEdifactInterchangeParser parse(String interchange, ControlCountVerification controlCountVerification, InterchangeListener interchangeListener, MockContentHandler contentHandler) throws IOException, SAXException {
+        EdifactModel model1 = EDIParser.parseMappingModel(getClass().getResourceAsStream("MSG1-model.xml"));
+        EdifactModel model2 = EDIParser.parseMappingModel(getClass().getResourceAsStream("MSG2-model.xml"));
+
+        UNEdifactInterchangeParser parser = new UNEdifactInterchangeParser();
+        parser.setMappingsRegistry(new DefaultMappingsRegistry(model1, model2));
+        parser.setControlCountVerification(controlCountVerification);
+        parser.setInterchangeListener(interchangeListener);
+        parser.setContentHandler(contentHandler);
+        parser.parse(new InputSource(new ByteArrayInputStream(interchange.getBytes(StandardCharsets.US_ASCII))));
+
+        return parser;
+    }
+}
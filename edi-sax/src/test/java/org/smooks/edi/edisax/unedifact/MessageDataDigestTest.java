@@ -0,0 +1,194 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.unedifact;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.EDIConfigurationException;
+import org.smooks.edi.edisax.EDIParseErrors;
+import org.smooks.edi.edisax.EDIParser;
+import org.smooks.edi.edisax.MessageDataDigest;
+import org.smooks.edi.edisax.MockContentHandler;
+import org.smooks.edi.edisax.interchange.InterchangeListener;
+import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.model.internal.Delimiters;
+import org.smooks.edi.edisax.registry.DefaultMappingsRegistry;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class MessageDataDigestTest {
+
+    private static final String MESSAGE_1 = "UNH+0001+MSG2:S:93A:UN'BBBB+f\u00e9+f2+f3'UNT+3+0001'";
+    private static final String MESSAGE_2 = "UNH+0002+MSG2:S:93A:UN'\nBBBB+f1+f2+f3'\nUNT+3+0002'";
+    private static final String INTERCHANGE = "UNB+UNOC:3+Acme:1+AcmeRecipient:1+20051107:1159+6002'\n" +
+            MESSAGE_1 + "\n" +
+            MESSAGE_2 + "\n" +
+            "UNZ+2+6002'";
+
+    @Test
+    public void test_messageDigest() throws IOException, SAXException, NoSuchAlgorithmException {
+        List<byte[]> digests = parse(MessageDataDigest.forMessageDigest(MessageDigest.getInstance("SHA-256")));
+
+        assertEquals(2, digests.size());
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(MESSAGE_1.getBytes(StandardCharsets.ISO_8859_1)), digests.get(0));
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(MESSAGE_2.getBytes(StandardCharsets.ISO_8859_1)), digests.get(1));
+    }
+
+    @Test
+    public void test_checksum() throws IOException, SAXException {
+        List<byte[]> digests = parse(MessageDataDigest.forChecksum(new CRC32()));
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(MESSAGE_2.getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals(2, digests.size());
+        assertEquals(crc32.getValue(), toLong(digests.get(1)));
+    }
+
+    @Test
+    public void test_rawBytes() throws IOException, SAXException, NoSuchAlgorithmException {
+        // A supplementary character, and a byte which is not valid UTF-8...
+        byte[] message1 = concat("UNH+0001+MSG2:S:93A:UN'BBBB+f\uD83D\uDE00+f".getBytes(StandardCharsets.UTF_8), new byte[] {(byte) 0xFF}, "2+f3'UNT+3+0001'".getBytes(StandardCharsets.UTF_8));
+        byte[] interchange = concat("UNB+UNOW:3+Acme:1+AcmeRecipient:1+20051107:1159+6002'\n".getBytes(StandardCharsets.UTF_8), message1, ("\n" + MESSAGE_2 + "\nUNZ+2+6002'").getBytes(StandardCharsets.UTF_8));
+        List<byte[]> digests = parse(interchange, MessageDataDigest.forMessageDigest(MessageDigest.getInstance("SHA-256")));
+
+        assertEquals(2, digests.size());
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(message1), digests.get(0));
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(MESSAGE_2.getBytes(StandardCharsets.UTF_8)), digests.get(1));
+    }
+
+    @Test
+    public void test_failedMessage() throws IOException, SAXException, NoSuchAlgorithmException {
+        UNEdifactInterchangeParser parser = new UNEdifactInterchangeParser();
+        parser.setMappingsRegistry(new DefaultMappingsRegistry(EDIParser.parseMappingModel(getClass().getResourceAsStream("MSG1-model.xml"))));
+        parser.setMessageDataDigest(MessageDataDigest.forMessageDigest(MessageDigest.getInstance("SHA-256")));
+        parser.setContentHandler(new MockContentHandler());
+        try {
+            parser.parse(new InputSource(new ByteArrayInputStream(INTERCHANGE.getBytes(StandardCharsets.ISO_8859_1))));
+            fail("Expected EDIConfigurationException.");
+        } catch (EDIConfigurationException e) {
+            // Expected... no mapping model for MSG2
+        }
+
+        assertFalse(parser.getInterchangeContext().getSegmentReader().isDigesting());
+    }
+
+    @Test
+    public void test_characterStream() throws IOException, SAXException, NoSuchAlgorithmException {
+        UNEdifactInterchangeParser parser = new UNEdifactInterchangeParser();
+        parser.setMessageDataDigest(MessageDataDigest.forChecksum(new CRC32()));
+        parser.setContentHandler(new MockContentHandler());
+        try {
+            parser.parse(new InputSource(new StringReader(INTERCHANGE)));
+            fail("Expected IllegalStateException.");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("Unable to digest the raw message data of a character stream."), e.getMessage());
+        }
+    }
+
+    private List<byte[]> parse(MessageDataDigest messageDataDigest) throws IOException, SAXException {
+        return parse(INTERCHANGE.getBytes(StandardCharsets.ISO_8859_1), messageDataDigest);
+    }
+
+    private List<byte[]> parse(byte[] interchange, MessageDataDigest messageDataDigest) throws IOException, SAXException {
+        EdifactModel model1 = EDIParser.parseMappingModel(getClass().getResourceAsStream("MSG1-model.xml"));
+        EdifactModel model2 = EDIParser.parseMappingModel(getClass().getResourceAsStream("MSG2-model.xml"));
+
+        final UNEdifactInterchangeParser parser = new UNEdifactInterchangeParser();
+        final List<byte[]> digests = new ArrayList<byte[]>();
+        parser.setMappingsRegistry(new DefaultMappingsRegistry(model1, model2));
+        parser.setMessageDataDigest(messageDataDigest);
+        parser.setInterchangeListener(new InterchangeListener() {
+            public void interchangeStart(String[] unbFields, Delimiters delimiters) {
+            }
+
+            public void groupStart(String[] ungFields) {
+            }
+
+            public void message(String[] unhFields, int unhSegmentNumber, EDIParseErrors parseErrors, boolean rejected) {
+                digests.add(parser.getInterchangeContext().getMessageDigest());
+            }
+
+            public void groupEnd(String[] uneFields) {
+            }
+
+            public void interchangeEnd(String[] unzFields) {
+            }
+        });
+        parser.setContentHandler(new MockContentHandler());
+        parser.parse(new InputSource(new ByteArrayInputStream(interchange)));
+
+        return digests;
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            bytes.write(array, 0, array.length);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static long toLong(byte[] bytes) {
+        long value = 0;
+        for (byte b : bytes) {
+            value = (value << 8) | (b & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,125 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edi-sax
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.edi.edisax.unedifact;
+
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.EDIParser;
+import org.smooks.edi.edisax.model.EdifactModel;
+import org.smooks.edi.edisax.registry.DefaultMappingsRegistry;
+import org.smooks.edi.edisax.unedifact.handlers.SyntaxVersionControlBlockHandlerFactory;
+import org.smooks.edi.edisax.unedifact.handlers.r3.UNEdifact3ControlBlockHandlerFactory;
+import org.smooks.edi.edisax.unedifact.handlers.r41.UNEdifact41ControlBlockHandlerFactory;
+import org.smooks.edi.edisax.unedifact.handlers.r42.UNEdifact42ControlBlockHandlerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class SyntaxVersionDetectionTest {
+
+    private static final String INTERCHANGES = "UNB+UNOA:3+Acme:1:routing+AcmeRecipient:1+051107:1159+6002'" +
+            "UNH+0001+MSG2:S:93A:UN'BBBB+f1+f2+f3'UNT+3+0001'" +
+            "UNZ+1+6002'" +
+            "UNB+UNOA:4:::02+Acme:1+AcmeRecipient:1+20051107:1159+6003'" +
+            "UNH+0001+MSG2:S:93A:UN'BBBB+f1+f2+f3'UNT+3+0001'" +
+            "UNZ+1+6003'" +
+            "UNB+UNOA:4+Acme:1+AcmeRecipient:1+20051107:1159+6004'" +
+            "UNH+0001+MSG2:S:93A:UN'BBBB+f1+f2+f3'UNT+3+0001'" +
+            "UNZ+1+6004'";
+
+    @Test
+    public void test_detection() throws IOException, SAXException {
+        assertEquals("UNB{" + UNEdifact3ControlBlockHandlerFactory.NAMESPACE + "}env3:UNB " +
+                "UNH{" + UNEdifact3ControlBlockHandlerFactory.NAMESPACE + "}env3:UNH " +
+                "UNB{" + UNEdifact42ControlBlockHandlerFactory.NAMESPACE + "}env42:UNB " +
+                "UNH{" + UNEdifact42ControlBlockHandlerFactory.NAMESPACE + "}env42:UNH " +
+                "UNB{" + UNEdifact41ControlBlockHandlerFactory.NAMESPACE + "}env:UNB " +
+                "UNH{" + UNEdifact41ControlBlockHandlerFactory.NAMESPACE + "}env:UNH ", parse(true));
+    }
+
+    @Test
+    public void test_no_detection() throws IOException, SAXException {
+        assertEquals("UNB{" + UNEdifact41ControlBlockHandlerFactory.NAMESPACE + "}env:UNB " +
+                "UNH{" + UNEdifact41ControlBlockHandlerFactory.NAMESPACE + "}env:UNH " +
+                "UNB{" + UNEdifact41ControlBlockHandlerFactory.NAMESPACE + "}env:UNB " +
+                "UNH{" + UNEdifact41ControlBlockHandlerFactory.NAMESPACE + "}env:UNH " +
+                "UNB{" + UNEdifact41ControlBlockHandlerFactory.NAMESPACE + "}env:UNB " +
+                "UNH{" + UNEdifact41ControlBlockHandlerFactory.NAMESPACE + "}env:UNH ", parse(false));
+    }
+
+    @Test
+    public void test_handler_factory() {
+        SyntaxVersionControlBlockHandlerFactory handlerFactory = SyntaxVersionControlBlockHandlerFactory.getInstance(null);
+
+        assertSame(UNEdifact3ControlBlockHandlerFactory.getInstance(null), handlerFactory.getHandlerFactory(new String[] {"UNOA", "2"}));
+        assertSame(UNEdifact41ControlBlockHandlerFactory.getInstance(null), handlerFactory.getHandlerFactory(new String[] {"UNOA", "4", "", "", "01"}));
+        assertSame(UNEdifact42ControlBlockHandlerFactory.getInstance(null), handlerFactory.getHandlerFactory(new String[] {"UNOA", "4", "", "", "02"}));
+        assertSame(UNEdifact41ControlBlockHandlerFactory.getInstance(null), handlerFactory.getHandlerFactory(new String[] {"UNOA"}));
+    }
+
+    private String parse(boolean syntaxVersionDetection) throws IOException, SAXException {
+        EdifactModel model = EDIParser.parseMappingModel(getClass().getResourceAsStream("MSG2-model.xml"));
+        final StringBuilder controlElements = new StringBuilder();
+
+        UNEdifactInterchangeParser parser = new UNEdifactInterchangeParser();
+        parser.setMappingsRegistry(new DefaultMappingsRegistry(model));
+        parser.setSyntaxVersionDetection(syntaxVersionDetection);
+        parser.setContentHandler(new DefaultHandler() {
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if (localName.equals("UNB") || localName.equals("UNH")) {
+                    controlElements.append(localName).append('{').append(uri).append('}').append(qName).append(' ');
+                }
+            }
+        });
+        parser.parse(new InputSource(new ByteArrayInputStream(INTERCHANGES.getBytes(StandardCharsets.US_ASCII))));
+
+        return controlElements.toString();
+    }
+}
@@ -43,6 +43,7 @@
 package org.smooks.edi.edisax.v1_2.model;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.smooks.edi.edisax.EDIConfigurationException;
 import org.smooks.edi.edisax.model.EDIConfigDigester;
 import org.smooks.edi.edisax.model.internal.*;
@@ -51,10 +52,14 @@ import org.xml.sax.SAXException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.smooks.support.StreamUtils.readStream;
 
 /**
@@ -160,4 +165,25 @@ public class EDIConfigDigesterTest {
         String expected = "This segment is used for testing all new elements in v.1.2";
         assertEquals(segment.getDescription(), expected, "Description in segment [" + segment.getDescription() + "] doesn't match expected value [" + expected + "].");
     }
+
+    /**
+     * This testcase tests that a DTD, and the external entities it declares, are not processed.
+     *
+     * @throws IOException is thrown when unable to read edi-config in testcase.
+     */
+    @Test
+    public void testDigestConfigIgnoresExternalEntities(@TempDir Path tempDir) throws IOException, EDIConfigurationException {
+        Path secret = Files.write(tempDir.resolve("secret.txt"), "secret".getBytes(StandardCharsets.UTF_8));
+        String config = new String(readStream(getClass().getResourceAsStream("edi-config-all-new-elements.xml")), StandardCharsets.UTF_8)
+                .replace("<medi:edimap ", "<!DOCTYPE medi:edimap [<!ENTITY xxe SYSTEM \"" + secret.toUri() + "\">]><medi:edimap ")
+                .replace("This segment is used for testing all new elements in v.1.2", "&xxe;");
+
+        try {
+            Edimap edimap = EDIConfigDigester.digestConfig(new ByteArrayInputStream(config.getBytes(StandardCharsets.UTF_8)));
+            Segment segment = (Segment) edimap.getSegments().getSegments().get(0).getSegments().get(0);
+            assertNotEquals("secret", segment.getDescription(), "External entity was resolved");
+        } catch (SAXException e) {
+            // the DTD is not supported, so the entity is undeclared
+        }
+    }
 }
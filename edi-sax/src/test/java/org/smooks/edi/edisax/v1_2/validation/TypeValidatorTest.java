@@ -42,112 +42,113 @@
  */
 package org.smooks.edi.edisax.v1_2.validation;
 
+import org.junit.jupiter.api.Test;
+import org.smooks.edi.edisax.EDITypeEnum;
+import org.smooks.edi.edisax.model.internal.ValueNode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
 /**
  * Tests validation of type in ValueNode.
  * @author bardl 
  */
 public class TypeValidatorTest {
 
-    public void test() {
+    @Test
+    public void test_fromDataType() {
+        assertEquals(EDITypeEnum.String, EDITypeEnum.fromDataType(null));
+        assertEquals(EDITypeEnum.String, EDITypeEnum.fromDataType("an"));
+        assertEquals(EDITypeEnum.Alphabetic, EDITypeEnum.fromDataType("a"));
+        assertEquals(EDITypeEnum.Numeric, EDITypeEnum.fromDataType("n"));
+        assertEquals(EDITypeEnum.Decimal, EDITypeEnum.fromDataType("DABigDecimal"));
+        assertEquals(EDITypeEnum.Date, EDITypeEnum.fromDataType("Date"));
+        assertEquals(EDITypeEnum.Integer, EDITypeEnum.fromDataType("Integer"));
+        assertEquals(EDITypeEnum.Integer, EDITypeEnum.fromDataType("Long"));
+        assertEquals(EDITypeEnum.Custom, EDITypeEnum.fromDataType("com.acme.Money"));
+    }
+
+    @Test
+    public void test_fromDataType_with_parameters() {
+        ValueNode valueNode = new ValueNode();
+        valueNode.setDataType("Date");
+        valueNode.setDataTypeParameters("format=dd/MM/yyyy");
+        assertEquals(EDITypeEnum.Custom, valueNode.getEDIType());
+        assertEquals("format=dd/MM/yyyy", valueNode.getDataTypeParametersString());
+        assertEquals(-1, valueNode.getEDIType().validate("01/04/2009", '.'));
+
+        valueNode.setDataType("DABigDecimal");
+        valueNode.setDataTypeParameters("format=#,##0.00;locale=de-DE");
+        assertEquals(EDITypeEnum.Custom, valueNode.getEDIType());
+        assertEquals(-1, valueNode.getEDIType().validate("1.234,50", '.'));
+
+        valueNode.setDataTypeParameters(null);
+        assertEquals(EDITypeEnum.Decimal, valueNode.getEDIType());
+        assertNull(valueNode.getDataTypeParametersString());
+    }
+
+    @Test
+    public void test_type_String() {
+        assertEquals(-1, EDITypeEnum.String.validate("testing 123", '.'));
+    }
+
+    @Test
+    public void test_type_Alphabetic() {
+        assertEquals(-1, EDITypeEnum.Alphabetic.validate("testing abc", '.'));
+        assertEquals(8, EDITypeEnum.Alphabetic.validate("testing 123", '.'));
+    }
 
+    @Test
+    public void test_type_Numeric() {
+        assertEquals(-1, EDITypeEnum.Numeric.validate("123", '.'));
+        assertEquals(-1, EDITypeEnum.Numeric.validate("-123.05", '.'));
+        assertEquals(-1, EDITypeEnum.Decimal.validate("123,05", ','));
+        assertEquals(3, EDITypeEnum.Numeric.validate("123,05", '.'));
+        assertEquals(2, EDITypeEnum.Numeric.validate("12A3", '.'));
+        assertEquals(4, EDITypeEnum.Numeric.validate("1.23.4", '.'));
+        assertEquals(0, EDITypeEnum.Numeric.validate(".5", '.'));
+        assertEquals(4, EDITypeEnum.Numeric.validate("123.", '.'));
+        assertEquals(1, EDITypeEnum.Numeric.validate("-", '.'));
+        assertEquals(0, EDITypeEnum.Numeric.validate("", '.'));
     }
 
-//    public void test_type_String_valid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.String;
-//
-//        String value = "testing123";
-//        assertTrue("The value [" + value + "] should be a valid String.", ediType.validateType(value, null));
-//    }
-//
-//    public void test_type_String_invalid() throws IOException {
-//        //Can't think of any invalid cases.
-//    }
-//
-//    public void test_type_Numeric_valid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Numeric;
-//
-//        String value = "123";
-//        assertTrue("The value [" + value + "] should be a valid Numeric.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("fomat", "#0.00"))));
-//
-//        value = "123.00";
-//        assertTrue("The value [" + value + "] should be a valid Numeric.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("fomat", "#0.00"))));
-//    }
-//
-//    public void test_type_Numeric_invalid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Numeric;
-//
-//        String value = "12A3";
-//        assertFalse("The value [" + value + "] should not be a valid Numeric.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("fomat", "#0.00"))));
-//    }
-//
-//    public void test_type_Decimal_valid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Decimal;
-//
-//        String value = "123";
-//        assertTrue("The value [" + value + "] should be a valid Numeric.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("fomat", "#0.00"))));
-//
-//        value = "123.00";
-//        assertTrue("The value [" + value + "] should be a valid Numeric.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("format", "#0.00"))));
-//    }
-//
-//    public void test_type_Decimal_invalid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Date;
-//
-//        String value = "12A3";
-//        assertFalse("The value [" + value + "] should not be a valid Numeric.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("format", "#0.00"))));
-//    }
-//
-//    public void test_type_Date_valid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Date;
-//
-//        String value = "20090401";
-//        String format = "yyyyMMdd";
-//        assertTrue("The value [" + value + "] with format [" + format + "] should be a valid Date.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("format", format))));
-//    }
-//
-//    public void test_type_Date_invalid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Date;
-//
-//        String value = "200908bb";
-//        String format = "yyyyMMdd";
-//        assertFalse("The value [" + value + "] with format [" + format + "] should not be a valid Date.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("format", format))));
-//    }
-//
-//    public void test_type_Time_valid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Time;
-//
-//        String value = "2251";
-//        String format = "HHmm";
-//        assertTrue("The value [" + value + "] with format [" + format + "] should be a valid Time.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("format", format))));
-//    }
-//
-//    public void test_type_Time_invalid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Time;
-//
-//        String value = "22s";
-//        String format = "HHmm";
-//        assertFalse("The value [" + value + "] with format [" + format + "] should not be a valid Time.", ediType.validateType(value, buildParameterList(new ParamEntry<String,String>("format", format))));
-//    }
-//
-//    public void test_type_Binary_valid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Binary;
-//
-//        String value = "0101010101111000";
-//        assertTrue("The value [" + value + "] should be a valid binary sequence.", ediType.validateType(value, null));
-//    }
-//
-//    public void test_type_Binary_invalid() throws IOException {
-//        EDITypeEnum ediType = EDITypeEnum.Binary;
-//
-//        String value = "0101001200";
-//        assertFalse("The value [" + value + "] should not be a valid binary sequence.", ediType.validateType(value, null));
-//    }
-//
-//    private List<Map.Entry<String, String>> buildParameterList(Map.Entry<String, String>... entries) {
-//        List<Map.Entry<String, String>> list = new ArrayList<Map.Entry<String, String>>();
-//        for (Map.Entry<String, String> entry : entries) {
-//            list.add(entry);
-//        }
-//        return list;
-//    }
+    @Test
+    public void test_type_Integer() {
+        assertEquals(-1, EDITypeEnum.Integer.validate("123", '.'));
+        assertEquals(-1, EDITypeEnum.Integer.validate("-123", '.'));
+        assertEquals(3, EDITypeEnum.Integer.validate("123.05", '.'));
+        assertEquals(3, EDITypeEnum.Integer.validate("123,05", ','));
+        assertEquals(0, EDITypeEnum.Integer.validate("", '.'));
+    }
+
+    @Test
+    public void test_type_Date() {
+        assertEquals(-1, EDITypeEnum.Date.validate("20090401", '.'));
+        assertEquals(-1, EDITypeEnum.Date.validate("090401", '.'));
+        assertEquals(-1, EDITypeEnum.Date.validate("20000229", '.'));
+        assertEquals(-1, EDITypeEnum.Date.validate("200904012251", '.'));
+        assertEquals(6, EDITypeEnum.Date.validate("200908bb", '.'));
+        assertEquals(4, EDITypeEnum.Date.validate("20091301", '.'));
+        assertEquals(6, EDITypeEnum.Date.validate("19000229", '.'));
+        assertEquals(10, EDITypeEnum.Date.validate("200904012261", '.'));
+        assertEquals(7, EDITypeEnum.Date.validate("2009040", '.'));
+    }
+
+    @Test
+    public void test_type_Time() {
+        assertEquals(-1, EDITypeEnum.Time.validate("2251", '.'));
+        assertEquals(-1, EDITypeEnum.Time.validate("225159", '.'));
+        assertEquals(2, EDITypeEnum.Time.validate("22s", '.'));
+        assertEquals(-1, EDITypeEnum.Time.validate("2359", '.'));
+        assertEquals(0, EDITypeEnum.Time.validate("2400", '.'));
+        assertEquals(0, EDITypeEnum.Time.validate("2551", '.'));
+        assertEquals(8, EDITypeEnum.Date.validate("200904012400", '.'));
+        assertEquals(3, EDITypeEnum.Time.validate("225", '.'));
+    }
+
+    @Test
+    public void test_type_Binary() {
+        assertEquals(-1, EDITypeEnum.Binary.validate("0101010101111000", '.'));
+        assertEquals(7, EDITypeEnum.Binary.validate("0101001200", '.'));
+    }
 }
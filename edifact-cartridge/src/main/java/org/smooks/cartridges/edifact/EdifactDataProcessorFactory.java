@@ -47,11 +47,14 @@ import com.github.mustachejava.Mustache;
 import org.apache.daffodil.japi.DataProcessor;
 import org.apache.daffodil.japi.ValidationMode;
 import org.apache.daffodil.util.Misc;
-import org.smooks.cartridges.dfdl.DfdlSchema;
+import org.smooks.cartridges.edi.CompiledDataProcessorStore;
 import org.smooks.cartridges.edi.EdiDataProcessorFactory;
 import org.smooks.api.resource.config.Parameter;
 import org.smooks.api.SmooksConfigException;
 import org.smooks.api.ApplicationContext;
+import org.smooks.edi.schemas.Sha256;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
@@ -65,16 +68,38 @@ import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.io.*;
 import java.net.URI;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class EdifactDataProcessorFactory extends EdiDataProcessorFactory {
 
+    /**
+     * Name of the interchange parser precompiled by the build, relative to the directory version's resource path.
+     */
+    public static final String PRECOMPILED_INTERCHANGE_SCHEMA = "EDIFACT-Interchange.dfdl.bin";
+
+    /**
+     * Prefix of the directory, created under the temporary directory and readable only by its owner, holding the
+     * entry schemas materialised by this JVM.
+     */
+    public static final String ENTRY_SCHEMA_DIRECTORY = "smooks-edifact-entry-schemas";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EdifactDataProcessorFactory.class);
+    private static final Map<String, URI> ENTRY_SCHEMAS = new ConcurrentHashMap<>();
+    private static final Map<String, String> VERSIONS = new ConcurrentHashMap<>();
+    private static volatile Path entrySchemaDirectory;
     private static final Mustache MUSTACHE;
 
     static {
@@ -94,51 +119,171 @@ public class EdifactDataProcessorFactory extends EdiDataProcessorFactory {
             final Parameter<String> schemaUriParameter = resourceConfig.getParameter("schemaURI", String.class);
             final String version = readVersion(schemaUriParameter);
             final URI entrySchemaUri;
+            final List<String> messageTypes;
 
             final List<Parameter<?>> messageTypeParameters = resourceConfig.getParameters("messageType");
             if (messageTypeParameters == null || messageTypeParameters.isEmpty()) {
+                if (Boolean.parseBoolean(resourceConfig.getParameterValue("messageTypeProfiling", String.class, "false"))) {
+                    final DataProcessor narrowedDataProcessor = narrowToProfile(schemaUriParameter.getValue(), version, variables);
+                    if (narrowedDataProcessor != null) {
+                        return narrowedDataProcessor;
+                    }
+                }
+                final DataProcessor precompiledDataProcessor = reloadPrecompiled(version, variables);
+                if (precompiledDataProcessor != null) {
+                    return precompiledDataProcessor;
+                }
+                messageTypes = Collections.emptyList();
                 entrySchemaUri = new URI(version.toLowerCase() + "/EDIFACT-Interchange.dfdl.xsd");
             } else {
-                final List<String> messageTypes = (List) messageTypeParameters.stream().map(Parameter::getValue).collect(Collectors.toList());
+                messageTypes = (List) messageTypeParameters.stream().map(Parameter::getValue).collect(Collectors.toList());
                 entrySchemaUri = materialiseEntrySchema(schemaUriParameter.getValue(), messageTypes, version);
             }
 
-            final DfdlSchema dfdlSchema = new DfdlSchema(entrySchemaUri, variables, ValidationMode.valueOf(resourceConfig.getParameterValue("validationMode", String.class, "Off")), Boolean.parseBoolean(resourceConfig.getParameterValue("cacheOnDisk", String.class, "false")), Boolean.parseBoolean(resourceConfig.getParameterValue("debugging", String.class, "false")), null) {
-                @Override
-                public String getName() {
-                    return schemaUriParameter.getValue() + ":" + getValidationMode() + ":" + isCacheOnDisk() + ":" + isDebugging() + ":" + variables.toString();
-                }
-            };
-
-            return compileOrGet(dfdlSchema);
+            return compileOrGet(entrySchemaUri, variables, messageTypes, schemaUriParameter.getValue());
         } catch (Throwable t) {
             throw new SmooksConfigException(t);
         }
     }
     
-    protected URI materialiseEntrySchema(final String schemaUri, final List<String> messageTypes, final String version) throws IOException {
-        final File generatedEntrySchemaDir = Files.createTempDirectory(null).toFile();
-        generatedEntrySchemaDir.deleteOnExit();
-        final File generatedEntrySchema = new File(generatedEntrySchemaDir.toString() + "/EDIFACT-Interchange-" + UUID.nameUUIDFromBytes(String.join(":", messageTypes).getBytes()) + "-.dfdl.xsd");
-        try (Writer fileWriter = new OutputStreamWriter(new FileOutputStream(generatedEntrySchema), StandardCharsets.UTF_8)) {
-            MUSTACHE.execute(fileWriter, new HashMap<String, Object>() {{
-                this.put("schemaLocation", schemaUri);
-                this.put("messageTypes", messageTypes);
-                this.put("version", version);
-            }});
+    /**
+     * Gets the processor narrowed to the message types recorded in the schema's {@link MessageTypeProfile}, scheduling
+     * its compilation in the background when it is not ready.
+     *
+     * @param schemaUri messages schema URI
+     * @param version   directory version
+     * @param variables DFDL external variables
+     * @return the narrowed processor or <code>null</code> when the full interchange processor is to be used
+     */
+    protected DataProcessor narrowToProfile(final String schemaUri, final String version, final Map<String, String> variables) {
+        final MessageTypeProfile messageTypeProfile = MessageTypeProfile.forSchema(schemaUri);
+        final DataProcessor narrowedDataProcessor = messageTypeProfile.getNarrowedDataProcessor();
+        if (narrowedDataProcessor != null) {
+            return narrowedDataProcessor;
         }
-        
-        return generatedEntrySchema.toURI();
+
+        final Set<String> messageTypes = messageTypeProfile.getMessageTypes();
+        if (!messageTypes.isEmpty()) {
+            final List<String> narrowedMessageTypes = new ArrayList<>(messageTypes);
+            messageTypeProfile.narrow(messageTypes, () -> compileOrGet(materialiseEntrySchema(schemaUri, narrowedMessageTypes, version), variables, narrowedMessageTypes, schemaUri));
+        }
+
+        return null;
+    }
+
+    /**
+     * Reloads the interchange parser precompiled by the build for the directory version, provided one is on the
+     * classpath and the processor would be configured with the default variables.
+     *
+     * @param version   directory version
+     * @param variables DFDL external variables
+     * @return the reloaded processor or <code>null</code> when the schema needs to be compiled
+     */
+    protected DataProcessor reloadPrecompiled(final String version, final Map<String, String> variables) {
+        final ValidationMode validationMode = ValidationMode.valueOf(resourceConfig.getParameterValue("validationMode", String.class, "Off"));
+        if (!variables.equals(DEFAULT_VARIABLES) || validationMode == ValidationMode.Full || Boolean.parseBoolean(resourceConfig.getParameterValue("debugging", String.class, "false"))) {
+            return null;
+        }
+
+        final URL precompiledSchemaUrl = getClass().getClassLoader().getResource(version.toLowerCase() + "/" + PRECOMPILED_INTERCHANGE_SCHEMA);
+        if (precompiledSchemaUrl == null) {
+            return null;
+        }
+
+        try {
+            return CompiledDataProcessorStore.getInstance().getOrReload(precompiledSchemaUrl, variables, validationMode);
+        } catch (SmooksConfigException e) {
+            LOGGER.warn("Ignoring unusable precompiled schema [" + precompiledSchemaUrl + "]", e);
+            return null;
+        }
+    }
+
+    /**
+     * Materialises an entry schema narrowed to the given message types. Entry schemas are content-addressed by the
+     * schema URI, the sorted message types and the version: identical configurations share the same file across
+     * Smooks instances, and therefore the same compiled processor. The files live in a private directory so that no
+     * other user can plant a schema under an expected name, and are written again should they go missing.
+     */
+    protected static URI materialiseEntrySchema(final String schemaUri, final List<String> messageTypes, final String version) throws IOException {
+        final List<String> sortedMessageTypes = messageTypes.stream().sorted().distinct().collect(Collectors.toList());
+        final String entrySchemaKey = digest(schemaUri, String.join(":", sortedMessageTypes), version);
+        final URI entrySchemaUri = ENTRY_SCHEMAS.get(entrySchemaKey);
+        if (entrySchemaUri != null && new File(entrySchemaUri).isFile()) {
+            return entrySchemaUri;
+        }
+
+        final Path entrySchemaDirectory = getEntrySchemaDirectory();
+        final File entrySchema = entrySchemaDirectory.resolve("EDIFACT-Interchange-" + entrySchemaKey + ".dfdl.xsd").toFile();
+        if (!entrySchema.isFile()) {
+            final Path tempEntrySchema = Files.createTempFile(entrySchemaDirectory, entrySchema.getName(), ".tmp");
+            try {
+                try (Writer fileWriter = new OutputStreamWriter(new FileOutputStream(tempEntrySchema.toFile()), StandardCharsets.UTF_8)) {
+                    MUSTACHE.execute(fileWriter, new HashMap<String, Object>() {{
+                        this.put("schemaLocation", schemaUri);
+                        this.put("messageTypes", sortedMessageTypes);
+                        this.put("version", version);
+                    }});
+                }
+                Files.move(tempEntrySchema, entrySchema.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                entrySchema.deleteOnExit();
+            } finally {
+                Files.deleteIfExists(tempEntrySchema);
+            }
+        }
+
+        final URI materialisedEntrySchemaUri = entrySchema.toURI();
+        ENTRY_SCHEMAS.put(entrySchemaKey, materialisedEntrySchemaUri);
+
+        return materialisedEntrySchemaUri;
+    }
+
+    private static Path getEntrySchemaDirectory() throws IOException {
+        Path directory = entrySchemaDirectory;
+        if (directory == null || !Files.isDirectory(directory)) {
+            synchronized (EdifactDataProcessorFactory.class) {
+                directory = entrySchemaDirectory;
+                if (directory == null || !Files.isDirectory(directory)) {
+                    directory = Files.createTempDirectory(ENTRY_SCHEMA_DIRECTORY);
+                    directory.toFile().deleteOnExit();
+                    entrySchemaDirectory = directory;
+                }
+            }
+        }
+
+        return directory;
     }
 
     protected String readVersion(final Parameter<String> schemaURIParameter) throws XPathExpressionException, ParserConfigurationException, IOException, SAXException {
+        return readVersion(schemaURIParameter.getValue());
+    }
+
+    static String readVersion(final String schemaUri) throws XPathExpressionException, ParserConfigurationException, IOException, SAXException {
+        final String cachedVersion = VERSIONS.get(schemaUri);
+        if (cachedVersion != null) {
+            return cachedVersion;
+        }
+
         final DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        final Document document = documentBuilder.parse(Misc.getRequiredResource(schemaURIParameter.getValue()).toString());
+        final Document document = documentBuilder.parse(Misc.getRequiredResource(schemaUri).toString());
 
         final XPathFactory factory = XPathFactory.newInstance();
         final XPath xpath = factory.newXPath();
 
-        return (String) xpath.compile("/schema/annotation/appinfo[@source='http://www.ibm.com/dfdl/edi/un/edifact']/text()").evaluate(document, XPathConstants.STRING);
+        final String version = (String) xpath.compile("/schema/annotation/appinfo[@source='http://www.ibm.com/dfdl/edi/un/edifact']/text()").evaluate(document, XPathConstants.STRING);
+        VERSIONS.putIfAbsent(schemaUri, version);
+
+        return version;
+    }
+
+    private static String digest(final String... values) {
+        final MessageDigest messageDigest = Sha256.newMessageDigest();
+        messageDigest.update(String.valueOf(EdifactDataProcessorFactory.class.getPackage().getImplementationVersion()).getBytes(StandardCharsets.UTF_8));
+        for (String value : values) {
+            messageDigest.update((byte) 0);
+            messageDigest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return Sha256.toHex(messageDigest);
     }
 
     @Override
@@ -0,0 +1,134 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edifact-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edifact;
+
+import org.smooks.api.SmooksConfigException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Envelope of the interchange schema wrapping an EDIFACT messages schema.
+ * <p/>
+ * The interchange schema is the entry schema {@link EdifactDataProcessorFactory} materialises for the messages
+ * schema. Its envelope segments are the elements it declares itself, outside of the messages schema set, under the
+ * name of their tag, e.g., <code>UNB</code>. The service namespace is the namespace of the message header type.
+ */
+final class EdifactInterchangeSchema {
+
+    private static final String DFDL_NAMESPACE = "http://www.ogf.org/dfdl/dfdl-1.0/";
+    private static final Map<String, EdifactInterchangeSchema> INTERCHANGE_SCHEMAS = new ConcurrentHashMap<>();
+
+    private final Map<String, String> envelopeSegmentTypes = new LinkedHashMap<>();
+    private final URI interchangeSchemaUri;
+    private final String serviceNamespace;
+
+    private EdifactInterchangeSchema(final String schemaUri) throws Exception {
+        interchangeSchemaUri = EdifactDataProcessorFactory.materialiseEntrySchema(schemaUri, Collections.emptyList(), EdifactDataProcessorFactory.readVersion(schemaUri));
+        final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+        collectEnvelopeSegments(documentBuilderFactory.newDocumentBuilder().parse(interchangeSchemaUri.toString()).getDocumentElement());
+
+        final String messageHeaderType = envelopeSegmentTypes.get("UNH");
+        if (messageHeaderType == null) {
+            throw new SmooksConfigException("Interchange schema [" + interchangeSchemaUri + "] declares no UNH segment");
+        }
+        serviceNamespace = messageHeaderType.substring(1, messageHeaderType.indexOf('}'));
+    }
+
+    static EdifactInterchangeSchema forSchema(final String schemaUri) {
+        return INTERCHANGE_SCHEMAS.computeIfAbsent(schemaUri, key -> {
+            try {
+                return new EdifactInterchangeSchema(key);
+            } catch (SmooksConfigException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SmooksConfigException("Failed to read the interchange schema of [" + key + "]", e);
+            }
+        });
+    }
+
+    /**
+     * @return the qualified type of every envelope segment, keyed by tag, in declaration order
+     */
+    Map<String, String> getEnvelopeSegmentTypes() {
+        return Collections.unmodifiableMap(envelopeSegmentTypes);
+    }
+
+    /**
+     * @return the materialised interchange schema, which imports the service segments and includes the messages schema
+     */
+    URI getUri() {
+        return interchangeSchemaUri;
+    }
+
+    String getServiceNamespace() {
+        return serviceNamespace;
+    }
+
+    private void collectEnvelopeSegments(final Element parent) {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(child.getNamespaceURI())) {
+                final Element element = (Element) child;
+                if (element.getLocalName().equals("element") && element.getAttribute("name").equals(element.getAttributeNS(DFDL_NAMESPACE, "initiator")) && !element.getAttribute("type").isEmpty()) {
+                    envelopeSegmentTypes.putIfAbsent(element.getAttribute("name"), toQualifiedName(element, element.getAttribute("type")));
+                }
+                collectEnvelopeSegments(element);
+            }
+        }
+    }
+
+    private static String toQualifiedName(final Element element, final String prefixedName) {
+        final int colonIndex = prefixedName.indexOf(':');
+        final String namespace = element.lookupNamespaceURI(colonIndex < 0 ? null : prefixedName.substring(0, colonIndex));
+
+        return "{" + (namespace == null ? "" : namespace) + "}" + prefixedName.substring(colonIndex + 1);
+    }
+}
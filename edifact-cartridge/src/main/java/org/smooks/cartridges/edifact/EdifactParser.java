@@ -0,0 +1,132 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edifact-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edifact;
+
+import org.smooks.api.resource.config.ResourceConfig;
+import org.smooks.cartridges.edi.EdiParser;
+import org.smooks.support.StreamUtils;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Set;
+
+/**
+ * EDIFACT reader which, when <code>messageTypeProfiling</code> is enabled, records the UNH message types of the
+ * interchanges it parses in the {@link MessageTypeProfile} of its messages schema.
+ * <p/>
+ * A reader given the processor narrowed to the profiled message types reads each interchange into memory before
+ * parsing it. Should the interchange hold a message type the schema defines but the narrowed processor does not, the
+ * interchange is parsed with the full interchange processor rather than yield <code>BadMessage</code> elements.
+ */
+public class EdifactParser extends EdiParser {
+
+    @Inject
+    private ResourceConfig resourceConfig;
+
+    private MessageTypeProfile messageTypeProfile;
+    private Set<String> narrowedMessageTypes;
+    private EdiParser interchangeParser;
+
+    @Override
+    @PostConstruct
+    public void postConstruct() {
+        super.postConstruct();
+        if (Boolean.parseBoolean(resourceConfig.getParameterValue("messageTypeProfiling", String.class, "false"))) {
+            messageTypeProfile = MessageTypeProfile.forSchema(resourceConfig.getParameterValue("schemaURI", String.class));
+            narrowedMessageTypes = messageTypeProfile.getNarrowedMessageTypes(getDataProcessor());
+        }
+    }
+
+    @Override
+    public void parse(final InputSource input) throws IOException, SAXException {
+        if (narrowedMessageTypes == null) {
+            super.parse(input);
+        } else if (input.getByteStream() != null) {
+            parseNarrowed(input.getByteStream(), input);
+        } else if (input.getCharacterStream() == null && input.getSystemId() != null) {
+            try (InputStream inputStream = new URL(input.getSystemId()).openStream()) {
+                parseNarrowed(inputStream, input);
+            }
+        } else {
+            super.parse(input);
+        }
+    }
+
+    private void parseNarrowed(final InputStream inputStream, final InputSource input) throws IOException, SAXException {
+        final MessageTypeProfilingInputStream messageTypeProfilingInputStream = new MessageTypeProfilingInputStream(inputStream, messageTypeProfile, narrowedMessageTypes);
+        final InputSource interchange = new InputSource(new ByteArrayInputStream(StreamUtils.readStream(messageTypeProfilingInputStream)));
+        interchange.setSystemId(input.getSystemId());
+        interchange.setEncoding(input.getEncoding());
+
+        if (messageTypeProfilingInputStream.hasMessageTypeOutsideNarrowing()) {
+            final EdiParser interchangeParser = getInterchangeParser();
+            interchangeParser.setContentHandler(getContentHandler());
+            interchangeParser.setErrorHandler(getErrorHandler());
+            interchangeParser.parse(interchange);
+        } else {
+            super.parse(interchange);
+        }
+    }
+
+    private synchronized EdiParser getInterchangeParser() {
+        if (interchangeParser == null) {
+            final ResourceConfig interchangeResourceConfig = resourceConfig.copy();
+            interchangeResourceConfig.removeParameter("messageTypeProfiling");
+            interchangeParser = new EdiParser(createDataProcessor(interchangeResourceConfig)).setIndent(isIndent());
+        }
+
+        return interchangeParser;
+    }
+
+    @Override
+    protected InputStream decorate(final InputStream inputStream) {
+        // the input of a narrowed reader is profiled before it is parsed
+        return messageTypeProfile == null || narrowedMessageTypes != null ? inputStream : new MessageTypeProfilingInputStream(inputStream, messageTypeProfile);
+    }
+}
@@ -53,6 +53,7 @@ import java.util.List;
 public class EdifactReaderConfigurator extends EdiReaderConfigurator {
 
     protected List<String> messageTypes = new ArrayList<>();
+    protected boolean messageTypeProfiling;
 
     public EdifactReaderConfigurator(final String schemaUri) {
         super(schemaUri);
@@ -73,14 +74,26 @@ public class EdifactReaderConfigurator extends EdiReaderConfigurator {
         return this;
     }
 
+    public boolean isMessageTypeProfiling() {
+        return messageTypeProfiling;
+    }
+
+    public EdifactReaderConfigurator setMessageTypeProfiling(boolean messageTypeProfiling) {
+        this.messageTypeProfiling = messageTypeProfiling;
+
+        return this;
+    }
+
     @Override
     public List<ResourceConfig> toConfig() {
         final List<ResourceConfig> resourceConfigs = super.toConfig();
         final ResourceConfig resourceConfig = resourceConfigs.get(0);
 
+        resourceConfig.setResource(EdifactParser.class.getName());
         for (String messageType : messageTypes) {
             resourceConfig.setParameter(new DefaultParameter<>("messageType", messageType));
         }
+        resourceConfig.setParameter(new DefaultParameter<>("messageTypeProfiling", String.valueOf(messageTypeProfiling)));
 
         return resourceConfigs;
     }
@@ -0,0 +1,294 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edifact-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edifact;
+
+import org.apache.daffodil.util.Misc;
+import org.smooks.api.SmooksConfigException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Positions of the fields and components of every segment in an EDIFACT messages schema set, indexed by segment tag.
+ * <p/>
+ * Layouts are read once per schema, starting from the {@link EdifactInterchangeSchema} wrapping the messages schema
+ * so that the envelope segments are laid out in the service namespace the interchange schema imports. Segments follow
+ * the XSD structure the schema generator emits: each segment element carries its tag as <code>dfdl:initiator</code>
+ * and names a complex type whose sequence lists the segment's fields, and each composite field names a complex type
+ * listing its components. Fields and components whose simple type derives from a numeric XML schema type carry the
+ * nearest <code>dfdl:textNumberPattern</code> along the type's restriction chain, so that numerics can be written the
+ * way the DFDL unparser writes them.
+ */
+final class EdifactSegmentLayouts {
+
+    private static final String DFDL_NAMESPACE = "http://www.ogf.org/dfdl/dfdl-1.0/";
+    private static final Map<String, EdifactSegmentLayouts> LAYOUTS = new ConcurrentHashMap<>();
+    private static final Set<String> NUMERIC_TYPES = new HashSet<>();
+
+    static {
+        for (String numericType : new String[]{"decimal", "integer", "long", "int", "short", "byte", "nonNegativeInteger", "positiveInteger", "nonPositiveInteger", "negativeInteger", "unsignedLong", "unsignedInt", "unsignedShort", "unsignedByte"}) {
+            NUMERIC_TYPES.add("{" + XMLConstants.W3C_XML_SCHEMA_NS_URI + "}" + numericType);
+        }
+    }
+
+    private final Map<String, SegmentLayout> segmentLayouts = new HashMap<>();
+
+    private EdifactSegmentLayouts(final String schemaUri) throws Exception {
+        final Map<String, List<String[]>> complexTypes = new HashMap<>();
+        final Map<String, String[]> simpleTypes = new HashMap<>();
+        final Map<String, String> segmentTypes = new HashMap<>();
+        // The envelope segments are declared by the interchange schema, outside of the messages schema set. UNA is left
+        // out: the writer takes its service characters apart instead of laying it out as a segment.
+        final EdifactInterchangeSchema interchangeSchema = EdifactInterchangeSchema.forSchema(schemaUri);
+        segmentTypes.putAll(interchangeSchema.getEnvelopeSegmentTypes());
+        segmentTypes.remove("UNA");
+
+        final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+        final DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        readSchema(interchangeSchema.getUri().toURL(), documentBuilder, complexTypes, simpleTypes, segmentTypes, new HashSet<>());
+
+        for (Map.Entry<String, String> segmentType : segmentTypes.entrySet()) {
+            final List<String[]> fields = complexTypes.get(segmentType.getValue());
+            if (fields != null) {
+                final String[] fieldNames = new String[fields.size()];
+                final String[] fieldNumberPatterns = new String[fields.size()];
+                final String[][] componentNames = new String[fields.size()][];
+                final String[][] componentNumberPatterns = new String[fields.size()][];
+                for (int i = 0; i < fields.size(); i++) {
+                    fieldNames[i] = fields.get(i)[0];
+                    final List<String[]> components = complexTypes.get(fields.get(i)[1]);
+                    if (components != null) {
+                        componentNames[i] = components.stream().map(component -> component[0]).toArray(String[]::new);
+                        componentNumberPatterns[i] = components.stream().map(component -> resolveNumberPattern(component[1], simpleTypes)).toArray(String[]::new);
+                    } else {
+                        fieldNumberPatterns[i] = resolveNumberPattern(fields.get(i)[1], simpleTypes);
+                    }
+                }
+                segmentLayouts.put(segmentType.getKey(), new SegmentLayout(fieldNames, fieldNumberPatterns, componentNames, componentNumberPatterns));
+            }
+        }
+    }
+
+    static EdifactSegmentLayouts forSchema(final String schemaUri) {
+        return LAYOUTS.computeIfAbsent(schemaUri, key -> {
+            try {
+                return new EdifactSegmentLayouts(key);
+            } catch (Exception e) {
+                throw new SmooksConfigException("Failed to read the segment layouts of [" + key + "]", e);
+            }
+        });
+    }
+
+    SegmentLayout getSegmentLayout(final String tag) {
+        return segmentLayouts.get(tag);
+    }
+
+    private static void readSchema(final URL schemaUrl, final DocumentBuilder documentBuilder, final Map<String, List<String[]>> complexTypes, final Map<String, String[]> simpleTypes, final Map<String, String> segmentTypes, final Set<String> visitedSchemas) throws Exception {
+        if (!visitedSchemas.add(schemaUrl.toString())) {
+            return;
+        }
+
+        final Document document = documentBuilder.parse(schemaUrl.toString());
+        final Element schema = document.getDocumentElement();
+        final String targetNamespace = schema.getAttribute("targetNamespace");
+        for (Node child = schema.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(child.getNamespaceURI())) {
+                final Element element = (Element) child;
+                if (element.getLocalName().equals("complexType")) {
+                    final List<String[]> elements = new ArrayList<>();
+                    collectElements(element, elements, segmentTypes);
+                    complexTypes.put("{" + targetNamespace + "}" + element.getAttribute("name"), elements);
+                } else if (element.getLocalName().equals("simpleType")) {
+                    simpleTypes.put("{" + targetNamespace + "}" + element.getAttribute("name"), readSimpleType(element));
+                } else if (element.getLocalName().equals("include") || element.getLocalName().equals("import")) {
+                    final String schemaLocation = element.getAttribute("schemaLocation");
+                    final URL includedSchemaUrl = schemaLocation.startsWith("/") ? Misc.getRequiredResource(schemaLocation).toURL() : new URL(schemaUrl, schemaLocation);
+                    readSchema(includedSchemaUrl, documentBuilder, complexTypes, simpleTypes, segmentTypes, visitedSchemas);
+                } else {
+                    collectElements(element, new ArrayList<>(), segmentTypes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the name and qualified type of the elements in a model group, flattening nested sequences, and records
+     * the type of every segment element met on the way down.
+     */
+    private static void collectElements(final Element parent, final List<String[]> elements, final Map<String, String> segmentTypes) {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(child.getNamespaceURI())) {
+                final Element element = (Element) child;
+                if (element.getLocalName().equals("element")) {
+                    final String name = element.getAttribute("name");
+                    final String type = toQualifiedName(element, element.getAttribute("type"));
+                    elements.add(new String[]{name, type});
+                    if (name.equals(element.getAttributeNS(DFDL_NAMESPACE, "initiator")) && !type.isEmpty()) {
+                        segmentTypes.putIfAbsent(name, type);
+                    }
+                    collectElements(element, new ArrayList<>(), segmentTypes);
+                } else if (element.getLocalName().equals("sequence")) {
+                    collectElements(element, elements, segmentTypes);
+                } else if (!element.getLocalName().equals("annotation")) {
+                    collectElements(element, new ArrayList<>(), segmentTypes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the qualified restriction base of a simple type together with its <code>dfdl:textNumberPattern</code>,
+     * <code>null</code> when the simple type does not set one.
+     */
+    private static String[] readSimpleType(final Element simpleType) {
+        String base = null;
+        for (Node child = simpleType.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(child.getNamespaceURI()) && child.getLocalName().equals("restriction")) {
+                base = toQualifiedName((Element) child, ((Element) child).getAttribute("base"));
+            }
+        }
+        final String numberPattern = simpleType.hasAttributeNS(DFDL_NAMESPACE, "textNumberPattern") ? simpleType.getAttributeNS(DFDL_NAMESPACE, "textNumberPattern") : null;
+
+        return new String[]{base, numberPattern};
+    }
+
+    /**
+     * Follows the restriction chain of a simple type down to a built-in type.
+     *
+     * @return the nearest <code>dfdl:textNumberPattern</code> along the chain when the built-in type is numeric,
+     * otherwise <code>null</code>
+     */
+    private static String resolveNumberPattern(final String type, final Map<String, String[]> simpleTypes) {
+        String numberPattern = null;
+        String baseType = type;
+        while (!NUMERIC_TYPES.contains(baseType)) {
+            final String[] simpleType = simpleTypes.get(baseType);
+            if (simpleType == null) {
+                return null;
+            }
+            if (numberPattern == null) {
+                numberPattern = simpleType[1];
+            }
+            baseType = simpleType[0];
+        }
+
+        return numberPattern;
+    }
+
+    private static String toQualifiedName(final Element element, final String prefixedName) {
+        if (prefixedName.isEmpty()) {
+            return prefixedName;
+        }
+        final int colonIndex = prefixedName.indexOf(':');
+        final String prefix = colonIndex < 0 ? null : prefixedName.substring(0, colonIndex);
+        final String namespace = element.lookupNamespaceURI(prefix);
+
+        return "{" + (namespace == null ? "" : namespace) + "}" + prefixedName.substring(colonIndex + 1);
+    }
+
+    static final class SegmentLayout {
+        private final String[] fieldNames;
+        private final String[] fieldNumberPatterns;
+        private final String[][] componentNames;
+        private final String[][] componentNumberPatterns;
+
+        private SegmentLayout(final String[] fieldNames, final String[] fieldNumberPatterns, final String[][] componentNames, final String[][] componentNumberPatterns) {
+            this.fieldNames = fieldNames;
+            this.fieldNumberPatterns = fieldNumberPatterns;
+            this.componentNames = componentNames;
+            this.componentNumberPatterns = componentNumberPatterns;
+        }
+
+        int getFieldCount() {
+            return fieldNames.length;
+        }
+
+        int indexOfField(final String fieldName) {
+            return indexOf(fieldNames, fieldName);
+        }
+
+        boolean isComposite(final int fieldIndex) {
+            return componentNames[fieldIndex] != null;
+        }
+
+        int indexOfComponent(final int fieldIndex, final String componentName) {
+            return indexOf(componentNames[fieldIndex], componentName);
+        }
+
+        /**
+         * @return the number pattern of a simple field or <code>null</code> when the field is not numeric
+         */
+        String getNumberPattern(final int fieldIndex) {
+            return fieldNumberPatterns[fieldIndex];
+        }
+
+        /**
+         * @return the number pattern of a component or <code>null</code> when the component is not numeric
+         */
+        String getNumberPattern(final int fieldIndex, final int componentIndex) {
+            return componentNumberPatterns[fieldIndex][componentIndex];
+        }
+
+        private static int indexOf(final String[] names, final String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
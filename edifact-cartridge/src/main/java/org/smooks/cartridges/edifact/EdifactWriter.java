@@ -0,0 +1,395 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edifact-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edifact;
+
+import org.smooks.edi.edisax.model.internal.Delimiters;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Serialises EDIFACT interchange events straight into EDIFACT, without going through a DFDL unparser.
+ * <p/>
+ * The events are expected in the element layout of <code>EDIFACT-Interchange.dfdl.xsd</code>, i.e., the layout the
+ * EDIFACT parser produces. Segments are recognised by tag and their fields and components are positioned according
+ * to the messages schema, read once per schema. Any other element, such as <code>Interchange</code>,
+ * <code>Message</code> or a segment group, only encloses segments and is not written. Data is released with the
+ * character class table of the {@link Delimiters}, taken from the <code>UNA</code> element when there is one.
+ * Numeric values are formatted with the <code>dfdl:textNumberPattern</code> of their simple type and the decimal
+ * separator of the delimiters, rounding half-even like the DFDL unparser, e.g., <code>72.36</code> is written as
+ * <code>72,36</code> under a <code>,</code> decimal mark and a time of <code>937</code> as <code>0937</code>. When
+ * control counts are enabled, the counts of the UNT, UNE and UNZ trailers are computed from the events instead of
+ * being copied.
+ * <p/>
+ * A writer is not thread-safe and its buffers are reused from one segment to the next.
+ */
+public class EdifactWriter extends DefaultHandler {
+
+    /**
+     * UN/EDIFACT default service characters.
+     */
+    public static final Delimiters DEFAULT_DELIMITERS = new Delimiters().setComponent(":").setField("+").setDecimalSeparator(".").setEscape("?").setFieldRepeat("*").setSegment("'").freeze();
+
+    private static final List<String> SERVICE_CHARACTER_NAMES = Arrays.asList("CompositeSeparator", "FieldSeparator", "DecimalSeparator", "EscapeCharacter", "RepeatSeparator", "SegmentTerminator");
+
+    private final Writer writer;
+    private final EdifactSegmentLayouts segmentLayouts;
+    private final StringBuilder segmentBuffer = new StringBuilder(512);
+    private final StringBuilder text = new StringBuilder(64);
+    private final String[] serviceCharacters = new String[6];
+    private final Map<String, DecimalFormat> numberFormats = new HashMap<>();
+    private StringBuilder[] fields = new StringBuilder[0];
+    private Delimiters delimiters = DEFAULT_DELIMITERS;
+    private String lineSeparator = "\r\n";
+    private boolean controlCounts = true;
+
+    private String tag;
+    private EdifactSegmentLayouts.SegmentLayout segmentLayout;
+    private int depth;
+    private int fieldIndex;
+    private int componentIndex;
+    private int lastComponentIndex;
+    private boolean inUna;
+    private boolean inMessage;
+    private int messageSegmentCount;
+    private int messageCount;
+    private int groupMessageCount;
+    private int groupCount;
+
+    /**
+     * @param writer    destination of the EDIFACT interchange
+     * @param schemaUri messages schema URI, e.g., <code>/d03b/EDIFACT-Messages.dfdl.xsd</code>
+     */
+    public EdifactWriter(final Writer writer, final String schemaUri) {
+        this.writer = writer;
+        this.segmentLayouts = EdifactSegmentLayouts.forSchema(schemaUri);
+    }
+
+    /**
+     * Sets the service characters used when the interchange has no <code>UNA</code> element.
+     *
+     * @param delimiters service characters
+     * @return this writer
+     */
+    public EdifactWriter setDelimiters(final Delimiters delimiters) {
+        this.delimiters = delimiters;
+        numberFormats.clear();
+        return this;
+    }
+
+    /**
+     * Sets the characters written after each segment terminator. Defaults to CRLF.
+     *
+     * @param lineSeparator characters following each segment terminator
+     * @return this writer
+     */
+    public EdifactWriter setLineSeparator(final String lineSeparator) {
+        this.lineSeparator = lineSeparator;
+        return this;
+    }
+
+    /**
+     * Sets whether the counts of the UNT, UNE and UNZ trailers are computed. Defaults to <code>true</code>.
+     *
+     * @param controlCounts <code>true</code> to compute the control counts, <code>false</code> to copy them
+     * @return this writer
+     */
+    public EdifactWriter setControlCounts(final boolean controlCounts) {
+        this.controlCounts = controlCounts;
+        return this;
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) throws SAXException {
+        final String name = localName.isEmpty() ? qName.substring(qName.indexOf(':') + 1) : localName;
+        text.setLength(0);
+
+        if (inUna) {
+            depth++;
+        } else if (segmentLayout != null) {
+            depth++;
+            if (depth == 1) {
+                startField(name);
+            } else if (depth == 2) {
+                componentIndex = segmentLayout.isComposite(fieldIndex) ? segmentLayout.indexOfComponent(fieldIndex, name) : -1;
+                if (componentIndex < 0) {
+                    throw new SAXException("Unexpected component [" + name + "] in field " + (fieldIndex + 1) + " of segment [" + tag + "]");
+                }
+            }
+        } else if (name.equals("UNA")) {
+            inUna = true;
+            depth = 0;
+            Arrays.fill(serviceCharacters, null);
+        } else {
+            segmentLayout = segmentLayouts.getSegmentLayout(name);
+            if (segmentLayout != null) {
+                startSegment(name);
+            } else if (name.equals("FunctionGroup")) {
+                groupCount++;
+                groupMessageCount = 0;
+            }
+        }
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) {
+        if (inUna || segmentLayout != null) {
+            text.append(ch, start, length);
+        }
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        if (inUna) {
+            if (depth == 0) {
+                endUna();
+            } else {
+                recordServiceCharacter(localName.isEmpty() ? qName.substring(qName.indexOf(':') + 1) : localName);
+                depth--;
+            }
+        } else if (segmentLayout != null) {
+            if (depth == 0) {
+                endSegment();
+            } else {
+                if (depth == 2) {
+                    appendComponent();
+                } else if (depth == 1 && !segmentLayout.isComposite(fieldIndex)) {
+                    escape(format(text, segmentLayout.getNumberPattern(fieldIndex)), fields[fieldIndex]);
+                }
+                depth--;
+            }
+        }
+        text.setLength(0);
+    }
+
+    private void startSegment(final String name) {
+        tag = name;
+        depth = 0;
+        fieldIndex = -1;
+        if (fields.length < segmentLayout.getFieldCount()) {
+            final StringBuilder[] newFields = Arrays.copyOf(fields, segmentLayout.getFieldCount());
+            for (int i = fields.length; i < newFields.length; i++) {
+                newFields[i] = new StringBuilder(64);
+            }
+            fields = newFields;
+        }
+        for (int i = 0; i < segmentLayout.getFieldCount(); i++) {
+            fields[i].setLength(0);
+        }
+        if (name.equals("UNH")) {
+            inMessage = true;
+            messageSegmentCount = 0;
+        }
+    }
+
+    private void startField(final String name) throws SAXException {
+        final int nextFieldIndex = segmentLayout.indexOfField(name);
+        if (nextFieldIndex < 0) {
+            throw new SAXException("Unexpected field [" + name + "] in segment [" + tag + "]");
+        }
+        if (nextFieldIndex == fieldIndex) {
+            // If v3 syntax then the field separator doubles as repeat separator
+            fields[fieldIndex].append(delimiters.getFieldRepeat() == null ? delimiters.getField() : delimiters.getFieldRepeat());
+        }
+        fieldIndex = nextFieldIndex;
+        lastComponentIndex = 0;
+    }
+
+    private void appendComponent() throws SAXException {
+        if (text.length() > 0) {
+            final StringBuilder field = fields[fieldIndex];
+            for (int i = lastComponentIndex; i < componentIndex; i++) {
+                field.append(delimiters.getComponent());
+            }
+            escape(format(text, segmentLayout.getNumberPattern(fieldIndex, componentIndex)), field);
+            lastComponentIndex = componentIndex;
+        }
+    }
+
+    private void endSegment() throws SAXException {
+        if (inMessage) {
+            messageSegmentCount++;
+        }
+        if (tag.equals("UNT")) {
+            messageCount++;
+            groupMessageCount++;
+            inMessage = false;
+            setControlCount(messageSegmentCount);
+        } else if (tag.equals("UNE")) {
+            setControlCount(groupMessageCount);
+        } else if (tag.equals("UNZ")) {
+            setControlCount(groupCount > 0 ? groupCount : messageCount);
+        }
+
+        int lastFieldIndex = segmentLayout.getFieldCount() - 1;
+        while (lastFieldIndex >= 0 && fields[lastFieldIndex].length() == 0) {
+            lastFieldIndex--;
+        }
+
+        segmentBuffer.setLength(0);
+        segmentBuffer.append(tag);
+        for (int i = 0; i <= lastFieldIndex; i++) {
+            segmentBuffer.append(delimiters.getField()).append(fields[i]);
+        }
+        segmentBuffer.append(delimiters.getSegment()).append(lineSeparator);
+        write(segmentBuffer);
+
+        segmentLayout = null;
+        tag = null;
+    }
+
+    private void setControlCount(final int count) {
+        if (controlCounts) {
+            fields[0].setLength(0);
+            fields[0].append(count);
+        }
+    }
+
+    private void recordServiceCharacter(final String name) {
+        final int index = SERVICE_CHARACTER_NAMES.indexOf(name);
+        if (index >= 0 && text.length() > 0) {
+            serviceCharacters[index] = text.substring(0, 1);
+        }
+    }
+
+    private void endUna() throws SAXException {
+        inUna = false;
+        final String repeatSeparator = serviceCharacters[4] == null ? DEFAULT_DELIMITERS.getFieldRepeat() : serviceCharacters[4];
+        final Delimiters unaDelimiters = new Delimiters()
+                .setComponent(serviceCharacters[0] == null ? DEFAULT_DELIMITERS.getComponent() : serviceCharacters[0])
+                .setField(serviceCharacters[1] == null ? DEFAULT_DELIMITERS.getField() : serviceCharacters[1])
+                .setDecimalSeparator(serviceCharacters[2] == null ? DEFAULT_DELIMITERS.getDecimalSeparator() : serviceCharacters[2])
+                .setEscape(serviceCharacters[3] == null ? DEFAULT_DELIMITERS.getEscape() : serviceCharacters[3])
+                .setSegment(serviceCharacters[5] == null ? DEFAULT_DELIMITERS.getSegment() : serviceCharacters[5]);
+        // A space repeat separator is reserved (syntax version 3) and so has no special meaning
+        if (!repeatSeparator.equals(" ")) {
+            unaDelimiters.setFieldRepeat(repeatSeparator);
+        }
+        delimiters = unaDelimiters.freeze();
+        numberFormats.clear();
+
+        segmentBuffer.setLength(0);
+        segmentBuffer.append("UNA")
+                .append(delimiters.getComponent())
+                .append(delimiters.getField())
+                .append(delimiters.getDecimalSeparator())
+                .append(delimiters.getEscape())
+                .append(repeatSeparator)
+                .append(delimiters.getSegment())
+                .append(lineSeparator);
+        write(segmentBuffer);
+    }
+
+    private CharSequence format(final CharSequence value, final String numberPattern) throws SAXException {
+        if (numberPattern == null || value.length() == 0) {
+            return value;
+        }
+        final BigDecimal number;
+        try {
+            number = new BigDecimal(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new SAXException("Invalid numeric value [" + value + "] in field " + (fieldIndex + 1) + " of segment [" + tag + "]", e);
+        }
+
+        return numberFormats.computeIfAbsent(numberPattern, this::newNumberFormat).format(number);
+    }
+
+    private DecimalFormat newNumberFormat(final String numberPattern) {
+        final char decimalSeparator = delimiters.getDecimalSeparatorChar() == Delimiters.NO_CHAR ? DEFAULT_DELIMITERS.getDecimalSeparatorChar() : delimiters.getDecimalSeparatorChar();
+        final DecimalFormatSymbols decimalFormatSymbols = new DecimalFormatSymbols(Locale.ROOT);
+        decimalFormatSymbols.setDecimalSeparator(decimalSeparator);
+        decimalFormatSymbols.setGroupingSeparator(decimalSeparator == ',' ? '.' : ',');
+        final DecimalFormat decimalFormat;
+        if (numberPattern.isEmpty()) {
+            // An empty pattern keeps every significant fraction digit
+            decimalFormat = new DecimalFormat("0.#", decimalFormatSymbols);
+            decimalFormat.setMaximumFractionDigits(Integer.MAX_VALUE);
+        } else {
+            decimalFormat = new DecimalFormat(numberPattern, decimalFormatSymbols);
+        }
+        decimalFormat.setRoundingMode(RoundingMode.HALF_EVEN);
+
+        return decimalFormat;
+    }
+
+    private void escape(final CharSequence value, final StringBuilder destination) {
+        final char escapeChar = delimiters.getEscapeChar();
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            final byte charClass = delimiters.getCharClass(c);
+            if (charClass != Delimiters.CHAR_CLASS_NONE && charClass != Delimiters.CHAR_CLASS_CR_LF && escapeChar != Delimiters.NO_CHAR) {
+                destination.append(escapeChar);
+            }
+            destination.append(c);
+        }
+    }
+
+    private void write(final StringBuilder segment) throws SAXException {
+        try {
+            writer.append(segment);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+}
@@ -0,0 +1,601 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edifact-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edifact;
+
+import org.apache.daffodil.japi.DataProcessor;
+import org.apache.daffodil.japi.Diagnostic;
+import org.apache.daffodil.japi.ParseResult;
+import org.apache.daffodil.japi.ValidationMode;
+import org.apache.daffodil.japi.infoset.W3CDOMInfosetOutputter;
+import org.apache.daffodil.japi.io.InputSourceDataInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.cartridges.edi.CompiledDataProcessorStore;
+import org.smooks.edi.edisax.BufferedSegmentReader;
+import org.smooks.edi.edisax.model.internal.Delimiters;
+import org.smooks.edi.edisax.unedifact.UNEdifactInterchangeParser;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.XMLConstants;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * UN/EDIFACT interchange reader splitting the interchange with the edi-sax {@link BufferedSegmentReader} and parsing
+ * only the messages with DFDL.
+ * <p/>
+ * The envelope segments (UNA, UNB, UNG, UNE and UNZ) are tokenized by hand and parsed individually with the small
+ * processors of <code>EDIFACT-Common/EDIFACT-Envelope.dfdl.xsd</code>. Each message, UNH to UNT inclusive, is parsed by
+ * a processor compiled for its message type alone. Given an {@link ExecutorService}, messages are parsed in parallel
+ * while their events are still reported in interchange order. The events have the same shape as those of a processor
+ * created by {@link EdifactDataProcessorFactory} for the same messages schema.
+ */
+public class HybridEdifactReader implements XMLReader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HybridEdifactReader.class);
+    private static final String ENVELOPE_SCHEMA = "/EDIFACT-Common/EDIFACT-Envelope.dfdl.xsd";
+    private static final String FORMAT_NAMESPACE = "http://www.ibm.com/dfdl/EDI/Format";
+    private static final Charset DEFAULT_ENCODING = StandardCharsets.ISO_8859_1;
+    private static final int MAX_PENDING_MESSAGES = 64;
+    private static final int MAX_MESSAGE_DATA_PROCESSORS = 64;
+    private static final Map<String, String> DEFAULT_UNA_VARIABLES = Collections.unmodifiableMap(createVariables(':', '+', '.', '?', '*', '\''));
+
+    private final Map<String, Boolean> features = new HashMap<>();
+    private final Map<String, DataProcessor> dataProcessors = new ConcurrentHashMap<>();
+    private final Map<String, DataProcessor> messageDataProcessors = Collections.synchronizedMap(new LinkedHashMap<String, DataProcessor>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, DataProcessor> eldest) {
+            return size() > MAX_MESSAGE_DATA_PROCESSORS;
+        }
+    });
+    private final MessageTypeProfile messageTypeProfile;
+    private final String schemaUri;
+    private final String version;
+    private final String namespace;
+    private final String serviceNamespace;
+    private ContentHandler contentHandler;
+    private DTDHandler dtdHandler;
+    private EntityResolver entityResolver;
+    private ErrorHandler errorHandler;
+    private ExecutorService executorService;
+    private ValidationMode validationMode = ValidationMode.Off;
+    private File compiledSchemaDirectory = CompiledDataProcessorStore.getDefaultDirectory();
+
+    /**
+     * @param schemaUri messages schema URI, e.g., <code>/d03b/EDIFACT-Messages.dfdl.xsd</code>
+     */
+    public HybridEdifactReader(final String schemaUri) {
+        this.schemaUri = schemaUri;
+        try {
+            version = EdifactDataProcessorFactory.readVersion(schemaUri);
+        } catch (Exception e) {
+            throw new SmooksConfigException(e);
+        }
+        namespace = "http://www.ibm.com/dfdl/edi/un/edifact/" + version;
+        serviceNamespace = EdifactInterchangeSchema.forSchema(schemaUri).getServiceNamespace();
+        messageTypeProfile = MessageTypeProfile.forSchema(schemaUri);
+    }
+
+    /**
+     * Sets the executor parsing messages in parallel. Messages are parsed on the calling thread when no executor is
+     * set.
+     *
+     * @param executorService executor parsing messages, or <code>null</code>
+     * @return this reader
+     */
+    public HybridEdifactReader setExecutorService(final ExecutorService executorService) {
+        this.executorService = executorService;
+        return this;
+    }
+
+    public HybridEdifactReader setValidationMode(final ValidationMode validationMode) {
+        this.validationMode = validationMode;
+        return this;
+    }
+
+    public HybridEdifactReader setCompiledSchemaDirectory(final File compiledSchemaDirectory) {
+        this.compiledSchemaDirectory = compiledSchemaDirectory;
+        return this;
+    }
+
+    @Override
+    public void parse(final InputSource interchange) throws IOException, SAXException {
+        if (contentHandler == null) {
+            throw new IllegalStateException("'contentHandler' not set.  Cannot parse EDI stream.");
+        }
+
+        final Charset encoding = interchange.getEncoding() == null ? DEFAULT_ENCODING : Charset.forName(interchange.getEncoding());
+        final InputSource characterSource = interchange.getCharacterStream() == null ? new InputSource(new InputStreamReader(interchange.getByteStream(), encoding)) : interchange;
+        final BufferedSegmentReader segmentReader = new BufferedSegmentReader(characterSource, ((Delimiters) UNEdifactInterchangeParser.defaultUNEdifactDelimiters.clone()).freeze());
+        segmentReader.setIgnoreNewLines(true);
+
+        contentHandler.startDocument();
+        new InterchangeParse(segmentReader, encoding).parse();
+        contentHandler.endDocument();
+    }
+
+    @Override
+    public void parse(final String systemId) throws IOException, SAXException {
+        parse(new InputSource(systemId));
+    }
+
+    /**
+     * Re-escapes the segment terminators in a segment read by {@link BufferedSegmentReader}, which drops the release
+     * character preceding an escaped segment terminator, and terminates the segment.
+     */
+    static String toRawSegment(final CharSequence segment, final char segmentTerminator, final char releaseCharacter) {
+        final StringBuilder rawSegment = new StringBuilder(segment.length() + 2);
+        for (int i = 0; i < segment.length(); i++) {
+            final char c = segment.charAt(i);
+            if (c == segmentTerminator) {
+                rawSegment.append(releaseCharacter);
+            }
+            rawSegment.append(c);
+        }
+
+        return rawSegment.append(segmentTerminator).toString();
+    }
+
+    /**
+     * Creates the DFDL external variables of an interchange from the service characters of its UNA segment.
+     */
+    static Map<String, String> createVariables(final char componentSeparator, final char fieldSeparator, final char decimalSeparator, final char releaseCharacter, final char repeatSeparator, final char segmentTerminator) {
+        final Map<String, String> variables = new HashMap<>();
+        final String segmentTerm = toDfdlLiteral(segmentTerminator);
+        variables.put("{" + FORMAT_NAMESPACE + "}SegmentTerm", segmentTerm + "%NL;%WSP*; " + segmentTerm + "%WSP*;");
+        variables.put("{" + FORMAT_NAMESPACE + "}FieldSep", toDfdlLiteral(fieldSeparator));
+        variables.put("{" + FORMAT_NAMESPACE + "}CompositeSep", toDfdlLiteral(componentSeparator));
+        variables.put("{" + FORMAT_NAMESPACE + "}EscapeChar", String.valueOf(releaseCharacter));
+        // If v3 syntax then assume field separator
+        variables.put("{" + FORMAT_NAMESPACE + "}RepeatSep", repeatSeparator == ' ' ? toDfdlLiteral(fieldSeparator) : toDfdlLiteral(repeatSeparator));
+        variables.put("{" + FORMAT_NAMESPACE + "}DecimalSep", String.valueOf(decimalSeparator));
+        variables.put("{" + FORMAT_NAMESPACE + "}GroupingSep", ",");
+
+        return variables;
+    }
+
+    private static String toDfdlLiteral(final char c) {
+        if (c == ' ') {
+            return "%SP;";
+        } else if (c == '%') {
+            return "%%";
+        } else {
+            return String.valueOf(c);
+        }
+    }
+
+    private DataProcessor getEnvelopeDataProcessor(final String segmentCode) {
+        return dataProcessors.computeIfAbsent(segmentCode, key -> {
+            try {
+                return CompiledDataProcessorStore.getInstance().getOrCompile(new URI(ENVELOPE_SCHEMA), segmentCode, null, DEFAULT_UNA_VARIABLES, validationMode, Collections.emptyList(), compiledSchemaDirectory);
+            } catch (URISyntaxException e) {
+                throw new SmooksConfigException(e);
+            }
+        });
+    }
+
+    /**
+     * Gets the processor of a message type. Service messages and the types the messages schema does not define, which
+     * come straight from the UNH segment of the input, share one processor parsing them into their own element or
+     * into <code>BadMessage</code>, so that unknown types compile no schema. The processors of the defined types are
+     * cached for the {@link #MAX_MESSAGE_DATA_PROCESSORS} most recently used types.
+     */
+    private DataProcessor getMessageDataProcessor(final String messageType) {
+        if (isDefaultMessageType(messageType)) {
+            return getDefaultMessageDataProcessor();
+        }
+
+        DataProcessor messageDataProcessor = messageDataProcessors.get(messageType);
+        if (messageDataProcessor == null) {
+            try {
+                messageDataProcessor = compileMessageDataProcessor(Collections.singletonList(messageType));
+            } catch (SmooksConfigException e) {
+                LOGGER.debug("Falling back to the bad message branch for message type [{}]", messageType, e);
+                messageDataProcessor = getDefaultMessageDataProcessor();
+            }
+            messageDataProcessors.put(messageType, messageDataProcessor);
+        }
+
+        return messageDataProcessor;
+    }
+
+    private boolean isDefaultMessageType(final String messageType) {
+        return MessageTypeProfile.SERVICE_MESSAGE_TYPES.contains(messageType) || !messageTypeProfile.isDefined(messageType);
+    }
+
+    private DataProcessor getDefaultMessageDataProcessor() {
+        return dataProcessors.computeIfAbsent("UNH", key -> compileMessageDataProcessor(Collections.emptyList()));
+    }
+
+    private DataProcessor compileMessageDataProcessor(final List<String> messageTypes) {
+        try {
+            final URI entrySchemaUri = EdifactDataProcessorFactory.materialiseEntrySchema(schemaUri, messageTypes, version);
+            return CompiledDataProcessorStore.getInstance().getOrCompile(entrySchemaUri, "Message", namespace, DEFAULT_UNA_VARIABLES, validationMode, messageTypes, compiledSchemaDirectory);
+        } catch (IOException e) {
+            throw new SmooksConfigException(e);
+        }
+    }
+
+    private static Document parse(final DataProcessor dataProcessor, final String segments, final Charset encoding) throws SAXException {
+        final W3CDOMInfosetOutputter infosetOutputter = new W3CDOMInfosetOutputter();
+        final ParseResult parseResult = dataProcessor.parse(new InputSourceDataInputStream(segments.getBytes(encoding)), infosetOutputter);
+        if (parseResult.isError()) {
+            final StringBuilder message = new StringBuilder("Failed to parse segments [").append(segments).append("]");
+            for (Diagnostic diagnostic : parseResult.getDiagnostics()) {
+                message.append(System.lineSeparator()).append(diagnostic.getMessage());
+            }
+            throw new SAXException(message.toString());
+        }
+
+        return infosetOutputter.getResult();
+    }
+
+    /**
+     * State of the interchange being read.
+     */
+    private final class InterchangeParse {
+        private final BufferedSegmentReader segmentReader;
+        private final Charset encoding;
+        private final Map<String, String> namespaces = new HashMap<>();
+        private final Map<String, DataProcessor> interchangeDataProcessors = new HashMap<>();
+        private final Deque<Future<Document>> pendingMessages = new ArrayDeque<>();
+        private Map<String, String> variables = DEFAULT_UNA_VARIABLES;
+        private char segmentTerminator = '\'';
+        private char releaseCharacter = '?';
+        private Document una;
+        private boolean inFunctionGroup;
+        private String messageType;
+        private StringBuilder message;
+
+        private InterchangeParse(final BufferedSegmentReader segmentReader, final Charset encoding) {
+            this.segmentReader = segmentReader;
+            this.encoding = encoding;
+        }
+
+        private void parse() throws IOException, SAXException {
+            try {
+                parseSegments();
+            } catch (IOException | SAXException | RuntimeException e) {
+                cancelPendingMessages();
+                throw e;
+            }
+        }
+
+        private void parseSegments() throws IOException, SAXException {
+            final String segmentCode = segmentReader.peek(3, true);
+            if (segmentCode.equals("UNA")) {
+                readUna();
+            }
+
+            boolean hasSegment = segmentReader.moveToNextSegment(false);
+            while (hasSegment) {
+                final StringBuffer segment = segmentReader.getSegmentBuffer();
+                final String tag = segment.length() < 3 ? segment.toString() : segment.substring(0, 3);
+                if (message != null) {
+                    message.append(toRawSegment(segment, segmentTerminator, releaseCharacter));
+                    if (tag.equals("UNT")) {
+                        submitMessage();
+                    }
+                } else if (tag.equals("UNH")) {
+                    final String[] fields = segmentReader.getCurrentSegmentFields();
+                    final String messageIdentifier = fields.length > 2 ? fields[2] : "";
+                    final int componentIndex = messageIdentifier.indexOf(segmentReader.getDelimiters().getComponentChar());
+                    messageType = componentIndex < 0 ? messageIdentifier : messageIdentifier.substring(0, componentIndex);
+                    message = new StringBuilder(toRawSegment(segment, segmentTerminator, releaseCharacter));
+                } else if (tag.equals("UNB")) {
+                    startInterchange();
+                    replay(parseEnvelopeSegment(tag, segment));
+                } else if (tag.equals("UNG")) {
+                    drainPendingMessages(0);
+                    startElement("FunctionGroup");
+                    inFunctionGroup = true;
+                    replay(parseEnvelopeSegment(tag, segment));
+                } else if (tag.equals("UNE")) {
+                    drainPendingMessages(0);
+                    replay(parseEnvelopeSegment(tag, segment));
+                    endElement("FunctionGroup");
+                    inFunctionGroup = false;
+                } else if (tag.equals("UNZ")) {
+                    drainPendingMessages(0);
+                    if (inFunctionGroup) {
+                        throw new SAXException("Missing UNE segment before UNZ segment");
+                    }
+                    replay(parseEnvelopeSegment(tag, segment));
+                    endInterchange();
+                    return;
+                } else {
+                    throw new SAXException("Unexpected segment [" + segment + "] outside of a message");
+                }
+                hasSegment = segmentReader.moveToNextSegment();
+            }
+
+            throw new SAXException("Unexpected end of interchange: missing UNZ segment");
+        }
+
+        private void readUna() throws IOException, SAXException {
+            final String serviceCharacters = segmentReader.read(6);
+            if (serviceCharacters.length() < 6) {
+                throw new SAXException("Unexpected end of interchange in UNA segment");
+            }
+
+            final char componentSeparator = serviceCharacters.charAt(0);
+            final char fieldSeparator = serviceCharacters.charAt(1);
+            final char decimalSeparator = serviceCharacters.charAt(2);
+            final char repeatSeparator = serviceCharacters.charAt(4);
+            releaseCharacter = serviceCharacters.charAt(3);
+            segmentTerminator = serviceCharacters.charAt(5);
+
+            final Delimiters delimiters = new Delimiters()
+                    .setComponent(String.valueOf(componentSeparator))
+                    .setField(String.valueOf(fieldSeparator))
+                    .setDecimalSeparator(String.valueOf(decimalSeparator))
+                    .setEscape(String.valueOf(releaseCharacter))
+                    .setSegment(String.valueOf(segmentTerminator));
+            segmentReader.pushDelimiters(delimiters.freeze());
+            variables = createVariables(componentSeparator, fieldSeparator, decimalSeparator, releaseCharacter, repeatSeparator, segmentTerminator);
+            una = HybridEdifactReader.parse(getEnvelopeDataProcessor("UNA"), "UNA" + serviceCharacters, encoding);
+        }
+
+        private Document parseEnvelopeSegment(final String tag, final CharSequence segment) throws SAXException {
+            return HybridEdifactReader.parse(withVariables(tag, getEnvelopeDataProcessor(tag)), toRawSegment(segment, segmentTerminator, releaseCharacter), encoding);
+        }
+
+        private DataProcessor withVariables(final String key, final DataProcessor dataProcessor) throws SAXException {
+            if (variables == DEFAULT_UNA_VARIABLES) {
+                return dataProcessor;
+            }
+
+            DataProcessor interchangeDataProcessor = interchangeDataProcessors.get(key);
+            if (interchangeDataProcessor == null) {
+                try {
+                    interchangeDataProcessor = dataProcessor.withExternalVariables(new HashMap<>(variables));
+                } catch (Exception e) {
+                    throw new SAXException(e);
+                }
+                interchangeDataProcessors.put(key, interchangeDataProcessor);
+            }
+
+            return interchangeDataProcessor;
+        }
+
+        private void submitMessage() throws SAXException {
+            final DataProcessor dataProcessor = withVariables(isDefaultMessageType(messageType) ? "UNH" : "UNH:" + messageType, getMessageDataProcessor(messageType));
+            final String segments = message.toString();
+            message = null;
+
+            if (executorService == null) {
+                replay(HybridEdifactReader.parse(dataProcessor, segments, encoding).getDocumentElement());
+            } else {
+                drainPendingMessages(MAX_PENDING_MESSAGES - 1);
+                pendingMessages.add(executorService.submit(() -> HybridEdifactReader.parse(dataProcessor, segments, encoding)));
+            }
+        }
+
+        private void drainPendingMessages(final int maxPendingMessages) throws SAXException {
+            while (pendingMessages.size() > maxPendingMessages) {
+                final Future<Document> pendingMessage = pendingMessages.remove();
+                try {
+                    replay(pendingMessage.get().getDocumentElement());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SAXException(e);
+                } catch (ExecutionException e) {
+                    cancelPendingMessages();
+                    if (e.getCause() instanceof SAXException) {
+                        throw (SAXException) e.getCause();
+                    }
+                    throw new SAXException(e);
+                }
+            }
+        }
+
+        private void cancelPendingMessages() {
+            pendingMessages.forEach(pendingMessage -> pendingMessage.cancel(true));
+            pendingMessages.clear();
+        }
+
+        private void startInterchange() throws SAXException {
+            namespaces.put(version, namespace);
+            namespaces.put("srv", serviceNamespace);
+            for (Map.Entry<String, String> prefixMapping : namespaces.entrySet()) {
+                contentHandler.startPrefixMapping(prefixMapping.getKey(), prefixMapping.getValue());
+            }
+            contentHandler.startElement(namespace, "Interchange", version + ":Interchange", new AttributesImpl());
+            if (una != null) {
+                replay(una);
+            }
+        }
+
+        private void endInterchange() throws SAXException {
+            contentHandler.endElement(namespace, "Interchange", version + ":Interchange");
+            for (String prefix : namespaces.keySet()) {
+                contentHandler.endPrefixMapping(prefix);
+            }
+        }
+
+        private void startElement(final String localName) throws SAXException {
+            contentHandler.startElement("", localName, localName, new AttributesImpl());
+        }
+
+        private void endElement(final String localName) throws SAXException {
+            contentHandler.endElement("", localName, localName);
+        }
+
+        private void replay(final Document document) throws SAXException {
+            replay(document.getDocumentElement());
+        }
+
+        private void replay(final Element element) throws SAXException {
+            final List<String> prefixes = new ArrayList<>();
+            final AttributesImpl attributes = new AttributesImpl();
+            final NamedNodeMap elementAttributes = element.getAttributes();
+            for (int i = 0; i < elementAttributes.getLength(); i++) {
+                final Attr attribute = (Attr) elementAttributes.item(i);
+                if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) {
+                    final String prefix = attribute.getName().equals(XMLConstants.XMLNS_ATTRIBUTE) ? "" : attribute.getLocalName();
+                    if (!attribute.getValue().equals(namespaces.get(prefix))) {
+                        contentHandler.startPrefixMapping(prefix, attribute.getValue());
+                        prefixes.add(prefix);
+                    }
+                } else {
+                    attributes.addAttribute(nullToEmpty(attribute.getNamespaceURI()), localName(attribute), attribute.getName(), "CDATA", attribute.getValue());
+                }
+            }
+
+            contentHandler.startElement(nullToEmpty(element.getNamespaceURI()), localName(element), element.getTagName(), attributes);
+            for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    replay((Element) child);
+                } else if (child.getNodeType() == Node.TEXT_NODE || child.getNodeType() == Node.CDATA_SECTION_NODE) {
+                    final char[] characters = child.getNodeValue().toCharArray();
+                    contentHandler.characters(characters, 0, characters.length);
+                }
+            }
+            contentHandler.endElement(nullToEmpty(element.getNamespaceURI()), localName(element), element.getTagName());
+
+            for (String prefix : prefixes) {
+                contentHandler.endPrefixMapping(prefix);
+            }
+        }
+    }
+
+    private static String nullToEmpty(final String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String localName(final Node node) {
+        return node.getLocalName() == null ? node.getNodeName() : node.getLocalName();
+    }
+
+    @Override
+    public boolean getFeature(final String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+        final Boolean feature = features.get(name);
+        return feature != null && feature;
+    }
+
+    @Override
+    public void setFeature(final String name, final boolean value) throws SAXNotRecognizedException, SAXNotSupportedException {
+        features.put(name, value);
+    }
+
+    @Override
+    public Object getProperty(final String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+        return null;
+    }
+
+    @Override
+    public void setProperty(final String name, final Object value) throws SAXNotRecognizedException, SAXNotSupportedException {
+    }
+
+    @Override
+    public void setEntityResolver(final EntityResolver entityResolver) {
+        this.entityResolver = entityResolver;
+    }
+
+    @Override
+    public EntityResolver getEntityResolver() {
+        return entityResolver;
+    }
+
+    @Override
+    public void setDTDHandler(final DTDHandler dtdHandler) {
+        this.dtdHandler = dtdHandler;
+    }
+
+    @Override
+    public DTDHandler getDTDHandler() {
+        return dtdHandler;
+    }
+
+    @Override
+    public void setContentHandler(final ContentHandler contentHandler) {
+        this.contentHandler = contentHandler;
+    }
+
+    @Override
+    public ContentHandler getContentHandler() {
+        return contentHandler;
+    }
+
+    @Override
+    public void setErrorHandler(final ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    @Override
+    public ErrorHandler getErrorHandler() {
+        return errorHandler;
+    }
+}
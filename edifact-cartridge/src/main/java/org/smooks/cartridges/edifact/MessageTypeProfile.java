@@ -0,0 +1,270 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edifact-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edifact;
+
+import org.apache.daffodil.japi.DataProcessor;
+import org.apache.daffodil.util.Misc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.smooks.cartridges.edi.DataProcessorWarmUp;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JVM-wide record of the UNH message types received for a messages schema.
+ * <p/>
+ * Message types are recorded by wrapping the EDIFACT input in a {@link MessageTypeProfilingInputStream}. Only the
+ * service messages and the message types the messages schema defines are recorded, so the profile cannot grow past the
+ * schema whatever the input. Parsers configured with <code>messageTypeProfiling</code> enabled and no declared message
+ * types use the profile to compile, in the background, a processor narrowed to the recorded types. New parsers are
+ * given the narrowed processor once it is ready and covers every type recorded so far. Until then, and whenever a type
+ * outside the narrowed set arrives, they are given the full interchange processor. Parsers given the narrowed processor
+ * parse an interchange holding a type outside the narrowed set with the full interchange processor, so that its
+ * messages are not parsed as <code>BadMessage</code>. The processor is narrowed again at most once a minute, a type set
+ * failing to compile is not retried, and narrowing stops for good after eight failures.
+ */
+public final class MessageTypeProfile {
+
+    static final Set<String> SERVICE_MESSAGE_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("AUTACK", "CONTRL", "KEYMAN")));
+    static final long NARROWING_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    static final int MAX_FAILED_NARROWINGS = 8;
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageTypeProfile.class);
+    private static final Map<String, MessageTypeProfile> PROFILES = new ConcurrentHashMap<>();
+    private static final DataProcessorWarmUp DATA_PROCESSOR_WARM_UP = new DataProcessorWarmUp(1);
+
+    private final String schemaUri;
+    private final Set<String> definedMessageTypes;
+    private final ConcurrentMap<String, AtomicLong> messageTypeCounts = new ConcurrentHashMap<>();
+    private final Set<Set<String>> failedMessageTypes = new HashSet<>();
+    private final Map<DataProcessor, Set<String>> narrowedDataProcessors = Collections.synchronizedMap(new WeakHashMap<>());
+    private volatile Set<String> narrowedMessageTypes;
+    private volatile Future<DataProcessor> narrowedDataProcessor;
+    private long lastNarrowingNanos;
+
+    MessageTypeProfile(final String schemaUri, final Set<String> definedMessageTypes) {
+        this.schemaUri = schemaUri;
+        this.definedMessageTypes = definedMessageTypes;
+    }
+
+    /**
+     * Gets the profile of a messages schema.
+     *
+     * @param schemaUri messages schema URI as given in the <code>schemaURI</code> parameter
+     * @return the profile
+     */
+    public static MessageTypeProfile forSchema(final String schemaUri) {
+        return PROFILES.computeIfAbsent(schemaUri, s -> new MessageTypeProfile(s, readMessageTypes(s)));
+    }
+
+    public String getSchemaUri() {
+        return schemaUri;
+    }
+
+    /**
+     * Records the arrival of a message. Message types the messages schema does not define are ignored.
+     *
+     * @param messageType UNH message type, e.g. <code>ORDERS</code>
+     */
+    public void record(final String messageType) {
+        if (SERVICE_MESSAGE_TYPES.contains(messageType) || definedMessageTypes.contains(messageType)) {
+            messageTypeCounts.computeIfAbsent(messageType, m -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * @param messageType UNH message type
+     * @return <code>true</code> if the messages schema defines the message type
+     */
+    boolean isDefined(final String messageType) {
+        return definedMessageTypes.contains(messageType);
+    }
+
+    /**
+     * @param messageType UNH message type
+     * @return the number of messages of the type recorded
+     */
+    public long getCount(final String messageType) {
+        final AtomicLong count = messageTypeCounts.get(messageType);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return the recorded message types, excluding service messages which every interchange schema supports
+     */
+    public SortedSet<String> getMessageTypes() {
+        final SortedSet<String> messageTypes = new TreeSet<>(messageTypeCounts.keySet());
+        messageTypes.removeAll(SERVICE_MESSAGE_TYPES);
+
+        return messageTypes;
+    }
+
+    /**
+     * Gets the narrowed processor if it is compiled and covers every message type recorded so far.
+     *
+     * @return the narrowed processor or <code>null</code>
+     */
+    DataProcessor getNarrowedDataProcessor() {
+        final Set<String> messageTypes = narrowedMessageTypes;
+        final Future<DataProcessor> dataProcessor = narrowedDataProcessor;
+        if (messageTypes == null || dataProcessor == null || !dataProcessor.isDone()) {
+            return null;
+        }
+        try {
+            final DataProcessor compiledDataProcessor = dataProcessor.get();
+            if (!messageTypes.containsAll(getMessageTypes())) {
+                return null;
+            }
+            narrowedDataProcessors.putIfAbsent(compiledDataProcessor, messageTypes);
+            return compiledDataProcessor;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            fail(messageTypes, dataProcessor, e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Gets the message types a processor handed out by {@link #getNarrowedDataProcessor()} is narrowed to. Messages of
+     * other types defined by the messages schema are parsed as <code>BadMessage</code> by that processor.
+     *
+     * @param dataProcessor processor
+     * @return the message types or <code>null</code> when the processor is not narrowed
+     */
+    Set<String> getNarrowedMessageTypes(final DataProcessor dataProcessor) {
+        return narrowedDataProcessors.get(dataProcessor);
+    }
+
+    /**
+     * @param messageType UNH message type
+     * @param narrowedMessageTypes message types a processor is narrowed to
+     * @return <code>true</code> if the messages schema defines the message type and a processor narrowed to the given
+     * message types parses it as <code>BadMessage</code>
+     */
+    boolean isOutside(final String messageType, final Set<String> narrowedMessageTypes) {
+        return definedMessageTypes.contains(messageType) && !SERVICE_MESSAGE_TYPES.contains(messageType) && !narrowedMessageTypes.contains(messageType);
+    }
+
+    /**
+     * Compiles a processor narrowed to the given message types in the background, unless one is already compiled or
+     * compiling for the same types, the types failed to compile before, or the processor was narrowed less than a
+     * minute ago.
+     *
+     * @param messageTypes          message types to narrow to
+     * @param dataProcessorCallable task compiling the narrowed processor
+     */
+    synchronized void narrow(final Set<String> messageTypes, final Callable<DataProcessor> dataProcessorCallable) {
+        if (messageTypes.equals(narrowedMessageTypes) || failedMessageTypes.size() >= MAX_FAILED_NARROWINGS || failedMessageTypes.contains(messageTypes)) {
+            return;
+        }
+        final long nanoTime = System.nanoTime();
+        if (narrowedMessageTypes != null && nanoTime - lastNarrowingNanos < NARROWING_INTERVAL_NANOS) {
+            return;
+        }
+        lastNarrowingNanos = nanoTime;
+        narrowedDataProcessor = DATA_PROCESSOR_WARM_UP.submit(schemaUri + ":" + String.join(":", messageTypes), dataProcessorCallable);
+        narrowedMessageTypes = Collections.unmodifiableSet(new TreeSet<>(messageTypes));
+    }
+
+    private synchronized void fail(final Set<String> messageTypes, final Future<DataProcessor> dataProcessor, final Throwable cause) {
+        if (dataProcessor != narrowedDataProcessor) {
+            return;
+        }
+        failedMessageTypes.add(messageTypes);
+        narrowedMessageTypes = null;
+        narrowedDataProcessor = null;
+        if (failedMessageTypes.size() >= MAX_FAILED_NARROWINGS) {
+            LOGGER.warn("Failed to narrow [" + schemaUri + "] to message types " + messageTypes + ": giving up narrowing after " + MAX_FAILED_NARROWINGS + " failures", cause);
+        } else {
+            LOGGER.warn("Failed to narrow [" + schemaUri + "] to message types " + messageTypes + ": parsing with the full interchange processor", cause);
+        }
+    }
+
+    /**
+     * Reads the names of the global elements of a messages schema, which are the message types it defines.
+     */
+    private static Set<String> readMessageTypes(final String schemaUri) {
+        final Set<String> messageTypes = new HashSet<>();
+        try {
+            final SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+            saxParserFactory.setNamespaceAware(true);
+            saxParserFactory.newSAXParser().parse(Misc.getRequiredResource(schemaUri).toString(), new DefaultHandler() {
+                private int depth;
+
+                @Override
+                public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) {
+                    if (++depth == 2 && localName.equals("element") && attributes.getValue("name") != null) {
+                        messageTypes.add(attributes.getValue("name"));
+                    }
+                }
+
+                @Override
+                public void endElement(final String uri, final String localName, final String qName) {
+                    depth--;
+                }
+            });
+        } catch (Exception e) {
+            LOGGER.warn("Cannot read the message types of [" + schemaUri + "]: recording service messages only", e);
+        }
+
+        return Collections.unmodifiableSet(messageTypes);
+    }
+}
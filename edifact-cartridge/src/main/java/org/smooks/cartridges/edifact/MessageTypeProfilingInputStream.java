@@ -0,0 +1,232 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edifact-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edifact;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+/**
+ * Records the UNH message types of the EDIFACT interchange read through it in a {@link MessageTypeProfile}.
+ * <p/>
+ * The stream scans the bytes passing through for UNH segments, honouring the delimiters of a UNA service string
+ * advice, and does not alter or buffer them. Character encodings which are not ASCII-compatible, such as UCS-2, are
+ * not supported.
+ */
+public class MessageTypeProfilingInputStream extends FilterInputStream {
+
+    private static final int UNA_LENGTH = 9;
+    private static final int SEGMENT_TAG = 0;
+    private static final int SEGMENT = 1;
+    private static final int UNH_MESSAGE_REFERENCE = 2;
+    private static final int UNH_MESSAGE_TYPE = 3;
+
+    private final MessageTypeProfile messageTypeProfile;
+    private final Set<String> narrowedMessageTypes;
+    private final StringBuilder serviceStringAdvice = new StringBuilder(UNA_LENGTH);
+    private final StringBuilder token = new StringBuilder();
+    private boolean serviceStringAdviceScanned;
+    private int state = SEGMENT_TAG;
+    private boolean escaped;
+    private boolean messageTypeOutsideNarrowing;
+    private char componentSeparator = ':';
+    private char dataElementSeparator = '+';
+    private char escapeCharacter = '?';
+    private char segmentTerminator = '\'';
+
+    public MessageTypeProfilingInputStream(final InputStream inputStream, final MessageTypeProfile messageTypeProfile) {
+        this(inputStream, messageTypeProfile, null);
+    }
+
+    /**
+     * @param inputStream          EDIFACT input
+     * @param messageTypeProfile   profile recording the message types
+     * @param narrowedMessageTypes message types of the narrowed processor parsing the input, or <code>null</code>
+     */
+    public MessageTypeProfilingInputStream(final InputStream inputStream, final MessageTypeProfile messageTypeProfile, final Set<String> narrowedMessageTypes) {
+        super(inputStream);
+        this.messageTypeProfile = messageTypeProfile;
+        this.narrowedMessageTypes = narrowedMessageTypes;
+    }
+
+    /**
+     * @return <code>true</code> if a message read so far has a type defined by the messages schema but outside the
+     * narrowed message types
+     */
+    public boolean hasMessageTypeOutsideNarrowing() {
+        return messageTypeOutsideNarrowing;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+        if (b == -1) {
+            flushServiceStringAdvice();
+        } else {
+            scan((char) b);
+        }
+
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int length = super.read(b, off, len);
+        if (length == -1) {
+            flushServiceStringAdvice();
+        }
+        for (int i = 0; i < length; i++) {
+            scan((char) (b[off + i] & 0xFF));
+        }
+
+        return length;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            final int length = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (length == -1) {
+                break;
+            }
+            skipped += length;
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(final int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    private void scan(final char c) {
+        if (!serviceStringAdviceScanned) {
+            serviceStringAdvice.append(c);
+            if (serviceStringAdvice.length() == UNA_LENGTH || (serviceStringAdvice.length() <= 3 && !"UNA".startsWith(serviceStringAdvice.toString()))) {
+                flushServiceStringAdvice();
+            }
+        } else {
+            process(c);
+        }
+    }
+
+    private void flushServiceStringAdvice() {
+        if (serviceStringAdviceScanned) {
+            return;
+        }
+        serviceStringAdviceScanned = true;
+        final String header = serviceStringAdvice.toString();
+        if (header.length() == UNA_LENGTH && header.startsWith("UNA")) {
+            componentSeparator = header.charAt(3);
+            dataElementSeparator = header.charAt(4);
+            escapeCharacter = header.charAt(6);
+            segmentTerminator = header.charAt(8);
+        } else {
+            for (int i = 0; i < header.length(); i++) {
+                process(header.charAt(i));
+            }
+        }
+    }
+
+    private void process(final char c) {
+        if (escaped) {
+            escaped = false;
+            if (state == UNH_MESSAGE_TYPE) {
+                token.append(c);
+            }
+        } else if (c == escapeCharacter && state != SEGMENT_TAG) {
+            escaped = true;
+        } else if (c == segmentTerminator) {
+            if (state == UNH_MESSAGE_TYPE) {
+                recordMessageType();
+            }
+            state = SEGMENT_TAG;
+            token.setLength(0);
+        } else if (state == SEGMENT_TAG) {
+            if (c == dataElementSeparator) {
+                state = token.toString().equals("UNH") ? UNH_MESSAGE_REFERENCE : SEGMENT;
+                token.setLength(0);
+            } else if (!Character.isWhitespace(c)) {
+                token.append(c);
+                if (token.length() > 3) {
+                    state = SEGMENT;
+                }
+            }
+        } else if (state == UNH_MESSAGE_REFERENCE) {
+            if (c == dataElementSeparator) {
+                state = UNH_MESSAGE_TYPE;
+            }
+        } else if (state == UNH_MESSAGE_TYPE) {
+            if (c == componentSeparator || c == dataElementSeparator) {
+                recordMessageType();
+                state = SEGMENT;
+            } else {
+                token.append(c);
+            }
+        }
+    }
+
+    private void recordMessageType() {
+        if (token.length() > 0) {
+            final String messageType = token.toString();
+            messageTypeProfile.record(messageType);
+            if (narrowedMessageTypes != null && messageTypeProfile.isOutside(messageType, narrowedMessageTypes)) {
+                messageTypeOutsideNarrowing = true;
+            }
+            token.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edifact-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edifact;
+
+import org.smooks.api.ApplicationContext;
+import org.smooks.api.ExecutionContext;
+import org.smooks.api.SmooksConfigException;
+import org.smooks.api.SmooksException;
+import org.smooks.api.TypedKey;
+import org.smooks.api.delivery.Filter;
+import org.smooks.api.resource.config.ResourceConfig;
+import org.smooks.api.resource.visitor.sax.ng.AfterVisitor;
+import org.smooks.api.resource.visitor.sax.ng.BeforeVisitor;
+import org.smooks.api.resource.visitor.sax.ng.ChildrenVisitor;
+import org.smooks.engine.lookup.GlobalParamsLookup;
+import org.smooks.io.Stream;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.Element;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+
+/**
+ * EDIFACT unparser serialising the interchange with an {@link EdifactWriter} instead of a DFDL unparser.
+ * <p/>
+ * An opt-in alternative to <code>edifact:unparser</code> for interchanges in the element layout of
+ * <code>EDIFACT-Interchange.dfdl.xsd</code>. The output is not validated against the schema: elements are written
+ * as they come, in the positions the schema gives them. The visitor replays the SAX NG events it is targeted with
+ * straight into the writer, without buffering the interchange, so <code>unparseOnNode</code> must be <code>*</code>
+ * and default serialization must be off, otherwise the configuration is rejected. The unparser is therefore configured
+ * at the top level rather than in a nested Smooks, which always serialises by default. The outermost visited element
+ * opens the writer and closes it on its way out.
+ */
+public class NativeEdifactUnparser implements BeforeVisitor, AfterVisitor, ChildrenVisitor {
+
+    private static final Attributes NO_ATTRIBUTES = new AttributesImpl();
+
+    private final TypedKey<WriterState> writerStateTypedKey = new TypedKey<>();
+
+    @Inject
+    private ResourceConfig resourceConfig;
+
+    @Inject
+    private ApplicationContext applicationContext;
+
+    private String schemaUri;
+    private boolean controlCounts;
+
+    @PostConstruct
+    public void postConstruct() {
+        if (!resourceConfig.getSelectorPath().getSelector().equals("*")) {
+            throw new SmooksConfigException("Native EDIFACT unparser must be targeted at every element: set unparseOnNode to [*] instead of [" + resourceConfig.getSelectorPath().getSelector() + "]");
+        }
+        final ResourceConfig globalParams = applicationContext.getRegistry().lookup(new GlobalParamsLookup(applicationContext.getRegistry()));
+        if (Boolean.parseBoolean(globalParams.getParameterValue(Filter.DEFAULT_SERIALIZATION_ON, String.class, "true"))) {
+            throw new SmooksConfigException("Native EDIFACT unparser requires default serialization to be off: set the global parameter [" + Filter.DEFAULT_SERIALIZATION_ON + "] to false");
+        }
+        schemaUri = resourceConfig.getParameterValue("schemaURI", String.class);
+        controlCounts = Boolean.parseBoolean(resourceConfig.getParameterValue("controlCounts", String.class, "true"));
+        // fails fast on a schema the segment layouts cannot be read from
+        EdifactSegmentLayouts.forSchema(schemaUri);
+    }
+
+    @Override
+    public void visitBefore(final Element element, final ExecutionContext executionContext) {
+        WriterState writerState = executionContext.get(writerStateTypedKey);
+        try {
+            if (writerState == null) {
+                writerState = new WriterState(new EdifactWriter(Stream.out(executionContext), schemaUri).setControlCounts(controlCounts));
+                executionContext.put(writerStateTypedKey, writerState);
+                writerState.edifactWriter.startDocument();
+            }
+            writerState.depth++;
+            writerState.edifactWriter.startElement(getNamespaceUri(element), getLocalName(element), element.getTagName(), NO_ATTRIBUTES);
+        } catch (SAXException e) {
+            executionContext.remove(writerStateTypedKey);
+            throw new SmooksException(e);
+        }
+    }
+
+    @Override
+    public void visitChildText(final CharacterData characterData, final ExecutionContext executionContext) {
+        final WriterState writerState = executionContext.get(writerStateTypedKey);
+        if (writerState != null) {
+            final String data = characterData.getData();
+            writerState.edifactWriter.characters(data.toCharArray(), 0, data.length());
+        }
+    }
+
+    @Override
+    public void visitChildElement(final Element childElement, final ExecutionContext executionContext) {
+
+    }
+
+    @Override
+    public void visitAfter(final Element element, final ExecutionContext executionContext) {
+        final WriterState writerState = executionContext.get(writerStateTypedKey);
+        if (writerState == null) {
+            return;
+        }
+        try {
+            writerState.edifactWriter.endElement(getNamespaceUri(element), getLocalName(element), element.getTagName());
+            if (--writerState.depth == 0) {
+                executionContext.remove(writerStateTypedKey);
+                writerState.edifactWriter.endDocument();
+            }
+        } catch (SAXException e) {
+            executionContext.remove(writerStateTypedKey);
+            throw new SmooksException(e);
+        }
+    }
+
+    private static String getNamespaceUri(final Element element) {
+        return element.getNamespaceURI() == null ? "" : element.getNamespaceURI();
+    }
+
+    private static String getLocalName(final Element element) {
+        return element.getLocalName() == null ? "" : element.getLocalName();
+    }
+
+    private static final class WriterState {
+        private final EdifactWriter edifactWriter;
+        private int depth;
+
+        private WriterState(final EdifactWriter edifactWriter) {
+            this.edifactWriter = edifactWriter;
+        }
+    }
+}
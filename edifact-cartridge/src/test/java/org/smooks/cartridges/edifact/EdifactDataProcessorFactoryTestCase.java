@@ -47,14 +47,18 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.smooks.cartridges.dfdl.DfdlSchema;
+import org.smooks.cartridges.edi.CompiledDataProcessorStore;
 import org.smooks.engine.DefaultApplicationContextBuilder;
 import org.smooks.engine.resource.config.DefaultResourceConfig;
 import org.smooks.support.FileUtils;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
+import java.net.URI;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -67,6 +71,7 @@ public class EdifactDataProcessorFactoryTestCase {
         if (workingDir.exists()) {
             FileUtils.deleteDir(workingDir);
         }
+        CompiledDataProcessorStore.getInstance().forgetPersisted(workingDir);
     }
 
     @AfterEach
@@ -75,6 +80,7 @@ public class EdifactDataProcessorFactoryTestCase {
         if (workingDir.exists()) {
             FileUtils.deleteDir(workingDir);
         }
+        CompiledDataProcessorStore.getInstance().forgetPersisted(workingDir);
     }
     
     @Test
@@ -148,4 +154,23 @@ public class EdifactDataProcessorFactoryTestCase {
         cachedEdifactDataProcessorFactory.doCreateDataProcessor(new HashMap<>());
         assertEquals(2, new File(DfdlSchema.WORKING_DIRECTORY).listFiles().length);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMaterialiseEntrySchemaIsContentAddressed() throws IOException {
+        URI entrySchemaUri = EdifactDataProcessorFactory.materialiseEntrySchema("/d03b/EDIFACT-Messages.dfdl.xsd", Arrays.asList("ORDERS", "INVOIC"), "D03B");
+
+        assertTrue(new File(entrySchemaUri).isFile());
+        assertEquals(entrySchemaUri, EdifactDataProcessorFactory.materialiseEntrySchema("/d03b/EDIFACT-Messages.dfdl.xsd", Arrays.asList("INVOIC", "ORDERS"), "D03B"));
+        assertNotEquals(entrySchemaUri, EdifactDataProcessorFactory.materialiseEntrySchema("/d03b/EDIFACT-Messages.dfdl.xsd", Arrays.asList("INVOIC"), "D03B"));
+    }
+
+    @Test
+    public void testMaterialiseEntrySchemaRewritesDeletedEntrySchema() throws IOException {
+        File entrySchema = new File(EdifactDataProcessorFactory.materialiseEntrySchema("/d03b/EDIFACT-Messages.dfdl.xsd", Arrays.asList("PAYMUL"), "D03B"));
+        assertTrue(entrySchema.delete());
+
+        File rewrittenEntrySchema = new File(EdifactDataProcessorFactory.materialiseEntrySchema("/d03b/EDIFACT-Messages.dfdl.xsd", Arrays.asList("PAYMUL"), "D03B"));
+        assertTrue(rewrittenEntrySchema.isFile());
+        assertTrue(rewrittenEntrySchema.getParentFile().getName().startsWith(EdifactDataProcessorFactory.ENTRY_SCHEMA_DIRECTORY));
+    }
+}
@@ -44,14 +44,22 @@ package org.smooks.cartridges.edifact;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.smooks.Smooks;
+import org.smooks.api.SmooksConfigException;
 import org.smooks.support.StreamUtils;
 import org.xmlunit.builder.DiffBuilder;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.smooks.support.SmooksUtil.filterAndSerialize;
 
 public class EdifactFunctionalTestCase {
@@ -77,6 +85,40 @@ public class EdifactFunctionalTestCase {
         assertFalse(DiffBuilder.compare(getClass().getResourceAsStream(expectedResult)).ignoreWhitespace().withTest(result).build().hasDifferences());
     }
 
+    @Test
+    public void testSmooksConfigGivenMessageTypeProfilingParser() throws Exception {
+        MessageTypeProfile messageTypeProfile = MessageTypeProfile.forSchema("/d03b/EDIFACT-Messages.dfdl.xsd");
+        long ordersCount = messageTypeProfile.getCount("ORDERS");
+
+        smooks.addConfigurations("/smooks-profiling-parser-config.xml");
+        String result = filterAndSerialize(smooks.createExecutionContext(), getClass().getResourceAsStream("/data/ORDERS_D.03B_Interchange.txt"), smooks);
+
+        assertFalse(DiffBuilder.compare(getClass().getResourceAsStream("/data/ORDERS_D.03B_Interchange.xml")).ignoreWhitespace().withTest(result).build().hasDifferences());
+        assertEquals(ordersCount + 1, messageTypeProfile.getCount("ORDERS"));
+    }
+
+    @Test
+    public void testSmooksConfigGivenNarrowedMessageTypeProfilingParserAndMessageTypeOutsideNarrowing() throws Exception {
+        MessageTypeProfile messageTypeProfile = MessageTypeProfile.forSchema("/d03b/EDIFACT-Messages.dfdl.xsd");
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+        // profiles ORDERS messages until new parsers are narrowed to them
+        while (messageTypeProfile.getNarrowedDataProcessor() == null && System.nanoTime() < deadline) {
+            Smooks profilingSmooks = new Smooks("/smooks-profiling-parser-config.xml");
+            try {
+                filterAndSerialize(profilingSmooks.createExecutionContext(), getClass().getResourceAsStream("/data/ORDERS_D.03B_Interchange.txt"), profilingSmooks);
+            } finally {
+                profilingSmooks.close();
+            }
+            Thread.sleep(1000);
+        }
+        assertFalse(messageTypeProfile.getNarrowedMessageTypes(messageTypeProfile.getNarrowedDataProcessor()).contains("INVOIC"));
+
+        smooks.addConfigurations("/smooks-profiling-parser-config.xml");
+        String result = filterAndSerialize(smooks.createExecutionContext(), getClass().getResourceAsStream("/data/INVOIC_D.03B_Interchange_with_UNA.txt"), smooks);
+
+        assertFalse(DiffBuilder.compare(getClass().getResourceAsStream("/data/INVOIC_D.03B_Interchange_with_UNA.xml")).ignoreWhitespace().withTest(result).build().hasDifferences());
+    }
+
     @ParameterizedTest
     @CsvSource({"/data/INVOIC_D.03B_Interchange_with_UNA.xml, /data/INVOIC_D.03B_Interchange_with_UNA.txt", "/data/ORDERS_D.03B_Interchange.xml, /data/ORDERS_D.03B_Interchange.txt"})
     public void testSmooksConfigGivenUnparser(String fileName, String expectedResult) throws Exception {
@@ -85,4 +127,60 @@ public class EdifactFunctionalTestCase {
 
         assertEquals(StreamUtils.readStreamAsString(getClass().getResourceAsStream(expectedResult), "UTF-8").replaceAll("\\n", "\r\n"), result);
     }
+
+    @ParameterizedTest
+    @CsvSource({"/data/INVOIC_D.03B_Interchange_with_UNA.xml", "/data/ORDERS_D.03B_Interchange.xml"})
+    public void testSmooksConfigGivenNativeUnparser(String fileName) throws Exception {
+        String interchange = StreamUtils.readStreamAsString(getClass().getResourceAsStream(fileName), "UTF-8");
+
+        assertEquals(unparse("/smooks-unparser-config.xml", interchange), unparse("/smooks-native-unparser-config.xml", interchange));
+    }
+
+    @Test
+    public void testSmooksConfigGivenNativeUnparserAndDecimalCommaInUna() throws Exception {
+        String interchange = StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/INVOIC_D.03B_Interchange_with_UNA.xml"), "UTF-8")
+                .replace("<DecimalSeparator>.</DecimalSeparator>", "<DecimalSeparator>,</DecimalSeparator>")
+                .replace("<E5004>49.15</E5004>", "<E5004>49.150</E5004>");
+
+        String result = unparse("/smooks-native-unparser-config.xml", interchange);
+
+        assertEquals(unparse("/smooks-decimal-comma-unparser-config.xml", interchange), result);
+        assertTrue(result.startsWith("UNA:+,?*'"));
+        assertTrue(result.contains("MOA+66:49,15:GBP'"));
+    }
+
+    @Test
+    public void testSmooksConfigGivenNativeUnparserAndFixedLengthNumerics() throws Exception {
+        String interchange = StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/INVOIC_D.03B_Interchange_with_UNA.xml"), "UTF-8")
+                .replace("<E0017>990420</E0017>", "<E0017>90420</E0017>")
+                .replace("<E0019>1137</E0019>", "<E0019>937</E0019>");
+
+        String result = unparse("/smooks-native-unparser-config.xml", interchange);
+
+        assertEquals(unparse("/smooks-unparser-config.xml", interchange), result);
+        assertTrue(result.contains("+090420:0937+"));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"Interchange, false", "*, true"})
+    public void testSmooksConfigGivenNativeUnparserRejectsSelectorOtherThanEveryElementOrDefaultSerialization(String unparseOnNode, String defaultSerializationOn) {
+        String config = "<smooks-resource-list xmlns=\"https://www.smooks.org/xsd/smooks-2.0.xsd\" xmlns:edifact=\"https://www.smooks.org/xsd/smooks/edifact-2.0.xsd\">" +
+                "<params><param name=\"default.serialization.on\">" + defaultSerializationOn + "</param></params>" +
+                "<edifact:nativeUnparser schemaURI=\"/d03b/EDIFACT-Messages.dfdl.xsd\" unparseOnNode=\"" + unparseOnNode + "\"/>" +
+                "</smooks-resource-list>";
+
+        assertThrows(SmooksConfigException.class, () -> {
+            smooks.addConfigurations("smooks-native-unparser-config.xml", new ByteArrayInputStream(config.getBytes(StandardCharsets.UTF_8)));
+            filterAndSerialize(smooks.createExecutionContext(), getClass().getResourceAsStream("/data/ORDERS_D.03B_Interchange.xml"), smooks);
+        });
+    }
+
+    private String unparse(String config, String interchange) throws Exception {
+        Smooks unparserSmooks = new Smooks(config);
+        try {
+            return filterAndSerialize(unparserSmooks.createExecutionContext(), new ByteArrayInputStream(interchange.getBytes(StandardCharsets.UTF_8)), unparserSmooks);
+        } finally {
+            unparserSmooks.close();
+        }
+    }
 }
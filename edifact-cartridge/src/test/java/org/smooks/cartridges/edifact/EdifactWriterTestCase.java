@@ -0,0 +1,79 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edifact-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edifact;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.smooks.support.StreamUtils;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class EdifactWriterTestCase {
+
+    @ParameterizedTest
+    @CsvSource({"/data/INVOIC_D.03B_Interchange_with_UNA.xml, /data/INVOIC_D.03B_Interchange_with_UNA.txt", "/data/ORDERS_D.03B_Interchange.xml, /data/ORDERS_D.03B_Interchange.txt"})
+    public void testWrite(String fileName, String expectedResult) throws Exception {
+        SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+        saxParserFactory.setNamespaceAware(true);
+        StringWriter result = new StringWriter();
+        saxParserFactory.newSAXParser().parse(getClass().getResourceAsStream(fileName), new EdifactWriter(result, "/d03b/EDIFACT-Messages.dfdl.xsd").setControlCounts(false));
+
+        assertEquals(StreamUtils.readStreamAsString(getClass().getResourceAsStream(expectedResult), "UTF-8").replaceAll("\\n", "\r\n"), result.toString());
+    }
+
+    @Test
+    public void testWriteComputesControlCounts() throws Exception {
+        SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+        saxParserFactory.setNamespaceAware(true);
+        StringWriter result = new StringWriter();
+        saxParserFactory.newSAXParser().parse(getClass().getResourceAsStream("/data/INVOIC_D.03B_Interchange_with_UNA.xml"), new EdifactWriter(result, "/d03b/EDIFACT-Messages.dfdl.xsd"));
+
+        // the sample trailer miscounts the message's 35 segments
+        String expectedResult = StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/INVOIC_D.03B_Interchange_with_UNA.txt"), "UTF-8").replaceAll("\\n", "\r\n").replace("UNT+36+30'", "UNT+35+30'");
+        assertEquals(expectedResult, result.toString());
+    }
+}
@@ -0,0 +1,170 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edifact-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edifact;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.smooks.support.StreamUtils;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xmlunit.builder.DiffBuilder;
+
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HybridEdifactReaderTestCase {
+
+    @ParameterizedTest
+    @CsvSource({"/data/INVOIC_D.03B_Interchange_with_UNA.txt, /data/INVOIC_D.03B_Interchange_with_UNA.xml, 0", "/data/ORDERS_D.03B_Interchange.txt, /data/ORDERS_D.03B_Interchange.xml, 0",
+            "/data/INVOIC_D.03B_Interchange_with_UNA.txt, /data/INVOIC_D.03B_Interchange_with_UNA.xml, 4", "/data/ORDERS_D.03B_Interchange.txt, /data/ORDERS_D.03B_Interchange.xml, 4"})
+    public void testParse(String fileName, String expectedResult, int threads) throws Exception {
+        ExecutorService executorService = threads == 0 ? null : Executors.newFixedThreadPool(threads);
+        try {
+            HybridEdifactReader hybridEdifactReader = new HybridEdifactReader("/d03b/EDIFACT-Messages.dfdl.xsd").setExecutorService(executorService);
+            StringWriter result = new StringWriter();
+            TransformerFactory.newInstance().newTransformer().transform(new SAXSource(hybridEdifactReader, new InputSource(getClass().getResourceAsStream(fileName))), new StreamResult(result));
+
+            assertFalse(DiffBuilder.compare(getClass().getResourceAsStream(expectedResult)).ignoreWhitespace().withTest(result.toString()).build().hasDifferences());
+        } finally {
+            if (executorService != null) {
+                executorService.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testParseCancelsPendingMessagesWhenUnzIsMissing() throws Exception {
+        ThreadPoolExecutor executorService = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        try {
+            // keeps the messages pending
+            executorService.submit(() -> {
+                countDownLatch.await();
+                return null;
+            });
+            String interchange = StreamUtils.readStreamAsString(getClass().getResourceAsStream("/data/ORDERS_D.03B_Interchange.txt"), "UTF-8");
+            String truncatedInterchange = interchange.substring(0, interchange.indexOf("UNZ")).trim();
+            HybridEdifactReader hybridEdifactReader = new HybridEdifactReader("/d03b/EDIFACT-Messages.dfdl.xsd").setExecutorService(executorService);
+            hybridEdifactReader.setContentHandler(new DefaultHandler());
+
+            SAXException saxException = assertThrows(SAXException.class, () -> hybridEdifactReader.parse(new InputSource(new ByteArrayInputStream(truncatedInterchange.getBytes(StandardCharsets.ISO_8859_1)))));
+            assertTrue(saxException.getMessage().contains("missing UNZ segment"), saxException.getMessage());
+            executorService.purge();
+            assertTrue(executorService.getQueue().isEmpty());
+        } finally {
+            countDownLatch.countDown();
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testParseGivenUnknownMessageTypes() throws Exception {
+        StringBuilder interchange = new StringBuilder("UNB+UNOA:4+APPLICATION:1+COMPANY:1+20051107:1159+6002'");
+        for (int i = 0; i < 100; i++) {
+            interchange.append("UNH+M").append(i).append("+ZZ").append(i).append(":D:03B:UN'BGM+220+BKOD99+9'UNT+3+M").append(i).append("'");
+        }
+        interchange.append("UNZ+100+6002'");
+        HybridEdifactReader hybridEdifactReader = new HybridEdifactReader("/d03b/EDIFACT-Messages.dfdl.xsd");
+        long entrySchemaCount = countEntrySchemas();
+        AtomicInteger badMessageCount = new AtomicInteger();
+        hybridEdifactReader.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                if (localName.equals("BadMessage")) {
+                    badMessageCount.incrementAndGet();
+                }
+            }
+        });
+
+        hybridEdifactReader.parse(new InputSource(new ByteArrayInputStream(interchange.toString().getBytes(StandardCharsets.ISO_8859_1))));
+
+        assertEquals(100, badMessageCount.get());
+        // at most the entry schema shared by the service messages and the unknown message types
+        assertTrue(countEntrySchemas() <= entrySchemaCount + 1);
+    }
+
+    @Test
+    public void testToRawSegmentReEscapesSegmentTerminator() {
+        assertEquals("FTX+AAI+++IT?'S HERE'", HybridEdifactReader.toRawSegment("FTX+AAI+++IT'S HERE", '\'', '?'));
+        assertEquals("FTX+AAI+++50?+ ??'", HybridEdifactReader.toRawSegment("FTX+AAI+++50?+ ??", '\'', '?'));
+    }
+
+    private static long countEntrySchemas() {
+        long count = 0;
+        File[] entrySchemaDirectories = new File(System.getProperty("java.io.tmpdir")).listFiles((dir, name) -> name.startsWith(EdifactDataProcessorFactory.ENTRY_SCHEMA_DIRECTORY));
+        for (File entrySchemaDirectory : entrySchemaDirectories) {
+            String[] entrySchemas = entrySchemaDirectory.list();
+            count += entrySchemas == null ? 0 : entrySchemas.length;
+        }
+
+        return count;
+    }
+
+    @Test
+    public void testCreateVariables() {
+        Map<String, String> variables = HybridEdifactReader.createVariables(':', '+', ',', '?', ' ', '%');
+
+        assertEquals("%%%NL;%WSP*; %%%WSP*;", variables.get("{http://www.ibm.com/dfdl/EDI/Format}SegmentTerm"));
+        assertEquals("+", variables.get("{http://www.ibm.com/dfdl/EDI/Format}RepeatSep"));
+        assertEquals(",", variables.get("{http://www.ibm.com/dfdl/EDI/Format}DecimalSep"));
+    }
+}
@@ -0,0 +1,130 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edifact-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edifact;
+
+import org.apache.daffodil.japi.DataProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MessageTypeProfileTestCase {
+
+    @Test
+    public void testForSchemaRecordsDefinedMessageTypesOnly() {
+        MessageTypeProfile messageTypeProfile = MessageTypeProfile.forSchema("/d03b/EDIFACT-Messages.dfdl.xsd");
+        long ordersCount = messageTypeProfile.getCount("ORDERS");
+        messageTypeProfile.record("ORDERS");
+        messageTypeProfile.record("NOTDEFINED");
+
+        assertEquals(ordersCount + 1, messageTypeProfile.getCount("ORDERS"));
+        assertEquals(0, messageTypeProfile.getCount("NOTDEFINED"));
+        assertFalse(messageTypeProfile.getMessageTypes().contains("NOTDEFINED"));
+    }
+
+    @Test
+    public void testRecordCountsServiceMessages() {
+        MessageTypeProfile messageTypeProfile = new MessageTypeProfile("testRecordCountsServiceMessages", Collections.singleton("ORDERS"));
+        messageTypeProfile.record("CONTRL");
+        messageTypeProfile.record("INVOIC");
+
+        assertEquals(1, messageTypeProfile.getCount("CONTRL"));
+        assertEquals(0, messageTypeProfile.getCount("INVOIC"));
+        assertTrue(messageTypeProfile.getMessageTypes().isEmpty());
+    }
+
+    @Test
+    public void testNarrowDoesNotRetryFailedMessageTypes() throws Exception {
+        MessageTypeProfile messageTypeProfile = new MessageTypeProfile("testNarrowDoesNotRetryFailedMessageTypes", new HashSet<>(Arrays.asList("INVOIC", "ORDERS")));
+        messageTypeProfile.record("ORDERS");
+        AtomicInteger compilations = new AtomicInteger();
+        Callable<DataProcessor> failingCallable = () -> {
+            compilations.incrementAndGet();
+            throw new IllegalStateException("testNarrowDoesNotRetryFailedMessageTypes");
+        };
+
+        messageTypeProfile.narrow(new TreeSet<>(Collections.singleton("ORDERS")), failingCallable);
+        awaitFailure(messageTypeProfile, compilations, 1);
+        messageTypeProfile.narrow(new TreeSet<>(Collections.singleton("ORDERS")), failingCallable);
+        messageTypeProfile.narrow(new TreeSet<>(Arrays.asList("INVOIC", "ORDERS")), failingCallable);
+        awaitFailure(messageTypeProfile, compilations, 2);
+
+        assertEquals(2, compilations.get());
+    }
+
+    @Test
+    public void testNarrowIsDebounced() throws Exception {
+        MessageTypeProfile messageTypeProfile = new MessageTypeProfile("testNarrowIsDebounced", new HashSet<>(Arrays.asList("INVOIC", "ORDERS")));
+        AtomicInteger compilations = new AtomicInteger();
+        Callable<DataProcessor> dataProcessorCallable = () -> {
+            compilations.incrementAndGet();
+            return null;
+        };
+
+        messageTypeProfile.narrow(new TreeSet<>(Collections.singleton("ORDERS")), dataProcessorCallable);
+        messageTypeProfile.narrow(new TreeSet<>(Arrays.asList("INVOIC", "ORDERS")), dataProcessorCallable);
+        Thread.sleep(100);
+
+        assertEquals(1, compilations.get());
+    }
+
+    private void awaitFailure(MessageTypeProfile messageTypeProfile, AtomicInteger compilations, int expectedCompilations) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (compilations.get() < expectedCompilations && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        // notices the failure
+        assertNull(messageTypeProfile.getNarrowedDataProcessor());
+    }
+}
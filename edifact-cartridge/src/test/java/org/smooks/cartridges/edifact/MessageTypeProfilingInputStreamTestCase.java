@@ -0,0 +1,105 @@
+/*-
+ * ========================LICENSE_START=================================
+ * smooks-edifact-cartridge
+ * %%
+ * Copyright (C) 2020 Smooks
+ * %%
+ * Licensed under the terms of the Apache License Version 2.0, or
+ * the GNU Lesser General Public License version 3.0 or later.
+ * 
+ * SPDX-License-Identifier: Apache-2.0 OR LGPL-3.0-or-later
+ * 
+ * ======================================================================
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * ======================================================================
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ * =========================LICENSE_END==================================
+ */
+package org.smooks.cartridges.edifact;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MessageTypeProfilingInputStreamTestCase {
+
+    @Test
+    public void testReadRecordsMessageTypes() throws IOException {
+        MessageTypeProfile messageTypeProfile = new MessageTypeProfile("testReadRecordsMessageTypes", new HashSet<>(Arrays.asList("INVOIC", "ORDERS")));
+        read(new MessageTypeProfilingInputStream(getClass().getResourceAsStream("/data/ORDERS_D.03B_Interchange.txt"), messageTypeProfile));
+        read(new MessageTypeProfilingInputStream(getClass().getResourceAsStream("/data/INVOIC_D.03B_Interchange_with_UNA.txt"), messageTypeProfile));
+        read(new MessageTypeProfilingInputStream(getClass().getResourceAsStream("/data/ORDERS_D.03B_Interchange.txt"), messageTypeProfile));
+
+        assertEquals(new TreeSet<>(Arrays.asList("INVOIC", "ORDERS")), messageTypeProfile.getMessageTypes());
+        assertEquals(2, messageTypeProfile.getCount("ORDERS"));
+        assertEquals(1, messageTypeProfile.getCount("INVOIC"));
+    }
+
+    @Test
+    public void testReadHonoursServiceStringAdvice() throws IOException {
+        MessageTypeProfile messageTypeProfile = new MessageTypeProfile("testReadHonoursServiceStringAdvice", Collections.singleton("DES*ADV"));
+        String interchange = "UNA|*.# \"\nUNB*UNOA|4*SENDER*RECIPIENT*200101|1200*1\"\nUNH*1*DES#*ADV|D|03B|UN\"\nUNT*2*1\"\nUNH*2*CONTRL|D|3|UN\"\nUNT*2*2\"\nUNZ*2*1\"";
+        read(new MessageTypeProfilingInputStream(new ByteArrayInputStream(interchange.getBytes(StandardCharsets.US_ASCII)), messageTypeProfile));
+
+        assertEquals(new TreeSet<>(Arrays.asList("DES*ADV")), messageTypeProfile.getMessageTypes());
+        assertEquals(1, messageTypeProfile.getCount("CONTRL"));
+    }
+
+    @Test
+    public void testReadFlagsMessageTypesOutsideNarrowing() throws IOException {
+        MessageTypeProfile messageTypeProfile = new MessageTypeProfile("testReadFlagsMessageTypesOutsideNarrowing", new HashSet<>(Arrays.asList("INVOIC", "ORDERS")));
+        String interchange = "UNB+UNOA:4+SENDER+RECIPIENT+200101:1200+1'UNH+1+ORDERS:D:03B:UN'UNT+2+1'UNH+2+CONTRL:D:3:UN'UNT+2+2'UNH+3+NOTDEFINED:D:03B:UN'UNT+2+3'UNZ+3+1'";
+        MessageTypeProfilingInputStream narrowedInputStream = new MessageTypeProfilingInputStream(new ByteArrayInputStream(interchange.getBytes(StandardCharsets.US_ASCII)), messageTypeProfile, Collections.singleton("ORDERS"));
+        read(narrowedInputStream);
+        MessageTypeProfilingInputStream invoicInputStream = new MessageTypeProfilingInputStream(getClass().getResourceAsStream("/data/INVOIC_D.03B_Interchange_with_UNA.txt"), messageTypeProfile, Collections.singleton("ORDERS"));
+        read(invoicInputStream);
+
+        assertFalse(narrowedInputStream.hasMessageTypeOutsideNarrowing());
+        assertTrue(invoicInputStream.hasMessageTypeOutsideNarrowing());
+    }
+
+    private void read(InputStream inputStream) throws IOException {
+        try (InputStream profilingInputStream = inputStream) {
+            profilingInputStream.read();
+            byte[] buffer = new byte[7];
+            while (profilingInputStream.read(buffer) != -1) {
+            }
+        }
+    }
+}